@@ -21,6 +21,7 @@ package io.hops.hopsworks.admin.maintenance;
 
 import io.hops.hopsworks.common.dao.host.Hosts;
 import io.hops.hopsworks.common.dao.host.HostsFacade;
+import io.hops.hopsworks.common.dao.kagent.HeartbeatAggregator;
 import io.hops.hopsworks.common.dao.pythonDeps.CondaCommands;
 import io.hops.hopsworks.common.dao.pythonDeps.PythonDepsFacade;
 import io.hops.hopsworks.common.dao.pythonDeps.PythonDepsFacade.CondaStatus;
@@ -69,6 +70,8 @@ public class NodesBean implements Serializable {
   @EJB
   private HostsFacade hostsFacade;
   @EJB
+  private HeartbeatAggregator heartbeatAggregator;
+  @EJB
   private Settings settings;
   @EJB
   private CertificatesMgmService certificatesMgmService;
@@ -213,6 +216,7 @@ public class NodesBean implements Serializable {
       storedHost.setRegistered(host.isRegistered());
       storedHost.setCondaEnabled(host.getCondaEnabled());
       hostsFacade.storeHost(storedHost);
+      heartbeatAggregator.evict(storedHost.getHostname());
       MessagesController.addInfoMessage("Updated host");
       logger.log(Level.FINE, "Updated Host with ID: " + host.getHostname() + " Hostname: " + host.getHostIp()
           + " Public IP: " + host.getPublicIp() + " Private IP: " + host.getPrivateIp()
@@ -307,6 +311,7 @@ public class NodesBean implements Serializable {
     if (toBeDeletedNode != null) {
       boolean deleted = hostsFacade.removeByHostname(toBeDeletedNode.getHostname());
       if (deleted) {
+        heartbeatAggregator.evict(toBeDeletedNode.getHostname());
         allNodes.remove(toBeDeletedNode);
         logger.log(Level.INFO, "Removed Host with ID " + toBeDeletedNode.getHostname() + " from the database");
         MessagesController.addInfoMessage("Node deleted");
@@ -32,6 +32,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.PostConstruct;
@@ -84,9 +85,10 @@ public class InodesMB implements Serializable {
     }
     //get from DB and update Inode
     cwdChildren = inodes.findByParent(cwd);
+    Map<Integer, String> paths = inodes.getPaths(cwdChildren);
     List<InodeView> kids = new ArrayList<>();
     for (Inode i : cwdChildren) {
-      kids.add(new InodeView(i, inodes.getPath(i)));
+      kids.add(new InodeView(i, paths.get(i.getId())));
     }
     if (!inodes.isProjectRoot(cwd)) { // root doesn't have a parent to show
       InodeView parent = InodeView.getParentInode(inodes.getPath(cwd));
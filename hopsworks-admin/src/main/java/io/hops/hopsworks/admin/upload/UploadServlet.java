@@ -61,6 +61,9 @@ public class UploadServlet extends HttpServlet {
     int resumableChunkNumber = getResumableChunkNumber(request);
 
     ResumableInfo info = getResumableInfo(request);
+    if (!info.isValidChunk(new ResumableInfo.ResumableChunkNumber(resumableChunkNumber))) {
+      throw new ServletException("Invalid chunk number " + resumableChunkNumber);
+    }
 
     long content_length;
     //Seek to position
@@ -33,7 +33,9 @@ import io.hops.hopsworks.common.dao.project.ProjectFacade;
 import io.hops.hopsworks.common.dao.project.team.ProjectTeamFacade;
 import io.hops.hopsworks.common.dao.user.UserFacade;
 import io.hops.hopsworks.common.dao.user.Users;
+import io.hops.hopsworks.common.dataset.DatasetArchiver;
 import io.hops.hopsworks.common.dataset.DatasetController;
+import io.hops.hopsworks.common.dataset.DirectoryListingOutput;
 import io.hops.hopsworks.common.exception.AppException;
 import io.hops.hopsworks.common.hdfs.DistributedFileSystemOps;
 import io.hops.hopsworks.common.hdfs.DistributedFsService;
@@ -41,12 +43,9 @@ import io.hops.hopsworks.common.hdfs.HdfsUsersController;
 import io.hops.hopsworks.common.jobs.AsynchronousJobExecutor;
 import io.hops.hopsworks.common.jobs.JobController;
 import io.hops.hopsworks.common.jobs.yarn.YarnJobsMonitor;
-import io.hops.hopsworks.common.util.Settings;
-import io.hops.hopsworks.common.util.SystemCommandExecutor;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.hadoop.fs.permission.FsAction;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.security.AccessControlException;
@@ -72,7 +71,6 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -113,7 +111,7 @@ public class DatasetsResource {
   @Inject
   private BlobsResource blobsResource;
   @EJB
-  private Settings settings;
+  private DatasetArchiver datasetArchiver;
 
   private Project project;
   
@@ -382,12 +380,15 @@ public class DatasetsResource {
   
   //File operations
   @ApiOperation(value = "Get dataset file/dir listing", notes = "Returns metadata of " +
-      "the files and folders in the dataset root.")
+      "the files and folders in the dataset root, ordered by name.")
   @GET
   @Path("/{dsName}/files")
   @Produces(MediaType.APPLICATION_JSON)
   @AllowedProjectRoles({AllowedProjectRoles.DATA_SCIENTIST, AllowedProjectRoles.DATA_OWNER})
-  public Response getDatasetRoot(@PathParam("dsName") String name, @Context SecurityContext sc) throws AppException {
+  public Response getDatasetRoot(@PathParam("dsName") String name,
+      @ApiParam("Maximum number of entries, all if not given") @QueryParam("limit") int limit,
+      @ApiParam("Name of the last entry of the previous page") @QueryParam("after") String after,
+      @Context SecurityContext sc) throws AppException {
     Dataset dataset = getDataset(name);
     DatasetPath path = new DatasetPath(dataset, "/");
   
@@ -395,19 +396,20 @@ public class DatasetsResource {
   
     Inode inode = pathValidator.exists(path, inodes, true);
   
-    GenericEntity<List<InodeView>> entity =
-        getDirHelper(inode, fullPath, dataset.isShared());
-    return Response.ok(entity, MediaType.APPLICATION_JSON_TYPE).build();
+    return Response.ok(getDirHelper(inode, fullPath, dataset.isShared(), after, limit),
+        MediaType.APPLICATION_JSON_TYPE).build();
   }
   
   @ApiOperation(value = "Get a listing for a path in a dataset", notes = "Returns metadata of the files and folders " +
-      "on the specified path.")
+      "on the specified path, ordered by name.")
   @GET
   @Path("/{dsName}/files/{path: .+}")
   @Produces(MediaType.APPLICATION_JSON)
   @AllowedProjectRoles({AllowedProjectRoles.DATA_SCIENTIST, AllowedProjectRoles.DATA_OWNER})
   public Response getFileOrDir(@PathParam("dsName") String name,
       @PathParam ("path") String relativePath,
+      @ApiParam("Maximum number of entries, all if not given") @QueryParam("limit") int limit,
+      @ApiParam("Name of the last entry of the previous page") @QueryParam("after") String after,
       @Context SecurityContext sc ) throws
       AppException, AccessControlException {
     
@@ -418,8 +420,8 @@ public class DatasetsResource {
     Inode inode = pathValidator.exists(path, inodes, null);
     
     if (inode.isDir()){
-      GenericEntity<List<InodeView>> entity = getDirHelper(inode, fullPath, dataSet.isShared());
-      return Response.ok(entity, MediaType.APPLICATION_JSON_TYPE).build();
+      return Response.ok(getDirHelper(inode, fullPath, dataSet.isShared(), after, limit),
+          MediaType.APPLICATION_JSON_TYPE).build();
     } else {
       GenericEntity<InodeView> entity = getFileHelper(inode, fullPath);
       return Response.ok(entity,MediaType.APPLICATION_JSON_TYPE).build();
@@ -439,6 +441,9 @@ public class DatasetsResource {
     boolean success;
     try {
       success = dfso.rm(fullPath, true);
+      if (success) {
+        inodes.invalidateCachedPath(fullPath.toUri().getPath());
+      }
     } catch (AccessControlException ex) {
       logger.log(Level.FINE, null, ex);
       throw new AccessControlException(
@@ -582,8 +587,12 @@ public class DatasetsResource {
       FsPermission permission = udfso.getFileStatus(destPath.getParent()).getPermission();
       String group = udfso.getFileStatus(destPath.getParent()).getGroup();
       String owner = udfso.getFileStatus(sourcePath).getOwner();
+      Inode sourceInode = inodes.getInodeAtPath(sourcePath.toString());
     
       udfso.moveWithinHdfs(sourcePath, destPath);
+      if (sourceInode != null) {
+        inodes.invalidateCachedInode(sourceInode, sourcePath.toString());
+      }
     
       // Change permissions recursively
       datasetController.recChangeOwnershipAndPermission(destPath, permission,
@@ -636,52 +645,9 @@ public class DatasetsResource {
     DatasetPath dsPath = new DatasetPath(dataset, targetPath);
     org.apache.hadoop.fs.Path fullPath = pathValidator.getFullPath(dsPath);
 
-    String localDir = DigestUtils.sha256Hex(fullPath.toString());
-    String stagingDir = settings.getStagingDir() + File.separator + localDir;
-
-    File unzipDir = new File(stagingDir);
-    unzipDir.mkdirs();
-    settings.addUnzippingState(fullPath.toString());
-
-    // HDFS_USERNAME is the next param to the bash script
     Users user = userFacade.findByEmail(sc.getUserPrincipal().getName());
     String hdfsUser = hdfsUsersBean.getHdfsUserName(project, user);
-
-    List<String> commands = new ArrayList<>();
-
-    commands.add(settings.getHopsworksDomainDir() + "/bin/unzip-background.sh");
-    commands.add(stagingDir);
-    commands.add(fullPath.toString());
-    commands.add(hdfsUser);
-
-    SystemCommandExecutor commandExecutor = new SystemCommandExecutor(commands, false);
-    String stdout = "", stderr = "";
-    try {
-      int result = commandExecutor.executeCommand();
-      stdout = commandExecutor.getStandardOutputFromCommand();
-      stderr = commandExecutor.getStandardErrorFromCommand();
-      if (result == 2) {
-        throw new AppException(Response.Status.EXPECTATION_FAILED.
-                getStatusCode(),
-                "Not enough free space on the local scratch directory to download and unzip this file."
-                        + "Talk to your admin to increase disk space at the path: hopsworks/staging_dir");
-      }
-      if (result != 0) {
-        throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
-                getStatusCode(),
-                "Could not unzip the file at path: " + fullPath);
-      }
-    } catch (InterruptedException e) {
-      logger.log(Level.FINE, null, e);
-      throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
-              getStatusCode(),
-              "Interrupted exception. Could not unzip the file at path: " + fullPath);
-    } catch (IOException ex) {
-      logger.log(Level.FINE, null, ex);
-      throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
-              getStatusCode(),
-              "IOException. Could not unzip the file at path: " + fullPath);
-    }
+    datasetArchiver.unzip(fullPath.toString(), hdfsUser);
     return Response.noContent().build();
   }
 
@@ -691,52 +657,9 @@ public class DatasetsResource {
     DatasetPath dsPath = new DatasetPath(dataset, targetPath);
     org.apache.hadoop.fs.Path fullPath = pathValidator.getFullPath(dsPath);
 
-    String localDir = DigestUtils.sha256Hex(fullPath.toString());
-    String stagingDir = settings.getStagingDir() + File.separator + localDir;
-
-    File zipDir = new File(stagingDir);
-    zipDir.mkdirs();
-    settings.addZippingState(fullPath.toString());
-
-    // HDFS_USERNAME is the next param to the bash script
     Users user = userFacade.findByEmail(sc.getUserPrincipal().getName());
     String hdfsUser = hdfsUsersBean.getHdfsUserName(project, user);
-
-    List<String> commands = new ArrayList<>();
-
-    commands.add(settings.getHopsworksDomainDir() + "/bin/zip-background.sh");
-    commands.add(stagingDir);
-    commands.add(fullPath.toString());
-    commands.add(hdfsUser);
-
-    SystemCommandExecutor commandExecutor = new SystemCommandExecutor(commands, false);
-    String stdout = "", stderr = "";
-    try {
-      int result = commandExecutor.executeCommand();
-      stdout = commandExecutor.getStandardOutputFromCommand();
-      stderr = commandExecutor.getStandardErrorFromCommand();
-      if (result == 2) {
-        throw new AppException(Response.Status.EXPECTATION_FAILED.
-                getStatusCode(),
-                "Not enough free space on the local scratch directory to download and zip this directory."
-                        + "Talk to your admin to increase disk space at the path: hopsworks/staging_dir");
-      }
-      if (result != 0) {
-        throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
-                getStatusCode(),
-                "Could not zip the directory at path: " + fullPath);
-      }
-    } catch (InterruptedException e) {
-      logger.log(Level.FINE, null, e);
-      throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
-              getStatusCode(),
-              "Interrupted exception. Could not zip the directory at path: " + fullPath);
-    } catch (IOException ex) {
-      logger.log(Level.FINE, null, ex);
-      throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
-              getStatusCode(),
-              "IOException. Could not zip the directory at path: " + fullPath);
-    }
+    datasetArchiver.zip(fullPath.toString(), hdfsUser);
     return Response.noContent().build();
   }
   
@@ -750,7 +673,9 @@ public class DatasetsResource {
   
   private GenericEntity<InodeView> getFileHelper(Inode inode, String path){
     InodeView inodeView = new InodeView(inode, path+ "/" + inode.getInodePK().getName());
-    inodeView.setZipState(settings.getZipState(
+    inodeView.setZipProgress(datasetArchiver.getProgress(
+        path+ "/" + inode.getInodePK().getName()));
+    inodeView.setZipState(datasetArchiver.getState(
         path+ "/" + inode.getInodePK().getName()));
     Users user = userFacade.findByUsername(inodeView.getOwner());
     if (user != null) {
@@ -761,25 +686,11 @@ public class DatasetsResource {
     return new GenericEntity<InodeView>(inodeView) { };
   }
   
-  private GenericEntity<List<InodeView>> getDirHelper(Inode inode,
-      String path, boolean isShared){
-    List<Inode> cwdChildren = inodes.getChildren(inode);
-    
-    List<InodeView> kids = new ArrayList<>();
-    for (Inode i : cwdChildren) {
-      InodeView inodeView = new InodeView(i, path + "/" + i.getInodePK().getName());
-      if (isShared) {
-        //Get project of project__user the inode is owned by
-        inodeView.setOwningProjectName(hdfsUsersBean.getProjectName(i.getHdfsUser().getName()));
-      }
-      inodeView.setZipState(settings.getZipState(path + "/" + i.getInodePK().getName()));
-      Users user = userFacade.findByUsername(inodeView.getOwner());
-      if (user != null) {
-        inodeView.setOwner(user.getFname() + " " + user.getLname());
-        inodeView.setEmail(user.getEmail());
-      }
-      kids.add(inodeView);
+  private DirectoryListingOutput getDirHelper(Inode inode, String path, boolean isShared, String after,
+      int limit) throws AppException {
+    if (limit < 0) {
+      throw new AppException(Response.Status.BAD_REQUEST.getStatusCode(), "The limit cannot be negative.");
     }
-    return new GenericEntity<List<InodeView>>(kids) { };
+    return new DirectoryListingOutput(datasetController, inode, path, isShared, after, limit);
   }
 }
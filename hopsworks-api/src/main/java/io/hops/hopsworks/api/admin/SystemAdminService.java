@@ -20,17 +20,27 @@
 
 package io.hops.hopsworks.api.admin;
 
+import io.hops.hopsworks.api.admin.dto.CacheStatsDTO;
+import io.hops.hopsworks.api.admin.dto.ElasticQueryStatsDTO;
+import io.hops.hopsworks.api.admin.dto.KagentLatencyDTO;
 import io.hops.hopsworks.api.admin.dto.VariablesRequest;
 import io.hops.hopsworks.api.filter.NoCacheResponse;
 import io.hops.hopsworks.api.util.JsonResponse;
 import io.hops.hopsworks.common.constants.message.ResponseMessages;
 import io.hops.hopsworks.common.dao.host.HostsFacade;
 import io.hops.hopsworks.common.dao.host.Hosts;
+import io.hops.hopsworks.common.dao.hdfs.inode.InodeAncestorCache;
+import io.hops.hopsworks.common.dao.hdfs.inode.InodePathCache;
+import io.hops.hopsworks.common.dao.kagent.HeartbeatAggregator;
 import io.hops.hopsworks.common.dao.util.Variables;
+import io.hops.hopsworks.common.elastic.ElasticClientService;
+import io.hops.hopsworks.common.elastic.SearchResultCache;
 import io.hops.hopsworks.common.exception.AppException;
 import io.hops.hopsworks.common.exception.EncryptionMasterPasswordException;
+import io.hops.hopsworks.common.hdfs.DistributedFsOpsPool;
 import io.hops.hopsworks.common.security.CertificatesMgmService;
 import io.hops.hopsworks.common.util.Settings;
+import io.hops.hopsworks.common.util.WebCommunication;
 import io.swagger.annotations.Api;
 
 import javax.annotation.security.RolesAllowed;
@@ -79,6 +89,20 @@ public class SystemAdminService {
   private Settings settings;
   @EJB
   private HostsFacade hostsFacade;
+  @EJB
+  private HeartbeatAggregator heartbeatAggregator;
+  @EJB
+  private WebCommunication web;
+  @EJB
+  private DistributedFsOpsPool dfsOpsPool;
+  @EJB
+  private InodePathCache inodePathCache;
+  @EJB
+  private InodeAncestorCache inodeAncestorCache;
+  @EJB
+  private ElasticClientService elasticClientService;
+  @EJB
+  private SearchResultCache searchResultCache;
   
   /**
    * Admin endpoint that changes the master encryption password used to encrypt the certificates' password
@@ -205,6 +229,7 @@ public class SystemAdminService {
       }
 
       hostsFacade.storeHost(storedNode);
+      heartbeatAggregator.evict(storedNode.getHostname());
       JsonResponse response = noCacheResponse.buildJsonResponse(Response.Status.NO_CONTENT, "Node updated");
       return noCacheResponse.getNoCacheResponseBuilder(Response.Status.NO_CONTENT).entity(response).build();
     }
@@ -218,6 +243,7 @@ public class SystemAdminService {
       boolean deleted = hostsFacade.removeByHostname(hostId);
       JsonResponse response;
       if (deleted) {
+        heartbeatAggregator.evict(hostId);
         response = noCacheResponse.buildJsonResponse(Response.Status.OK, "Node with ID " + hostId + " deleted");
         return noCacheResponse.getNoCacheResponseBuilder(Response.Status.OK).entity(response).build();
       } else {
@@ -259,6 +285,95 @@ public class SystemAdminService {
     return noCacheResponse.getNoCacheResponseBuilder(Response.Status.CREATED).entity(response).build();
   }
   
+  /**
+   * Admin endpoint that returns the latency histograms of the requests sent to the kagents, per operation.
+   * @param sc
+   * @param request
+   * @return
+   */
+  @GET
+  @Path("/kagent/latencies")
+  public Response getKagentLatencies(@Context SecurityContext sc, @Context HttpServletRequest request) {
+    List<KagentLatencyDTO> latencies = new ArrayList<>();
+    for (Map.Entry<String, WebCommunication.OperationStats> entry : web.getOperationStats().entrySet()) {
+      WebCommunication.OperationStats stats = entry.getValue();
+      KagentLatencyDTO latency = new KagentLatencyDTO();
+      latency.setOperation(entry.getKey());
+      latency.setCount(stats.getCount());
+      latency.setAverageMillis(stats.getAverageMillis());
+      latency.setMaxMillis(stats.getMaxMillis());
+      latency.setP50Millis(stats.getPercentileMillis(50));
+      latency.setP95Millis(stats.getPercentileMillis(95));
+      latency.setP99Millis(stats.getPercentileMillis(99));
+      List<Long> bounds = new ArrayList<>();
+      for (long bound : stats.getBucketBoundsMillis()) {
+        bounds.add(bound);
+      }
+      latency.setBucketBoundsMillis(bounds);
+      List<Long> buckets = new ArrayList<>();
+      for (long bucket : stats.getBuckets()) {
+        buckets.add(bucket);
+      }
+      latency.setBuckets(buckets);
+      latencies.add(latency);
+    }
+    
+    GenericEntity<List<KagentLatencyDTO>> response = new GenericEntity<List<KagentLatencyDTO>>(latencies){};
+    return noCacheResponse.getNoCacheResponseBuilder(Response.Status.OK).entity(response).build();
+  }
+  
+  /**
+   * Admin endpoint that returns the size and the hit, miss and eviction counters of the in-memory caches and pools.
+   * @param sc
+   * @param request
+   * @return
+   */
+  @GET
+  @Path("/caches")
+  public Response getCacheStats(@Context SecurityContext sc, @Context HttpServletRequest request) {
+    List<CacheStatsDTO> caches = new ArrayList<>();
+    caches.add(new CacheStatsDTO("dfsOpsPool", dfsOpsPool.getSize(), dfsOpsPool.getHits(), dfsOpsPool.getMisses(),
+        dfsOpsPool.getEvictions()));
+    CacheStatsDTO paths = new CacheStatsDTO("inodePathCache", inodePathCache.getSize(), inodePathCache.getHits(),
+        inodePathCache.getMisses(), 0);
+    paths.setPartialHits(inodePathCache.getPartialHits());
+    caches.add(paths);
+    caches.add(new CacheStatsDTO("inodeAncestorCache", inodeAncestorCache.getSize(), inodeAncestorCache.getHits(),
+        inodeAncestorCache.getMisses(), 0));
+    SearchResultCache.Stats search = searchResultCache.getStats();
+    CacheStatsDTO searches = new CacheStatsDTO("searchResultCache", search.getSize(), search.getHits(),
+        search.getMisses(), 0);
+    searches.setCoalesced(search.getCoalesced());
+    caches.add(searches);
+    
+    GenericEntity<List<CacheStatsDTO>> response = new GenericEntity<List<CacheStatsDTO>>(caches){};
+    return noCacheResponse.getNoCacheResponseBuilder(Response.Status.OK).entity(response).build();
+  }
+  
+  /**
+   * Admin endpoint that returns the latencies of the queries sent to Elasticsearch, per query.
+   * @param sc
+   * @param request
+   * @return
+   */
+  @GET
+  @Path("/elastic/queries")
+  public Response getElasticQueryStats(@Context SecurityContext sc, @Context HttpServletRequest request) {
+    List<ElasticQueryStatsDTO> queries = new ArrayList<>();
+    for (Map.Entry<String, ElasticClientService.QueryStats> entry : elasticClientService.getQueryStats().entrySet()) {
+      ElasticClientService.QueryStats stats = entry.getValue();
+      ElasticQueryStatsDTO query = new ElasticQueryStatsDTO();
+      query.setQuery(entry.getKey());
+      query.setCount(stats.getCount());
+      query.setAverageMillis(stats.getAverageMillis());
+      query.setMaxMillis(stats.getMaxMillis());
+      queries.add(query);
+    }
+    
+    GenericEntity<List<ElasticQueryStatsDTO>> response = new GenericEntity<List<ElasticQueryStatsDTO>>(queries){};
+    return noCacheResponse.getNoCacheResponseBuilder(Response.Status.OK).entity(response).build();
+  }
+  
   @POST
   @Path("/rotate")
   public Response serviceKeyRotate(@Context SecurityContext sc, @Context HttpServletRequest request)
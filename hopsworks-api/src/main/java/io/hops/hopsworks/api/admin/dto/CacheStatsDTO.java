@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.api.admin.dto;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+
+/**
+ * Size and lookup counters of one of the in-memory caches and pools.
+ */
+@XmlRootElement
+public class CacheStatsDTO implements Serializable {
+  private static final long serialVersionUID = 1L;
+  
+  private String name;
+  private long size;
+  private long hits;
+  // Lookups that found only part of what they looked for, such as a cached ancestor of a path
+  private long partialHits;
+  private long misses;
+  // Lookups that waited for an identical lookup already running
+  private long coalesced;
+  private long evictions;
+  
+  public CacheStatsDTO() {
+  }
+  
+  public CacheStatsDTO(String name, long size, long hits, long misses, long evictions) {
+    this.name = name;
+    this.size = size;
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+  }
+  
+  public String getName() {
+    return name;
+  }
+  
+  public void setName(String name) {
+    this.name = name;
+  }
+  
+  public long getSize() {
+    return size;
+  }
+  
+  public void setSize(long size) {
+    this.size = size;
+  }
+  
+  public long getHits() {
+    return hits;
+  }
+  
+  public void setHits(long hits) {
+    this.hits = hits;
+  }
+  
+  public long getPartialHits() {
+    return partialHits;
+  }
+  
+  public void setPartialHits(long partialHits) {
+    this.partialHits = partialHits;
+  }
+  
+  public long getMisses() {
+    return misses;
+  }
+  
+  public void setMisses(long misses) {
+    this.misses = misses;
+  }
+  
+  public long getCoalesced() {
+    return coalesced;
+  }
+  
+  public void setCoalesced(long coalesced) {
+    this.coalesced = coalesced;
+  }
+  
+  public long getEvictions() {
+    return evictions;
+  }
+  
+  public void setEvictions(long evictions) {
+    this.evictions = evictions;
+  }
+}
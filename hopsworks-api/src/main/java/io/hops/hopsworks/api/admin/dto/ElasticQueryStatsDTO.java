@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.api.admin.dto;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+
+/**
+ * Latencies of one of the queries sent to Elasticsearch.
+ */
+@XmlRootElement
+public class ElasticQueryStatsDTO implements Serializable {
+  private static final long serialVersionUID = 1L;
+  
+  private String query;
+  private long count;
+  private long averageMillis;
+  private long maxMillis;
+  
+  public ElasticQueryStatsDTO() {
+  }
+  
+  public String getQuery() {
+    return query;
+  }
+  
+  public void setQuery(String query) {
+    this.query = query;
+  }
+  
+  public long getCount() {
+    return count;
+  }
+  
+  public void setCount(long count) {
+    this.count = count;
+  }
+  
+  public long getAverageMillis() {
+    return averageMillis;
+  }
+  
+  public void setAverageMillis(long averageMillis) {
+    this.averageMillis = averageMillis;
+  }
+  
+  public long getMaxMillis() {
+    return maxMillis;
+  }
+  
+  public void setMaxMillis(long maxMillis) {
+    this.maxMillis = maxMillis;
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.api.admin.dto;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Latencies of the requests of one operation sent to the kagents.
+ */
+@XmlRootElement
+public class KagentLatencyDTO implements Serializable {
+  private static final long serialVersionUID = 1L;
+  
+  private String operation;
+  private long count;
+  private long averageMillis;
+  private long maxMillis;
+  private long p50Millis;
+  private long p95Millis;
+  private long p99Millis;
+  // Upper bounds of the buckets, the last bucket has no bound
+  private List<Long> bucketBoundsMillis;
+  private List<Long> buckets;
+  
+  public KagentLatencyDTO() {
+  }
+  
+  public String getOperation() {
+    return operation;
+  }
+  
+  public void setOperation(String operation) {
+    this.operation = operation;
+  }
+  
+  public long getCount() {
+    return count;
+  }
+  
+  public void setCount(long count) {
+    this.count = count;
+  }
+  
+  public long getAverageMillis() {
+    return averageMillis;
+  }
+  
+  public void setAverageMillis(long averageMillis) {
+    this.averageMillis = averageMillis;
+  }
+  
+  public long getMaxMillis() {
+    return maxMillis;
+  }
+  
+  public void setMaxMillis(long maxMillis) {
+    this.maxMillis = maxMillis;
+  }
+  
+  public long getP50Millis() {
+    return p50Millis;
+  }
+  
+  public void setP50Millis(long p50Millis) {
+    this.p50Millis = p50Millis;
+  }
+  
+  public long getP95Millis() {
+    return p95Millis;
+  }
+  
+  public void setP95Millis(long p95Millis) {
+    this.p95Millis = p95Millis;
+  }
+  
+  public long getP99Millis() {
+    return p99Millis;
+  }
+  
+  public void setP99Millis(long p99Millis) {
+    this.p99Millis = p99Millis;
+  }
+  
+  public List<Long> getBucketBoundsMillis() {
+    return bucketBoundsMillis;
+  }
+  
+  public void setBucketBoundsMillis(List<Long> bucketBoundsMillis) {
+    this.bucketBoundsMillis = bucketBoundsMillis;
+  }
+  
+  public List<Long> getBuckets() {
+    return buckets;
+  }
+  
+  public void setBuckets(List<Long> buckets) {
+    this.buckets = buckets;
+  }
+}
@@ -50,8 +50,8 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import io.hops.hopsworks.common.dao.host.Hosts;
 import io.hops.hopsworks.common.dao.host.HostsFacade;
+import io.hops.hopsworks.common.dao.kagent.HeartbeatAggregator;
 import io.hops.hopsworks.common.dao.kagent.HostServices;
-import io.hops.hopsworks.common.dao.kagent.HostServicesFacade;
 import io.hops.hopsworks.common.dao.host.Status;
 import io.hops.hopsworks.common.dao.project.Project;
 import io.hops.hopsworks.common.dao.project.ProjectFacade;
@@ -74,6 +74,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonObject;
@@ -93,8 +94,6 @@ public class AgentResource {
   @EJB
   private HostsFacade hostFacade;
   @EJB
-  private HostServicesFacade hostServiceFacade;
-  @EJB
   private AlertEJB alertFacade;
   @EJB
   private PythonDepsFacade pythonDepsFacade;
@@ -110,6 +109,8 @@ public class AgentResource {
   private SystemCommandFacade systemCommandFacade;
   @EJB
   private CertificatesMgmService certificatesMgmService;
+  @EJB
+  private HeartbeatAggregator heartbeatAggregator;
 
   final static Logger logger = Logger.getLogger(AgentResource.class.getName());
 
@@ -153,7 +154,7 @@ public class AgentResource {
       JsonObject json = Json.createReader(stream).readObject();
       long agentTime = json.getJsonNumber("agent-time").longValue();
       String hostname = json.getString("host-id");
-      Hosts host = hostFacade.findByHostname(hostname);
+      Hosts host = heartbeatAggregator.findHost(hostname);
       if (host == null) {
         logger.log(Level.WARNING, "Host with id {0} not found.", hostname);
         return Response.status(Response.Status.NOT_FOUND).build();
@@ -162,98 +163,17 @@ public class AgentResource {
         logger.log(Level.WARNING, "Host with id {0} is not registered.", hostname);
         return Response.status(Response.Status.NOT_ACCEPTABLE).build();
       }
-      host.setLastHeartbeat((new Date()).getTime());
-      host.setLoad1(json.getJsonNumber("load1").doubleValue());
-      host.setLoad5(json.getJsonNumber("load5").doubleValue());
-      host.setLoad15(json.getJsonNumber("load15").doubleValue());
-      host.setNumGpus(json.getJsonNumber("num-gpus").intValue());
-      Long previousDiskUsed = host.getDiskUsed() == null ? 0l : host.getDiskUsed();
-      host.setDiskUsed(json.getJsonNumber("disk-used").longValue());
-      host.setMemoryUsed(json.getJsonNumber("memory-used").longValue());
-      host.setPrivateIp(json.getString("private-ip"));
-      host.setDiskCapacity(json.getJsonNumber("disk-capacity").longValue());
-      if (((float) previousDiskUsed) / host.getDiskCapacity() < 0.8 && ((float) host.getDiskUsed()) / host.
-          getDiskCapacity() > 0.8) {
-        String subject = "alert: hard drive full on " + host.getHostname();
-        String body = host.getHostname() + " hard drive utilisation is " + host.getDiskUsageInfo();
-        emailAlert(subject, body);
-      }
-      host.setMemoryCapacity(json.getJsonNumber("memory-capacity").longValue());
-      host.setCores(json.getInt("cores"));
-      hostFacade.storeHost(host);
-
-      JsonArray roles = json.getJsonArray("services");
-      for (int i = 0; i < roles.size(); i++) {
-        JsonObject s = roles.getJsonObject(i);
-
-        if (!s.containsKey("cluster") || !s.containsKey("group") || !s.
-            containsKey("service")) {
-          logger.warning("Badly formed JSON object describing a service.");
-          continue;
-        }
-        String cluster = s.getString("cluster");
-        String serviceName = s.getString("service");
-        String group = s.getString("group");
-        HostServices hostService = null;
-        try {
-          hostService = hostServiceFacade.find(hostname, cluster, group, serviceName);
-        } catch (Exception ex) {
-          logger.log(Level.FINE, "Could not find a service for the kagent heartbeat.");
-          continue;
-        }
-
-        if (hostService == null) {
-          hostService = new HostServices();
-          hostService.setHost(host);
-          hostService.setCluster(cluster);
-          hostService.setGroup(group);
-          hostService.setService(serviceName);
-          hostService.setStartTime(agentTime);
-        }
-
-        String webPort = s.containsKey("web-port") ? s.getString("web-port")
-            : "0";
-        String pid = s.containsKey("pid") ? s.getString("pid") : "-1";
-        try {
-//          role.setWebPort(Integer.parseInt(webPort));
-          hostService.setPid(Integer.parseInt(pid));
-        } catch (NumberFormatException ex) {
-          logger.log(Level.WARNING, "Invalid webport or pid - not a number for: {0}", hostService);
-          continue;
-        }
-        Health previousHealthOfService = hostService.getHealth();
-        if (s.containsKey("status")) {
-          if ((hostService.getStatus() == null || !hostService.getStatus().equals(Status.Started)) && Status.valueOf(s.
-              getString(
-                  "status")).equals(Status.Started)) {
-            hostService.setStartTime(agentTime);
-          }
-          hostService.setStatus(Status.valueOf(s.getString("status")));
-        } else {
-          hostService.setStatus(Status.None);
-        }
-
-        Long startTime = hostService.getStartTime();
-        Status status = Status.valueOf(s.getString("status"));
-        if (status.equals(Status.Started)) {
-          hostService.setStopTime(agentTime);
-        }
-        Long stopTime = hostService.getStopTime();
-
-        if (startTime != null && stopTime != null) {
-          hostService.setUptime(stopTime - startTime);
-        } else {
-          hostService.setUptime(0);
-        }
-        hostServiceFacade.store(hostService);
-        if (!hostService.getHealth().equals(previousHealthOfService) && hostService.getHealth().equals(Health.Bad)) {
-          String subject = "alert: " + hostService.getGroup() + "." + hostService.getService() + "@" + hostService.
-              getHost().getHostname();
-          String body = hostService.getGroup() + "." + hostService.getService() + "@" + hostService.getHost().
-              getHostname() + " transitioned from state " + previousHealthOfService + " to " + hostService.getHealth();
-          emailAlert(subject, body);
-        }
-
+      // The heartbeat is applied to the cached state of the host, which is written to the database
+      // in batches. Alerts are sent once the update is done.
+      List<String[]> alerts = new ArrayList<>();
+      boolean updated = heartbeatAggregator.update(hostname,
+          (h, services) -> applyHeartbeat(json, agentTime, h, services, alerts));
+      if (!updated) {
+        logger.log(Level.WARNING, "Host with id {0} not found.", hostname);
+        return Response.status(Response.Status.NOT_FOUND).build();
+      }
+      for (String[] alert : alerts) {
+        emailAlert(alert[0], alert[1]);
       }
 
       if (json.containsKey("commands-reply")) {
@@ -265,23 +185,8 @@ public class AgentResource {
         processSystemCommands(systemOps);
       }
 
-      List<CondaCommands> allCommandsForHost = pythonDepsFacade.findByHost(host);
-
-      Collection<CondaCommands> commandsToExec = new ArrayList<>();
-      for (CondaCommands cc : allCommandsForHost) {
-        if (cc.getStatus().equals(CondaStatus.NEW)) {
-          commandsToExec.add(cc);
-          cc.setHostId(host);
-        }
-      }
-      commands.addAll(commandsToExec);
-
-      List<SystemCommand> pendingCommands = systemCommandFacade.findByHost(host);
-      for (SystemCommand pendingCommand : pendingCommands) {
-        if (pendingCommand.getStatus().equals(SystemCommandFacade.STATUS.NEW)) {
-          systemCommands.add(pendingCommand);
-        }
-      }
+      commands.addAll(pythonDepsFacade.findByHostAndStatus(host, CondaStatus.NEW));
+      systemCommands.addAll(systemCommandFacade.findByHostAndStatus(host, SystemCommandFacade.STATUS.NEW));
 
     } catch (Exception ex) {
       logger.log(Level.SEVERE, "Error processing Kagent heartbeat: " + ex.getMessage(), ex);
@@ -308,6 +213,94 @@ public class AgentResource {
         kcs).build();
   }
 
+  private void applyHeartbeat(JsonObject json, long agentTime, Hosts host, Map<String, HostServices> services,
+      List<String[]> alerts) {
+    host.setLastHeartbeat((new Date()).getTime());
+    host.setLoad1(json.getJsonNumber("load1").doubleValue());
+    host.setLoad5(json.getJsonNumber("load5").doubleValue());
+    host.setLoad15(json.getJsonNumber("load15").doubleValue());
+    host.setNumGpus(json.getJsonNumber("num-gpus").intValue());
+    Long previousDiskUsed = host.getDiskUsed() == null ? 0l : host.getDiskUsed();
+    host.setDiskUsed(json.getJsonNumber("disk-used").longValue());
+    host.setMemoryUsed(json.getJsonNumber("memory-used").longValue());
+    host.setPrivateIp(json.getString("private-ip"));
+    host.setDiskCapacity(json.getJsonNumber("disk-capacity").longValue());
+    if (((float) previousDiskUsed) / host.getDiskCapacity() < 0.8 && ((float) host.getDiskUsed()) / host.
+        getDiskCapacity() > 0.8) {
+      String subject = "alert: hard drive full on " + host.getHostname();
+      String body = host.getHostname() + " hard drive utilisation is " + host.getDiskUsageInfo();
+      alerts.add(new String[]{subject, body});
+    }
+    host.setMemoryCapacity(json.getJsonNumber("memory-capacity").longValue());
+    host.setCores(json.getInt("cores"));
+
+    JsonArray roles = json.getJsonArray("services");
+    for (int i = 0; i < roles.size(); i++) {
+      JsonObject s = roles.getJsonObject(i);
+
+      if (!s.containsKey("cluster") || !s.containsKey("group") || !s.
+          containsKey("service")) {
+        logger.warning("Badly formed JSON object describing a service.");
+        continue;
+      }
+      String cluster = s.getString("cluster");
+      String serviceName = s.getString("service");
+      String group = s.getString("group");
+      String key = HeartbeatAggregator.serviceKey(cluster, group, serviceName);
+      HostServices hostService = services.get(key);
+      boolean isNew = hostService == null;
+
+      if (isNew) {
+        hostService = new HostServices();
+        hostService.setHost(host);
+        hostService.setCluster(cluster);
+        hostService.setGroup(group);
+        hostService.setService(serviceName);
+        hostService.setStartTime(agentTime);
+      }
+
+      String pid = s.containsKey("pid") ? s.getString("pid") : "-1";
+      try {
+        hostService.setPid(Integer.parseInt(pid));
+      } catch (NumberFormatException ex) {
+        logger.log(Level.WARNING, "Invalid webport or pid - not a number for: {0}", hostService);
+        continue;
+      }
+      Health previousHealthOfService = hostService.getHealth();
+      if (s.containsKey("status")) {
+        if ((hostService.getStatus() == null || !hostService.getStatus().equals(Status.Started)) && Status.valueOf(s.
+            getString("status")).equals(Status.Started)) {
+          hostService.setStartTime(agentTime);
+        }
+        hostService.setStatus(Status.valueOf(s.getString("status")));
+      } else {
+        hostService.setStatus(Status.None);
+      }
+
+      Long startTime = hostService.getStartTime();
+      if (hostService.getStatus().equals(Status.Started)) {
+        hostService.setStopTime(agentTime);
+      }
+      Long stopTime = hostService.getStopTime();
+
+      if (startTime != null && stopTime != null) {
+        hostService.setUptime(stopTime - startTime);
+      } else {
+        hostService.setUptime(0);
+      }
+      if (isNew) {
+        services.put(key, hostService);
+      }
+      if (!hostService.getHealth().equals(previousHealthOfService) && hostService.getHealth().equals(Health.Bad)) {
+        String subject = "alert: " + hostService.getGroup() + "." + hostService.getService() + "@" + hostService.
+            getHost().getHostname();
+        String body = hostService.getGroup() + "." + hostService.getService() + "@" + hostService.getHost().
+            getHostname() + " transitioned from state " + previousHealthOfService + " to " + hostService.getHealth();
+        alerts.add(new String[]{subject, body});
+      }
+    }
+  }
+
   private void processSystemCommands(JsonArray systemOps) {
     for (int i = 0; i < systemOps.size(); ++i) {
       JsonObject jsonCommand = systemOps.getJsonObject(i);
@@ -48,6 +48,7 @@ import io.hops.hopsworks.common.jobs.configuration.ScheduleDTO;
 import io.hops.hopsworks.common.jobs.jobhistory.JobFinalStatus;
 import io.hops.hopsworks.common.jobs.jobhistory.JobState;
 import io.hops.hopsworks.common.jobs.jobhistory.JobType;
+import io.hops.hopsworks.common.jobs.yarn.YarnLogTailer;
 import io.hops.hopsworks.common.jobs.yarn.YarnLogUtil;
 import io.hops.hopsworks.common.jobs.yarn.YarnMonitor;
 import io.hops.hopsworks.common.metadata.exception.DatabaseException;
@@ -86,11 +87,13 @@ import javax.json.JsonObjectBuilder;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.GenericEntity;
@@ -178,6 +181,8 @@ public class JobService {
   private HdfsUsersController hdfsUsersController;
   @EJB
   private YarnApplicationstateFacade appStateBean;
+  @EJB
+  private YarnLogTailer yarnLogTailer;
 
   // No @EJB annotation for Project, it's injected explicitly in ProjectService.
   private Project project;
@@ -1147,6 +1152,47 @@ public class JobService {
         arrayObjectBuilder.build()).build();
   }
 
+  /**
+   * Returns the part of the log of an execution written after offset. Unlike
+   * getLog it also works while the job is running, reading the logs uploaded
+   * by rolling log aggregation. Clients pass back the source and nextOffset of
+   * the previous response.
+   */
+  @GET
+  @Path("/tailLog/{appId}/{type}")
+  @Produces(MediaType.APPLICATION_JSON)
+  @AllowedProjectRoles({AllowedProjectRoles.DATA_OWNER, AllowedProjectRoles.DATA_SCIENTIST})
+  public Response tailLog(@PathParam("appId") String appId,
+      @PathParam("type") String type,
+      @QueryParam("source") String source,
+      @QueryParam("offset") @DefaultValue("0") long offset) throws AppException {
+    if (appId == null || appId.isEmpty()) {
+      throw new AppException(Response.Status.BAD_REQUEST.getStatusCode(), "Can not get log. No ApplicationId.");
+    }
+    if (offset < 0) {
+      throw new AppException(Response.Status.BAD_REQUEST.getStatusCode(), "Can not get log. Negative offset.");
+    }
+    Execution execution = exeFacade.findByAppId(appId);
+    if (execution == null || !execution.getJob().getProject().equals(this.project)) {
+      throw new AppException(Response.Status.BAD_REQUEST.getStatusCode(), "No excution for appId " + appId);
+    }
+    YarnLogTailer.LogDelta delta;
+    try {
+      delta = yarnLogTailer.tail(execution, type, source, offset);
+    } catch (IOException ex) {
+      LOGGER.log(Level.SEVERE, "Could not tail log of " + appId, ex);
+      throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), "Could not read the log.");
+    }
+    JsonObjectBuilder builder = Json.createObjectBuilder()
+        .add("source", delta.getSource())
+        .add("offset", delta.getOffset())
+        .add("nextOffset", delta.getNextOffset())
+        .add("reset", delta.isReset())
+        .add("finished", delta.isFinished())
+        .add(type, delta.getData());
+    return noCacheResponse.getNoCacheResponseBuilder(Response.Status.OK).entity(builder.build()).build();
+  }
+
   @GET
   @Path("/getLogByJobId/{jobId}/{submissionTime}/{type}")
   @Produces(MediaType.APPLICATION_JSON)
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.api.metadata.wscomm;
+
+import io.hops.hopsworks.api.metadata.wscomm.message.LogTailMessage;
+import io.hops.hopsworks.api.metadata.wscomm.message.TextMessage;
+import io.hops.hopsworks.common.dao.jobhistory.Execution;
+import io.hops.hopsworks.common.dao.jobhistory.ExecutionFacade;
+import io.hops.hopsworks.common.jobs.yarn.YarnLogTailer;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Timer;
+import javax.websocket.EncodeException;
+import javax.websocket.Session;
+
+/**
+ * Pushes the deltas of job logs to the websocket sessions that subscribed to
+ * them with a LogTailMessage, so clients following a running job do not have
+ * to poll.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class LogTailSubscriptions {
+
+  private static final Logger logger = Logger.getLogger(LogTailSubscriptions.class.getName());
+
+  @EJB
+  private ExecutionFacade executionFacade;
+  @EJB
+  private YarnLogTailer yarnLogTailer;
+
+  private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+  private final AtomicBoolean pushing = new AtomicBoolean(false);
+
+  /**
+   * Handles a LogTailMessage received from the session.
+   */
+  public void process(Session session, LogTailMessage msg) {
+    String key = session.getId() + ":" + msg.getAppId() + ":" + msg.getLogType();
+    if (LogTailMessage.UNTAIL.equals(msg.getAction())) {
+      subscriptions.remove(key);
+      return;
+    }
+    Execution execution = executionFacade.findByAppId(msg.getAppId());
+    if (execution == null || !execution.getJob().getProject().getId().equals(
+            session.getUserProperties().get("projectID"))) {
+      sendError(session, "No excution for appId " + msg.getAppId());
+      return;
+    }
+    Subscription subscription = new Subscription(session, msg.getAppId(), msg.getLogType(), msg.getSource(),
+            msg.getOffset());
+    subscriptions.put(key, subscription);
+    if (!push(subscription, execution)) {
+      subscriptions.remove(key, subscription);
+    }
+  }
+
+  /**
+   * Drops the subscriptions of a closed session.
+   */
+  public void unsubscribe(Session session) {
+    String prefix = session.getId() + ":";
+    Iterator<String> iter = subscriptions.keySet().iterator();
+    while (iter.hasNext()) {
+      if (iter.next().startsWith(prefix)) {
+        iter.remove();
+      }
+    }
+  }
+
+  @Schedule(persistent = false,
+          second = "*/2",
+          minute = "*",
+          hour = "*")
+  public void pushAll(Timer timer) {
+    // Skip this round if the previous one is still reading logs
+    if (subscriptions.isEmpty() || !pushing.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      Iterator<Subscription> iter = subscriptions.values().iterator();
+      while (iter.hasNext()) {
+        Subscription subscription = iter.next();
+        if (!subscription.session.isOpen()) {
+          iter.remove();
+          continue;
+        }
+        try {
+          Execution execution = executionFacade.findByAppId(subscription.appId);
+          if (execution == null || !push(subscription, execution)) {
+            iter.remove();
+          }
+        } catch (RuntimeException ex) {
+          // Drop the broken subscription but keep serving the others
+          logger.log(Level.WARNING, "Could not push log delta of " + subscription.appId, ex);
+          iter.remove();
+        }
+      }
+    } finally {
+      pushing.set(false);
+    }
+  }
+
+  /**
+   * Sends the delta of the subscription if there is one.
+   *
+   * @return false if the subscription is over
+   */
+  private boolean push(Subscription subscription, Execution execution) {
+    synchronized (subscription) {
+      YarnLogTailer.LogDelta delta;
+      try {
+        delta = yarnLogTailer.tail(execution, subscription.logType, subscription.source, subscription.offset);
+      } catch (IOException ex) {
+        logger.log(Level.WARNING, "Could not tail log of " + subscription.appId, ex);
+        return true;
+      }
+      subscription.source = delta.getSource();
+      subscription.offset = delta.getNextOffset();
+      if (delta.getData().isEmpty() && !delta.isReset() && !delta.isFinished()) {
+        return true;
+      }
+      try {
+        SessionSender.send(subscription.session,
+                new LogTailMessage(subscription.appId, subscription.logType, delta));
+      } catch (IOException | EncodeException ex) {
+        logger.log(Level.FINE, "Could not push log delta", ex);
+        return false;
+      }
+      return !delta.isFinished();
+    }
+  }
+
+  private void sendError(Session session, String err) {
+    TextMessage message = new TextMessage("Server", String.format("error: %s", err));
+    message.setStatus("ERROR");
+    try {
+      SessionSender.send(session, message);
+    } catch (IOException | EncodeException ex) {
+      logger.log(Level.SEVERE, ex.getMessage(), ex);
+    }
+  }
+
+  private static class Subscription {
+
+    private final Session session;
+    private final String appId;
+    private final String logType;
+    private String source;
+    private long offset;
+
+    Subscription(Session session, String appId, String logType, String source, long offset) {
+      this.session = session;
+      this.appId = appId;
+      this.logType = logType;
+      this.source = source;
+      this.offset = offset;
+    }
+  }
+}
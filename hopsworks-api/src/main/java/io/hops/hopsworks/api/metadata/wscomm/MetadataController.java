@@ -50,6 +50,7 @@ import io.hops.hopsworks.common.dao.metadata.db.TemplateFacade;
 import io.hops.hopsworks.common.dao.metadata.db.TupleToFileFacade;
 import io.hops.hopsworks.common.dao.project.Project;
 import io.hops.hopsworks.common.dao.project.ProjectFacade;
+import io.hops.hopsworks.common.elastic.SearchResultCache;
 import io.hops.hopsworks.common.metadata.exception.ApplicationException;
 import io.hops.hopsworks.common.metadata.exception.DatabaseException;
 import io.hops.hopsworks.common.util.HopsUtils;
@@ -92,6 +93,8 @@ public class MetadataController {
   private DatasetFacade datasetFacade;
   @EJB
   private SchemalessMetadataFacade schemalessMetadataFacade;
+  @EJB
+  private SearchResultCache searchResultCache;
 
   public MetadataController() {
   }
@@ -332,6 +335,7 @@ public class MetadataController {
       metadata.setData(metaObj);
       this.metadataFacade.addMetadata(metadata);
       logMetadataOperation(metadata, OperationType.Update);
+      invalidateSearchResults(metadata.getMetadataPK().getTupleid());
 
     } catch (DatabaseException e) {
       throw new ApplicationException("Utils.java: could not update metadata ", e);
@@ -356,6 +360,7 @@ public class MetadataController {
       metadata.setData(metaObj);
       this.metadataFacade.removeMetadata(metadata);
       logMetadataOperation(metadata, OperationType.Delete);
+      invalidateSearchResults(metadata.getMetadataPK().getTupleid());
 
     } catch (DatabaseException e) {
       throw new ApplicationException("Utils.java: could not delete metadata ", e);
@@ -382,6 +387,9 @@ public class MetadataController {
         this.metadataFacade.addMetadata(metadata);
         logMetadataOperation(metadata, OperationType.Add);
       }
+      if (!metadatalist.isEmpty()) {
+        invalidateSearchResults(tupleid);
+      }
     } catch (DatabaseException e) {
       throw new ApplicationException("Utils.java: could not store metadata ", e);
     }
@@ -405,6 +413,7 @@ public class MetadataController {
     schemalessMetadataFacade.merge(metadata);
     logSchemaLessMetadataOperation(metadata, update ? OperationType.Update
             : OperationType.Add);
+    inodeFacade.invalidateSearchResults(inode);
   }
 
   public void removeSchemaLessMetadata(String inodePath) throws
@@ -420,6 +429,7 @@ public class MetadataController {
     MetaLog removeOpLog = new MetaLog(metadata, OperationType.Delete);
     schemalessMetadataFacade.remove(metadata);
     metaLogFacade.persist(removeOpLog);
+    inodeFacade.invalidateSearchResults(inode);
   }
 
   private void logSchemaLessMetadataOperation(SchemalessMetadata metadata,
@@ -431,6 +441,15 @@ public class MetadataController {
     metaLogFacade.persist(new MetaLog(metadata, optype));
   }
 
+  private void invalidateSearchResults(int tupleid) throws DatabaseException {
+    TupleToFile ttf = tupletoFileFacade.getTupletofile(tupleid);
+    if (ttf == null) {
+      searchResultCache.invalidateAll();
+    } else {
+      inodeFacade.invalidateSearchResults(ttf.getInode());
+    }
+  }
+
   public void logTemplateOperation(Template template, Inode inode,
           OperationType optype) {
     Pair<Inode, Inode> project_dataset = inodeFacade.
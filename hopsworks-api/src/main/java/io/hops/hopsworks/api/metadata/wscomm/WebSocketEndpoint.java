@@ -20,6 +20,7 @@
 
 package io.hops.hopsworks.api.metadata.wscomm;
 
+import io.hops.hopsworks.api.metadata.wscomm.message.LogTailMessage;
 import io.hops.hopsworks.api.metadata.wscomm.message.Message;
 import io.hops.hopsworks.api.metadata.wscomm.message.TextMessage;
 import io.hops.hopsworks.common.dao.project.Project;
@@ -61,6 +62,8 @@ public class WebSocketEndpoint {
   private HttpSession httpSession;//this might be used to check the underlying http session
   @EJB
   private MetadataProtocol protocol;
+  @EJB
+  private LogTailSubscriptions logTailSubscriptions;
 
   @OnOpen
   public void open(Session session, EndpointConfig config,
@@ -104,6 +107,11 @@ public class WebSocketEndpoint {
     String receiver = session.getQueryString();
 
     logger.log(Level.FINEST, "RECEIVED MESSAGE: {0}", msg.toString());
+    if (msg instanceof LogTailMessage) {
+      //log deltas only go to the subscribed session
+      this.logTailSubscriptions.process(session, (LogTailMessage) msg);
+      return;
+    }
     Message response = this.protocol.GFR(msg);
     //broadcast the response back to everybody in the same project
     this.broadcast(response, session);
@@ -111,6 +119,7 @@ public class WebSocketEndpoint {
 
   @OnClose
   public void onClose(Session session) {
+    this.logTailSubscriptions.unsubscribe(session);
     logger.log(Level.INFO,
             "HOPSWORKS: USER {0} SESSION DESTROYED sessions {1}",
             new Object[]{this.sender, session.getOpenSessions().size()});
@@ -125,8 +134,7 @@ public class WebSocketEndpoint {
       try {
         if (s.isOpen() && s.getUserProperties().get("projectID").equals(
                 session.getUserProperties().get("projectID"))) {
-          s.getBasicRemote().sendObject(msg);//RemoteEndpoint.Basic interface provides blocking methods to send
-          //messages; the RemoteEndpoint.Async interface provides nonblocking methods.
+          SessionSender.send(s, msg);
           //logger.log(Level.INFO, "Sending >>> {0} to session: {1}",
           //new Object[]{msg, s.getUserPrincipal()});
         }
@@ -143,7 +151,7 @@ public class WebSocketEndpoint {
 
   private void sendClient(Session session, Message message) {
     try {
-      session.getBasicRemote().sendObject(message);
+      SessionSender.send(session, message);
     } catch (IOException | EncodeException e) {
       logger.log(Level.SEVERE, e.getMessage(), e);
     }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.api.metadata.wscomm.message;
+
+import io.hops.hopsworks.common.jobs.yarn.YarnLogTailer;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * Subscribes a client to the log of a running job (action "tail_log") or
+ * cancels the subscription (action "untail_log"). The server answers with
+ * messages of the same type carrying the bytes appended to the log since the
+ * previous one.
+ */
+public class LogTailMessage extends PlainMessage {
+
+  public static final String TAIL = "tail_log";
+  public static final String UNTAIL = "untail_log";
+
+  private final String TYPE = "LogTailMessage";
+  private String sender;
+  private String message;
+  private String action;
+  private String status;
+  private String appId;
+  private String logType;
+  private String source;
+  private long offset;
+  private long nextOffset;
+  private boolean reset;
+  private boolean finished;
+
+  /**
+   * Default constructor. Used by the class loader to create an instance of
+   * this class
+   */
+  public LogTailMessage() {
+    this.status = "OK";
+  }
+
+  public LogTailMessage(String appId, String logType, YarnLogTailer.LogDelta delta) {
+    this();
+    this.sender = "Server";
+    this.appId = appId;
+    this.logType = logType;
+    this.source = delta.getSource();
+    this.offset = delta.getOffset();
+    this.nextOffset = delta.getNextOffset();
+    this.message = delta.getData();
+    this.reset = delta.isReset();
+    this.finished = delta.isFinished();
+  }
+
+  @Override
+  public void init(JsonObject json) {
+    this.sender = json.getString("sender", null);
+    this.action = json.getString("action", TAIL);
+    this.appId = json.getString("appId");
+    this.logType = json.getString("logType", "log");
+    this.source = json.getString("source", null);
+    this.offset = json.containsKey("offset") ? json.getJsonNumber("offset").longValue() : 0;
+  }
+
+  @Override
+  public String encode() {
+    JsonObjectBuilder builder = Json.createObjectBuilder()
+            .add("sender", this.sender == null ? "Server" : this.sender)
+            .add("type", this.TYPE)
+            .add("status", this.status)
+            .add("appId", this.appId == null ? "" : this.appId)
+            .add("logType", this.logType == null ? "" : this.logType)
+            .add("offset", this.offset)
+            .add("nextOffset", this.nextOffset)
+            .add("reset", this.reset)
+            .add("finished", this.finished)
+            .add("message", this.message == null ? "" : this.message);
+    if (this.source != null) {
+      builder.add("source", this.source);
+    }
+    return builder.build().toString();
+  }
+
+  @Override
+  public String getAction() {
+    return this.action;
+  }
+
+  @Override
+  public void setAction(String action) {
+    this.action = action;
+  }
+
+  @Override
+  public String getStatus() {
+    return this.status;
+  }
+
+  @Override
+  public void setStatus(String status) {
+    this.status = status;
+  }
+
+  @Override
+  public String getMessage() {
+    return this.message;
+  }
+
+  @Override
+  public void setMessage(String message) {
+    this.message = message;
+  }
+
+  @Override
+  public String getSender() {
+    return this.sender;
+  }
+
+  @Override
+  public void setSender(String sender) {
+    this.sender = sender;
+  }
+
+  public String getAppId() {
+    return appId;
+  }
+
+  public String getLogType() {
+    return logType;
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  public long getOffset() {
+    return offset;
+  }
+
+  @Override
+  public String toString() {
+    return "{\"sender\": \"" + this.sender + "\", "
+            + "\"type\": \"" + this.TYPE + "\", "
+            + "\"action\": \"" + this.action + "\", "
+            + "\"appId\": \"" + this.appId + "\", "
+            + "\"logType\": \"" + this.logType + "\", "
+            + "\"offset\": \"" + this.offset + "\"}";
+  }
+}
@@ -49,7 +49,9 @@ import io.hops.hopsworks.common.dao.project.team.ProjectTeamFacade;
 import io.hops.hopsworks.common.dao.user.UserFacade;
 import io.hops.hopsworks.common.dao.user.Users;
 import io.hops.hopsworks.common.dao.user.activity.ActivityFacade;
+import io.hops.hopsworks.common.dataset.DatasetArchiver;
 import io.hops.hopsworks.common.dataset.DatasetController;
+import io.hops.hopsworks.common.dataset.DirectoryListingOutput;
 import io.hops.hopsworks.common.dataset.FilePreviewDTO;
 import io.hops.hopsworks.common.exception.AppException;
 import io.hops.hopsworks.common.exception.JobCreationException;
@@ -66,13 +68,9 @@ import io.hops.hopsworks.common.jobs.yarn.YarnJobsMonitor;
 import io.hops.hopsworks.common.metadata.exception.DatabaseException;
 import io.hops.hopsworks.common.util.HopsUtils;
 import io.hops.hopsworks.common.util.Settings;
-import io.hops.hopsworks.common.util.SystemCommandExecutor;
 import io.swagger.annotations.ApiOperation;
 import java.io.DataInputStream;
-import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -97,7 +95,6 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.permission.FsAction;
@@ -151,6 +148,8 @@ public class DataSetService {
   private DsDTOValidator dtoValidator;
   @EJB
   private ProjectTeamFacade projectTeamFacade;
+  @EJB
+  private DatasetArchiver datasetArchiver;
 
   private Integer projectId;
   private Project project;
@@ -181,52 +180,9 @@ public class DataSetService {
     DsPath dsPath = pathValidator.validatePath(this.project, path);
     String fullPath = dsPath.getFullPath().toString();
 
-    String localDir = DigestUtils.sha256Hex(fullPath);
-    String stagingDir = settings.getStagingDir() + File.separator + localDir;
-
-    File unzipDir = new File(stagingDir);
-    unzipDir.mkdirs();
-    settings.addUnzippingState(fullPath);
-
-    // HDFS_USERNAME is the next param to the bash script
     Users user = userFacade.findByEmail(sc.getUserPrincipal().getName());
     String hdfsUser = hdfsUsersBean.getHdfsUserName(project, user);
-
-    List<String> commands = new ArrayList<>();
-
-    commands.add(settings.getHopsworksDomainDir() + "/bin/unzip-background.sh");
-    commands.add(stagingDir);
-    commands.add(fullPath);
-    commands.add(hdfsUser);
-
-    SystemCommandExecutor commandExecutor = new SystemCommandExecutor(commands, false);
-    String stdout = "", stderr = "";
-    try {
-      int result = commandExecutor.executeCommand();
-      stdout = commandExecutor.getStandardOutputFromCommand();
-      stderr = commandExecutor.getStandardErrorFromCommand();
-      if (result == 2) {
-        throw new AppException(Response.Status.EXPECTATION_FAILED.
-                getStatusCode(),
-                "Not enough free space on the local scratch directory to download and unzip this file."
-                + "Talk to your admin to increase disk space at the path: hopsworks/staging_dir");
-      }
-      if (result != 0) {
-        throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
-                getStatusCode(),
-                "Could not unzip the file at path: " + fullPath);
-      }
-    } catch (InterruptedException e) {
-      logger.log(Level.FINE, null, e);
-      throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
-              getStatusCode(),
-              "Interrupted exception. Could not unzip the file at path: " + fullPath);
-    } catch (IOException ex) {
-      logger.log(Level.FINE, null, ex);
-      throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
-              getStatusCode(),
-              "IOException. Could not unzip the file at path: " + fullPath);
-    }
+    datasetArchiver.unzip(fullPath, hdfsUser);
 
     return noCacheResponse.getNoCacheResponseBuilder(resp).build();
   }
@@ -243,52 +199,9 @@ public class DataSetService {
     DsPath dsPath = pathValidator.validatePath(this.project, path);
     String fullPath = dsPath.getFullPath().toString();
 
-    String localDir = DigestUtils.sha256Hex(fullPath);
-    String stagingDir = settings.getStagingDir() + File.separator + localDir;
-
-    File zipDir = new File(stagingDir);
-    zipDir.mkdirs();
-    settings.addZippingState(fullPath);
-
-    // HDFS_USERNAME is the next param to the bash script
     Users user = userFacade.findByEmail(sc.getUserPrincipal().getName());
     String hdfsUser = hdfsUsersBean.getHdfsUserName(project, user);
-
-    List<String> commands = new ArrayList<>();
-
-    commands.add(settings.getHopsworksDomainDir() + "/bin/zip-background.sh");
-    commands.add(stagingDir);
-    commands.add(fullPath);
-    commands.add(hdfsUser);
-
-    SystemCommandExecutor commandExecutor = new SystemCommandExecutor(commands, false);
-    String stdout = "", stderr = "";
-    try {
-      int result = commandExecutor.executeCommand();
-      stdout = commandExecutor.getStandardOutputFromCommand();
-      stderr = commandExecutor.getStandardErrorFromCommand();
-      if (result == 2) {
-        throw new AppException(Response.Status.EXPECTATION_FAILED.
-                getStatusCode(),
-                "Not enough free space on the local scratch directory to download and zip this file."
-                        + "Talk to your admin to increase disk space at the path: hopsworks/staging_dir");
-      }
-      if (result != 0) {
-        throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
-                getStatusCode(),
-                "Could not zip the file at path: " + fullPath);
-      }
-    } catch (InterruptedException e) {
-      logger.log(Level.FINE, null, e);
-      throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
-              getStatusCode(),
-              "Interrupted exception. Could not zip the file at path: " + fullPath);
-    } catch (IOException ex) {
-      logger.log(Level.FINE, null, ex);
-      throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
-              getStatusCode(),
-              "IOException. Could not zip the file at path: " + fullPath);
-    }
+    datasetArchiver.zip(fullPath, hdfsUser);
 
     return noCacheResponse.getNoCacheResponseBuilder(resp).build();
   }
@@ -301,21 +214,7 @@ public class DataSetService {
           @Context SecurityContext sc,
           @Context HttpServletRequest req) throws AppException {
 
-    List<InodeView> kids = new ArrayList<>();
-    Collection<Dataset> dsInProject = this.project.getDatasetCollection();
-    for (Dataset ds : dsInProject) {
-      String path = datasetController.getDatasetPath(ds).toString();
-      List<Dataset> inodeOccurrence = datasetFacade.findByInodeId(ds.getInodeId());
-      int sharedWith = inodeOccurrence.size() - 1; // -1 for ds itself
-      InodeView inodeView = new InodeView(inodes.findParent(ds.getInode()), ds, path);
-      Users user = userFacade.findByUsername(inodeView.getOwner());
-      if (user != null) {
-        inodeView.setOwner(user.getFname() + " " + user.getLname());
-        inodeView.setEmail(user.getEmail());
-      }
-      inodeView.setSharedWith(sharedWith);
-      kids.add(inodeView);
-    }
+    List<InodeView> kids = datasetController.getDatasetViews(this.project);
 
     GenericEntity<List<InodeView>> inodViews
             = new GenericEntity<List<InodeView>>(kids) { };
@@ -324,9 +223,14 @@ public class DataSetService {
   }
 
   /**
-   * Get the inodes in the given project-relative path.
+   * Get the inodes in the given project-relative path, ordered by name. If a
+   * limit is given, at most that many inodes are returned, and the next page
+   * is requested with the name of the last returned inode as <i>after</i>.
+   * The listing is streamed, so directories of any size can be listed.
    * <p/>
    * @param path
+   * @param limit maximum number of inodes to return, all if not given
+   * @param after name of the last inode of the previous page
    * @param sc
    * @param req
    * @return
@@ -338,33 +242,22 @@ public class DataSetService {
   @AllowedProjectRoles({AllowedProjectRoles.DATA_SCIENTIST, AllowedProjectRoles.DATA_OWNER})
   public Response getDirContent(
           @PathParam("path") String path,
+          @QueryParam("limit") int limit,
+          @QueryParam("after") String after,
           @Context SecurityContext sc,
           @Context HttpServletRequest req) throws AppException {
+    if (limit < 0) {
+      throw new AppException(Response.Status.BAD_REQUEST.getStatusCode(),
+              "The limit cannot be negative.");
+    }
     DsPath dsPath = pathValidator.validatePath(this.project, path);
     String fullPath = dsPath.getFullPath().toString();
     Inode parent = dsPath.validatePathExists(inodes,true);
-    List<Inode> cwdChildren = inodes.getChildren(parent);
-
-    List<InodeView> kids = new ArrayList<>();
-    for (Inode i : cwdChildren) {
-      InodeView inodeView = new InodeView(i, fullPath + "/" + i.getInodePK().getName());
-      if (dsPath.getDs().isShared()) {
-        //Get project of project__user the inode is owned by
-        inodeView.setOwningProjectName(hdfsUsersBean.getProjectName(i.getHdfsUser().getName()));
-      }
-      inodeView.setZipState(settings.getZipState(
-              fullPath + "/" + i.getInodePK().getName()));
-      Users user = userFacade.findByUsername(inodeView.getOwner());
-      if (user != null) {
-        inodeView.setOwner(user.getFname() + " " + user.getLname());
-        inodeView.setEmail(user.getEmail());
-      }
-      kids.add(inodeView);
-    }
-    GenericEntity<List<InodeView>> inodeViews
-            = new GenericEntity<List<InodeView>>(kids) { };
+
+    DirectoryListingOutput kids = new DirectoryListingOutput(datasetController, parent,
+            fullPath, dsPath.getDs().isShared(), after, limit);
     return noCacheResponse.getNoCacheResponseBuilder(Response.Status.OK).entity(
-            inodeViews).build();
+            kids).build();
   }
 
   @GET
@@ -382,7 +275,9 @@ public class DataSetService {
 
     InodeView inodeView = new InodeView(inode, fullPath+ "/" + inode.getInodePK().
             getName());
-    inodeView.setZipState(settings.getZipState(
+    inodeView.setZipProgress(datasetArchiver.getProgress(
+            fullPath+ "/" + inode.getInodePK().getName()));
+    inodeView.setZipState(datasetArchiver.getState(
             fullPath+ "/" + inode.getInodePK().getName()));
     Users user = userFacade.findByUsername(inodeView.getOwner());
     if (user != null) {
@@ -855,6 +750,7 @@ public class DataSetService {
         long len = fs.getLen();
         if (owner.equals(settings.getHopsworksUser()) && len == 0) {
           dfso.rm(fullPath, true);
+          inodes.invalidateCachedPath(fullPath.toUri().getPath());
           json.setSuccessMessage(ResponseMessages.FILE_CORRUPTED_REMOVED_FROM_HDFS);
           return noCacheResponse.getNoCacheResponseBuilder(Response.Status.OK).entity(
               json).build();
@@ -929,6 +825,9 @@ public class DataSetService {
         dfso = dfs.getDfsOps(username);// do it as project user
       }
       success = dfso.rm(fullPath, true);
+      if (success) {
+        inodes.invalidateCachedPath(fullPath.toUri().getPath());
+      }
     } catch (AccessControlException ex) {
       logger.log(Level.FINE, null, ex);
       throw new AccessControlException(
@@ -1028,6 +927,7 @@ public class DataSetService {
       String owner = udfso.getFileStatus(sourcePath).getOwner();
 
       udfso.moveWithinHdfs(sourcePath, destPath);
+      inodes.invalidateCachedInode(sourceInode, sourcePathStr);
 
       // Change permissions recursively
       datasetController.recChangeOwnershipAndPermission(destPath, permission,
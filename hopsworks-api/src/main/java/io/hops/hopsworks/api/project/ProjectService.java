@@ -870,8 +870,8 @@ public class ProjectService {
       certificateMaterializer.materializeCertificatesLocal(user.getUsername(), project.getName());
       CertificateMaterializer.CryptoMaterial material = certificateMaterializer.getUserMaterial(user.getUsername(),
           project.getName());
-      keyStore = Base64.encodeBase64String(material.getKeyStore().array());
-      trustStore = Base64.encodeBase64String(material.getTrustStore().array());
+      keyStore = Base64.encodeBase64String(material.getKeyStoreBytes());
+      trustStore = Base64.encodeBase64String(material.getTrustStoreBytes());
       String certPwd = new String(material.getPassword());
       //Pop-up a message from admin
       messageController.send(user, userFacade.findByEmail(Settings.SITE_EMAIL), "Certificate Info", "",
@@ -22,6 +22,11 @@ package io.hops.hopsworks.api.util;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.ejb.EJB;
@@ -29,13 +34,16 @@ import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.enterprise.context.RequestScoped;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.security.AccessControlException;
 import io.hops.hopsworks.api.filter.AllowedProjectRoles;
@@ -48,6 +56,7 @@ import io.hops.hopsworks.common.dao.project.Project;
 import io.hops.hopsworks.common.exception.AppException;
 import io.hops.hopsworks.common.hdfs.DistributedFileSystemOps;
 import io.hops.hopsworks.common.hdfs.DistributedFsService;
+import io.hops.hopsworks.common.hdfs.TransferBufferPool;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.SecurityContext;
@@ -62,6 +71,8 @@ public class DownloadService {
   private DistributedFsService dfs;
   @EJB
   private PathValidator pathValidator;
+  @EJB
+  private TransferBufferPool bufferPool;
 
   private String projectUsername;
   private Project project;
@@ -77,11 +88,25 @@ public class DownloadService {
     this.project = project;
   }
 
+  /**
+   * Downloads a file. A single byte range can be requested with the Range
+   * header to resume a download, If-Range makes sure the file has not changed
+   * since the first part was downloaded.
+   *
+   * @param path
+   * @param range
+   * @param ifRange
+   * @param sc
+   * @return
+   * @throws AppException
+   * @throws AccessControlException
+   */
   @GET
   @javax.ws.rs.Path("/{path: .+}")
   @Produces(MediaType.APPLICATION_OCTET_STREAM)
   @AllowedProjectRoles({AllowedProjectRoles.DATA_SCIENTIST, AllowedProjectRoles.DATA_OWNER})
-  public Response downloadFromHDFS(@PathParam("path") String path, @Context SecurityContext sc) throws AppException,
+  public Response downloadFromHDFS(@PathParam("path") String path, @HeaderParam("Range") String range,
+      @HeaderParam("If-Range") String ifRange, @Context SecurityContext sc) throws AppException,
       AccessControlException {
 
     DsPath dsPath = pathValidator.validatePath(this.project, path);
@@ -91,25 +116,56 @@ public class DownloadService {
       throw new AppException(Response.Status.BAD_REQUEST.getStatusCode(),
           ResponseMessages.DOWNLOAD_ERROR);
     }
+    if (projectUsername == null) {
+      throw new AppException(Response.Status.BAD_REQUEST.getStatusCode(),
+          ResponseMessages.DOWNLOAD_ERROR);
+    }
 
-    FSDataInputStream stream;
-    DistributedFileSystemOps udfso;
+    FSDataInputStream stream = null;
+    DistributedFileSystemOps udfso = null;
     try {
-      if (projectUsername != null) {
-        udfso = dfs.getDfsOps(projectUsername);
-        stream = udfso.open(new Path(fullPath));
-        Response.ResponseBuilder response = Response.ok(buildOutputStream(stream, udfso));
-        response.header("Content-disposition", "attachment;");
-        return response.build();
+      udfso = dfs.getDfsOps(projectUsername);
+      Path location = new Path(fullPath);
+      FileStatus status = udfso.getFileStatus(location);
+      long length = status.getLen();
+      String etag = "\"" + Long.toHexString(status.getModificationTime()) + "-" + Long.toHexString(length) + "\"";
+      Date lastModified = new Date(status.getModificationTime());
+
+      long start = 0;
+      long end = length - 1;
+      Response.ResponseBuilder response;
+      ByteRange byteRange = null;
+      if (range != null && (ifRange == null || matchesIfRange(ifRange, etag, status.getModificationTime()))) {
+        byteRange = ByteRange.parse(range, length);
+      }
+      if (byteRange == ByteRange.UNSATISFIABLE) {
+        dfs.closeDfsClient(udfso);
+        return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+            .header("Content-Range", "bytes */" + length)
+            .build();
+      } else if (byteRange != null) {
+        start = byteRange.start;
+        end = byteRange.end;
+        response = Response.status(Response.Status.PARTIAL_CONTENT)
+            .header("Content-Range", "bytes " + start + "-" + end + "/" + length);
       } else {
-        throw new AppException(Response.Status.BAD_REQUEST.getStatusCode(),
-            ResponseMessages.DOWNLOAD_ERROR);
+        response = Response.ok();
       }
 
+      stream = udfso.open(location);
+      response.entity(buildOutputStream(stream, udfso, fullPath, start, end - start + 1));
+      response.header("Content-disposition", "attachment;");
+      response.header("Accept-Ranges", "bytes");
+      response.header(HttpHeaders.CONTENT_LENGTH, end - start + 1);
+      response.header(HttpHeaders.ETAG, etag);
+      response.lastModified(lastModified);
+      return response.build();
     } catch (AccessControlException ex) {
+      close(stream, udfso);
       throw new AccessControlException(
           "Permission denied: You can not download the file ");
     } catch (IOException ex) {
+      close(stream, udfso);
       LOG.log(Level.SEVERE, null, ex);
       throw new AppException(Response.Status.BAD_REQUEST.getStatusCode(),
           "File does not exist: " + fullPath);
@@ -117,26 +173,41 @@ public class DownloadService {
   }
 
   /**
+   * Streams <i>count</i> bytes starting at <i>start</i> through a pooled
+   * buffer. The stream seeks once and then reads sequentially, positional
+   * reads would set up a new block read for every buffer.
    *
    * @param stream
    * @return
    */
   private StreamingOutput buildOutputStream(final FSDataInputStream stream,
-      final DistributedFileSystemOps udfso) {
+      final DistributedFileSystemOps udfso, final String fullPath, final long start, final long count) {
     StreamingOutput output = new StreamingOutput() {
       @Override
       public void write(OutputStream out) throws IOException,
           WebApplicationException {
+        byte[] buffer = bufferPool.acquire();
+        long sent = 0;
+        long startedAt = System.nanoTime();
         try {
-          int length;
-          byte[] buffer = new byte[1024];
-          while ((length = stream.read(buffer)) != -1) {
+          if (start > 0) {
+            stream.seek(start);
+          }
+          while (sent < count) {
+            int length = stream.read(buffer, 0, (int) Math.min(buffer.length, count - sent));
+            if (length < 0) {
+              break;
+            }
             out.write(buffer, 0, length);
+            sent += length;
           }
           out.flush();
-          stream.close();
         } finally {
-          dfs.closeDfsClient(udfso);
+          bufferPool.release(buffer);
+          close(stream, udfso);
+          long elapsedMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+          LOG.log(Level.INFO, "Downloaded {0} bytes of {1} in {2} ms, {3} bytes/sec",
+              new Object[]{sent, fullPath, elapsedMs, sent * 1000 / elapsedMs});
         }
       }
     };
@@ -144,4 +215,89 @@ public class DownloadService {
     return output;
   }
 
+  /**
+   * The range is only served if the file is the one the client already has
+   * part of, identified by either its entity tag or its modification time.
+   */
+  private static boolean matchesIfRange(String ifRange, String etag, long modificationTime) {
+    if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+      return ifRange.equals(etag);
+    }
+    try {
+      long seconds = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+      return seconds == TimeUnit.MILLISECONDS.toSeconds(modificationTime);
+    } catch (DateTimeParseException ex) {
+      return false;
+    }
+  }
+
+  private void close(FSDataInputStream stream, DistributedFileSystemOps udfso) {
+    if (stream != null) {
+      try {
+        stream.close();
+      } catch (IOException ex) {
+        LOG.log(Level.FINE, "Could not close download stream", ex);
+      }
+    }
+    dfs.closeDfsClient(udfso);
+  }
+
+  /**
+   * A single range of the Range header, multiple ranges are not supported and
+   * the whole file is sent instead.
+   */
+  static final class ByteRange {
+
+    static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+    final long start;
+    final long end;
+
+    private ByteRange(long start, long end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    /**
+     * @return the range, UNSATISFIABLE if it starts past the end of the file
+     * or null if the header is invalid or not supported
+     */
+    static ByteRange parse(String header, long length) {
+      String value = header.trim();
+      if (!value.startsWith("bytes=") || value.indexOf(',') >= 0) {
+        return null;
+      }
+      value = value.substring("bytes=".length()).trim();
+      int dash = value.indexOf('-');
+      if (dash < 0) {
+        return null;
+      }
+      try {
+        String first = value.substring(0, dash).trim();
+        String last = value.substring(dash + 1).trim();
+        if (first.isEmpty()) {
+          // Suffix range, the last n bytes
+          if (last.isEmpty()) {
+            return null;
+          }
+          long suffix = Long.parseLong(last);
+          if (suffix <= 0 || length == 0) {
+            return UNSATISFIABLE;
+          }
+          return new ByteRange(Math.max(0, length - suffix), length - 1);
+        }
+        long start = Long.parseLong(first);
+        long end = last.isEmpty() ? length - 1 : Long.parseLong(last);
+        if (start < 0 || end < start) {
+          return null;
+        }
+        if (start >= length) {
+          return UNSATISFIABLE;
+        }
+        return new ByteRange(start, Math.min(end, length - 1));
+      } catch (NumberFormatException ex) {
+        return null;
+      }
+    }
+  }
 }
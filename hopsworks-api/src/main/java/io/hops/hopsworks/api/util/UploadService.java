@@ -67,6 +67,7 @@ import io.hops.hopsworks.common.hdfs.DistributedFsService;
 import io.hops.hopsworks.common.hdfs.Utils;
 import io.hops.hopsworks.common.metadata.exception.ApplicationException;
 import io.hops.hopsworks.common.metadata.exception.DatabaseException;
+import io.hops.hopsworks.common.upload.HdfsUploadStream;
 import io.hops.hopsworks.common.upload.HttpUtils;
 import io.hops.hopsworks.common.upload.ResumableInfo;
 import io.hops.hopsworks.common.upload.ResumableInfoStorage;
@@ -98,6 +99,8 @@ public class UploadService {
   private DistributedFsService dfs;
   @EJB
   private DatasetController datasetController;
+  @EJB
+  private Settings settings;
 
   private String path;
   private String username;
@@ -271,28 +274,35 @@ public class UploadService {
     ResumableInfo info = getResumableInfo(flowChunkSize, flowFilename,
             flowIdentifier, flowRelativePath, flowTotalSize, this.path,
             this.templateId);
+    if (!info.isValidChunk(new ResumableInfo.ResumableChunkNumber(resumableChunkNumber))) {
+      throw new AppException(Response.Status.BAD_REQUEST.getStatusCode(),
+              "Invalid chunk number " + flowChunkNumber);
+    }
     String fileName = info.getResumableFilename();
     int templateid = info.getResumableTemplateId();
 
-    long content_length;
-    //Seek to position
-    try (RandomAccessFile raf
-            = new RandomAccessFile(info.getResumableFilePath(), "rw");
-            InputStream is = uploadedInputStream) {
-      //Seek to position
-      raf.seek((resumableChunkNumber - 1) * (long) info.getResumableChunkSize());
-      //Save to file
-      long readed = 0;
-      content_length = HttpUtils.toLong(flowCurrentChunkSize, -1);
-      byte[] bytes = new byte[1024 * 1024];//Default chunk size for ng-flow.js is set to chunkSize: 1024 * 1024
-      while (readed < content_length) {
-        int r = is.read(bytes);
-        if (r < 0) {
-          break;
+    long content_length = HttpUtils.toLong(flowCurrentChunkSize, -1);
+    HdfsUploadStream uploadStream = null;
+    if (settings.isUploadDirectToHdfs() && !this.isTemplate) {
+      //Stream the chunk straight into the file in HDFS
+      uploadStream = getUploadStream(info, fileName);
+      try (InputStream is = uploadedInputStream) {
+        uploadStream.write(resumableChunkNumber, is, content_length);
+      } catch (IOException e) {
+        if (!uploadStream.isFailed()) {
+          throw e;
         }
-        raf.write(bytes, 0, r);
-        readed += r;
+        logger.log(Level.INFO, "Failed to write to HDFS", e);
+        ResumableInfoStorage.getInstance().remove(info);
+        uploadStream.abort();
+        uploadStream.close();
+        json.setErrorMsg("Failed to write to HDFS");
+        return noCacheResponse.getNoCacheResponseBuilder(
+                Response.Status.BAD_REQUEST).entity(json).build();
       }
+    } else {
+      writeToStagingFile(info, resumableChunkNumber, uploadedInputStream,
+              content_length);
     }
 
     boolean finished = false;
@@ -340,15 +350,14 @@ public class UploadService {
         }
         
         
-        //If the user has a role in the owning project of the Dataset and that is Data Owner
-        //perform operation as superuser
-        if (!Strings.isNullOrEmpty(role) && role.equals(AllowedProjectRoles.DATA_OWNER)) {
-          dfsOps = dfs.getDfsOps();
+        if (uploadStream != null) {
+          //The chunks are already in HDFS, complete the file
+          uploadStream.finish();
+          dfsOps = uploadStream.getDfsOps();
         } else {
-          dfsOps = dfs.getDfsOps(username);
-        } 
-
-        dfsOps.copyToHDFSFromLocal(true, stagingFilePath, location.toString());
+          dfsOps = getUploadDfsOps();
+          dfsOps.copyToHDFSFromLocal(true, stagingFilePath, location.toString());
+        }
         dfsOps.setPermission(location, dfsOps.getParentPermission(location));
         dfsOps.setOwner(location, username, dfsOps.getFileStatus(location).getGroup());
         logger.log(Level.INFO, "Copied to HDFS");
@@ -378,11 +387,16 @@ public class UploadService {
 
       } catch (IOException e) {
         logger.log(Level.INFO, "Failed to write to HDFS", e);
+        if (uploadStream != null) {
+          uploadStream.abort();
+        }
         json.setErrorMsg("Failed to write to HDFS");
         return noCacheResponse.getNoCacheResponseBuilder(
                 Response.Status.BAD_REQUEST).entity(json).build();
       } finally {
-        if (dfsOps != null) {
+        if (uploadStream != null) {
+          uploadStream.close();
+        } else if (dfsOps != null) {
           dfs.closeDfsClient(dfsOps);
         }
       }
@@ -393,6 +407,61 @@ public class UploadService {
             json).build();
   }
 
+  private void writeToStagingFile(ResumableInfo info, int resumableChunkNumber,
+          InputStream uploadedInputStream, long content_length) throws
+          IOException {
+    try (RandomAccessFile raf
+            = new RandomAccessFile(info.getResumableFilePath(), "rw");
+            InputStream is = uploadedInputStream) {
+      //Seek to position
+      raf.seek((resumableChunkNumber - 1) * (long) info.getResumableChunkSize());
+      //Save to file
+      long readed = 0;
+      byte[] bytes = new byte[1024 * 1024];//Default chunk size for ng-flow.js is set to chunkSize: 1024 * 1024
+      while (readed < content_length) {
+        int r = is.read(bytes);
+        if (r < 0) {
+          break;
+        }
+        raf.write(bytes, 0, r);
+        readed += r;
+      }
+    }
+  }
+
+  /**
+   * Returns the stream writing the upload into HDFS, opening it on the first
+   * chunk received.
+   */
+  private HdfsUploadStream getUploadStream(ResumableInfo info, String fileName)
+          throws IOException {
+    synchronized (info) {
+      HdfsUploadStream uploadStream = info.getUploadStream();
+      if (uploadStream == null) {
+        DistributedFileSystemOps dfsOps = getUploadDfsOps();
+        try {
+          uploadStream = new HdfsUploadStream(dfs, dfsOps, new Path(this.path,
+                  fileName), new File(info.getResumableFilePath()).
+                  getParentFile(), settings.getUploadSpillLimit());
+        } catch (IOException e) {
+          dfs.closeDfsClient(dfsOps);
+          throw e;
+        }
+        info.setUploadStream(uploadStream);
+      }
+      return uploadStream;
+    }
+  }
+
+  private DistributedFileSystemOps getUploadDfsOps() {
+    //If the user has a role in the owning project of the Dataset and that is Data Owner
+    //perform operation as superuser
+    if (!Strings.isNullOrEmpty(role) && role.equals(AllowedProjectRoles.DATA_OWNER)) {
+      return dfs.getDfsOps();
+    }
+    return dfs.getDfsOps(username);
+  }
+
   private void attachTemplateToInode(ResumableInfo info, String path) {
     //find the inode
     Inode inode = inodes.getInodeAtPath(path);
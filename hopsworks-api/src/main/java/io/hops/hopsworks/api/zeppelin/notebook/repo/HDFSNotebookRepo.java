@@ -23,17 +23,23 @@ package io.hops.hopsworks.api.zeppelin.notebook.repo;
 import com.google.common.collect.Lists;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -84,6 +90,13 @@ public class HDFSNotebookRepo implements NotebookRepo {
   private final Pattern pguPattern = Pattern.compile("(\\w*)" +
       Settings.PROJECT_GENERIC_USER_SUFFIX);
 
+  // Index of the notes in the notebook dir, so that listing does not parse every note
+  private static final String NOTE_INDEX = ".note-index.json";
+  private static final Type NOTE_INDEX_TYPE = new TypeToken<Map<String, NoteIndexEntry>>() {}.getType();
+  private final Gson indexGson = new Gson();
+  private final Object indexLock = new Object();
+  private volatile Map<String, NoteIndexEntry> noteIndex;
+
   public HDFSNotebookRepo(ZeppelinConfiguration conf) throws IOException {
     this.conf = conf;
     this.hdfsConf = getHadoopConf();
@@ -124,6 +137,7 @@ public class HDFSNotebookRepo implements NotebookRepo {
         dfso.close();
       }
     }
+    noteIndex = null;
   }
 
   private String getNotebookDirPath() {
@@ -278,7 +292,35 @@ public class HDFSNotebookRepo implements NotebookRepo {
   private void closeDfsClient(DistributedFileSystemOps dfso) {
     dfsService.closeDfsClient(dfso);
   }
+
+  /**
+   * What the note listing needs to know about a note, and the mtime of the
+   * note dir when it was read.
+   */
+  private static class NoteIndexEntry {
+
+    private String id;
+    private String name;
+    private Map<String, Object> config;
+    private long modificationTime;
+
+    private NoteIndexEntry(NoteInfo info, long modificationTime) {
+      this.id = info.getId();
+      this.name = info.getName();
+      this.config = info.getConfig();
+      this.modificationTime = modificationTime;
+    }
+
+    private NoteInfo toNoteInfo() {
+      return new NoteInfo(id, name, config);
+    }
+  }
   
+  /**
+   * Lists the notes with one scan of the notebook dir. Only the notes whose
+   * directory was modified since they were last indexed are read, the others
+   * come from the note index.
+   */
   @Override
   public List<NoteInfo> list(AuthenticationInfo subject) throws IOException {
     DistributedFileSystemOps udfso = null;
@@ -288,6 +330,9 @@ public class HDFSNotebookRepo implements NotebookRepo {
       udfso = getUserDfs(subject);
       Path rootDir = getRootDir(udfso);
       FileStatus[] children = udfso.listStatus(rootDir);
+      Map<String, NoteIndexEntry> index = getNoteIndex(rootDir, udfso);
+      Set<String> listed = new HashSet<>();
+      boolean indexChanged = false;
       
       for (FileStatus f : children) {
         String fileName = f.getPath().getName();
@@ -298,21 +343,33 @@ public class HDFSNotebookRepo implements NotebookRepo {
           continue;
         }
     
-        if (!udfso.getFilesystem().isDirectory(f.getPath())) {
+        if (!f.isDirectory()) {
           // currently single note is saved like, [NOTE_ID]/note.json.
           // so it must be a directory
           continue;
         }
+        listed.add(fileName);
   
-        NoteInfo info;
-        try {
-          info = getNoteInfo(f.getPath(), udfso);
-          if (info != null) {
-            infos.add(info);
+        // Saving a note renames its note.json, which updates the mtime of the note dir
+        NoteIndexEntry entry = index.get(fileName);
+        if (entry == null || entry.modificationTime != f.getModificationTime()) {
+          try {
+            NoteInfo info = getNoteInfo(f.getPath(), udfso);
+            entry = new NoteIndexEntry(info, f.getModificationTime());
+            index.put(fileName, entry);
+            indexChanged = true;
+          } catch (Exception e) {
+            logger.error("Can't read note " + f.getPath().toString(), e);
+            continue;
           }
-        } catch (Exception e) {
-          logger.error("Can't read note " + f.getPath().toString(), e);
         }
+        infos.add(entry.toNoteInfo());
+      }
+      if (index.keySet().retainAll(listed)) {
+        indexChanged = true;
+      }
+      if (indexChanged) {
+        saveNoteIndex(rootDir, index, udfso);
       }
     } finally {
       closeDfsClient(udfso);
@@ -320,6 +377,56 @@ public class HDFSNotebookRepo implements NotebookRepo {
     
     return infos;
   }
+
+  private Map<String, NoteIndexEntry> getNoteIndex(Path rootDir, DistributedFileSystemOps dfs) {
+    Map<String, NoteIndexEntry> index = noteIndex;
+    if (index != null) {
+      return index;
+    }
+    synchronized (indexLock) {
+      if (noteIndex == null) {
+        noteIndex = new ConcurrentHashMap<>(readNoteIndex(rootDir, dfs));
+      }
+      return noteIndex;
+    }
+  }
+
+  private Map<String, NoteIndexEntry> readNoteIndex(Path rootDir, DistributedFileSystemOps dfs) {
+    Path indexFile = new Path(rootDir, NOTE_INDEX);
+    try {
+      if (!dfs.getFilesystem().exists(indexFile)) {
+        return Collections.emptyMap();
+      }
+      try (InputStream in = dfs.open(indexFile)) {
+        String json = IOUtils.toString(in, conf.getString(
+            ZeppelinConfiguration.ConfVars.ZEPPELIN_ENCODING));
+        Map<String, NoteIndexEntry> index = indexGson.fromJson(json, NOTE_INDEX_TYPE);
+        return index == null ? Collections.<String, NoteIndexEntry>emptyMap() : index;
+      }
+    } catch (IOException | JsonParseException e) {
+      logger.warn("Can't read note index " + indexFile + ", rebuilding it", e);
+      return Collections.emptyMap();
+    }
+  }
+
+  private void saveNoteIndex(Path rootDir, Map<String, NoteIndexEntry> index,
+      DistributedFileSystemOps dfs) {
+    Path indexFile = new Path(rootDir, NOTE_INDEX);
+    Path indexTemp = new Path(rootDir, NOTE_INDEX + ".tmp");
+    synchronized (indexLock) {
+      try {
+        String json = indexGson.toJson(index, NOTE_INDEX_TYPE);
+        try (OutputStream out = dfs.getFilesystem().create(indexTemp)) {
+          out.write(json.getBytes(conf.getString(
+              ZeppelinConfiguration.ConfVars.ZEPPELIN_ENCODING)));
+        }
+        dfs.getFilesystem().rename(indexTemp, indexFile, Options.Rename.OVERWRITE);
+      } catch (IOException e) {
+        // The index is rebuilt from the notes on the next listing
+        logger.warn("Can't save note index " + indexFile, e);
+      }
+    }
+  }
   
   @Override
   public Note get(String noteId, AuthenticationInfo subject) throws IOException {
@@ -378,6 +378,7 @@ public class NotebookServer {
   public void onClose(Session conn, CloseReason reason) {
     LOG.log(Level.INFO, "Closed connection to {0} : {1}. Reason: {2}",
         new Object[]{conn.getRequestURI().getHost(), conn.getRequestURI().getPort(), reason});
+    SessionOutbox.remove(conn);
     impl.removeConnectionFromAllNote(conn);
     impl.removeConnectedSockets(conn, notebookServerImplFactory);
     impl.removeUserConnection(this.hdfsUsername, conn);
@@ -386,6 +387,7 @@ public class NotebookServer {
 
   @OnError
   public void onError(Session conn, Throwable exc) {
+    SessionOutbox.remove(conn);
     if (impl != null) {
       impl.removeConnectionFromAllNote(conn);
       impl.removeConnectedSockets(conn, notebookServerImplFactory);
@@ -412,6 +414,7 @@ public class NotebookServer {
 
   public void closeConnection() {
     try {
+      SessionOutbox.remove(this.session);
       if (this.session.isOpen()) {
         this.session.getBasicRemote().sendText("Restarting zeppelin.");
         this.session.close(new CloseReason(CloseReason.CloseCodes.SERVICE_RESTART, "Restarting zeppelin."));
@@ -63,6 +63,8 @@ import java.util.Properties;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -119,7 +121,9 @@ public class NotebookServerImpl implements
       .setPrettyPrinting()
       .registerTypeAdapterFactory(Input.TypeAdapterFactory).create();
 
-  private final Map<String, List<Session>> noteSocketMap = new HashMap<>();
+  // Sessions watching each note, and the note watched by each session
+  private final ConcurrentMap<String, Set<Session>> noteSocketMap = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Session, String> socketNoteMap = new ConcurrentHashMap<>();
   private final Queue<Session> connectedSockets = new ConcurrentLinkedQueue<>();
   private final Map<String, Queue<Session>> userConnectedSockets = new ConcurrentHashMap<>();
   /**
@@ -139,14 +143,21 @@ public class NotebookServerImpl implements
   private final ProjectTeamFacade projectTeamFacade;
   private final ActivityFacade activityFacade;
   private final CertificatesMgmService certificatesMgmService;
+  private final OutputBatcher outputBatcher;
 
   private String certPwd;
 
   public NotebookServerImpl(Project project, ZeppelinConfigFactory zeppelin,
       CertsFacade certsFacade, Settings settings, ProjectTeamFacade projectTeamFacade,
-      ActivityFacade activityFacade, CertificatesMgmService certificatesMgmService)
+      ActivityFacade activityFacade, CertificatesMgmService certificatesMgmService,
+      ScheduledExecutorService scheduler)
       throws IOException, RepositoryException,
       TaskRunnerException {
+    // Created first, the interpreters can send output as soon as the config is created
+    String flushInterval = settings.getZeppelinOutputFlushInterval();
+    this.outputBatcher = new OutputBatcher(scheduler,
+        Settings.getConfTimeTimeUnit(flushInterval).toMillis(Settings.getConfTimeValue(flushInterval)),
+        settings.getZeppelinOutputMaxFrame(), this::broadcast);
     this.project = project;
     this.conf = zeppelin.getZeppelinConfig(project.getName(), this);
     this.notebook = this.conf.getNotebook();
@@ -166,74 +177,47 @@ public class NotebookServerImpl implements
   }
 
   private void addConnectionToNote(String noteId, Session socket) {
-    synchronized (noteSocketMap) {
-      removeConnectionFromAllNote(socket); // make sure a socket relates only a single note.
-      List<Session> socketList = noteSocketMap.get(noteId);
-      if (socketList == null) {
-        socketList = new LinkedList<>();
-        noteSocketMap.put(noteId, socketList);
-      }
-      if (!socketList.contains(socket)) {
-        socketList.add(socket);
+    String previousNoteId = socketNoteMap.put(socket, noteId); // make sure a socket relates only a single note.
+    if (previousNoteId != null && !previousNoteId.equals(noteId)) {
+      Set<Session> previousSockets = noteSocketMap.get(previousNoteId);
+      if (previousSockets != null) {
+        previousSockets.remove(socket);
       }
     }
+    noteSocketMap.computeIfAbsent(noteId, id -> ConcurrentHashMap.newKeySet()).add(socket);
   }
 
   private void removeConnectionFromNote(String noteId, Session socket) {
-    synchronized (noteSocketMap) {
-      List<Session> socketList = noteSocketMap.get(noteId);
-      if (socketList != null) {
-        socketList.remove(socket);
-      }
+    socketNoteMap.remove(socket, noteId);
+    Set<Session> sockets = noteSocketMap.get(noteId);
+    if (sockets != null) {
+      sockets.remove(socket);
     }
   }
 
   private void removeNote(String noteId) {
-    synchronized (noteSocketMap) {
-      noteSocketMap.remove(noteId);
+    outputBatcher.remove(noteId);
+    Set<Session> sockets = noteSocketMap.remove(noteId);
+    if (sockets != null) {
+      for (Session socket : sockets) {
+        socketNoteMap.remove(socket, noteId);
+      }
     }
   }
 
   public void removeConnectionFromAllNote(Session socket) {
-    synchronized (noteSocketMap) {
-      Set<String> keys = noteSocketMap.keySet();
-      for (String noteId : keys) {
-        removeConnectionFromNote(noteId, socket);
-      }
+    String noteId = socketNoteMap.get(socket);
+    if (noteId != null) {
+      removeConnectionFromNote(noteId, socket);
     }
   }
 
   private String getOpenNoteId(Session socket) {
-    String id = null;
-    synchronized (noteSocketMap) {
-      Set<String> keys = noteSocketMap.keySet();
-      for (String noteId : keys) {
-        List<Session> sockets = noteSocketMap.get(noteId);
-        if (sockets.contains(socket)) {
-          id = noteId;
-        }
-      }
-    }
-
-    return id;
+    return socketNoteMap.get(socket);
   }
 
   private void broadcast(String noteId, Message m) {
-    synchronized (noteSocketMap) {
-      broadcastToWatchers(noteId, StringUtils.EMPTY, m);
-      List<Session> socketLists = noteSocketMap.get(noteId);
-      if (socketLists == null || socketLists.isEmpty()) {
-        return;
-      }
-      LOG.log(Level.FINE, "SEND >> {0}", m.op);
-      for (Session conn : socketLists) {
-        try {
-          sendMsg(conn, serializeMessage(m));
-        } catch (IOException ex) {
-          LOG.log(Level.SEVERE, "Unable to send message " + m, ex);
-        }
-      }
-    }
+    broadcastExcept(noteId, m, null);
   }
 
   private void broadcastToNoteBindedInterpreter(String interpreterGroupId, Message m) {
@@ -249,24 +233,44 @@ public class NotebookServerImpl implements
     }
   }
 
+  /**
+   * Sends a message to all the sessions watching a note but one. The message
+   * is serialized once and queued for each session, so a slow session does not
+   * hold up the others.
+   */
   private void broadcastExcept(String noteId, Message m, Session exclude) {
-    synchronized (noteSocketMap) {
-      broadcastToWatchers(noteId, StringUtils.EMPTY, m);
-      List<Session> socketLists = noteSocketMap.get(noteId);
-      if (socketLists == null || socketLists.isEmpty()) {
-        return;
-      }
-      LOG.log(Level.FINE, "SEND >> {0}", m.op);
-      for (Session conn : socketLists) {
-        if (exclude.equals(conn)) {
-          continue;
-        }
-        try {
-          sendMsg(conn, serializeMessage(m));
-        } catch (IOException ex) {
-          LOG.log(Level.SEVERE, "Unable to send message " + m, ex);
-        }
+    if (m.op != Message.OP.PARAGRAPH_APPEND_OUTPUT) {
+      outputBatcher.flush(noteId);
+    }
+    String msg = serializeMessage(m);
+    broadcastToWatchers(noteId, StringUtils.EMPTY, msg);
+    Set<Session> sockets = noteSocketMap.get(noteId);
+    if (sockets == null || sockets.isEmpty()) {
+      return;
+    }
+    LOG.log(Level.FINE, "SEND >> {0}", m.op);
+    String key = getCoalescingKey(m);
+    for (Session conn : sockets) {
+      if (conn.equals(exclude)) {
+        continue;
       }
+      sendMsg(conn, msg, key);
+    }
+  }
+
+  /**
+   * Messages that only carry the latest state of something replace each other
+   * while they wait to be sent to a slow session.
+   */
+  private String getCoalescingKey(Message m) {
+    switch (m.op) {
+      case PROGRESS:
+        return m.op + "/" + m.get("id");
+      case PARAGRAPH:
+        Object paragraph = m.get("paragraph");
+        return paragraph instanceof Paragraph ? m.op + "/" + ((Paragraph) paragraph).getId() : null;
+      default:
+        return null;
     }
   }
 
@@ -398,6 +402,7 @@ public class NotebookServerImpl implements
       LOG.log(Level.WARNING, "Failed to send unicast. user {} that is not in connections map", user);
       return;
     }
+    outputBatcher.flush(note.getId());
 
     for (Session conn : userConnectedSockets.get(user)) {
       Message m = new Message(Message.OP.PARAGRAPH).put("paragraph", p);
@@ -1765,9 +1770,7 @@ public class NotebookServerImpl implements
    */
   @Override
   public void onOutputAppend(String noteId, String paragraphId, int index, String output) {
-    Message msg = new Message(Message.OP.PARAGRAPH_APPEND_OUTPUT).put("noteId", noteId)
-        .put("paragraphId", paragraphId).put("index", index).put("data", output);
-    broadcast(noteId, msg);
+    outputBatcher.append(noteId, paragraphId, index, output);
   }
 
   /**
@@ -1784,6 +1787,7 @@ public class NotebookServerImpl implements
     if (note.isPersonalizedMode()) {
       String user = note.getParagraph(paragraphId).getUser();
       if (null != user) {
+        outputBatcher.flush(noteId);
         multicastToUser(user, msg);
       }
     } else {
@@ -2070,10 +2074,7 @@ public class NotebookServerImpl implements
      */
     @Override
     public void onOutputAppend(Paragraph paragraph, int idx, String output) {
-      Message msg = new Message(Message.OP.PARAGRAPH_APPEND_OUTPUT).put("noteId", paragraph.getNote().getId())
-          .put("paragraphId", paragraph.getId()).put("data", output);
-
-      notebookServer.broadcast(paragraph.getNote().getId(), msg);
+      notebookServer.outputBatcher.append(paragraph.getNote().getId(), paragraph.getId(), null, output);
     }
 
     /**
@@ -2263,18 +2264,19 @@ public class NotebookServerImpl implements
 
   private void broadcastToWatchers(String noteId, String subject,
       Message message) {
-    synchronized (watcherSockets) {
-      if (watcherSockets.isEmpty()) {
-        return;
-      }
-      for (Session watcher : watcherSockets) {
-        try {
-          sendMsg(watcher, WatcherMessage.builder(noteId).subject(subject).message(serializeMessage(message)).build().
-              toJson());
-        } catch (IOException e) {
-          LOG.log(Level.SEVERE, "Cannot broadcast message to watcher", e);
-        }
-      }
+    if (watcherSockets.isEmpty()) {
+      return;
+    }
+    broadcastToWatchers(noteId, subject, serializeMessage(message));
+  }
+
+  private void broadcastToWatchers(String noteId, String subject, String serializedMessage) {
+    if (watcherSockets.isEmpty()) {
+      return;
+    }
+    String msg = WatcherMessage.builder(noteId).subject(subject).message(serializedMessage).build().toJson();
+    for (Session watcher : watcherSockets) {
+      sendMsg(watcher, msg, null);
     }
   }
 
@@ -2326,12 +2328,38 @@ public class NotebookServerImpl implements
     setting.clearNoteIdAndParaMap();
   }
 
+  /**
+   * @return the number of paragraph output fragments received from the
+   * interpreters
+   */
+  public long getOutputFragments() {
+    return outputBatcher.getFragments();
+  }
+
+  /**
+   * @return the number of paragraph output messages they were merged into
+   */
+  public long getOutputFrames() {
+    return outputBatcher.getFrames();
+  }
+
+  /**
+   * @return the size of the paragraph output sent, in characters
+   */
+  public long getOutputBytes() {
+    return outputBatcher.getBytes();
+  }
+
   public void sendMsg(Session conn, String msg) throws IOException {
+    sendMsg(conn, msg, null);
+  }
+
+  private void sendMsg(Session conn, String msg, String key) {
     if (conn == null || !conn.isOpen()) {
       LOG.log(Level.SEVERE, "Can't handle message. The connection has been closed.");
       return;
     }
-    conn.getBasicRemote().sendText(msg);
+    SessionOutbox.of(conn, settings.getZeppelinWsQueueSize()).send(msg, key);
   }
 
   protected String serializeMessage(Message m) {
@@ -2348,17 +2376,16 @@ public class NotebookServerImpl implements
 
   public void closeConnection(Session session, String hdfsUsername,
       NotebookServerImplFactory notebookServerImplFactory) {
-    try {
-      if (session.isOpen()) {
-        session.getBasicRemote().sendText("Restarting zeppelin.");
-        session.close(new CloseReason(CloseReason.CloseCodes.SERVICE_RESTART, "Restarting zeppelin."));
-      }
-      removeConnectionFromAllNote(session);
-      removeConnectedSockets(session, notebookServerImplFactory);
-      removeUserConnection(hdfsUsername, session);
-      removeUserConnection(project.getProjectGenericUser(), session);
-    } catch (IOException ex) {
-      LOG.log(Level.SEVERE, null, ex);
+    if (session.isOpen()) {
+      // Sent after the message the outbox may be sending, the session is closed once it is out
+      SessionOutbox.sendLastAndClose(session, settings.getZeppelinWsQueueSize(), "Restarting zeppelin.",
+          new CloseReason(CloseReason.CloseCodes.SERVICE_RESTART, "Restarting zeppelin."));
+    } else {
+      SessionOutbox.remove(session);
     }
+    removeConnectionFromAllNote(session);
+    removeConnectedSockets(session, notebookServerImplFactory);
+    removeUserConnection(hdfsUsername, session);
+    removeUserConnection(project.getProjectGenericUser(), session);
   }
 }
@@ -28,10 +28,12 @@ import io.hops.hopsworks.common.dao.project.ProjectFacade;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import javax.annotation.Resource;
 import javax.ejb.ConcurrencyManagement;
 import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.EJB;
 import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
 import javax.websocket.Session;
 
 import io.hops.hopsworks.common.dao.project.team.ProjectTeamFacade;
@@ -58,6 +60,8 @@ public class NotebookServerImplFactory {
   private ActivityFacade activityFacade;
   @EJB
   private CertificatesMgmService certificatesMgmService;
+  @Resource
+  private ManagedScheduledExecutorService scheduler;
   
   private Map<String, NotebookServerImpl> notebookServerImpls = new HashMap<>();
 
@@ -75,7 +79,7 @@ public class NotebookServerImplFactory {
     NotebookServerImpl impl = notebookServerImpls.get(projectName);
     if (impl == null) {
       impl = new NotebookServerImpl(project, zeppelinConfigFactory, certsFacade,
-          settings, projectTeamFacade, activityFacade, certificatesMgmService);
+          settings, projectTeamFacade, activityFacade, certificatesMgmService, scheduler);
       notebookServerImpls.put(projectName, impl);
     }
     impl.addConnectedSocket(session);
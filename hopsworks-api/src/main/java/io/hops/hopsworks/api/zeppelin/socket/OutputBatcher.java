@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.api.zeppelin.socket;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Merges the output appended to a paragraph into fewer websocket messages.
+ * Output of the same paragraph result is merged until the flush interval has
+ * passed since the first fragment, or until it reaches the maximum frame size.
+ * Pending output of a note is flushed before any other message of the note is
+ * sent, so clients see messages in the order they were produced.
+ */
+final class OutputBatcher {
+
+  private static final Logger LOG = Logger.getLogger(OutputBatcher.class.getName());
+
+  private final ScheduledExecutorService scheduler;
+  private final long flushIntervalMs;
+  private final int maxFrameSize;
+  // Sends a message to the watchers of a note
+  private final BiConsumer<String, Message> sink;
+  private final ConcurrentMap<String, NoteOutput> notes = new ConcurrentHashMap<>();
+
+  private final AtomicLong fragments = new AtomicLong();
+  private final AtomicLong frames = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+
+  OutputBatcher(ScheduledExecutorService scheduler, long flushIntervalMs, int maxFrameSize,
+      BiConsumer<String, Message> sink) {
+    this.scheduler = scheduler;
+    this.flushIntervalMs = flushIntervalMs;
+    this.maxFrameSize = maxFrameSize;
+    this.sink = sink;
+  }
+
+  /**
+   * Adds a fragment of output to a paragraph result.
+   *
+   * @param noteId
+   * @param paragraphId
+   * @param index the index of the result in the paragraph, or null if unknown
+   * @param output
+   */
+  void append(String noteId, String paragraphId, Integer index, String output) {
+    fragments.incrementAndGet();
+    if (flushIntervalMs <= 0 || scheduler == null) {
+      send(noteId, new PendingOutput(paragraphId, index).append(output));
+      return;
+    }
+    NoteOutput note = notes.computeIfAbsent(noteId, id -> new NoteOutput());
+    synchronized (note) {
+      String key = paragraphId + "/" + index;
+      PendingOutput pending = note.pending.get(key);
+      if (pending == null) {
+        pending = new PendingOutput(paragraphId, index);
+        note.pending.put(key, pending);
+      }
+      pending.append(output);
+      if (pending.output.length() >= maxFrameSize) {
+        flush(noteId, note);
+      } else if (!note.scheduled) {
+        note.scheduled = true;
+        try {
+          scheduler.schedule(() -> flush(noteId), flushIntervalMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+          LOG.log(Level.FINE, "Could not schedule output flush, flushing now", e);
+          flush(noteId, note);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sends the pending output of a note.
+   *
+   * @param noteId
+   */
+  void flush(String noteId) {
+    NoteOutput note = notes.get(noteId);
+    if (note == null) {
+      return;
+    }
+    synchronized (note) {
+      flush(noteId, note);
+    }
+  }
+
+  /**
+   * Drops the pending output of a note that was removed.
+   *
+   * @param noteId
+   */
+  void remove(String noteId) {
+    notes.remove(noteId);
+  }
+
+  long getFragments() {
+    return fragments.get();
+  }
+
+  long getFrames() {
+    return frames.get();
+  }
+
+  long getBytes() {
+    return bytes.get();
+  }
+
+  // Must hold the lock of the note, so that frames of the note are sent in order
+  private void flush(String noteId, NoteOutput note) {
+    note.scheduled = false;
+    if (note.pending.isEmpty()) {
+      return;
+    }
+    for (PendingOutput pending : note.pending.values()) {
+      send(noteId, pending);
+    }
+    note.pending.clear();
+  }
+
+  private void send(String noteId, PendingOutput pending) {
+    String output = pending.output.toString();
+    frames.incrementAndGet();
+    bytes.addAndGet(output.length());
+    Message msg = new Message(Message.OP.PARAGRAPH_APPEND_OUTPUT).put("noteId", noteId)
+        .put("paragraphId", pending.paragraphId);
+    if (pending.index != null) {
+      msg.put("index", pending.index);
+    }
+    sink.accept(noteId, msg.put("data", output));
+  }
+
+  private static final class NoteOutput {
+
+    // Pending output of each paragraph result, in the order of the first fragment
+    private final Map<String, PendingOutput> pending = new LinkedHashMap<>();
+    private boolean scheduled = false;
+  }
+
+  private static final class PendingOutput {
+
+    private final String paragraphId;
+    private final Integer index;
+    private final StringBuilder output = new StringBuilder();
+
+    private PendingOutput(String paragraphId, Integer index) {
+      this.paragraphId = paragraphId;
+      this.index = index;
+    }
+
+    private PendingOutput append(String fragment) {
+      output.append(fragment);
+      return this;
+    }
+  }
+}
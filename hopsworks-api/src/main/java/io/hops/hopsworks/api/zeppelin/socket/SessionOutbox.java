@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.api.zeppelin.socket;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.websocket.CloseReason;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+/**
+ * The outgoing messages of one websocket session. Messages are queued and sent
+ * one at a time through the async remote, so a slow client only holds up its
+ * own messages and never the thread sending them.
+ * <p>
+ * A queued message with a key is dropped when a newer message with the same
+ * key is queued, the newer one goes to the end of the queue. If a client still
+ * falls more than the capacity of its queue behind, its session is closed so
+ * that it reconnects and reloads the note, instead of missing messages.
+ * <p>
+ * A session closed by the server gets its last message through the outbox
+ * too, the session is closed once that message has been sent.
+ */
+final class SessionOutbox implements SendHandler {
+
+  private static final Logger LOG = Logger.getLogger(SessionOutbox.class.getName());
+
+  // One outbox per session, watcher sessions receive messages from the notebooks of all the projects
+  private static final ConcurrentMap<Session, SessionOutbox> OUTBOXES = new ConcurrentHashMap<>();
+
+  private final Session session;
+  private final int capacity;
+  private final Deque<Outgoing> queue = new ArrayDeque<>();
+  private final Map<String, Outgoing> queuedByKey = new HashMap<>();
+  private boolean sending = false;
+  private boolean closed = false;
+  // Set once the last message is queued, the session is closed with it after that message
+  private CloseReason closeReason;
+
+  private SessionOutbox(Session session, int capacity) {
+    this.session = session;
+    this.capacity = capacity;
+  }
+
+  /**
+   * The outbox of a session, created with the given capacity if the session
+   * has none yet.
+   *
+   * @param session
+   * @param capacity
+   * @return
+   */
+  static SessionOutbox of(Session session, int capacity) {
+    return OUTBOXES.computeIfAbsent(session, s -> new SessionOutbox(s, capacity));
+  }
+
+  /**
+   * Drops the outbox of a closed session and the messages still queued in it.
+   *
+   * @param session
+   */
+  static void remove(Session session) {
+    SessionOutbox outbox = OUTBOXES.remove(session);
+    if (outbox != null) {
+      outbox.close();
+    }
+  }
+
+  /**
+   * Drops the queued messages of the session, sends it a last message and then
+   * closes it. The last message waits for a message being sent, instead of
+   * sending concurrently with it.
+   *
+   * @param session
+   * @param capacity capacity of the outbox if the session has none yet
+   * @param text the last message
+   * @param reason
+   */
+  static void sendLastAndClose(Session session, int capacity, String text, CloseReason reason) {
+    of(session, capacity).sendLast(text, reason);
+  }
+
+  /**
+   * Queues a message, and sends it right away if nothing else is being sent.
+   *
+   * @param text the serialized message
+   * @param key messages with the same key replace each other while queued, or
+   * null if the message must always be sent
+   */
+  void send(String text, String key) {
+    Outgoing next = null;
+    boolean overflow = false;
+    synchronized (this) {
+      if (closed || closeReason != null) {
+        return;
+      }
+      Outgoing replaced = key == null ? null : queuedByKey.remove(key);
+      if (replaced != null) {
+        queue.remove(replaced);
+      }
+      if (queue.size() >= capacity) {
+        close();
+        overflow = true;
+      } else {
+        Outgoing message = new Outgoing(text, key);
+        queue.addLast(message);
+        if (key != null) {
+          queuedByKey.put(key, message);
+        }
+        if (!sending) {
+          sending = true;
+          next = poll();
+        }
+      }
+    }
+    if (overflow) {
+      overflow();
+    } else if (next != null) {
+      transmit(next);
+    }
+  }
+
+  private void sendLast(String text, CloseReason reason) {
+    Outgoing next = null;
+    synchronized (this) {
+      if (closed || closeReason != null) {
+        return;
+      }
+      queue.clear();
+      queuedByKey.clear();
+      queue.addLast(new Outgoing(text, null));
+      closeReason = reason;
+      if (!sending) {
+        sending = true;
+        next = poll();
+      }
+    }
+    if (next != null) {
+      transmit(next);
+    }
+  }
+
+  @Override
+  public void onResult(SendResult result) {
+    if (!result.isOK()) {
+      LOG.log(Level.FINE, "Could not send message to websocket session " + session.getId(),
+          result.getException());
+      if (!session.isOpen()) {
+        remove(session);
+      }
+    }
+    Outgoing next;
+    CloseReason reason = null;
+    synchronized (this) {
+      next = closed ? null : poll();
+      if (next == null) {
+        sending = false;
+        if (!closed && closeReason != null) {
+          // The last message has been sent
+          reason = closeReason;
+          close();
+        }
+      }
+    }
+    if (next != null) {
+      transmit(next);
+    } else if (reason != null) {
+      closeSession(reason);
+    }
+  }
+
+  private void transmit(Outgoing message) {
+    try {
+      session.getAsyncRemote().sendText(message.text, this);
+    } catch (RuntimeException e) {
+      // The session was closed while the message was queued
+      onResult(new SendResult(e));
+    }
+  }
+
+  // Must hold the lock
+  private Outgoing poll() {
+    Outgoing message = queue.pollFirst();
+    if (message != null && message.key != null) {
+      queuedByKey.remove(message.key);
+    }
+    return message;
+  }
+
+  private void overflow() {
+    LOG.log(Level.WARNING, "Websocket session {0} is more than {1} messages behind, closing it",
+        new Object[]{session.getId(), capacity});
+    closeSession(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Too many pending messages."));
+  }
+
+  private void closeSession(CloseReason reason) {
+    OUTBOXES.remove(session, this);
+    try {
+      session.close(reason);
+    } catch (IOException e) {
+      LOG.log(Level.FINE, "Could not close websocket session " + session.getId(), e);
+    }
+  }
+
+  private synchronized void close() {
+    closed = true;
+    queue.clear();
+    queuedByKey.clear();
+  }
+
+  private static final class Outgoing {
+
+    private final String text;
+    private final String key;
+
+    private Outgoing(String text, String key) {
+      this.text = text;
+      this.key = key;
+    }
+  }
+}
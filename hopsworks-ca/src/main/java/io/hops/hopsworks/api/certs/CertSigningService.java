@@ -24,6 +24,7 @@ import com.google.common.io.Files;
 import io.hops.hopsworks.api.annotation.AllowCORS;
 import io.hops.hopsworks.common.dao.host.Hosts;
 import io.hops.hopsworks.common.dao.host.HostsFacade;
+import io.hops.hopsworks.common.dao.kagent.HeartbeatAggregator;
 import io.hops.hopsworks.common.dao.kafka.CsrDTO;
 import io.hops.hopsworks.common.dao.user.UserFacade;
 import io.hops.hopsworks.common.dao.user.Users;
@@ -83,6 +84,8 @@ public class CertSigningService {
   @EJB
   private HostsFacade hostsFacade;
   @EJB
+  private HeartbeatAggregator heartbeatAggregator;
+  @EJB
   private UserFacade userBean;
   @EJB
   private ClusterCertFacade clusterCertFacade;
@@ -120,6 +123,7 @@ public class CertSigningService {
 // We set the hostnmae as hopsworks::default pre-populates with the hostname, but it's not the correct hostname for GCE.
         host.setHostname(hostId);   
         hostsFacade.storeHost(host);
+        heartbeatAggregator.evict(hostId);
       } catch (Exception ex) {
         logger.log(Level.SEVERE, "Host storing error while Cert signing: {0}", ex.getMessage());
       }
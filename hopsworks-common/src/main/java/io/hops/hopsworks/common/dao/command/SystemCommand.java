@@ -46,7 +46,9 @@ import java.io.Serializable;
     @NamedQuery(name = "SystemCommand.findAll",
                 query = "SELECT c FROM SystemCommand c"),
     @NamedQuery(name = "SystemCommand.findByHost",
-                query = "SELECT C FROM SystemCommand c WHERE c.host = :host")
+                query = "SELECT C FROM SystemCommand c WHERE c.host = :host"),
+    @NamedQuery(name = "SystemCommand.findByHostAndStatus",
+                query = "SELECT c FROM SystemCommand c WHERE c.host = :host AND c.status = :status")
   })
 public class SystemCommand implements Serializable {
   private static final long serialVersionUID = 1L;
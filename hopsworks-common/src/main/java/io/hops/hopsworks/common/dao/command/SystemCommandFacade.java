@@ -61,6 +61,14 @@ public class SystemCommandFacade {
     return query.getResultList();
   }
   
+  public List<SystemCommand> findByHostAndStatus(Hosts host, STATUS status) {
+    TypedQuery<SystemCommand> query = entityManager.createNamedQuery("SystemCommand.findByHostAndStatus",
+        SystemCommand.class);
+    query.setParameter("host", host);
+    query.setParameter("status", status);
+    return query.getResultList();
+  }
+  
   public void persist(SystemCommand command) {
     entityManager.persist(command);
   }
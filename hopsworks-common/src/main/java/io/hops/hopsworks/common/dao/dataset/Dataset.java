@@ -56,6 +56,9 @@ import javax.xml.bind.annotation.XmlRootElement;
   @NamedQuery(name = "Dataset.findByInodeId",
           query
           = "SELECT d FROM Dataset d WHERE d.InodeId = :inodeId"),
+  @NamedQuery(name = "Dataset.findByInodeIds",
+          query
+          = "SELECT d FROM Dataset d WHERE d.InodeId IN :inodeIds ORDER BY d.id"),
   @NamedQuery(name = "Dataset.findByInode",
           query = "SELECT d FROM Dataset d WHERE d.inode = :inode"),
   @NamedQuery(name = "Dataset.findByProjectAndInode",
@@ -64,6 +67,9 @@ import javax.xml.bind.annotation.XmlRootElement;
   @NamedQuery(name = "Dataset.findByProject",
           query
           = "SELECT d FROM Dataset d WHERE d.project = :projectId"),
+  @NamedQuery(name = "Dataset.findByProjectFetchInode",
+          query
+          = "SELECT d FROM Dataset d JOIN FETCH d.inode WHERE d.project = :projectId"),
   @NamedQuery(name = "Dataset.findAllPublic",
           query = "SELECT d FROM Dataset d WHERE d.publicDs in (1,2)"),//AND d.shared = 0
   @NamedQuery(name = "Dataset.findAllByState",
@@ -81,6 +87,10 @@ import javax.xml.bind.annotation.XmlRootElement;
           query
           = "SELECT d FROM Dataset d WHERE d.project = :projectId AND "
                   + "d.shared = true"),
+  @NamedQuery(name = "Dataset.findOwnersOfSharedWithProject",
+          query
+          = "SELECT o FROM Dataset o, Dataset d WHERE d.project = :projectId AND "
+                  + "d.shared = true AND o.inode = d.inode AND o.shared = false"),
   @NamedQuery(name = "Dataset.findByPublicDsId",
     query = "SELECT d FROM Dataset d WHERE d.publicDsId = :publicDsId")})
 public class Dataset implements Serializable {
@@ -25,6 +25,7 @@ import io.hops.hopsworks.common.dao.hdfs.inode.Inode;
 import io.hops.hopsworks.common.dao.project.Project;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import javax.ejb.Stateless;
@@ -36,6 +37,9 @@ import javax.persistence.TypedQuery;
 @Stateless
 public class DatasetFacade extends AbstractFacade<Dataset> {
 
+  // Maximum number of parameters of a single IN query
+  private static final int IN_BATCH_SIZE = 500;
+
   @PersistenceContext(unitName = "kthfsPU")
   private EntityManager em;
 
@@ -86,6 +90,24 @@ public class DatasetFacade extends AbstractFacade<Dataset> {
     return query.getResultList();
   }
 
+  /**
+   * Finds the datasets of all the given inodes, ordered by id, with one query
+   * per IN_BATCH_SIZE inodes.
+   *
+   * @param inodeIds
+   * @return
+   */
+  public List<Dataset> findByInodeIds(Collection<Integer> inodeIds) {
+    List<Integer> ids = new ArrayList<>(inodeIds);
+    List<Dataset> datasets = new ArrayList<>(ids.size());
+    for (int i = 0; i < ids.size(); i += IN_BATCH_SIZE) {
+      TypedQuery<Dataset> query = em.createNamedQuery("Dataset.findByInodeIds", Dataset.class)
+          .setParameter("inodeIds", ids.subList(i, Math.min(i + IN_BATCH_SIZE, ids.size())));
+      datasets.addAll(query.getResultList());
+    }
+    return datasets;
+  }
+
   public Optional<Dataset> findByPublicDsIdProject(String publicDsId, Project project) {
     TypedQuery<Dataset> query = em.createNamedQuery("Dataset.findByPublicDsIdProject", Dataset.class)
       .setParameter("publicDsId", publicDsId)
@@ -164,6 +186,20 @@ public class DatasetFacade extends AbstractFacade<Dataset> {
     return query.getResultList();
   }
 
+  /**
+   * Finds the datasets of a project together with their inodes, with one
+   * query.
+   *
+   * @param project
+   * @return
+   */
+  public List<Dataset> findByProjectFetchInode(Project project) {
+    TypedQuery<Dataset> query = em.createNamedQuery("Dataset.findByProjectFetchInode",
+      Dataset.class).setParameter(
+        "projectId", project);
+    return query.getResultList();
+  }
+
   public List<DataSetDTO> findPublicDatasets() {
     TypedQuery<Dataset> query = em.createNamedQuery("Dataset.findAllPublic",
       Dataset.class);
@@ -204,6 +240,19 @@ public class DatasetFacade extends AbstractFacade<Dataset> {
     return query.getResultList();
   }
 
+  /**
+   * Finds the datasets of the owning projects of all the datasets shared with
+   * the given project, with a single query.
+   *
+   * @param project
+   * @return
+   */
+  public List<Dataset> findOwnersOfSharedWithProject(Project project) {
+    TypedQuery<Dataset> query = em.createNamedQuery("Dataset.findOwnersOfSharedWithProject", Dataset.class)
+        .setParameter("projectId", project);
+    return query.getResultList();
+  }
+
   public void persistDataset(Dataset dataset) {
     em.persist(dataset);
   }
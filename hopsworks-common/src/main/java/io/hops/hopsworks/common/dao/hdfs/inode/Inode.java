@@ -54,9 +54,23 @@ import io.hops.hopsworks.common.dao.metadata.Template;
   @NamedQuery(name = "Inode.findById",
           query
           = "SELECT i FROM Inode i WHERE i.id = :id"),
+  @NamedQuery(name = "Inode.findByIds",
+          query
+          = "SELECT i FROM Inode i WHERE i.id IN :ids"),
   @NamedQuery(name = "Inode.findByParentId",
           query
           = "SELECT i FROM Inode i WHERE i.inodePK.parentId = :parentId"),
+  @NamedQuery(name = "Inode.findByParentIdAfterName",
+          query
+          = "SELECT i FROM Inode i LEFT JOIN FETCH i.hdfsUser WHERE i.inodePK.parentId = :parentId "
+          + "AND i.inodePK.name > :after ORDER BY i.inodePK.name"),
+  @NamedQuery(name = "Inode.findByParentIds",
+          query
+          = "SELECT i FROM Inode i WHERE i.inodePK.parentId IN :parentIds AND i.id > :after ORDER BY i.id"),
+  @NamedQuery(name = "Inode.findSizesByParentIds",
+          query
+          = "SELECT i.id, i.dir, i.size FROM Inode i WHERE i.inodePK.parentId IN :parentIds AND i.id > :after "
+          + "ORDER BY i.id"),
   @NamedQuery(name = "Inode.findByHdfsUser",
           query
           = "SELECT i FROM Inode i WHERE i.hdfsUser = :hdfsUser"),
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.dao.hdfs.inode;
+
+import io.hops.hopsworks.common.dao.hdfs.inode.InodePathCache.CachedInode;
+import io.hops.hopsworks.common.util.Settings;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+
+/**
+ * Bounded LRU cache of inode id to (parent id, name) used by InodeFacade to
+ * climb from an inode to the root without one query per level. Since every
+ * entry only refers to its parent by id, renaming or moving a directory only
+ * invalidates the entry of that directory and not its descendants.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@DependsOn("Settings")
+public class InodeAncestorCache {
+
+  @EJB
+  private Settings settings;
+
+  private int maxSize;
+  private long ttlMs;
+
+  // Guarded by this
+  private LinkedHashMap<Integer, CachedInode> byId;
+
+  private final AtomicLong hits = new AtomicLong(0);
+  private final AtomicLong misses = new AtomicLong(0);
+
+  @PostConstruct
+  public void init() {
+    String ttl = settings.getInodePathCacheTtl();
+    init(settings.getInodeAncestorCacheSize(),
+        Settings.getConfTimeTimeUnit(ttl).toMillis(Settings.getConfTimeValue(ttl)));
+  }
+
+  void init(int maxSize, long ttlMs) {
+    this.maxSize = maxSize;
+    this.ttlMs = ttlMs;
+    byId = new LinkedHashMap<Integer, CachedInode>(1024, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, CachedInode> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  /**
+   * @param inodeId
+   * @return the cached inode or null if it is not cached or has expired
+   */
+  public synchronized CachedInode get(int inodeId) {
+    CachedInode entry = byId.get(inodeId);
+    if (entry != null && System.currentTimeMillis() - entry.getCachedAt() > ttlMs) {
+      byId.remove(inodeId);
+      entry = null;
+    }
+    if (entry == null) {
+      misses.incrementAndGet();
+    } else {
+      hits.incrementAndGet();
+    }
+    return entry;
+  }
+
+  public synchronized CachedInode put(Inode inode) {
+    CachedInode entry = CachedInode.of(inode);
+    if (maxSize > 0) {
+      byId.put(entry.getId(), entry);
+    }
+    return entry;
+  }
+
+  /**
+   * Must be called when the inode is renamed, moved or deleted.
+   *
+   * @param inodeId
+   */
+  public synchronized void invalidate(int inodeId) {
+    byId.remove(inodeId);
+  }
+
+  public synchronized void clear() {
+    byId.clear();
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public synchronized int getSize() {
+    return byId.size();
+  }
+}
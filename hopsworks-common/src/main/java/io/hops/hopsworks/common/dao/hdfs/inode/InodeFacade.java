@@ -21,12 +21,22 @@
 package io.hops.hopsworks.common.dao.hdfs.inode;
 
 import io.hops.common.Pair;
+import io.hops.hopsworks.common.dao.hdfs.inode.InodePathCache.CachedInode;
 import java.io.FileNotFoundException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
@@ -35,6 +45,9 @@ import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
 import io.hops.hopsworks.common.dao.hdfsUser.HdfsUsers;
+import io.hops.hopsworks.common.dao.project.Project;
+import io.hops.hopsworks.common.dao.project.ProjectFacade;
+import io.hops.hopsworks.common.elastic.SearchResultCache;
 import io.hops.hopsworks.common.util.HopsUtils;
 import io.hops.hopsworks.common.util.Settings;
 import io.hops.hopsworks.common.dao.AbstractFacade;
@@ -47,6 +60,19 @@ public class InodeFacade extends AbstractFacade<Inode> {
 
   @PersistenceContext(unitName = "kthfsPU")
   private EntityManager em;
+  @EJB
+  private InodePathCache inodePathCache;
+  @EJB
+  private InodeAncestorCache inodeAncestorCache;
+  @EJB
+  private SearchResultCache searchResultCache;
+  @EJB
+  private ProjectFacade projectFacade;
+
+  // Maximum number of directories whose children are fetched with one query
+  private static final int SUBTREE_BATCH_SIZE = 500;
+  // Maximum number of children returned by one of those queries
+  private static final int SUBTREE_PAGE_SIZE = 5000;
 
   @Override
   protected EntityManager getEntityManager() {
@@ -70,6 +96,28 @@ public class InodeFacade extends AbstractFacade<Inode> {
     return query.getResultList();
   }
 
+  /**
+   * Find a page of the Inodes that have <i>parent</i> as parent, ordered by
+   * name, together with their owners. The next page starts after the name of
+   * the last Inode of this one.
+   * <p/>
+   * @param parent
+   * @param after name of the last child of the previous page, or null for the
+   * first page
+   * @param limit maximum number of children, or a non-positive value for all
+   * @return
+   */
+  public List<Inode> findByParent(Inode parent, String after, int limit) {
+    TypedQuery<Inode> query = em.createNamedQuery("Inode.findByParentIdAfterName",
+            Inode.class);
+    query.setParameter("parentId", parent.getId());
+    query.setParameter("after", after == null ? "" : after);
+    if (limit > 0) {
+      query.setMaxResults(limit);
+    }
+    return query.getResultList();
+  }
+
   /**
    * Find all the Inodes that have <i>userId</i> as userId.
    * <p/>
@@ -94,25 +142,86 @@ public class InodeFacade extends AbstractFacade<Inode> {
   }
 
   /**
-   * Get all the children of <i>parent</i>. Alias of findByParent().
+   * Get all the descendants of <i>parent</i>, parents before their children.
    * <p/>
    * @param parent
    * @param children
-   * @return
    */
-  public void getAllChildren(Inode parent, List<Inode> children) {
-    List<Inode> curr = findByParent(parent);
-    children.addAll(curr);
-
-    for (Inode inode : curr) {
-      if (inode.isDir()) {
-        getAllChildren(inode, children);
+  public void getAllChildren(Inode parent, final List<Inode> children) {
+    walkSubtree(parent, new Consumer<Inode>() {
+      @Override
+      public void accept(Inode inode) {
+        children.add(inode);
       }
+    });
+  }
+
+  /**
+   * Visit all the descendants of <i>root</i> breadth first. The children of
+   * up to SUBTREE_BATCH_SIZE directories are fetched with a single query,
+   * SUBTREE_PAGE_SIZE at a time, so the number of queries depends on the
+   * number of directories divided by the batch size instead of the number of
+   * directories. Only the ids of the directories still to be visited are kept
+   * in memory, and every child is detached once it has been visited.
+   * <p/>
+   * @param root
+   * @param visitor called once for every descendant, parents before their
+   * children
+   */
+  public void walkSubtree(Inode root, Consumer<Inode> visitor) {
+    if (!root.isDir()) {
+      return;
+    }
+    Deque<Integer> pending = new ArrayDeque<>();
+    pending.add(root.getId());
+    while (!pending.isEmpty()) {
+      List<Integer> batch = nextSubtreeBatch(pending);
+      int after = Integer.MIN_VALUE;
+      List<Inode> page;
+      do {
+        page = findByParentIds(batch, after);
+        for (Inode child : page) {
+          visitor.accept(child);
+          if (child.isDir()) {
+            pending.add(child.getId());
+          }
+          after = child.getId();
+          em.detach(child);
+        }
+      } while (page.size() == SUBTREE_PAGE_SIZE);
     }
   }
 
+  private List<Integer> nextSubtreeBatch(Deque<Integer> pending) {
+    List<Integer> batch = new ArrayList<>(Math.min(pending.size(), SUBTREE_BATCH_SIZE));
+    while (!pending.isEmpty() && batch.size() < SUBTREE_BATCH_SIZE) {
+      batch.add(pending.poll());
+    }
+    return batch;
+  }
+
+  private List<Inode> findByParentIds(List<Integer> parentIds, int after) {
+    TypedQuery<Inode> query = em.createNamedQuery("Inode.findByParentIds",
+            Inode.class);
+    query.setParameter("parentIds", parentIds);
+    query.setParameter("after", after);
+    query.setMaxResults(SUBTREE_PAGE_SIZE);
+    return query.getResultList();
+  }
+
+  private List<Object[]> findSizesByParentIds(List<Integer> parentIds, int after) {
+    TypedQuery<Object[]> query = em.createNamedQuery("Inode.findSizesByParentIds",
+            Object[].class);
+    query.setParameter("parentIds", parentIds);
+    query.setParameter("after", after);
+    query.setMaxResults(SUBTREE_PAGE_SIZE);
+    return query.getResultList();
+  }
+
   /**
-   * Return the size of an inode
+   * Return the size of an inode. The subtree is walked like in walkSubtree,
+   * but only the id, type and size of the descendants are read, so no entity
+   * is loaded.
    *
    * @param inode
    * @return
@@ -123,13 +232,24 @@ public class InodeFacade extends AbstractFacade<Inode> {
       return inode.getSize();
     }
     long size = 0;
-    List<Inode> children = getChildren(inode);
-    for (Inode i : children) {
-      if (!i.isDir()) {
-        size += i.getSize();
-      } else {
-        size += getSize(i);
-      }
+    Deque<Integer> pending = new ArrayDeque<>();
+    pending.add(inode.getId());
+    while (!pending.isEmpty()) {
+      List<Integer> batch = nextSubtreeBatch(pending);
+      int after = Integer.MIN_VALUE;
+      List<Object[]> page;
+      do {
+        page = findSizesByParentIds(batch, after);
+        for (Object[] child : page) {
+          int id = (Integer) child[0];
+          if ((Boolean) child[1]) {
+            pending.add(id);
+          } else {
+            size += (Long) child[2];
+          }
+          after = id;
+        }
+      } while (page.size() == SUBTREE_PAGE_SIZE);
     }
     return size;
   }
@@ -212,6 +332,68 @@ public class InodeFacade extends AbstractFacade<Inode> {
       return null;
     }
 
+    if (!inodePathCache.isEnabled()) {
+      return walkPathFromRoot(path, p, null);
+    }
+
+    String[] prefixes = new String[p.length];
+    StringBuilder prefix = new StringBuilder();
+    for (int i = 0; i < p.length; i++) {
+      prefix.append("/").append(p[i]);
+      prefixes[i] = prefix.toString();
+    }
+
+    // Take the longest chain of cached prefixes, each one a child of the previous one
+    List<CachedInode> chain = new ArrayList<>();
+    for (int i = 0; i < p.length; i++) {
+      CachedInode cached = inodePathCache.get(prefixes[i]);
+      if (cached == null || (i > 0 && cached.getParentId() != chain.get(i - 1).getId())) {
+        break;
+      }
+      chain.add(cached);
+      if (!cached.isDir()) {
+        break;
+      }
+    }
+    // A parent directory might have been renamed or moved since the chain was cached, check every
+    // link of it with one query and keep the part that is still valid
+    Inode deepest = null;
+    int depth = -1;
+    if (!chain.isEmpty()) {
+      List<Integer> ids = new ArrayList<>(chain.size());
+      for (CachedInode cached : chain) {
+        ids.add(cached.getId());
+      }
+      Map<Integer, Inode> current = new HashMap<>();
+      for (Inode inode : findByIds(ids)) {
+        current.put(inode.getId(), inode);
+      }
+      for (int i = 0; i < chain.size(); i++) {
+        Inode inode = current.get(chain.get(i).getId());
+        if (inode == null || !inode.getInodePK().equals(chain.get(i).getInodePK())) {
+          inodePathCache.invalidate(prefixes[i]);
+          break;
+        }
+        deepest = inode;
+        depth = i;
+      }
+    }
+    if (depth == p.length - 1) {
+      inodePathCache.recordHit();
+      return deepest;
+    }
+    if (deepest != null && deepest.isDir()) {
+      inodePathCache.recordPartialHit();
+      return walkPath(path, p, prefixes, deepest.getId(), depth + 1);
+    }
+    inodePathCache.recordMiss();
+    return walkPathFromRoot(path, p, prefixes);
+  }
+
+  /**
+   * Resolve the path starting from the root node.
+   */
+  private Inode walkPathFromRoot(String path, String[] p, String[] prefixes) {
     //Get the right root node
     Inode curr = getRootNode(p[0]);
     if (curr == null) {
@@ -219,11 +401,27 @@ public class InodeFacade extends AbstractFacade<Inode> {
               path);
       return null;
     }
+    if (prefixes != null) {
+      inodePathCache.put(prefixes[0], curr);
+    }
+    if (p.length == 1) {
+      return curr;
+    }
+    return walkPath(path, p, prefixes, curr.getId(), 1);
+  }
+
+  /**
+   * Resolve the path components from index <i>from</i> on, starting from the
+   * directory with id <i>parentId</i>. Every resolved prefix is added to the
+   * path cache when <i>prefixes</i> is not null.
+   */
+  private Inode walkPath(String path, String[] p, String[] prefixes, int parentId, int from) {
+    Inode curr = null;
     //Move down the path
-    for (int i = 1; i < p.length; i++) {
+    for (int i = from; i < p.length; i++) {
       int partitionId = HopsUtils.
-              calculatePartitionId(curr.getId(), p[i], i + 1);
-      Inode next = findByInodePK(curr, p[i], partitionId);
+              calculatePartitionId(parentId, p[i], i + 1);
+      Inode next = findByInodePK(new InodePK(parentId, p[i], partitionId));
       if (next == null) {
         logger.log(Level.WARNING,
                 "Could not resolve inode at path: {0} and path-component " + i,
@@ -231,6 +429,10 @@ public class InodeFacade extends AbstractFacade<Inode> {
         return null;
       } else {
         curr = next;
+        parentId = curr.getId();
+        if (prefixes != null) {
+          inodePathCache.put(prefixes[i], curr);
+        }
       }
     }
     return curr;
@@ -299,10 +501,13 @@ public class InodeFacade extends AbstractFacade<Inode> {
    */
   @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
   public Inode findByInodePK(Inode parent, String name, int partitionId) {
+    return findByInodePK(new InodePK(parent.getId(), name, partitionId));
+  }
 
+  private Inode findByInodePK(InodePK inodePK) {
     TypedQuery<Inode> q = em.createNamedQuery("Inode.findByPrimaryKey",
             Inode.class);
-    q.setParameter("inodePk", new InodePK(parent.getId(), name, partitionId));
+    q.setParameter("inodePk", inodePK);
     try {
       return q.getSingleResult();
     } catch (NoResultException e) {
@@ -319,16 +524,9 @@ public class InodeFacade extends AbstractFacade<Inode> {
    * root directory.
    */
   public Inode getProjectRootForInode(Inode i) throws IllegalStateException {
-    if (isProjectRoot(i)) {
-      return i;
-    } else {
-      Inode parent = findParent(i);
-      if (parent == null) {
-        throw new IllegalStateException(
-                "Transversing the path from folder did not encounter project root folder.");
-      }
-      return getProjectRootForInode(parent);
-    }
+    List<CachedInode> chain = getChainToProjectRoot(i);
+    CachedInode projectRoot = chain.get(chain.size() - 1);
+    return projectRoot.getId() == i.getId() ? i : findById(projectRoot.getId());
   }
 
   /**
@@ -338,14 +536,18 @@ public class InodeFacade extends AbstractFacade<Inode> {
    * @return
    */
   public boolean isProjectRoot(Inode i) {
-    Inode parent = findParent(i);
-    if (!parent.getInodePK().getName().equals(
+    return isProjectRoot(i.getInodePK().getParentId(), null);
+  }
+
+  private boolean isProjectRoot(int parentId, Map<Integer, CachedInode> known) {
+    CachedInode parent = getAncestor(parentId, known);
+    if (!parent.getName().equals(
             Settings.DIR_ROOT)) {
       return false;
     } else {
       //A node is the project root if its parent has the name $DIR_ROOT and its 
       //grandparent is the root node
-      return parent.getInodePK().getParentId() == 1;
+      return parent.getParentId() == 1;
     }
   }
 
@@ -371,24 +573,23 @@ public class InodeFacade extends AbstractFacade<Inode> {
    * @return
    */
   public List<NavigationPath> getConstituentsPath(Inode i) {
-    if (isProjectRoot(i)) {
-      List<NavigationPath> p = new ArrayList<>();
-      p.add(new NavigationPath(i.getInodePK().getName(), i.getInodePK().
-              getName() + "/"));
-      return p;
-    } else {
-      List<NavigationPath> p = getConstituentsPath(findParent(i));
+    List<CachedInode> chain = getChainToProjectRoot(i);
+    List<NavigationPath> p = new ArrayList<>(chain.size());
+    CachedInode projectRoot = chain.get(chain.size() - 1);
+    p.add(new NavigationPath(projectRoot.getName(), projectRoot.getName() + "/"));
+    for (int j = chain.size() - 2; j >= 0; j--) {
+      CachedInode c = chain.get(j);
       NavigationPath a;
-      if (i.isDir()) {
-        a = new NavigationPath(i.getInodePK().getName(), p.get(p.size() - 1).
-                getPath() + i.getInodePK().getName() + "/");
+      if (c.isDir()) {
+        a = new NavigationPath(c.getName(), p.get(p.size() - 1).
+                getPath() + c.getName() + "/");
       } else {
-        a = new NavigationPath(i.getInodePK().getName(), p.get(p.size() - 1).
-                getPath() + i.getInodePK().getName());
+        a = new NavigationPath(c.getName(), p.get(p.size() - 1).
+                getPath() + c.getName());
       }
       p.add(a);
-      return p;
     }
+    return p;
   }
 
   /**
@@ -399,11 +600,153 @@ public class InodeFacade extends AbstractFacade<Inode> {
    */
   @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
   public String getPath(Inode i) {
+    return buildPath(CachedInode.of(i), null);
+  }
+
+  /**
+   * Get the paths of many inodes. The ancestors missing from the ancestor
+   * cache are fetched level by level, with one query per level for all the
+   * inodes, instead of one query per level and inode.
+   * <p/>
+   * @param inodes
+   * @return inode id to path
+   */
+  @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+  public Map<Integer, String> getPaths(Collection<Inode> inodes) {
+    Map<Integer, CachedInode> known = new HashMap<>();
+    Set<Integer> missing = new HashSet<>();
+    for (Inode i : inodes) {
+      known.put(i.getId(), CachedInode.of(i));
+    }
+    for (Inode i : inodes) {
+      addIfMissing(i.getInodePK().getParentId(), known, missing);
+    }
+    while (!missing.isEmpty()) {
+      List<Inode> fetched = findByIds(missing);
+      missing = new HashSet<>();
+      for (Inode ancestor : fetched) {
+        known.put(ancestor.getId(), inodeAncestorCache.put(ancestor));
+      }
+      for (Inode ancestor : fetched) {
+        addIfMissing(ancestor.getInodePK().getParentId(), known, missing);
+      }
+    }
+    Map<Integer, String> paths = new HashMap<>(inodes.size());
+    for (Inode i : inodes) {
+      paths.put(i.getId(), buildPath(known.get(i.getId()), known));
+    }
+    return paths;
+  }
+
+  /**
+   * Invalidate the cached path resolution and ancestry of an inode, and the
+   * cached search results of its project. Must be called after the inode is
+   * renamed, moved or deleted.
+   * <p/>
+   * @param i
+   * @param path the path of the inode before the change
+   */
+  public void invalidateCachedInode(Inode i, String path) {
+    inodeAncestorCache.invalidate(i.getId());
+    inodePathCache.invalidate(i.getId());
+    if (path != null) {
+      inodePathCache.invalidate(path);
+    }
+    invalidateSearchResults(i);
+  }
+
+  /**
+   * Drops the cached search results of the project the inode belongs to, or
+   * all of them if the project cannot be resolved. Must be called after
+   * something the indexer picks up from the inode changes.
+   *
+   * @param inode
+   */
+  public void invalidateSearchResults(Inode inode) {
+    try {
+      Pair<Inode, Inode> project_dataset = getProjectAndDatasetRootForInode(inode);
+      Project project = projectFacade.findByInodeId(project_dataset.getL().
+              getInodePK().getParentId(),
+              project_dataset.getL().getInodePK().getName());
+      if (project != null) {
+        searchResultCache.invalidateProject(project);
+        return;
+      }
+    } catch (IllegalStateException e) {
+      logger.log(Level.FINE, "Could not resolve the project of inode "
+              + inode.getId(), e);
+    }
+    searchResultCache.invalidateAll();
+  }
+
+  /**
+   * Invalidate the cached path resolution of a path and of everything below
+   * it, and the ancestry of the inode cached at the path. Must be called after
+   * the path is deleted when its inode is not at hand.
+   * <p/>
+   * @param path absolute path
+   */
+  public void invalidateCachedPath(String path) {
+    CachedInode cached = inodePathCache.get(path);
+    if (cached != null) {
+      inodeAncestorCache.invalidate(cached.getId());
+    }
+    inodePathCache.invalidate(path);
+  }
+
+  private void addIfMissing(int id, Map<Integer, CachedInode> known, Set<Integer> missing) {
+    if (id == HopsUtils.ROOT_INODE_ID || known.containsKey(id)) {
+      return;
+    }
+    CachedInode cached = inodeAncestorCache.get(id);
+    if (cached != null) {
+      known.put(id, cached);
+      addIfMissing(cached.getParentId(), known, missing);
+    } else {
+      missing.add(id);
+    }
+  }
+
+  /**
+   * Find the Inodes with the given ids, with one query.
+   * <p/>
+   * @param ids
+   * @return
+   */
+  public List<Inode> findByIds(Collection<Integer> ids) {
+    if (ids.isEmpty()) {
+      return new ArrayList<>();
+    }
+    TypedQuery<Inode> q = em.createNamedQuery("Inode.findByIds", Inode.class);
+    q.setParameter("ids", ids);
+    return q.getResultList();
+  }
+
+  /**
+   * Get an ancestor from the known inodes, the ancestor cache or the database
+   * in this order.
+   */
+  private CachedInode getAncestor(int id, Map<Integer, CachedInode> known) {
+    CachedInode ancestor = known == null ? null : known.get(id);
+    if (ancestor == null) {
+      ancestor = inodeAncestorCache.get(id);
+    }
+    if (ancestor == null) {
+      Inode inode = findById(id);
+      if (inode == null) {
+        throw new IllegalStateException("Could not find ancestor inode with id " + id);
+      }
+      ancestor = inodeAncestorCache.put(inode);
+    }
+    return ancestor;
+  }
+
+  private String buildPath(CachedInode i, Map<Integer, CachedInode> known) {
     List<String> pathComponents = new ArrayList<>();
-    Inode parent = i;
-    while (parent.getId() != 1) {
-      pathComponents.add(parent.getInodePK().getName());
-      parent = findParent(parent);
+    CachedInode parent = i;
+    while (parent.getId() != HopsUtils.ROOT_INODE_ID) {
+      pathComponents.add(parent.getName());
+      parent = getAncestor(parent.getParentId(), known);
     }
     StringBuilder path = new StringBuilder();
     for (int j = pathComponents.size() - 1; j >= 0; j--) {
@@ -412,6 +755,25 @@ public class InodeFacade extends AbstractFacade<Inode> {
     return path.toString();
   }
 
+  /**
+   * @return the inode and its ancestors up to and including the project root
+   * @throws IllegalStateException when the inode is not under a project root
+   */
+  private List<CachedInode> getChainToProjectRoot(Inode i) throws IllegalStateException {
+    List<CachedInode> chain = new ArrayList<>();
+    CachedInode curr = CachedInode.of(i);
+    chain.add(curr);
+    while (!isProjectRoot(curr.getParentId(), null)) {
+      if (curr.getParentId() == HopsUtils.ROOT_INODE_ID) {
+        throw new IllegalStateException(
+                "Transversing the path from folder did not encounter project root folder.");
+      }
+      curr = getAncestor(curr.getParentId(), null);
+      chain.add(curr);
+    }
+    return chain;
+  }
+
   /**
    * Get the inodes in the directory pointed to by the given absolute HDFS path.
    * <p/>
@@ -443,17 +805,16 @@ public class InodeFacade extends AbstractFacade<Inode> {
    */
   public Pair<Inode, Inode> getProjectAndDatasetRootForInode(Inode i) throws
           IllegalStateException {
-    Inode project = i;
-    Inode dataset = i;
-    do {
-      dataset = project;
-      project = findParent(project);
-      if (project == null) {
-        throw new IllegalStateException(
-                "Transversing the path from folder did not encounter project root folder.");
-      }
-    } while (!isProjectRoot(project));
-    return new Pair<>(project, dataset);
+    List<CachedInode> chain = getChainToProjectRoot(i);
+    if (chain.size() < 2) {
+      // The inode is itself a project root
+      throw new IllegalStateException(
+              "Transversing the path from folder did not encounter project root folder.");
+    }
+    CachedInode dataset = chain.get(chain.size() - 2);
+    CachedInode project = chain.get(chain.size() - 1);
+    return new Pair<>(findById(project.getId()),
+            dataset.getId() == i.getId() ? i : findById(dataset.getId()));
   }
 
   /**
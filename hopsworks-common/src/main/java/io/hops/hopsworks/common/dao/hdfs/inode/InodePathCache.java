@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.dao.hdfs.inode;
+
+import io.hops.hopsworks.common.util.Settings;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+
+/**
+ * Bounded LRU cache of absolute path to inode used by InodeFacade to resume
+ * path resolution from the deepest cached ancestor instead of the root.
+ * Entries expire after a TTL and can be invalidated explicitly by inode id
+ * or path, which also drops every cached path below it. The cache does not
+ * see renames done outside of Hopsworks, so InodeFacade checks the chain of
+ * cached ancestors against the database before using an entry.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@DependsOn("Settings")
+public class InodePathCache {
+
+  @EJB
+  private Settings settings;
+
+  private int maxSize;
+  private long ttlMs;
+
+  // Guarded by this
+  private LinkedHashMap<String, CachedInode> byPath;
+  private final Map<Integer, String> pathById = new HashMap<>();
+  // Cached paths in lexicographic order, to find the paths below a directory
+  private final NavigableSet<String> sortedPaths = new TreeSet<>();
+
+  private final AtomicLong hits = new AtomicLong(0);
+  private final AtomicLong partialHits = new AtomicLong(0);
+  private final AtomicLong misses = new AtomicLong(0);
+
+  @PostConstruct
+  public void init() {
+    String ttl = settings.getInodePathCacheTtl();
+    init(settings.getInodePathCacheSize(), Settings.getConfTimeTimeUnit(ttl).toMillis(Settings.getConfTimeValue(ttl)));
+  }
+
+  void init(int maxSize, long ttlMs) {
+    this.maxSize = maxSize;
+    this.ttlMs = ttlMs;
+    byPath = new LinkedHashMap<String, CachedInode>(1024, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedInode> eldest) {
+        if (size() > maxSize) {
+          pathById.remove(eldest.getValue().id);
+          sortedPaths.remove(eldest.getKey());
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  /**
+   * @param path absolute, normalized path
+   * @return the cached inode at this path or null if it is not cached or has
+   * expired
+   */
+  public synchronized CachedInode get(String path) {
+    CachedInode entry = byPath.get(path);
+    if (entry == null) {
+      return null;
+    }
+    if (System.currentTimeMillis() - entry.cachedAt > ttlMs) {
+      remove(path);
+      return null;
+    }
+    return entry;
+  }
+
+  public synchronized void put(String path, Inode inode) {
+    CachedInode entry = CachedInode.of(inode);
+    CachedInode old = byPath.put(path, entry);
+    sortedPaths.add(path);
+    if (old != null && old.id != entry.id) {
+      pathById.remove(old.id);
+    }
+    String oldPath = pathById.put(entry.id, path);
+    if (oldPath != null && !oldPath.equals(path)) {
+      // The inode has moved, everything below the old path is stale
+      removeSubtree(oldPath);
+      pathById.put(entry.id, path);
+    }
+  }
+
+  /**
+   * Removes the inode with the given id and every cached path below it.
+   *
+   * @param inodeId
+   */
+  public synchronized void invalidate(int inodeId) {
+    String path = pathById.get(inodeId);
+    if (path != null) {
+      removeSubtree(path);
+    }
+  }
+
+  /**
+   * Removes the given path and every cached path below it.
+   *
+   * @param path absolute, normalized path
+   */
+  public synchronized void invalidate(String path) {
+    removeSubtree(path);
+  }
+
+  public synchronized void clear() {
+    byPath.clear();
+    pathById.clear();
+    sortedPaths.clear();
+  }
+
+  void recordHit() {
+    hits.incrementAndGet();
+  }
+
+  void recordPartialHit() {
+    partialHits.incrementAndGet();
+  }
+
+  void recordMiss() {
+    misses.incrementAndGet();
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getPartialHits() {
+    return partialHits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * @return fraction of lookups that found at least one cached ancestor
+   */
+  public double getHitRatio() {
+    long found = hits.get() + partialHits.get();
+    long total = found + misses.get();
+    return total == 0 ? 0 : (double) found / total;
+  }
+
+  public synchronized int getSize() {
+    return byPath.size();
+  }
+
+  private void remove(String path) {
+    CachedInode entry = byPath.remove(path);
+    sortedPaths.remove(path);
+    if (entry != null) {
+      pathById.remove(entry.id);
+    }
+  }
+
+  private void removeSubtree(String path) {
+    remove(path);
+    // Paths below path sort between path + "/" and path + "0", the character after '/'
+    List<String> below = new ArrayList<>(sortedPaths.subSet(path + "/", true, path + "0", false));
+    for (String child : below) {
+      remove(child);
+    }
+  }
+
+  /**
+   * The part of an inode needed to resume a path walk from it.
+   */
+  public static final class CachedInode {
+
+    private final int id;
+    private final int parentId;
+    private final String name;
+    private final int partitionId;
+    private final boolean dir;
+    private final long cachedAt;
+
+    private CachedInode(int id, int parentId, String name, int partitionId, boolean dir, long cachedAt) {
+      this.id = id;
+      this.parentId = parentId;
+      this.name = name;
+      this.partitionId = partitionId;
+      this.dir = dir;
+      this.cachedAt = cachedAt;
+    }
+
+    static CachedInode of(Inode inode) {
+      InodePK pk = inode.getInodePK();
+      return new CachedInode(inode.getId(), pk.getParentId(), pk.getName(), pk.getPartitionId(), inode.isDir(),
+          System.currentTimeMillis());
+    }
+
+    long getCachedAt() {
+      return cachedAt;
+    }
+
+    public int getId() {
+      return id;
+    }
+
+    public int getParentId() {
+      return parentId;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getPartitionId() {
+      return partitionId;
+    }
+
+    public boolean isDir() {
+      return dir;
+    }
+
+    public InodePK getInodePK() {
+      return new InodePK(parentId, name, partitionId);
+    }
+  }
+}
@@ -57,6 +57,8 @@ public final class InodeView {
   private boolean searchable = false;
   // FSM states: STAGING, ZIPPING, UNZIPPING, UPLOADING, CHOWNING, SUCCESS, FAILED
   private String zipState = "NONE";
+  // Percent of the zip or unzip operation done
+  private int zipProgress = 0;
   private String publicId;
 
   public InodeView() {
@@ -341,6 +343,14 @@ public final class InodeView {
   public void setZipState(String zipState) {
     this.zipState = zipState;
   }
+
+  public int getZipProgress() {
+    return zipProgress;
+  }
+
+  public void setZipProgress(int zipProgress) {
+    this.zipProgress = zipProgress;
+  }
     
   public String getPublicId() {
     return publicId;
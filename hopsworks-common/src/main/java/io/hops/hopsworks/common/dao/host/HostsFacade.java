@@ -20,20 +20,36 @@
 
 package io.hops.hopsworks.common.dao.host;
 
+import io.hops.hopsworks.common.dao.kagent.HostServices;
 import io.hops.hopsworks.common.dao.pythonDeps.PythonDepsFacade;
 
 import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
 import javax.persistence.NonUniqueResultException;
 
 @Stateless
 public class HostsFacade implements Serializable {
 
+  private static final String UPDATE_HOST_HEARTBEAT = "UPDATE hopsworks.hosts SET last_heartbeat = ?, "
+      + "load1 = ?, load5 = ?, load15 = ?, num_gpus = ?, disk_used = ?, memory_used = ?, private_ip = ?, "
+      + "disk_capacity = ?, memory_capacity = ?, cores = ? WHERE id = ?";
+  private static final String UPDATE_SERVICE_HEARTBEAT = "UPDATE hopsworks.host_services SET pid = ?, "
+      + "status = ?, startTime = ?, stopTime = ?, uptime = ? WHERE id = ?";
+
   @PersistenceContext(unitName = "kthfsPU")
   private EntityManager em;
 
@@ -118,6 +134,83 @@ public class HostsFacade implements Serializable {
   public Hosts storeHost(Hosts host) {
     return em.merge(host);
   }
+
+  /**
+   * Writes the heartbeat columns of several hosts and of the given services in
+   * one transaction, without touching the columns maintained by the
+   * administrators. The updates are sent as two JDBC batches, one for the hosts
+   * and one for the services. Services without an id are inserted and get their
+   * id assigned.
+   *
+   * @param heartbeats services to write, by host
+   * @return the ids of the hosts that do not exist anymore. Their services are not written.
+   */
+  public Set<Integer> updateHeartbeats(Map<Hosts, List<HostServices>> heartbeats) {
+    Set<Integer> removed = new HashSet<>();
+    if (heartbeats.isEmpty()) {
+      return removed;
+    }
+    Connection connection = em.unwrap(Connection.class);
+    List<HostServices> updates = new ArrayList<>();
+    try {
+      List<Hosts> hosts = new ArrayList<>(heartbeats.keySet());
+      try (PreparedStatement stmt = connection.prepareStatement(UPDATE_HOST_HEARTBEAT)) {
+        for (Hosts host : hosts) {
+          stmt.setObject(1, host.getLastHeartbeat(), Types.BIGINT);
+          stmt.setObject(2, host.getLoad1(), Types.DOUBLE);
+          stmt.setObject(3, host.getLoad5(), Types.DOUBLE);
+          stmt.setObject(4, host.getLoad15(), Types.DOUBLE);
+          stmt.setInt(5, host.getNumGpus());
+          stmt.setObject(6, host.getDiskUsed(), Types.BIGINT);
+          stmt.setObject(7, host.getMemoryUsed(), Types.BIGINT);
+          stmt.setString(8, host.getPrivateIp());
+          stmt.setObject(9, host.getDiskCapacity(), Types.BIGINT);
+          stmt.setObject(10, host.getMemoryCapacity(), Types.BIGINT);
+          stmt.setObject(11, host.getCores(), Types.INTEGER);
+          stmt.setInt(12, host.getId());
+          stmt.addBatch();
+        }
+        int[] counts = stmt.executeBatch();
+        for (int i = 0; i < counts.length; i++) {
+          if (counts[i] == 0) {
+            removed.add(hosts.get(i).getId());
+          }
+        }
+      }
+      for (Map.Entry<Hosts, List<HostServices>> entry : heartbeats.entrySet()) {
+        Integer hostId = entry.getKey().getId();
+        if (removed.contains(hostId)) {
+          continue;
+        }
+        for (HostServices service : entry.getValue()) {
+          if (service.getId() == null) {
+            service.setHost(em.getReference(Hosts.class, hostId));
+            em.persist(service);
+          } else {
+            updates.add(service);
+          }
+        }
+      }
+      if (!updates.isEmpty()) {
+        try (PreparedStatement stmt = connection.prepareStatement(UPDATE_SERVICE_HEARTBEAT)) {
+          for (HostServices service : updates) {
+            stmt.setObject(1, service.getPid(), Types.INTEGER);
+            stmt.setInt(2, service.getStatus().ordinal());
+            stmt.setLong(3, service.getStartTime());
+            stmt.setLong(4, service.getStopTime());
+            stmt.setLong(5, service.getUptime());
+            stmt.setLong(6, service.getId());
+            stmt.addBatch();
+          }
+          stmt.executeBatch();
+        }
+      }
+    } catch (SQLException ex) {
+      throw new PersistenceException("Could not write the heartbeats", ex);
+    }
+    em.flush();
+    return removed;
+  }
   
   public boolean removeByHostname(String hostname) {
     Hosts host = findByHostname(hostname);
@@ -23,6 +23,7 @@ package io.hops.hopsworks.common.dao.jobhistory;
 import io.hops.hopsworks.common.jobs.jobhistory.JobFinalStatus;
 import io.hops.hopsworks.common.jobs.jobhistory.JobState;
 import io.hops.hopsworks.common.jobs.jobhistory.JobType;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -209,6 +210,26 @@ public class ExecutionFacade extends AbstractFacade<Execution> {
     return exec;
   }
 
+  /**
+   * Update the progress, state and final status of the given executions in a
+   * single transaction.
+   * <p/>
+   * @param updates
+   * @return the updated executions, in the same order as the updates
+   */
+  public List<Execution> updateStatuses(List<StatusUpdate> updates) {
+    List<Execution> updated = new ArrayList<>(updates.size());
+    for (StatusUpdate update : updates) {
+      Execution exec = getExecution(update.execution);
+      exec.setProgress(update.progress);
+      exec.setState(update.state);
+      exec.setFinalStatus(update.finalStatus);
+      merge(exec);
+      updated.add(exec);
+    }
+    return updated;
+  }
+
   public Execution updateExecutionStart(Execution exec, long executionStart) {
     exec = getExecution(exec);
     exec.setExecutionStart(executionStart);
@@ -259,6 +280,25 @@ public class ExecutionFacade extends AbstractFacade<Execution> {
     return exec;
   }
   
+  /**
+   * New progress, state and final status of an execution as reported by YARN.
+   */
+  public static class StatusUpdate {
+
+    private final Execution execution;
+    private final float progress;
+    private final JobState state;
+    private final JobFinalStatus finalStatus;
+
+    public StatusUpdate(Execution execution, float progress, JobState state,
+            JobFinalStatus finalStatus) {
+      this.execution = execution;
+      this.progress = progress;
+      this.state = state;
+      this.finalStatus = finalStatus;
+    }
+  }
+
   private Execution getExecution(Execution exec){
     //Find the updated execution object
     Execution obj = em.find(Execution.class, exec.getId());
@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.dao.kagent;
+
+import io.hops.hopsworks.common.dao.host.Hosts;
+import io.hops.hopsworks.common.dao.host.HostsFacade;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Timer;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+/**
+ * Keeps the state reported by the kagent heartbeats in memory and writes the
+ * hosts and services that changed to the database every few seconds, instead
+ * of reading and merging every row on every heartbeat.
+ * <p>
+ * The cached hosts and services are detached copies. They are evicted when a
+ * host is registered or removed, and reloaded periodically so that other
+ * changes done through the admin UI are picked up.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+public class HeartbeatAggregator {
+
+  private static final Logger LOGGER = Logger.getLogger(HeartbeatAggregator.class.getName());
+  // Cached hosts are reloaded from the database after this time
+  private static final long REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+  @EJB
+  private HostsFacade hostsFacade;
+  @EJB
+  private HostServicesFacade hostServicesFacade;
+
+  private final ConcurrentMap<String, HostState> hosts = new ConcurrentHashMap<>();
+
+  /**
+   * Applies a heartbeat to the cached host and to its services, keyed by
+   * {@link #serviceKey(String, String, String)}. New services are added to
+   * the map by the update.
+   */
+  public interface HostUpdate {
+
+    void apply(Hosts host, Map<String, HostServices> services);
+  }
+
+  public static String serviceKey(String cluster, String group, String service) {
+    return cluster + "/" + group + "/" + service;
+  }
+
+  /**
+   * @param hostname
+   * @return the cached host, or null if it does not exist
+   */
+  public Hosts findHost(String hostname) {
+    HostState state = getState(hostname);
+    return state == null ? null : state.host;
+  }
+
+  /**
+   * Runs an update on the cached state of a host. Updates and flushes of the
+   * same host do not run concurrently.
+   *
+   * @param hostname
+   * @param update
+   * @return false if the host does not exist
+   */
+  public boolean update(String hostname, HostUpdate update) {
+    HostState state = getState(hostname);
+    if (state == null) {
+      return false;
+    }
+    synchronized (state) {
+      update.apply(state.host, state.services);
+      state.dirty = true;
+    }
+    return true;
+  }
+
+  /**
+   * Drops the cached state of a host, so that the next heartbeat reloads it.
+   * Called when a host is registered or removed.
+   *
+   * @param hostname
+   */
+  public void evict(String hostname) {
+    hosts.remove(hostname);
+  }
+
+  @Schedule(persistent = false, second = "*/5", minute = "*", hour = "*")
+  public void flush(Timer timer) {
+    List<Snapshot> snapshots = new ArrayList<>();
+    for (HostState state : hosts.values()) {
+      Snapshot snapshot = snapshot(state);
+      if (snapshot != null) {
+        snapshots.add(snapshot);
+      }
+    }
+    if (snapshots.isEmpty()) {
+      return;
+    }
+    Map<Hosts, List<HostServices>> heartbeats = new HashMap<>();
+    for (Snapshot snapshot : snapshots) {
+      heartbeats.put(snapshot.host, new ArrayList<>(snapshot.changed.values()));
+    }
+    Set<Integer> removed;
+    try {
+      removed = hostsFacade.updateHeartbeats(heartbeats);
+    } catch (RuntimeException ex) {
+      LOGGER.log(Level.WARNING, "Could not write the heartbeats of " + snapshots.size() + " hosts", ex);
+      for (Snapshot snapshot : snapshots) {
+        synchronized (snapshot.state) {
+          snapshot.state.dirty = true;
+        }
+      }
+      return;
+    }
+    for (Snapshot snapshot : snapshots) {
+      HostState state = snapshot.state;
+      if (removed.contains(snapshot.host.getId())) {
+        LOGGER.log(Level.INFO, "Host {0} was removed, dropping its heartbeats", state.hostname);
+        hosts.remove(state.hostname, state);
+        continue;
+      }
+      synchronized (state) {
+        for (Map.Entry<String, HostServices> entry : snapshot.changed.entrySet()) {
+          HostServices service = state.services.get(entry.getKey());
+          if (service == null) {
+            continue;
+          }
+          if (service.getId() == null) {
+            service.setId(entry.getValue().getId());
+          }
+          state.written.put(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+  }
+
+  private Snapshot snapshot(HostState state) {
+    synchronized (state) {
+      if (!state.dirty) {
+        return null;
+      }
+      Snapshot snapshot = new Snapshot(state, copyHost(state.host));
+      for (Map.Entry<String, HostServices> entry : state.services.entrySet()) {
+        HostServices service = entry.getValue();
+        if (service.getId() == null || isChanged(service, state.written.get(entry.getKey()))) {
+          snapshot.changed.put(entry.getKey(), copyService(service));
+        }
+      }
+      state.dirty = false;
+      return snapshot;
+    }
+  }
+
+  private HostState getState(String hostname) {
+    HostState state = hosts.get(hostname);
+    long now = System.currentTimeMillis();
+    if (state != null && now - state.loadedAt < REFRESH_INTERVAL) {
+      return state;
+    }
+    Hosts host = hostsFacade.findByHostname(hostname);
+    if (host == null) {
+      if (state != null) {
+        hosts.remove(hostname, state);
+      }
+      return null;
+    }
+    List<HostServices> services = hostServicesFacade.findHostServiceByHostname(hostname);
+    if (state == null) {
+      HostState loaded = new HostState(hostname, host);
+      state = hosts.putIfAbsent(hostname, loaded);
+      if (state == null) {
+        state = loaded;
+      }
+    }
+    synchronized (state) {
+      state.host.setRegistered(host.isRegistered());
+      state.host.setCondaEnabled(host.getCondaEnabled());
+      Set<Long> ids = new HashSet<>();
+      for (HostServices service : services) {
+        ids.add(service.getId());
+        String key = serviceKey(service.getCluster(), service.getGroup(), service.getService());
+        HostServices cached = state.services.get(key);
+        if (cached == null) {
+          state.services.put(key, service);
+          state.written.put(key, copyService(service));
+        } else if (cached.getId() == null) {
+          cached.setId(service.getId());
+        }
+      }
+      // Drop the services removed from the database, but keep the ones not inserted yet
+      Iterator<Map.Entry<String, HostServices>> it = state.services.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<String, HostServices> entry = it.next();
+        if (entry.getValue().getId() != null && !ids.contains(entry.getValue().getId())) {
+          it.remove();
+          state.written.remove(entry.getKey());
+        }
+      }
+      state.loadedAt = now;
+    }
+    return state;
+  }
+
+  // The stop time and the uptime follow from the heartbeat time, they are
+  // only written together with a change of the state of the service
+  private static boolean isChanged(HostServices service, HostServices written) {
+    return written == null
+        || !Objects.equals(service.getPid(), written.getPid())
+        || service.getStatus() != written.getStatus()
+        || service.getStartTime() != written.getStartTime();
+  }
+
+  private static Hosts copyHost(Hosts host) {
+    Hosts copy = new Hosts();
+    copy.setId(host.getId());
+    copy.setHostname(host.getHostname());
+    copy.setLastHeartbeat(host.getLastHeartbeat());
+    copy.setLoad1(host.getLoad1());
+    copy.setLoad5(host.getLoad5());
+    copy.setLoad15(host.getLoad15());
+    copy.setNumGpus(host.getNumGpus());
+    copy.setDiskUsed(host.getDiskUsed());
+    copy.setMemoryUsed(host.getMemoryUsed());
+    copy.setPrivateIp(host.getPrivateIp());
+    copy.setDiskCapacity(host.getDiskCapacity());
+    copy.setMemoryCapacity(host.getMemoryCapacity());
+    if (host.getCores() != null) {
+      copy.setCores(host.getCores());
+    }
+    return copy;
+  }
+
+  private static HostServices copyService(HostServices service) {
+    HostServices copy = new HostServices();
+    copy.setId(service.getId());
+    copy.setCluster(service.getCluster());
+    copy.setGroup(service.getGroup());
+    copy.setService(service.getService());
+    copy.setPid(service.getPid());
+    copy.setStatus(service.getStatus());
+    copy.setStartTime(service.getStartTime());
+    copy.setStopTime(service.getStopTime());
+    copy.setUptime(service.getUptime());
+    copy.setWebport(service.getWebport());
+    return copy;
+  }
+
+  private static final class Snapshot {
+
+    private final HostState state;
+    private final Hosts host;
+    // Copies of the services to write, by cluster/group/service
+    private final Map<String, HostServices> changed = new HashMap<>();
+
+    private Snapshot(HostState state, Hosts host) {
+      this.state = state;
+      this.host = host;
+    }
+  }
+
+  private static final class HostState {
+
+    private final String hostname;
+    private final Hosts host;
+    // Services by cluster/group/service, as last reported by the kagent
+    private final Map<String, HostServices> services = new HashMap<>();
+    // Services as last written to the database
+    private final Map<String, HostServices> written = new HashMap<>();
+    private boolean dirty;
+    private long loadedAt;
+
+    private HostState(String hostname, Hosts host) {
+      this.hostname = hostname;
+      this.host = host;
+    }
+  }
+}
@@ -24,8 +24,13 @@ import io.hops.hopsworks.common.dao.host.Hosts;
 import io.hops.hopsworks.common.dao.host.HostsFacade;
 import io.hops.hopsworks.common.exception.AppException;
 import io.hops.hopsworks.common.util.WebCommunication;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
@@ -278,25 +283,44 @@ public class HostServicesFacade {
       throw new AppException(Response.Status.NOT_FOUND.getStatusCode(),
           "service not found");
     }
+    if (services.size() == 1 && services.get(0).getHost() != null) {
+      HostServices service = services.get(0);
+      Hosts h = service.getHost();
+      return service.toString() + " " + web.serviceOp(operation.value(), h.getPublicOrPrivateIp(),
+          h.getAgentPassword(), service.getCluster(), service.getGroup(), service.getService()) + "\n";
+    }
+    // Send the operation to all hosts first, then wait for the replies
+    List<CompletionStage<String>> replies = new ArrayList<>();
+    for (HostServices service : services) {
+      Hosts h = service.getHost();
+      replies.add(h == null ? null : web.serviceOpAsync(operation.value(), h.getPublicOrPrivateIp(),
+          h.getAgentPassword(), service.getCluster(), service.getGroup(), service.getService()));
+    }
     String result = "";
     boolean success = false;
     int exception = Response.Status.BAD_REQUEST.getStatusCode();
-    for (HostServices service : services) {
-      Hosts h = service.getHost();
-      if (h != null) {
-        String ip = h.getPublicOrPrivateIp();
-        String agentPassword = h.getAgentPassword();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(web.getRequestTimeoutMillis());
+    for (int i = 0; i < services.size(); i++) {
+      HostServices service = services.get(i);
+      CompletionStage<String> reply = replies.get(i);
+      if (reply != null) {
         try {
-          result += service.toString() + " " + web.serviceOp(operation.value(), ip, agentPassword,
-              service.getCluster(), service.getGroup(), service.getService());
+          result += service.toString() + " " + reply.toCompletableFuture()
+              .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
           success = true;
-        } catch (AppException ex) {
-          if (services.size() == 1) {
-            throw ex;
+        } catch (ExecutionException ex) {
+          if (ex.getCause() instanceof AppException) {
+            exception = ((AppException) ex.getCause()).getStatus();
+            result += service.toString() + " " + exception + " " + ex.getCause().getMessage();
           } else {
-            exception = ex.getStatus();
-            result += service.toString() + " " + ex.getStatus() + " " + ex.getMessage();
+            result += service.toString() + " " + ex.getCause().getMessage();
           }
+        } catch (TimeoutException ex) {
+          exception = Response.Status.GATEWAY_TIMEOUT.getStatusCode();
+          result += service.toString() + " " + exception + " timed out";
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), result + "interrupted");
         }
       } else {
         result += service.toString() + " " + "host not found: " + service.getHost();
@@ -753,6 +753,15 @@ public class PythonDepsFacade {
     return query.getResultList();
   }
 
+  @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+  public List<CondaCommands> findByHostAndStatus(Hosts host, PythonDepsFacade.CondaStatus status) {
+    TypedQuery<CondaCommands> query = em.createNamedQuery("CondaCommands.findByHostAndStatus",
+        CondaCommands.class);
+    query.setParameter("host", host);
+    query.setParameter("status", status);
+    return query.getResultList();
+  }
+
   @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
   public List<CondaCommands> findByStatus(PythonDepsFacade.CondaStatus status) {
     TypedQuery<CondaCommands> query = em.createNamedQuery("CondaCommands.findByStatus",
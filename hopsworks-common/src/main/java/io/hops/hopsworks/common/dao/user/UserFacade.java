@@ -20,6 +20,8 @@
 
 package io.hops.hopsworks.common.dao.user;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
@@ -91,6 +93,20 @@ public class UserFacade extends AbstractFacade<Users> {
     }
   }
 
+  /**
+   * Finds all the users with the given usernames with one query.
+   *
+   * @param usernames
+   * @return
+   */
+  public List<Users> findByUsernames(Collection<String> usernames) {
+    if (usernames.isEmpty()) {
+      return new ArrayList<>();
+    }
+    return em.createNamedQuery("Users.findByUsernames", Users.class).setParameter("usernames", usernames).
+        getResultList();
+  }
+
   public List<Users> filterUsersBasedOnProject(String name) {
 
     Query query = em.createNativeQuery(
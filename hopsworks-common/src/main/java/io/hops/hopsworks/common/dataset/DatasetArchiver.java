@@ -0,0 +1,481 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.dataset;
+
+import io.hops.hopsworks.common.exception.AppException;
+import io.hops.hopsworks.common.hdfs.DistributedFileSystemOps;
+import io.hops.hopsworks.common.hdfs.DistributedFsService;
+import io.hops.hopsworks.common.hdfs.TransferBufferPool;
+import io.hops.hopsworks.common.util.Settings;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Timer;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.ws.rs.core.Response;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+
+/**
+ * Zips and unzips files and directories in HDFS without staging them on the
+ * local disk. Archives are streamed from and to HDFS, entries are compressed
+ * and written in parallel. The state of each operation is kept in memory and
+ * shown in the dataset browser.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@DependsOn("Settings")
+public class DatasetArchiver {
+
+  private static final Logger LOGGER = Logger.getLogger(DatasetArchiver.class.getName());
+
+  public static final String ZIP_EXTENSION = ".zip";
+
+  // Entries up to this size are compressed or written in parallel, larger ones are streamed
+  private static final int MAX_PARALLEL_ENTRY = 8 * 1024 * 1024;
+  private static final int MAX_QUEUED_JOBS = 100;
+  // Finished operations whose state has not been read are forgotten after this time
+  private static final long FINISHED_JOB_TTL = TimeUnit.MINUTES.toMillis(10);
+
+  public enum State {
+    NONE,
+    STAGING,
+    ZIPPING,
+    UNZIPPING,
+    SUCCESS,
+    FAILED
+  }
+
+  @EJB
+  private Settings settings;
+  @EJB
+  private DistributedFsService dfs;
+  @EJB
+  private TransferBufferPool bufferPool;
+  @Resource
+  private ManagedThreadFactory threadFactory;
+
+  private ThreadPoolExecutor jobExecutor;
+  private ExecutorService entryExecutor;
+  private int window;
+
+  // HDFS path of the file or directory being zipped or unzipped -- operation
+  private final ConcurrentHashMap<String, Job> jobs = new ConcurrentHashMap<>();
+
+  @PostConstruct
+  public void init() {
+    int maxJobs = Math.max(1, settings.getArchiveMaxJobs());
+    int parallelism = Math.max(1, settings.getArchiveParallelism());
+    jobExecutor = new ThreadPoolExecutor(maxJobs, maxJobs, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(MAX_QUEUED_JOBS), threadFactory);
+    entryExecutor = Executors.newFixedThreadPool(parallelism, threadFactory);
+    // Entries compressed ahead of the one being written, bounds the memory of an operation
+    window = 2 * parallelism;
+  }
+
+  @PreDestroy
+  public void destroy() {
+    jobExecutor.shutdownNow();
+    entryExecutor.shutdownNow();
+  }
+
+  /**
+   * Zips a file or directory into <i>path</i>.zip next to it.
+   *
+   * @param path HDFS path
+   * @param hdfsUser user performing the operation
+   * @throws AppException if an operation on <i>path</i> is in progress or too
+   * many operations are queued
+   */
+  public void zip(String path, String hdfsUser) throws AppException {
+    submit(new Job(path, hdfsUser, true));
+  }
+
+  /**
+   * Extracts a zip archive into the directory containing it.
+   *
+   * @param path HDFS path of the archive
+   * @param hdfsUser user performing the operation
+   * @throws AppException if an operation on <i>path</i> is in progress or too
+   * many operations are queued
+   */
+  public void unzip(String path, String hdfsUser) throws AppException {
+    submit(new Job(path, hdfsUser, false));
+  }
+
+  /**
+   * Returns the state of the operation on <i>path</i>. A finished operation
+   * is reported once and then forgotten.
+   *
+   * @param path
+   * @return
+   */
+  public String getState(String path) {
+    Job job = jobs.get(path);
+    if (job == null) {
+      return State.NONE.name();
+    }
+    State state = job.state;
+    if (state == State.SUCCESS || state == State.FAILED) {
+      jobs.remove(path, job);
+    }
+    return state.name();
+  }
+
+  /**
+   * Returns the progress of the operation on <i>path</i>, in percent of the
+   * bytes to zip or of the archive to unzip. Unlike getState it does not
+   * forget finished operations, so it must be called first.
+   *
+   * @param path
+   * @return 0 if there is no operation on <i>path</i>
+   */
+  public int getProgress(String path) {
+    Job job = jobs.get(path);
+    if (job == null) {
+      return 0;
+    }
+    if (job.state == State.SUCCESS) {
+      return 100;
+    }
+    long total = job.total.get();
+    return total <= 0 ? 0 : (int) Math.min(100, job.done.get() * 100 / total);
+  }
+
+  @Schedule(persistent = false,
+      minute = "*/10",
+      hour = "*")
+  public void removeFinished(Timer timer) {
+    long now = System.currentTimeMillis();
+    Iterator<Job> iter = jobs.values().iterator();
+    while (iter.hasNext()) {
+      Job job = iter.next();
+      if (job.finishedAt > 0 && now - job.finishedAt > FINISHED_JOB_TTL) {
+        iter.remove();
+      }
+    }
+  }
+
+  private void submit(Job job) throws AppException {
+    // Only a finished operation on the same path is replaced
+    Job current = jobs.compute(job.path, (path, running) -> running == null || running.finishedAt > 0 ? job
+        : running);
+    if (current != job) {
+      throw new AppException(Response.Status.BAD_REQUEST.getStatusCode(),
+          "An operation on " + job.path + " is already in progress.");
+    }
+    try {
+      jobExecutor.execute(job);
+    } catch (RejectedExecutionException ex) {
+      jobs.remove(job.path, job);
+      throw new AppException(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(),
+          "Too many zip operations in progress, try again later.");
+    }
+  }
+
+  private void writeZip(DistributedFileSystemOps dfso, Job job) throws IOException {
+    Path src = new Path(job.path);
+    Path dst = new Path(job.path + ZIP_EXTENSION);
+    FileStatus root = dfso.getFileStatus(src);
+    // Entry names are relative to the parent, as with zip -r
+    String parent = src.getParent() == null ? "/" : src.getParent().toUri().getPath();
+    int prefix = parent.endsWith("/") ? parent.length() : parent.length() + 1;
+
+    List<FileStatus> statuses = new ArrayList<>();
+    collect(dfso, root, statuses);
+    for (FileStatus status : statuses) {
+      job.total.addAndGet(status.getLen());
+    }
+
+    Deque<ZipTask> pending = new ArrayDeque<>();
+    byte[] buffer = bufferPool.acquire();
+    boolean done = false;
+    try (FSDataOutputStream fsOut = dfso.create(dst)) {
+      ZipStreamWriter zip = new ZipStreamWriter(new BufferedOutputStream(fsOut, buffer.length),
+          Deflater.DEFAULT_COMPRESSION);
+      for (FileStatus status : statuses) {
+        ZipTask task = new ZipTask(status, status.getPath().toUri().getPath().substring(prefix));
+        if (status.isFile() && status.getLen() <= MAX_PARALLEL_ENTRY) {
+          task.compressed = entryExecutor.submit(compress(dfso, task));
+        }
+        pending.add(task);
+        while (pending.size() > window) {
+          writeEntry(dfso, zip, pending.poll(), buffer, job);
+        }
+      }
+      while (!pending.isEmpty()) {
+        writeEntry(dfso, zip, pending.poll(), buffer, job);
+      }
+      zip.finish();
+      done = true;
+    } finally {
+      bufferPool.release(buffer);
+      if (!done) {
+        for (ZipTask task : pending) {
+          if (task.compressed != null) {
+            task.compressed.cancel(true);
+          }
+        }
+        dfso.rm(dst, false);
+      }
+    }
+  }
+
+  private void collect(DistributedFileSystemOps dfso, FileStatus status, List<FileStatus> statuses)
+      throws IOException {
+    statuses.add(status);
+    if (status.isDirectory()) {
+      for (FileStatus child : dfso.listStatus(status.getPath())) {
+        collect(dfso, child, statuses);
+      }
+    }
+  }
+
+  private Callable<ZipStreamWriter.CompressedEntry> compress(final DistributedFileSystemOps dfso,
+      final ZipTask task) {
+    return new Callable<ZipStreamWriter.CompressedEntry>() {
+      @Override
+      public ZipStreamWriter.CompressedEntry call() throws IOException {
+        byte[] buffer = bufferPool.acquire();
+        try (FSDataInputStream in = dfso.open(task.status.getPath())) {
+          return ZipStreamWriter.compress(task.name, task.status.getModificationTime(), in,
+              Deflater.DEFAULT_COMPRESSION, buffer);
+        } finally {
+          bufferPool.release(buffer);
+        }
+      }
+    };
+  }
+
+  private void writeEntry(DistributedFileSystemOps dfso, ZipStreamWriter zip, ZipTask task, byte[] buffer,
+      Job job) throws IOException {
+    FileStatus status = task.status;
+    if (status.isDirectory()) {
+      zip.putDirectory(task.name, status.getModificationTime());
+    } else if (task.compressed != null) {
+      zip.putCompressed(await(task.compressed));
+    } else {
+      try (FSDataInputStream in = dfso.open(status.getPath())) {
+        zip.putStreamed(task.name, status.getModificationTime(), status.getLen(), in, buffer);
+      }
+    }
+    job.done.addAndGet(status.getLen());
+  }
+
+  private void extractZip(DistributedFileSystemOps dfso, Job job) throws IOException {
+    Path src = new Path(job.path);
+    Path target = src.getParent();
+    job.total.set(dfso.getFileStatus(src).getLen());
+
+    Deque<Future<?>> pending = new ArrayDeque<>();
+    byte[] buffer = bufferPool.acquire();
+    boolean done = false;
+    try (FSDataInputStream in = dfso.open(src);
+        ZipInputStream zin = new ZipInputStream(new BufferedInputStream(in, buffer.length))) {
+      ZipEntry entry;
+      while ((entry = zin.getNextEntry()) != null) {
+        Path dst = resolve(target, entry.getName());
+        if (entry.isDirectory()) {
+          dfso.mkdirs(dst, FsPermission.getDirDefault());
+        } else {
+          // Small entries are written in parallel, larger ones straight from the archive
+          ByteArrayOutputStream head = new ByteArrayOutputStream();
+          boolean complete = copy(zin, head, buffer, MAX_PARALLEL_ENTRY + 1) <= MAX_PARALLEL_ENTRY;
+          if (complete) {
+            pending.add(entryExecutor.submit(write(dfso, dst, head.toByteArray())));
+          } else {
+            try (FSDataOutputStream out = dfso.create(dst)) {
+              head.writeTo(out);
+              copy(zin, out, buffer, Long.MAX_VALUE);
+            }
+          }
+        }
+        while (pending.size() > window) {
+          await(pending.poll());
+        }
+        job.done.set(in.getPos());
+      }
+      while (!pending.isEmpty()) {
+        await(pending.poll());
+      }
+      job.done.set(job.total.get());
+      done = true;
+    } finally {
+      bufferPool.release(buffer);
+      if (!done) {
+        for (Future<?> future : pending) {
+          future.cancel(true);
+        }
+      }
+    }
+  }
+
+  private Callable<Void> write(final DistributedFileSystemOps dfso, final Path dst, final byte[] data) {
+    return new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        try (FSDataOutputStream out = dfso.create(dst)) {
+          out.write(data);
+        }
+        return null;
+      }
+    };
+  }
+
+  /**
+   * Resolves an entry of an archive against the directory it is extracted to,
+   * rejecting entries that would end up outside of it.
+   */
+  private static Path resolve(Path target, String name) throws IOException {
+    if (name.startsWith("/") || name.contains("\\")) {
+      throw new IOException("Invalid entry in archive: " + name);
+    }
+    for (String component : name.split("/")) {
+      if (component.equals("..")) {
+        throw new IOException("Invalid entry in archive: " + name);
+      }
+    }
+    String relative = name.endsWith("/") ? name.substring(0, name.length() - 1) : name;
+    return new Path(target, relative);
+  }
+
+  /**
+   * Copies at most <i>limit</i> bytes.
+   *
+   * @return number of bytes copied
+   */
+  private static long copy(InputStream in, OutputStream out, byte[] buffer, long limit) throws IOException {
+    long copied = 0;
+    while (copied < limit) {
+      int r = in.read(buffer, 0, (int) Math.min(buffer.length, limit - copied));
+      if (r < 0) {
+        break;
+      }
+      out.write(buffer, 0, r);
+      copied += r;
+    }
+    return copied;
+  }
+
+  private static <T> T await(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted", ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      throw new IOException(ex.getCause());
+    }
+  }
+
+  private static class ZipTask {
+
+    private final FileStatus status;
+    private final String name;
+    private Future<ZipStreamWriter.CompressedEntry> compressed;
+
+    ZipTask(FileStatus status, String name) {
+      this.status = status;
+      this.name = name;
+    }
+  }
+
+  private class Job implements Runnable {
+
+    private final String path;
+    private final String hdfsUser;
+    private final boolean zip;
+    private volatile State state = State.STAGING;
+    private volatile long finishedAt = 0;
+    private final AtomicLong done = new AtomicLong(0);
+    private final AtomicLong total = new AtomicLong(0);
+
+    Job(String path, String hdfsUser, boolean zip) {
+      this.path = path;
+      this.hdfsUser = hdfsUser;
+      this.zip = zip;
+    }
+
+    @Override
+    public void run() {
+      state = zip ? State.ZIPPING : State.UNZIPPING;
+      long started = System.currentTimeMillis();
+      DistributedFileSystemOps dfso = null;
+      try {
+        dfso = dfs.getDfsOps(hdfsUser);
+        if (zip) {
+          writeZip(dfso, this);
+        } else {
+          extractZip(dfso, this);
+        }
+        state = State.SUCCESS;
+        long elapsed = Math.max(1, System.currentTimeMillis() - started);
+        LOGGER.log(Level.INFO, "{0} {1}: {2} bytes in {3} ms, {4} bytes/sec", new Object[]{zip ? "Zipped"
+          : "Unzipped", path, done.get(), elapsed, done.get() * 1000 / elapsed});
+      } catch (IOException | RuntimeException ex) {
+        LOGGER.log(Level.WARNING, "Could not " + (zip ? "zip " : "unzip ") + path, ex);
+        state = State.FAILED;
+      } finally {
+        dfs.closeDfsClient(dfso);
+        finishedAt = System.currentTimeMillis();
+      }
+    }
+  }
+}
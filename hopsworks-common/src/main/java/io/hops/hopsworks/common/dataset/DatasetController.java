@@ -27,6 +27,7 @@ import io.hops.hopsworks.common.dao.dataset.Dataset;
 import io.hops.hopsworks.common.dao.dataset.DatasetFacade;
 import io.hops.hopsworks.common.dao.hdfs.inode.Inode;
 import io.hops.hopsworks.common.dao.hdfs.inode.InodeFacade;
+import io.hops.hopsworks.common.dao.hdfs.inode.InodeView;
 import io.hops.hopsworks.common.dao.log.operation.OperationType;
 import io.hops.hopsworks.common.dao.log.operation.OperationsLog;
 import io.hops.hopsworks.common.dao.log.operation.OperationsLogFacade;
@@ -37,8 +38,10 @@ import io.hops.hopsworks.common.dao.metadata.db.TemplateFacade;
 import io.hops.hopsworks.common.dao.project.Project;
 import io.hops.hopsworks.common.dao.project.ProjectFacade;
 import io.hops.hopsworks.common.dao.project.team.ProjectTeamFacade;
+import io.hops.hopsworks.common.dao.user.UserFacade;
 import io.hops.hopsworks.common.dao.user.Users;
 import io.hops.hopsworks.common.dao.user.activity.ActivityFacade;
+import io.hops.hopsworks.common.elastic.SearchResultCache;
 import io.hops.hopsworks.common.exception.AppException;
 import io.hops.hopsworks.common.hdfs.DistributedFileSystemOps;
 import io.hops.hopsworks.common.hdfs.DistributedFsService;
@@ -49,6 +52,12 @@ import io.hops.hopsworks.common.util.Settings;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -96,6 +105,12 @@ public class DatasetController {
   private DistributedFsService dfs;
   @EJB
   private Settings settings;
+  @EJB
+  private UserFacade userFacade;
+  @EJB
+  private DatasetArchiver datasetArchiver;
+  @EJB
+  private SearchResultCache searchResultCache;
 
   /**
    * Create a new DataSet. This is, a folder right under the project home
@@ -186,6 +201,7 @@ public class DatasetController {
           dfso.setMetaEnabled(dsPath);
           Dataset logDs = datasetFacade.findByNameAndProjectId(project, dataSetName);
           logDataset(logDs, OperationType.Add);
+          searchResultCache.invalidateProject(project);
         }
       } catch (Exception e) {
         IOException failed = new IOException("Failed to create dataset at path "
@@ -284,6 +300,7 @@ public class DatasetController {
       InodeBasicMetadata basicMeta = new InodeBasicMetadata(folder, description,
           searchable);
       this.inodeBasicMetaFacade.addBasicMetadata(basicMeta);
+      searchResultCache.invalidateProject(project);
     }
   }
 
@@ -302,6 +319,7 @@ public class DatasetController {
     boolean success;
     success = udfso.rm(location, true);
     if (success) {
+      inodes.invalidateCachedInode(dataset.getInode(), location.toUri().getPath());
       operationsLogFacade.persist(log);
     }
     return success;
@@ -519,6 +537,128 @@ public class DatasetController {
     return path;
   }
 
+  /**
+   * The path of a dataset, given the parent of its inode.
+   *
+   * @param ds
+   * @param parent
+   * @return
+   */
+  private Path getDatasetPath(Dataset ds, Inode parent) {
+    switch (ds.getType()) {
+      case DATASET:
+        // The parent of a dataset is the root of its owning project
+        return new Path(settings.getProjectPath(parent.getInodePK().getName()),
+            ds.getInode().getInodePK().getName());
+      case HIVEDB:
+        return new Path(settings.getHiveWarehouse(),
+            ds.getInode().getInodePK().getName());
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Builds the views of all the datasets of a project. Parents, share counts
+   * and owners are resolved for all the datasets at once, so the number of
+   * queries does not depend on the number of datasets.
+   *
+   * @param project
+   * @return
+   */
+  public List<InodeView> getDatasetViews(Project project) {
+    List<Dataset> datasets = datasetFacade.findByProjectFetchInode(project);
+    Set<Integer> parentIds = new HashSet<>();
+    Set<Integer> inodeIds = new HashSet<>();
+    for (Dataset ds : datasets) {
+      parentIds.add(ds.getInode().getInodePK().getParentId());
+      inodeIds.add(ds.getInodeId());
+    }
+    Map<Integer, Inode> parents = new HashMap<>();
+    for (Inode parent : inodes.findByIds(parentIds)) {
+      parents.put(parent.getId(), parent);
+    }
+    Map<Integer, Integer> occurrences = new HashMap<>();
+    for (Dataset occurrence : datasetFacade.findByInodeIds(inodeIds)) {
+      occurrences.merge(occurrence.getInodeId(), 1, Integer::sum);
+    }
+
+    List<InodeView> views = new ArrayList<>(datasets.size());
+    for (Dataset ds : datasets) {
+      Inode parent = parents.get(ds.getInode().getInodePK().getParentId());
+      if (parent == null) {
+        // The dataset row outlived its inode or the parent directory, it cannot be listed
+        LOGGER.log(Level.WARNING, "Dataset " + ds.getName() + " of project " + project.getName()
+            + " is not listed, the parent " + ds.getInode().getInodePK().getParentId() + " of its inode "
+            + ds.getInodeId() + " does not exist");
+        continue;
+      }
+      InodeView view = new InodeView(parent, ds, getDatasetPath(ds, parent).toString());
+      Integer occurrence = occurrences.get(ds.getInodeId());
+      view.setSharedWith(occurrence == null ? 0 : occurrence - 1); // -1 for ds itself
+      views.add(view);
+    }
+    resolveOwners(views);
+    return views;
+  }
+
+  /**
+   * Builds the views of a page of the children of a directory, ordered by
+   * name. Owners are resolved for the whole page at once, so the number of
+   * queries does not depend on the size of the page.
+   *
+   * @param parent
+   * @param path the full path of the directory
+   * @param shared whether the directory belongs to a dataset shared with the
+   * project
+   * @param after name of the last child of the previous page, or null for the
+   * first page
+   * @param limit maximum number of children, or a non-positive value for all
+   * @return
+   */
+  public List<InodeView> getChildViews(Inode parent, String path, boolean shared, String after,
+      int limit) {
+    List<Inode> children = inodes.findByParent(parent, after, limit);
+    List<InodeView> views = new ArrayList<>(children.size());
+    for (Inode i : children) {
+      String childPath = path + "/" + i.getInodePK().getName();
+      InodeView view = new InodeView(i, childPath);
+      if (shared) {
+        //Get project of project__user the inode is owned by
+        view.setOwningProjectName(hdfsUsersBean.getProjectName(i.getHdfsUser().getName()));
+      }
+      view.setZipProgress(datasetArchiver.getProgress(childPath));
+      view.setZipState(datasetArchiver.getState(childPath));
+      views.add(view);
+    }
+    resolveOwners(views);
+    return views;
+  }
+
+  /**
+   * Replaces the usernames of the owners of the views with their full names
+   * and emails, looking up all the owners with one query.
+   *
+   * @param views
+   */
+  public void resolveOwners(List<InodeView> views) {
+    Set<String> usernames = new HashSet<>();
+    for (InodeView view : views) {
+      usernames.add(view.getOwner());
+    }
+    Map<String, Users> owners = new HashMap<>();
+    for (Users user : userFacade.findByUsernames(usernames)) {
+      owners.put(user.getUsername(), user);
+    }
+    for (InodeView view : views) {
+      Users user = owners.get(view.getOwner());
+      if (user != null) {
+        view.setOwner(user.getFname() + " " + user.getLname());
+        view.setEmail(user.getEmail());
+      }
+    }
+  }
+
   public Project getOwningProject(Dataset ds) {
     // If the dataset is not a shared one, just return the project
     if (!ds.isShared()) {
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.dataset;
+
+import io.hops.hopsworks.common.dao.hdfs.inode.Inode;
+import io.hops.hopsworks.common.dao.hdfs.inode.InodeView;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import org.eclipse.persistence.jaxb.JAXBContextFactory;
+import org.eclipse.persistence.jaxb.MarshallerProperties;
+
+/**
+ * Writes the listing of a directory as a JSON array of inode views, one page
+ * at a time. Each page is read in its own transaction and written out before
+ * the next one is read, so memory use does not depend on the size of the
+ * directory. The views are marshalled with MOXy, the JSON provider of the
+ * REST API, so they have the same mapping as in any other response.
+ */
+public class DirectoryListingOutput implements StreamingOutput {
+
+  private static final Logger LOGGER = Logger.getLogger(DirectoryListingOutput.class.getName());
+
+  // Number of children read from the database at a time
+  private static final int PAGE_SIZE = 1000;
+  private static final JAXBContext CONTEXT = createContext();
+
+  private final DatasetController datasetController;
+  private final Inode parent;
+  private final String path;
+  private final boolean shared;
+  private final String after;
+  private final int limit;
+
+  /**
+   * @param datasetController
+   * @param parent the directory to list
+   * @param path the full path of the directory
+   * @param shared whether the directory belongs to a dataset shared with the
+   * project
+   * @param after name of the child to start after, or null to start from the
+   * first one
+   * @param limit maximum number of children to write, or a non-positive value
+   * for all
+   */
+  public DirectoryListingOutput(DatasetController datasetController, Inode parent, String path,
+      boolean shared, String after, int limit) {
+    this.datasetController = datasetController;
+    this.parent = parent;
+    this.path = path;
+    this.shared = shared;
+    this.after = after;
+    this.limit = limit;
+  }
+
+  private static JAXBContext createContext() {
+    try {
+      return JAXBContextFactory.createContext(new Class<?>[]{InodeView.class}, null);
+    } catch (JAXBException e) {
+      throw new IllegalStateException("Could not create the JAXB context of InodeView", e);
+    }
+  }
+
+  @Override
+  public void write(OutputStream out) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    try {
+      // Same properties as the JSON provider
+      Marshaller marshaller = CONTEXT.createMarshaller();
+      marshaller.setProperty(MarshallerProperties.MEDIA_TYPE, MediaType.APPLICATION_JSON);
+      marshaller.setProperty(MarshallerProperties.JSON_INCLUDE_ROOT, false);
+      writer.write('[');
+      String cursor = after;
+      int written = 0;
+      while (limit <= 0 || written < limit) {
+        int pageSize = limit <= 0 ? PAGE_SIZE : Math.min(PAGE_SIZE, limit - written);
+        List<InodeView> page = datasetController.getChildViews(parent, path, shared, cursor, pageSize);
+        for (InodeView view : page) {
+          if (written > 0) {
+            writer.write(',');
+          }
+          marshaller.marshal(view, writer);
+          written++;
+        }
+        writer.flush();
+        if (page.size() < pageSize) {
+          break;
+        }
+        cursor = page.get(page.size() - 1).getName();
+      }
+      writer.write(']');
+      writer.flush();
+    } catch (JAXBException | RuntimeException e) {
+      // The response is already committed, the client sees a truncated array
+      LOGGER.log(Level.SEVERE, "Could not list directory " + path, e);
+      throw new IOException(e);
+    } finally {
+      writer.close();
+    }
+  }
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.dataset;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes a zip archive to a stream. Unlike java.util.zip.ZipOutputStream it
+ * accepts entries that have already been compressed, so entries can be
+ * deflated in parallel and written in order by a single thread. ZIP64
+ * records are used when an archive or entry exceeds the classic limits.
+ */
+public class ZipStreamWriter implements Closeable {
+
+  private static final int LOCAL_HEADER_SIG = 0x04034b50;
+  private static final int DATA_DESCRIPTOR_SIG = 0x08074b50;
+  private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+  private static final int ZIP64_END_SIG = 0x06064b50;
+  private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+  private static final int END_SIG = 0x06054b50;
+
+  private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+  private static final int FLAG_UTF8 = 0x0800;
+  private static final int VERSION = 20;
+  private static final int VERSION_ZIP64 = 45;
+  private static final long MAX_32 = 0xFFFFFFFFL;
+  private static final int MAX_16 = 0xFFFF;
+  // Streamed entries of this size or more are written with ZIP64 sizes, since
+  // their compressed size is only known once they have been written. Deflate
+  // grows data by less than 0.04% (zlib's deflateBound), so smaller entries
+  // fit in 32 bits. The threshold is kept close to 4GB because readers such
+  // as ZipInputStream before Java 21 only read the 8 byte sizes of a ZIP64
+  // data descriptor for entries past 4GB
+  private static final long STREAMED_ZIP64_THRESHOLD = MAX_32 - (MAX_32 >> 11);
+  private static final int MS_DOS_DIRECTORY = 0x10;
+
+  private final OutputStream out;
+  private final int level;
+  private final long streamedZip64Threshold;
+  private final List<CentralEntry> entries = new ArrayList<>();
+  private long written = 0;
+  private boolean finished = false;
+
+  public ZipStreamWriter(OutputStream out, int level) {
+    this(out, level, STREAMED_ZIP64_THRESHOLD);
+  }
+
+  ZipStreamWriter(OutputStream out, int level, long streamedZip64Threshold) {
+    this.out = out;
+    this.level = level;
+    this.streamedZip64Threshold = streamedZip64Threshold;
+  }
+
+  /**
+   * An entry compressed ahead of being written.
+   */
+  public static class CompressedEntry {
+
+    private final String name;
+    private final long modificationTime;
+    private final long crc;
+    private final long size;
+    private final byte[] data;
+
+    private CompressedEntry(String name, long modificationTime, long crc, long size, byte[] data) {
+      this.name = name;
+      this.modificationTime = modificationTime;
+      this.crc = crc;
+      this.size = size;
+      this.data = data;
+    }
+
+    public long getSize() {
+      return size;
+    }
+  }
+
+  /**
+   * Deflates an entry into memory. Safe to call from any thread.
+   *
+   * @param name entry name
+   * @param modificationTime
+   * @param in entry content, not closed
+   * @param level compression level
+   * @param buffer read buffer
+   * @return
+   * @throws IOException
+   */
+  public static CompressedEntry compress(String name, long modificationTime, InputStream in, int level,
+      byte[] buffer) throws IOException {
+    CRC32 crc = new CRC32();
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    Deflater deflater = new Deflater(level, true);
+    long size = 0;
+    try (DeflaterOutputStream dos = new DeflaterOutputStream(data, deflater, buffer.length)) {
+      int r;
+      while ((r = in.read(buffer)) >= 0) {
+        crc.update(buffer, 0, r);
+        dos.write(buffer, 0, r);
+        size += r;
+      }
+    } finally {
+      deflater.end();
+    }
+    return new CompressedEntry(name, modificationTime, crc.getValue(), size, data.toByteArray());
+  }
+
+  public void putDirectory(String name, long modificationTime) throws IOException {
+    String dirName = name.endsWith("/") ? name : name + "/";
+    CentralEntry entry = new CentralEntry(dirName, modificationTime, ZipEntry.STORED, 0, written);
+    entry.directory = true;
+    writeLocalHeader(entry, false);
+    entries.add(entry);
+  }
+
+  public void putCompressed(CompressedEntry compressed) throws IOException {
+    CentralEntry entry = new CentralEntry(compressed.name, compressed.modificationTime, ZipEntry.DEFLATED, 0,
+        written);
+    entry.crc = compressed.crc;
+    entry.size = compressed.size;
+    entry.compressedSize = compressed.data.length;
+    writeLocalHeader(entry, entry.size >= MAX_32 || entry.compressedSize >= MAX_32);
+    write(compressed.data, 0, compressed.data.length);
+    entries.add(entry);
+  }
+
+  /**
+   * Deflates an entry while writing it, for entries too large to be
+   * compressed in memory.
+   *
+   * @param name
+   * @param modificationTime
+   * @param size expected size of the entry
+   * @param in entry content, not closed
+   * @param buffer read buffer
+   * @throws IOException
+   */
+  public void putStreamed(String name, long modificationTime, long size, InputStream in, byte[] buffer)
+      throws IOException {
+    CentralEntry entry = new CentralEntry(name, modificationTime, ZipEntry.DEFLATED,
+        FLAG_DATA_DESCRIPTOR, written);
+    boolean zip64 = size >= streamedZip64Threshold;
+    writeLocalHeader(entry, zip64);
+
+    CRC32 crc = new CRC32();
+    Deflater deflater = new Deflater(level, true);
+    long start = written;
+    long read = 0;
+    try {
+      OutputStream counting = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+          ZipStreamWriter.this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          ZipStreamWriter.this.write(b, off, len);
+        }
+      };
+      DeflaterOutputStream dos = new DeflaterOutputStream(counting, deflater, buffer.length);
+      int r;
+      while ((r = in.read(buffer)) >= 0) {
+        crc.update(buffer, 0, r);
+        dos.write(buffer, 0, r);
+        read += r;
+      }
+      dos.finish();
+    } finally {
+      deflater.end();
+    }
+    entry.crc = crc.getValue();
+    entry.size = read;
+    entry.compressedSize = written - start;
+    if (!zip64 && (entry.size >= MAX_32 || entry.compressedSize >= MAX_32)) {
+      throw new IOException("Entry " + name + " grew past the expected size of " + size + " bytes");
+    }
+
+    // The descriptor has 8 byte sizes if the local header announced ZIP64, as
+    // the specification requires, or if the entry turned out to need them
+    writeInt(DATA_DESCRIPTOR_SIG);
+    writeInt(entry.crc);
+    if (zip64 || entry.size >= MAX_32 || entry.compressedSize >= MAX_32) {
+      writeLong(entry.compressedSize);
+      writeLong(entry.size);
+    } else {
+      writeInt(entry.compressedSize);
+      writeInt(entry.size);
+    }
+    entries.add(entry);
+  }
+
+  /**
+   * Writes the central directory. The underlying stream is left open.
+   *
+   * @throws IOException
+   */
+  public void finish() throws IOException {
+    if (finished) {
+      return;
+    }
+    finished = true;
+    long cdOffset = written;
+    for (CentralEntry entry : entries) {
+      writeCentralHeader(entry);
+    }
+    long cdSize = written - cdOffset;
+
+    boolean zip64 = entries.size() >= MAX_16 || cdOffset >= MAX_32 || cdSize >= MAX_32;
+    if (zip64) {
+      long zip64EndOffset = written;
+      writeInt(ZIP64_END_SIG);
+      writeLong(44);
+      writeShort(VERSION_ZIP64);
+      writeShort(VERSION_ZIP64);
+      writeInt(0);
+      writeInt(0);
+      writeLong(entries.size());
+      writeLong(entries.size());
+      writeLong(cdSize);
+      writeLong(cdOffset);
+
+      writeInt(ZIP64_LOCATOR_SIG);
+      writeInt(0);
+      writeLong(zip64EndOffset);
+      writeInt(1);
+    }
+    writeInt(END_SIG);
+    writeShort(0);
+    writeShort(0);
+    writeShort(Math.min(entries.size(), MAX_16));
+    writeShort(Math.min(entries.size(), MAX_16));
+    writeInt(Math.min(cdSize, MAX_32));
+    writeInt(Math.min(cdOffset, MAX_32));
+    writeShort(0);
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      finish();
+    } finally {
+      out.close();
+    }
+  }
+
+  private void writeLocalHeader(CentralEntry entry, boolean zip64) throws IOException {
+    byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+    boolean descriptor = (entry.flags & FLAG_DATA_DESCRIPTOR) != 0;
+    entry.zip64 = zip64;
+    writeInt(LOCAL_HEADER_SIG);
+    writeShort(zip64 ? VERSION_ZIP64 : VERSION);
+    writeShort(entry.flags | FLAG_UTF8);
+    writeShort(entry.method);
+    writeInt(entry.dosTime);
+    writeInt(descriptor ? 0 : entry.crc);
+    if (zip64) {
+      writeInt(MAX_32);
+      writeInt(MAX_32);
+    } else {
+      writeInt(descriptor ? 0 : entry.compressedSize);
+      writeInt(descriptor ? 0 : entry.size);
+    }
+    writeShort(name.length);
+    writeShort(zip64 ? 20 : 0);
+    write(name, 0, name.length);
+    if (zip64) {
+      writeShort(0x0001);
+      writeShort(16);
+      writeLong(descriptor ? 0 : entry.size);
+      writeLong(descriptor ? 0 : entry.compressedSize);
+    }
+  }
+
+  private void writeCentralHeader(CentralEntry entry) throws IOException {
+    byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+    boolean sizes64 = entry.size >= MAX_32 || entry.compressedSize >= MAX_32;
+    boolean offset64 = entry.offset >= MAX_32;
+    int extraLength = (sizes64 ? 16 : 0) + (offset64 ? 8 : 0);
+    boolean zip64 = entry.zip64 || extraLength > 0;
+
+    writeInt(CENTRAL_HEADER_SIG);
+    writeShort(VERSION_ZIP64);
+    writeShort(zip64 ? VERSION_ZIP64 : VERSION);
+    writeShort(entry.flags | FLAG_UTF8);
+    writeShort(entry.method);
+    writeInt(entry.dosTime);
+    writeInt(entry.crc);
+    writeInt(sizes64 ? MAX_32 : entry.compressedSize);
+    writeInt(sizes64 ? MAX_32 : entry.size);
+    writeShort(name.length);
+    writeShort(extraLength > 0 ? extraLength + 4 : 0);
+    writeShort(0);
+    writeShort(0);
+    writeShort(0);
+    writeInt(entry.directory ? MS_DOS_DIRECTORY : 0);
+    writeInt(offset64 ? MAX_32 : entry.offset);
+    write(name, 0, name.length);
+    if (extraLength > 0) {
+      writeShort(0x0001);
+      writeShort(extraLength);
+      if (sizes64) {
+        writeLong(entry.size);
+        writeLong(entry.compressedSize);
+      }
+      if (offset64) {
+        writeLong(entry.offset);
+      }
+    }
+  }
+
+  private void write(byte[] b, int off, int len) throws IOException {
+    out.write(b, off, len);
+    written += len;
+  }
+
+  private void writeShort(int v) throws IOException {
+    out.write(v & 0xFF);
+    out.write((v >>> 8) & 0xFF);
+    written += 2;
+  }
+
+  private void writeInt(long v) throws IOException {
+    writeShort((int) (v & 0xFFFF));
+    writeShort((int) ((v >>> 16) & 0xFFFF));
+  }
+
+  private void writeLong(long v) throws IOException {
+    writeInt(v & MAX_32);
+    writeInt(v >>> 32);
+  }
+
+  /**
+   * Converts a time in milliseconds to the MS-DOS date and time used by zip.
+   */
+  private static long toDosTime(long time) {
+    Calendar c = Calendar.getInstance();
+    c.setTimeInMillis(time);
+    int year = c.get(Calendar.YEAR);
+    if (year < 1980) {
+      return (1 << 21) | (1 << 16);
+    }
+    return (long) (year - 1980) << 25 | (c.get(Calendar.MONTH) + 1) << 21 | c.get(Calendar.DAY_OF_MONTH) << 16
+        | c.get(Calendar.HOUR_OF_DAY) << 11 | c.get(Calendar.MINUTE) << 5 | c.get(Calendar.SECOND) >> 1;
+  }
+
+  private static class CentralEntry {
+
+    private final String name;
+    private final long dosTime;
+    private final int method;
+    private final int flags;
+    private final long offset;
+    private long crc;
+    private long size;
+    private long compressedSize;
+    private boolean zip64;
+    private boolean directory;
+
+    CentralEntry(String name, long modificationTime, int method, int flags, long offset) {
+      this.name = name;
+      this.dosTime = toDosTime(modificationTime);
+      this.method = method;
+      this.flags = flags;
+      this.offset = offset;
+    }
+  }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.elastic;
+
+import io.hops.hopsworks.common.constants.message.ResponseMessages;
+import io.hops.hopsworks.common.exception.AppException;
+import io.hops.hopsworks.common.util.Ip;
+import io.hops.hopsworks.common.util.Settings;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Timer;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.Response;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.transport.InetSocketTransportAddress;
+
+/**
+ * Owns the Elasticsearch transport client and the JAX-RS client used for the
+ * REST endpoint, so that searches do not pay connection setup and cluster
+ * sniffing. A timer checks that the transport client is still connected to a
+ * node and rebuilds it otherwise. A replaced client is closed only after a
+ * grace period, so that requests still using it can complete. Query latencies
+ * are recorded per query name.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@DependsOn("Settings")
+public class ElasticClientService {
+
+  private static final Logger LOG = Logger.getLogger(ElasticClientService.class.getName());
+  private static final long RETIRED_CLIENT_GRACE_MS = 60 * 1000;
+
+  @EJB
+  private Settings settings;
+
+  private volatile TransportClient client;
+  // Address the client was built for, it is rebuilt if the variables change
+  private String clientAddress;
+  private javax.ws.rs.client.Client restClient;
+  // Replaced transport clients waiting to be closed, guarded by this
+  private final List<RetiredClient> retiredClients = new ArrayList<>();
+
+  private final Map<String, QueryStats> queryStats = new ConcurrentHashMap<>();
+
+  @PostConstruct
+  public void init() {
+    restClient = ClientBuilder.newClient();
+  }
+
+  @PreDestroy
+  public void preDestroy() {
+    synchronized (this) {
+      retireClient();
+    }
+    closeRetiredClients(Long.MAX_VALUE);
+    restClient.close();
+  }
+
+  /**
+   * @return the shared transport client, it must not be closed by the caller
+   * @throws AppException if the Elasticsearch address is not valid
+   */
+  public Client getClient() throws AppException {
+    TransportClient current = client;
+    if (current != null) {
+      return current;
+    }
+    synchronized (this) {
+      if (client == null) {
+        String address = getElasticIpAsString();
+        int port = settings.getElasticPort();
+        final org.elasticsearch.common.settings.Settings clientSettings
+            = org.elasticsearch.common.settings.Settings.settingsBuilder()
+                .put("client.transport.sniff", true) //being able to retrieve other nodes 
+                .put("cluster.name", "hops").build();
+        client = TransportClient.builder().settings(clientSettings).build()
+            .addTransportAddress(new InetSocketTransportAddress(new InetSocketAddress(address, port)));
+        clientAddress = address + ":" + port;
+        LOG.log(Level.INFO, "Connected Elasticsearch transport client to {0}", clientAddress);
+      }
+      return client;
+    }
+  }
+
+  /**
+   * @return the shared JAX-RS client for the Elasticsearch REST endpoint, it
+   * must not be closed by the caller
+   */
+  public javax.ws.rs.client.Client getRestClient() {
+    return restClient;
+  }
+
+  /**
+   * Replaces the transport client, the next getClient() builds a new one.
+   * Called when a request could not reach any node. The failed client stays
+   * open for the requests still using it.
+   *
+   * @param failed the client the request was sent with, nothing is done if it
+   * has already been replaced
+   */
+  public void reconnect(Client failed) {
+    synchronized (this) {
+      if (failed != client) {
+        return;
+      }
+      LOG.log(Level.WARNING, "Reconnecting Elasticsearch transport client");
+      retireClient();
+    }
+  }
+
+  @Schedule(persistent = false,
+      second = "*/30",
+      minute = "*",
+      hour = "*")
+  public void healthCheck(Timer timer) {
+    closeRetiredClients(System.currentTimeMillis() - RETIRED_CLIENT_GRACE_MS);
+    TransportClient current = client;
+    if (current == null) {
+      return;
+    }
+    String address;
+    try {
+      address = getElasticIpAsString() + ":" + settings.getElasticPort();
+    } catch (AppException ex) {
+      return;
+    }
+    if (!address.equals(clientAddress)) {
+      synchronized (this) {
+        if (current == client) {
+          LOG.log(Level.INFO, "Elasticsearch address changed to {0}", address);
+          retireClient();
+        }
+      }
+    } else if (current.connectedNodes().isEmpty()) {
+      reconnect(current);
+    }
+  }
+
+  // Called holding the lock of this
+  private void retireClient() {
+    if (client != null) {
+      retiredClients.add(new RetiredClient(client, System.currentTimeMillis()));
+      client = null;
+      clientAddress = null;
+    }
+  }
+
+  /**
+   * Closes the clients retired before the given time.
+   */
+  private void closeRetiredClients(long retiredBefore) {
+    List<TransportClient> toClose = new ArrayList<>();
+    synchronized (this) {
+      Iterator<RetiredClient> iter = retiredClients.iterator();
+      while (iter.hasNext()) {
+        RetiredClient retired = iter.next();
+        if (retired.retiredAt <= retiredBefore) {
+          toClose.add(retired.client);
+          iter.remove();
+        }
+      }
+    }
+    for (TransportClient retired : toClose) {
+      try {
+        retired.close();
+      } catch (RuntimeException ex) {
+        LOG.log(Level.WARNING, "Error closing Elasticsearch client", ex);
+      }
+    }
+  }
+
+  private String getElasticIpAsString() throws AppException {
+    String addr = settings.getElasticIp();
+
+    // Validate the ip address pulled from the variables
+    if (Ip.validIp(addr) == false) {
+      try {
+        InetAddress.getByName(addr);
+      } catch (UnknownHostException ex) {
+        LOG.log(Level.SEVERE, ResponseMessages.ELASTIC_SERVER_NOT_AVAILABLE);
+        throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
+            getStatusCode(), ResponseMessages.ELASTIC_SERVER_NOT_AVAILABLE);
+
+      }
+    }
+
+    return addr;
+  }
+
+  /**
+   * Records the time spent executing a query, without the connection setup.
+   *
+   * @param name name of the query, e.g. globalSearch
+   * @param nanos time from sending the request to receiving the response
+   */
+  public void recordQuery(String name, long nanos) {
+    QueryStats stats = queryStats.get(name);
+    if (stats == null) {
+      QueryStats previous = queryStats.putIfAbsent(name, stats = new QueryStats());
+      if (previous != null) {
+        stats = previous;
+      }
+    }
+    stats.record(nanos);
+    LOG.log(Level.FINE, "Elasticsearch {0} took {1} ms", new Object[]{name, TimeUnit.NANOSECONDS.toMillis(nanos)});
+  }
+
+  /**
+   * @return copy of the latency statistics per query name
+   */
+  public Map<String, QueryStats> getQueryStats() {
+    Map<String, QueryStats> copy = new HashMap<>();
+    for (Map.Entry<String, QueryStats> entry : queryStats.entrySet()) {
+      copy.put(entry.getKey(), entry.getValue().copy());
+    }
+    return copy;
+  }
+
+  private static class RetiredClient {
+
+    private final TransportClient client;
+    private final long retiredAt;
+
+    RetiredClient(TransportClient client, long retiredAt) {
+      this.client = client;
+      this.retiredAt = retiredAt;
+    }
+  }
+
+  public static class QueryStats {
+
+    private final AtomicLong count = new AtomicLong(0);
+    private final AtomicLong totalNanos = new AtomicLong(0);
+    private final AtomicLong maxNanos = new AtomicLong(0);
+
+    private void record(long nanos) {
+      count.incrementAndGet();
+      totalNanos.addAndGet(nanos);
+      long max = maxNanos.get();
+      while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+        max = maxNanos.get();
+      }
+    }
+
+    private QueryStats copy() {
+      QueryStats copy = new QueryStats();
+      copy.count.set(count.get());
+      copy.totalNanos.set(totalNanos.get());
+      copy.maxNanos.set(maxNanos.get());
+      return copy;
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+
+    public long getAverageMillis() {
+      long n = count.get();
+      return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.get() / n);
+    }
+
+    public long getMaxMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+  }
+}
@@ -26,39 +26,36 @@ import io.hops.hopsworks.common.dao.dataset.DatasetFacade;
 import io.hops.hopsworks.common.dao.project.Project;
 import io.hops.hopsworks.common.dao.project.ProjectFacade;
 import io.hops.hopsworks.common.exception.AppException;
-import io.hops.hopsworks.common.util.Ip;
 import io.hops.hopsworks.common.util.Settings;
 import java.io.IOException;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.UnknownHostException;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.Response;
 import org.elasticsearch.action.ActionFuture;
-import org.elasticsearch.action.ListenableActionFuture;
-import org.elasticsearch.action.admin.indices.cache.clear.ClearIndicesCacheRequest;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequestBuilder;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse;
 import org.elasticsearch.action.admin.indices.exists.types.TypesExistsRequest;
 import org.elasticsearch.action.admin.indices.exists.types.TypesExistsResponse;
 import org.elasticsearch.action.admin.indices.open.OpenIndexRequest;
+import org.elasticsearch.action.search.MultiSearchRequestBuilder;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.AdminClient;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.IndicesAdminClient;
-import org.elasticsearch.client.transport.TransportClient;
-import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.client.transport.NoNodeAvailableException;
 import org.elasticsearch.index.query.QueryBuilder;
 import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
 import static org.elasticsearch.index.query.QueryBuilders.hasParentQuery;
@@ -86,10 +83,32 @@ public class ElasticController {
   private ProjectFacade projectFacade;
   @EJB
   private DatasetFacade datasetFacade;
+  @EJB
+  private ElasticClientService elasticClientService;
+  @EJB
+  private PublicDatasetCache publicDatasetCache;
+  @EJB
+  private SearchResultCache searchResultCache;
 
   private static final Logger LOG = Logger.getLogger(ElasticController.class.getName());
 
-  public List<ElasticHit> globalSearch(String searchTerm) throws AppException {
+  public List<ElasticHit> globalSearch(final String searchTerm) throws AppException {
+    return searchResultCache.get(SearchResultCache.Scope.GLOBAL, null, null, searchTerm,
+        () -> executeGlobalSearch(searchTerm));
+  }
+
+  public List<ElasticHit> projectSearch(final Integer projectId, final String searchTerm) throws AppException {
+    return searchResultCache.get(SearchResultCache.Scope.PROJECT, projectId, null, searchTerm,
+        () -> executeProjectSearch(projectId, searchTerm));
+  }
+
+  public List<ElasticHit> datasetSearch(final Integer projectId, final String datasetName, final String searchTerm)
+      throws AppException {
+    return searchResultCache.get(SearchResultCache.Scope.DATASET, projectId, datasetName, searchTerm,
+        () -> executeDatasetSearch(projectId, datasetName, searchTerm));
+  }
+
+  private List<ElasticHit> executeGlobalSearch(String searchTerm) throws AppException {
     //some necessary client settings
     Client client = getClient();
 
@@ -116,40 +135,41 @@ public class ElasticController {
     srb = srb.setQuery(this.globalSearchQuery(searchTerm.toLowerCase()));
     srb = srb.addHighlightedField("name");
     LOG.log(Level.INFO, "Global search Elastic query is: {0}", srb.toString());
-    ListenableActionFuture<SearchResponse> futureResponse = srb.execute();
-    SearchResponse response = futureResponse.actionGet();
+    SearchResponse response = executeSearch(client, "globalSearch", srb);
 
     if (response.status().getStatus() == 200) {
       //construct the response
-      List<ElasticHit> elasticHits = new LinkedList<>();
-      if (response.getHits().getHits().length > 0) {
-        SearchHit[] hits = response.getHits().getHits();
+      SearchHit[] hits = response.getHits().getHits();
+      List<ElasticHit> elasticHits = new ArrayList<>(hits.length);
+      if (hits.length > 0) {
+        //resolve the public ids of all the hits at once
+        List<Integer> inodeIds = new ArrayList<>(hits.length);
+        for (SearchHit hit : hits) {
+          inodeIds.add(Integer.parseInt(hit.getId()));
+        }
+        Map<Integer, String> publicIds = publicDatasetCache.getPublicIds(inodeIds);
 
         for (SearchHit hit : hits) {
           ElasticHit eHit = new ElasticHit(hit);
           eHit.setLocalDataset(true);
-          int inode_id = Integer.parseInt(hit.getId());
-          List<Dataset> dsl = datasetFacade.findByInodeId(inode_id);
-          if (!dsl.isEmpty() && dsl.get(0).isPublicDs()) {
-            Dataset ds = dsl.get(0);
-            eHit.setPublicId(ds.getPublicDsId());
+          String publicId = publicIds.get(Integer.parseInt(hit.getId()));
+          if (publicId != null) {
+            eHit.setPublicId(publicId);
           }
           elasticHits.add(eHit);
         }
       }
 
-      this.clientShutdown(client);
       return elasticHits;
     } else {
       LOG.log(Level.WARNING, "Elasticsearch error code: {0}", response.status().getStatus());
       //something went wrong so throw an exception
-      this.clientShutdown(client);
       throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
           getStatusCode(), ResponseMessages.ELASTIC_SERVER_NOT_FOUND);
     }
   }
   
-  public List<ElasticHit> projectSearch(Integer projectId, String searchTerm) throws AppException {
+  private List<ElasticHit> executeProjectSearch(Integer projectId, String searchTerm) throws AppException {
     Client client = getClient();
     //check if the index are up and running
     if (!this.indexExists(client, Settings.META_INDEX)) {
@@ -169,14 +189,13 @@ public class ElasticController {
 
     LOG.log(Level.INFO, "Project Elastic query is: {0} {1}", new String[]{
       String.valueOf(projectId), srb.toString()});
-    ListenableActionFuture<SearchResponse> futureResponse = srb.execute();
-    SearchResponse response = futureResponse.actionGet();
+    SearchResponse response = executeSearch(client, "projectSearch", srb);
 
     if (response.status().getStatus() == 200) {
       //construct the response
-      List<ElasticHit> elasticHits = new LinkedList<>();
-      if (response.getHits().getHits().length > 0) {
-        SearchHit[] hits = response.getHits().getHits();
+      SearchHit[] hits = response.getHits().getHits();
+      List<ElasticHit> elasticHits = new ArrayList<>(hits.length);
+      if (hits.length > 0) {
         ElasticHit eHit;
         for (SearchHit hit : hits) {
           eHit = new ElasticHit(hit);
@@ -186,16 +205,15 @@ public class ElasticController {
       }
 
       projectSearchInSharedDatasets(client, projectId, searchTerm, elasticHits);
-      this.clientShutdown(client);
       return elasticHits;
     }
 
-    this.clientShutdown(client);
     throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
         getStatusCode(), ResponseMessages.ELASTIC_SERVER_NOT_FOUND);
   }
 
-  public List<ElasticHit> datasetSearch(Integer projectId, String datasetName, String searchTerm) throws AppException {
+  private List<ElasticHit> executeDatasetSearch(Integer projectId, String datasetName, String searchTerm)
+      throws AppException {
     Client client = getClient();
     //check if the indices are up and running
     if (!this.indexExists(client, Settings.META_INDEX)) {
@@ -231,14 +249,13 @@ public class ElasticController {
     srb = srb.setRouting(String.valueOf(project.getId()));
 
     LOG.log(Level.INFO, "Dataset Elastic query is: {0}", srb.toString());
-    ListenableActionFuture<SearchResponse> futureResponse = srb.execute();
-    SearchResponse response = futureResponse.actionGet();
+    SearchResponse response = executeSearch(client, "datasetSearch", srb);
 
     if (response.status().getStatus() == 200) {
       //construct the response
-      List<ElasticHit> elasticHits = new LinkedList<>();
-      if (response.getHits().getHits().length > 0) {
-        SearchHit[] hits = response.getHits().getHits();
+      SearchHit[] hits = response.getHits().getHits();
+      List<ElasticHit> elasticHits = new ArrayList<>(hits.length);
+      if (hits.length > 0) {
         ElasticHit eHit;
         for (SearchHit hit : hits) {
           eHit = new ElasticHit(hit);
@@ -247,10 +264,8 @@ public class ElasticController {
         }
       }
 
-      this.clientShutdown(client);
       return elasticHits;
     }
-    this.clientShutdown(client);
     throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
         getStatusCode(), ResponseMessages.ELASTIC_SERVER_NOT_FOUND);
   }
@@ -274,64 +289,83 @@ public class ElasticController {
   }
 
   private Client getClient() throws AppException {
-    final org.elasticsearch.common.settings.Settings settings
-        = org.elasticsearch.common.settings.Settings.settingsBuilder()
-            .put("client.transport.sniff", true) //being able to retrieve other nodes 
-            .put("cluster.name", "hops").build();
-
-    return TransportClient.builder().settings(settings).build()
-        .addTransportAddress(new InetSocketTransportAddress(
-            new InetSocketAddress(getElasticIpAsString(),
-                this.settings.getElasticPort())));
+    return elasticClientService.getClient();
   }
 
+  /**
+   * Executes the request on the shared client and records its latency. If no
+   * node could be reached the client is rebuilt for the next request.
+   */
+  private <R extends ActionResponse> R executeSearch(Client client, String name,
+      ActionRequestBuilder<?, R, ?> builder) {
+    long start = System.nanoTime();
+    try {
+      return builder.execute().actionGet();
+    } catch (NoNodeAvailableException ex) {
+      elasticClientService.reconnect(client);
+      throw ex;
+    } finally {
+      elasticClientService.recordQuery(name, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Searches the datasets shared with the project. The owning datasets are
+   * resolved with a single query and both queries of every shared dataset go
+   * to Elasticsearch in one multi-search request. Hits already in elasticHits
+   * are not added again.
+   */
   private void projectSearchInSharedDatasets(Client client, Integer projectId,
       String searchTerm, List<ElasticHit> elasticHits) {
     Project project = projectFacade.find(projectId);
-    Collection<Dataset> datasets = project.getDatasetCollection();
-    for (Dataset ds : datasets) {
-      if (ds.isShared()) {
-        List<Dataset> dss = datasetFacade.findByInode(ds.getInode());
-        for (Dataset sh : dss) {
-          if (!sh.isShared()) {
-            int datasetId = ds.getInodeId();
-            String ownerProjectId = String.valueOf(sh.getProject().getId());
-
-            executeProjectSearchQuery(client, searchSpecificDataset(datasetId,
-                searchTerm), Settings.META_DATASET_TYPE, ownerProjectId,
-                elasticHits);
-
-            executeProjectSearchQuery(client, datasetSearchQuery(datasetId,
-                searchTerm), Settings.META_INODE_TYPE, ownerProjectId,
-                elasticHits);
+    List<Dataset> owners = datasetFacade.findOwnersOfSharedWithProject(project);
+    if (owners.isEmpty()) {
+      return;
+    }
+    MultiSearchRequestBuilder msrb = client.prepareMultiSearch();
+    for (Dataset owner : owners) {
+      int datasetId = owner.getInodeId();
+      String ownerProjectId = String.valueOf(owner.getProject().getId());
+
+      msrb.add(sharedDatasetSearchRequest(client, searchSpecificDataset(datasetId, searchTerm),
+          Settings.META_DATASET_TYPE, ownerProjectId));
+      msrb.add(sharedDatasetSearchRequest(client, datasetSearchQuery(datasetId, searchTerm),
+          Settings.META_INODE_TYPE, ownerProjectId));
+    }
+    LOG.log(Level.INFO, "Project Elastic multi-search in {0} Shared Datasets", owners.size());
+
+    MultiSearchResponse responses = executeSearch(client, "sharedDatasetSearch", msrb);
 
+    Set<String> seen = new HashSet<>();
+    for (ElasticHit hit : elasticHits) {
+      seen.add(hit.getType() + "/" + hit.getId());
+    }
+    for (MultiSearchResponse.Item item : responses.getResponses()) {
+      if (item.isFailure()) {
+        LOG.log(Level.WARNING, "Shared Dataset query failed: {0}", item.getFailureMessage());
+        continue;
+      }
+      SearchResponse response = item.getResponse();
+      if (response.status().getStatus() == 200) {
+        for (SearchHit hit : response.getHits().getHits()) {
+          if (seen.add(hit.getType() + "/" + hit.getId())) {
+            elasticHits.add(new ElasticHit(hit));
           }
         }
       }
     }
   }
 
-  private void executeProjectSearchQuery(Client client, QueryBuilder query, String type,
-      String routing, List<ElasticHit> elasticHits) {
+  private SearchRequestBuilder sharedDatasetSearchRequest(Client client, QueryBuilder query, String type,
+      String routing) {
     SearchRequestBuilder srb = client.prepareSearch(Settings.META_INDEX);
     srb = srb.setTypes(type);
     srb = srb.setQuery(query);
     srb = srb.addHighlightedField("name");
     srb = srb.setRouting(routing);
-
-    LOG.log(Level.INFO, "Project Elastic query in Shared Dataset [{0}] is: {1} {2}", new String[]{
+    LOG.log(Level.FINE, "Project Elastic query in Shared Dataset [{0}] is: {1} {2}", new String[]{
       type, routing, srb.toString()});
-    ListenableActionFuture<SearchResponse> futureResponse = srb.execute();
-    SearchResponse response = futureResponse.actionGet();
-
-    if (response.status().getStatus() == 200) {
-      if (response.getHits().getHits().length > 0) {
-        SearchHit[] hits = response.getHits().getHits();
-        for (SearchHit hit : hits) {
-          elasticHits.add(new ElasticHit(hit));
-        }
-      }
-    }
+    return srb;
   }
 
   private QueryBuilder searchSpecificDataset(int datasetId, String searchTerm) {
@@ -541,19 +575,6 @@ public class ElasticController {
     return response.isExists();
   }
 
-  /**
-   * Shuts down the client and clears the cache
-   * <p/>
-   * @param client
-   */
-  private void clientShutdown(Client client) {
-
-    client.admin().indices().clearCache(new ClearIndicesCacheRequest(
-        Settings.META_INDEX));
-
-    client.close();
-  }
-
   /**
    * Boots up a previously closed index
    */
@@ -563,24 +584,6 @@ public class ElasticController {
         Settings.META_INDEX));
   }
 
-  private String getElasticIpAsString() throws AppException {
-    String addr = settings.getElasticIp();
-
-    // Validate the ip address pulled from the variables
-    if (Ip.validIp(addr) == false) {
-      try {
-        InetAddress.getByName(addr);
-      } catch (UnknownHostException ex) {
-        LOG.log(Level.SEVERE, ResponseMessages.ELASTIC_SERVER_NOT_AVAILABLE);
-        throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.
-            getStatusCode(), ResponseMessages.ELASTIC_SERVER_NOT_AVAILABLE);
-
-      }
-    }
-
-    return addr;
-  }
-
   /**
    *
    * @param params
@@ -607,7 +610,7 @@ public class ElasticController {
    */
   public JSONObject sendElasticsearchReq(String templateUrl, Map<String, String> params, boolean async) {
     if (async) {
-      ClientBuilder.newClient()
+      elasticClientService.getRestClient()
           .target(templateUrl)
           .request()
           .async()
@@ -615,13 +618,13 @@ public class ElasticController {
       return null;
     } else {
       if (params.containsKey("data")) {
-        return new JSONObject(ClientBuilder.newClient()
+        return new JSONObject(elasticClientService.getRestClient()
             .target(templateUrl)
             .request()
             .method(params.get("op"), Entity.json(params.get("data")))
             .readEntity(String.class));
       } else {
-        return new JSONObject(ClientBuilder.newClient()
+        return new JSONObject(elasticClientService.getRestClient()
             .target(templateUrl)
             .request()
             .method(params.get("op"))
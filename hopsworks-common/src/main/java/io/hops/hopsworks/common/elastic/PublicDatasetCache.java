@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.elastic;
+
+import io.hops.hopsworks.common.dao.dataset.Dataset;
+import io.hops.hopsworks.common.dao.dataset.DatasetFacade;
+import io.hops.hopsworks.common.util.Settings;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+
+/**
+ * Short lived cache of the public dataset id of inodes, used to enrich search
+ * hits. Inodes missing from the cache are resolved with a single query.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@DependsOn("Settings")
+public class PublicDatasetCache {
+
+  @EJB
+  private Settings settings;
+  @EJB
+  private DatasetFacade datasetFacade;
+
+  private int maxSize;
+  private long ttlMs;
+
+  // Access ordered so that the least recently used entries are evicted first
+  private final Map<Integer, Entry> cache = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+      return size() > maxSize;
+    }
+  };
+
+  @PostConstruct
+  public void init() {
+    maxSize = settings.getElasticPublicDatasetCacheSize();
+    String ttlRaw = settings.getElasticPublicDatasetCacheTTL();
+    ttlMs = Settings.getConfTimeTimeUnit(ttlRaw).toMillis(Settings.getConfTimeValue(ttlRaw));
+  }
+
+  /**
+   * Returns the public dataset id of the given inodes.
+   *
+   * @param inodeIds
+   * @return inode id to public dataset id, inodes that are not public datasets
+   * are not in the map
+   */
+  public Map<Integer, String> getPublicIds(Collection<Integer> inodeIds) {
+    Map<Integer, String> publicIds = new HashMap<>();
+    List<Integer> missing = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    synchronized (cache) {
+      for (Integer inodeId : inodeIds) {
+        Entry entry = cache.get(inodeId);
+        if (entry == null || now - entry.cachedAt > ttlMs) {
+          missing.add(inodeId);
+        } else if (entry.publicId != null) {
+          publicIds.put(inodeId, entry.publicId);
+        }
+      }
+    }
+    if (missing.isEmpty()) {
+      return publicIds;
+    }
+
+    // Like findByInodeId(..).get(0), the first dataset of an inode decides
+    Map<Integer, Dataset> first = new HashMap<>();
+    for (Dataset ds : datasetFacade.findByInodeIds(missing)) {
+      if (!first.containsKey(ds.getInodeId())) {
+        first.put(ds.getInodeId(), ds);
+      }
+    }
+    synchronized (cache) {
+      for (Integer inodeId : missing) {
+        Dataset ds = first.get(inodeId);
+        String publicId = ds != null && ds.isPublicDs() ? ds.getPublicDsId() : null;
+        cache.put(inodeId, new Entry(publicId, now));
+        if (publicId != null) {
+          publicIds.put(inodeId, publicId);
+        }
+      }
+    }
+    return publicIds;
+  }
+
+  private static class Entry {
+
+    private final String publicId;
+    private final long cachedAt;
+
+    Entry(String publicId, long cachedAt) {
+      this.publicId = publicId;
+      this.cachedAt = cachedAt;
+    }
+  }
+}
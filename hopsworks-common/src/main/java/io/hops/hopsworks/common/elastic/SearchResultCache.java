@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.elastic;
+
+import io.hops.hopsworks.common.dao.project.Project;
+import io.hops.hopsworks.common.exception.AppException;
+import io.hops.hopsworks.common.util.Settings;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ws.rs.core.Response;
+
+/**
+ * Short lived cache of search results. The UI searches on every keystroke, so
+ * identical searches are served from the cache for a few seconds and
+ * concurrent identical searches share a single Elasticsearch query.
+ * Entries of a project are invalidated when its metadata is written, when a
+ * dataset or directory is created through DatasetController and when an
+ * inode is renamed, moved or deleted through InodeFacade.invalidateCachedInode.
+ * Other changes the indexer picks up, such as uploaded files, are only seen
+ * once the entries expire, after elastic_search_cache_ttl.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@DependsOn("Settings")
+public class SearchResultCache {
+
+  private static final Logger LOG = Logger.getLogger(SearchResultCache.class.getName());
+
+  public enum Scope {
+    GLOBAL,
+    PROJECT,
+    DATASET
+  }
+
+  /**
+   * A search whose result can be cached.
+   */
+  public interface Search {
+
+    List<ElasticHit> execute() throws AppException;
+  }
+
+  @EJB
+  private Settings settings;
+
+  private volatile int maxSize;
+  private long ttlMs;
+
+  // Access ordered so that the least recently used entries are evicted first
+  private final Map<Key, Entry> cache = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+      return size() > maxSize;
+    }
+  };
+  private final ConcurrentHashMap<Key, CompletableFuture<List<ElasticHit>>> inFlight = new ConcurrentHashMap<>();
+  // Bumped on every invalidation so that searches started before it are not cached
+  private final AtomicLong generation = new AtomicLong(0);
+
+  private final AtomicLong hits = new AtomicLong(0);
+  private final AtomicLong misses = new AtomicLong(0);
+  private final AtomicLong coalesced = new AtomicLong(0);
+
+  @PostConstruct
+  public void init() {
+    maxSize = settings.getElasticSearchCacheSize();
+    String ttlRaw = settings.getElasticSearchCacheTTL();
+    ttlMs = Settings.getConfTimeTimeUnit(ttlRaw).toMillis(Settings.getConfTimeValue(ttlRaw));
+  }
+
+  /**
+   * Returns the cached result of a search, or executes it. If the same search
+   * is already being executed the result of that execution is returned.
+   *
+   * @param scope
+   * @param projectId project the search is run from, null for global searches
+   * @param dataset dataset the search is restricted to, null if none
+   * @param term search term
+   * @param search executes the search on a cache miss
+   * @return unmodifiable list of hits
+   * @throws AppException
+   */
+  public List<ElasticHit> get(Scope scope, Integer projectId, String dataset, String term, Search search)
+      throws AppException {
+    if (maxSize <= 0) {
+      return search.execute();
+    }
+    // Keyed on the exact term, the queries do not all normalize it the same way
+    Key key = new Key(scope, projectId, dataset, term);
+    synchronized (cache) {
+      Entry entry = cache.get(key);
+      if (entry != null) {
+        if (System.currentTimeMillis() - entry.cachedAt <= ttlMs) {
+          hits.incrementAndGet();
+          return entry.hits;
+        }
+        cache.remove(key);
+      }
+    }
+
+    CompletableFuture<List<ElasticHit>> flight = new CompletableFuture<>();
+    CompletableFuture<List<ElasticHit>> running = inFlight.putIfAbsent(key, flight);
+    if (running != null) {
+      coalesced.incrementAndGet();
+      return await(running);
+    }
+    misses.incrementAndGet();
+    long started = generation.get();
+    try {
+      List<ElasticHit> result = Collections.unmodifiableList(search.execute());
+      synchronized (cache) {
+        if (generation.get() == started) {
+          cache.put(key, new Entry(result, System.currentTimeMillis()));
+        }
+      }
+      flight.complete(result);
+      return result;
+    } catch (Throwable t) {
+      flight.completeExceptionally(t);
+      throw t;
+    } finally {
+      inFlight.remove(key, flight);
+    }
+  }
+
+  /**
+   * Drops the cached results that may contain metadata of the project: its
+   * project and dataset searches, searches in datasets it shares and all
+   * global searches. Searches of other projects in datasets shared with them
+   * are only refreshed when they expire.
+   *
+   * @param project
+   */
+  public void invalidateProject(Project project) {
+    String sharedPrefix = project.getName() + Settings.SHARED_FILE_SEPARATOR;
+    generation.incrementAndGet();
+    synchronized (cache) {
+      Iterator<Key> it = cache.keySet().iterator();
+      while (it.hasNext()) {
+        if (it.next().affectedBy(project.getId(), sharedPrefix)) {
+          it.remove();
+        }
+      }
+    }
+    for (Key key : inFlight.keySet()) {
+      if (key.affectedBy(project.getId(), sharedPrefix)) {
+        inFlight.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Drops all the cached results.
+   */
+  public void invalidateAll() {
+    generation.incrementAndGet();
+    synchronized (cache) {
+      cache.clear();
+    }
+    inFlight.clear();
+  }
+
+  public Stats getStats() {
+    int size;
+    synchronized (cache) {
+      size = cache.size();
+    }
+    return new Stats(hits.get(), misses.get(), coalesced.get(), size);
+  }
+
+  private List<ElasticHit> await(CompletableFuture<List<ElasticHit>> running) throws AppException {
+    try {
+      return running.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(),
+          "Interrupted while waiting for search results");
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof AppException) {
+        throw (AppException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      LOG.log(Level.WARNING, "Search failed", cause);
+      throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), "Search failed");
+    }
+  }
+
+  private static class Key {
+
+    private final Scope scope;
+    private final Integer projectId;
+    private final String dataset;
+    private final String term;
+
+    Key(Scope scope, Integer projectId, String dataset, String term) {
+      this.scope = scope;
+      this.projectId = projectId;
+      this.dataset = dataset;
+      this.term = term;
+    }
+
+    private boolean affectedBy(Integer id, String sharedPrefix) {
+      return scope == Scope.GLOBAL || id.equals(projectId)
+          || (dataset != null && dataset.startsWith(sharedPrefix));
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(scope, projectId, dataset, term);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return scope == other.scope && Objects.equals(projectId, other.projectId)
+          && Objects.equals(dataset, other.dataset) && term.equals(other.term);
+    }
+  }
+
+  private static class Entry {
+
+    private final List<ElasticHit> hits;
+    private final long cachedAt;
+
+    Entry(List<ElasticHit> hits, long cachedAt) {
+      this.hits = hits;
+      this.cachedAt = cachedAt;
+    }
+  }
+
+  public static class Stats {
+
+    private final long hits;
+    private final long misses;
+    private final long coalesced;
+    private final int size;
+
+    Stats(long hits, long misses, long coalesced, int size) {
+      this.hits = hits;
+      this.misses = misses;
+      this.coalesced = coalesced;
+      this.size = size;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    public long getMisses() {
+      return misses;
+    }
+
+    /**
+     * @return searches that waited for an identical search instead of querying Elasticsearch
+     */
+    public long getCoalesced() {
+      return coalesced;
+    }
+
+    public int getSize() {
+      return size;
+    }
+
+    /**
+     * @return share of searches answered without a new Elasticsearch query
+     */
+    public double getHitRatio() {
+      long total = hits + misses + coalesced;
+      return total == 0 ? 0 : (double) (hits + coalesced) / total;
+    }
+  }
+}
@@ -30,6 +30,7 @@ import java.io.InputStreamReader;
 import java.net.URI;
 import java.security.PrivilegedExceptionAction;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.hadoop.conf.Configuration;
@@ -57,6 +58,9 @@ public class DistributedFileSystemOps {
   private Configuration conf;
   private String hadoopConfDir;
   private final String effectiveUser;
+  // Set only for leases handed out by DistributedFsOpsPool
+  private final Runnable releaseHook;
+  private final AtomicBoolean released = new AtomicBoolean(false);
 
   /**
    * Returns a file system with username access.
@@ -69,6 +73,22 @@ public class DistributedFileSystemOps {
     this.dfs = getDfs(ugi, conf, uri);
     this.conf = conf;
     effectiveUser = ugi.getUserName();
+    this.releaseHook = null;
+  }
+
+  /**
+   * Creates a lease on a pooled file system. The lease shares the underlying
+   * DistributedFileSystem and closing it only returns it to the pool. Each
+   * lease has its own copy of the configuration.
+   * <p>
+   * @param pooled
+   * @param releaseHook
+   */
+  DistributedFileSystemOps(DistributedFileSystemOps pooled, Runnable releaseHook) {
+    this.dfs = pooled.dfs;
+    this.conf = new Configuration(pooled.conf);
+    this.effectiveUser = pooled.effectiveUser;
+    this.releaseHook = releaseHook;
   }
 
   public DistributedFileSystemOps(UserGroupInformation ugi, Configuration conf) {
@@ -524,7 +544,10 @@ public class DistributedFileSystemOps {
     this.conf.addResource(new Path(erasureCodingConfFile.getAbsolutePath()));
 
     DistributedFileSystem localDfs = this.dfs;
-    localDfs.setConf(this.conf);
+    if (releaseHook == null) {
+      // The file system of a lease is shared with other leases, it keeps the configuration of the pooled client
+      localDfs.setConf(this.conf);
+    }
 
     EncodingPolicy policy = new EncodingPolicy("src", (short) 1);
 
@@ -643,10 +666,20 @@ public class DistributedFileSystemOps {
     dfs.flushCache(user, group);
   }
 
+  public boolean isPooled() {
+    return releaseHook != null;
+  }
+
   /**
    * Closes the distributed file system.
    */
   public void close() {
+    if (releaseHook != null) {
+      if (released.compareAndSet(false, true)) {
+        releaseHook.run();
+      }
+      return;
+    }
     try {
       dfs.close();
     } catch (IOException ex) {
@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.hdfs;
+
+import io.hops.hopsworks.common.security.BaseHadoopClientsService;
+import io.hops.hopsworks.common.util.Settings;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Timer;
+
+/**
+ * Bounded, reference counted pool of per-user DistributedFileSystemOps.
+ * Callers get a lease from DistributedFsService.getDfsOps(username) that
+ * shares the pooled file system; closing the lease only decrements the
+ * reference count. Unused clients are closed after an idle timeout and every
+ * client is retired once it reaches its maximum lifetime, so the crypto
+ * material it holds materialized is released periodically.
+ * <p>
+ * Pooling is opt-in: it is off until the dfs_ops_pool_size variable is set
+ * to the maximum number of pooled clients, for example 256. A pooled client
+ * keeps using the certificate it was created with, so a renewed certificate
+ * is picked up only when the client is retired after dfs_ops_pool_max_lifetime
+ * or invalidated with the user. The hit, miss and eviction counters are
+ * reported by GET /admin/caches.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@DependsOn("Settings")
+public class DistributedFsOpsPool {
+
+  private static final Logger LOGGER = Logger.getLogger(DistributedFsOpsPool.class.getName());
+
+  @EJB
+  private Settings settings;
+  @EJB
+  private BaseHadoopClientsService bhcs;
+
+  // Access ordered so that iteration starts from the least recently used client
+  private final Map<String, PooledDfsOps> pool = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final AtomicLong hits = new AtomicLong(0);
+  private final AtomicLong misses = new AtomicLong(0);
+  private final AtomicLong evictions = new AtomicLong(0);
+
+  private int maxSize;
+  private long idleTimeoutMs;
+  private long maxLifetimeMs;
+
+  @PostConstruct
+  public void init() {
+    maxSize = settings.getDfsOpsPoolSize();
+    idleTimeoutMs = toMillis(settings.getDfsOpsPoolIdleTimeout());
+    maxLifetimeMs = toMillis(settings.getDfsOpsPoolMaxLifetime());
+  }
+
+  @PreDestroy
+  public void preDestroy() {
+    List<PooledDfsOps> toDestroy;
+    synchronized (this) {
+      toDestroy = new ArrayList<>(pool.values());
+      pool.clear();
+    }
+    for (PooledDfsOps entry : toDestroy) {
+      destroy(entry);
+    }
+  }
+
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  /**
+   * Returns a lease on the pooled client of the user, creating the client
+   * with the factory if there is no usable one. If the pool is full and no
+   * client can be evicted, the client created by the factory is returned
+   * as is and it is not pooled.
+   * <p>
+   * @param username effective user
+   * @param factory creates a new client for the user, may return null
+   * @return lease on the pooled client, an unpooled client or null if the
+   * factory failed
+   */
+  public DistributedFileSystemOps acquire(String username, Supplier<DistributedFileSystemOps> factory) {
+    long now = System.currentTimeMillis();
+    synchronized (this) {
+      PooledDfsOps entry = pool.get(username);
+      if (entry != null && !entry.isExpired(now)) {
+        hits.incrementAndGet();
+        return entry.lease(now);
+      }
+    }
+
+    misses.incrementAndGet();
+    DistributedFileSystemOps dfso = factory.get();
+    if (dfso == null) {
+      return null;
+    }
+
+    List<PooledDfsOps> toDestroy = new ArrayList<>();
+    DistributedFileSystemOps lease = null;
+    synchronized (this) {
+      PooledDfsOps entry = pool.get(username);
+      if (entry != null && !entry.isExpired(now)) {
+        // Lost the race with another caller, use the client already pooled
+        lease = entry.lease(now);
+      } else {
+        if (entry != null) {
+          pool.remove(username);
+          retire(entry, toDestroy);
+        }
+        if (pool.size() >= maxSize) {
+          evictLeastRecentlyUsedIdle(toDestroy);
+        }
+        if (pool.size() < maxSize) {
+          entry = new PooledDfsOps(dfso, now);
+          pool.put(username, entry);
+          lease = entry.lease(now);
+          dfso = null;
+        }
+      }
+    }
+    for (PooledDfsOps retired : toDestroy) {
+      destroy(retired);
+    }
+    if (lease == null) {
+      // Pool is full with clients in use
+      return dfso;
+    }
+    if (dfso != null) {
+      closeUnpooled(dfso);
+    }
+    return lease;
+  }
+
+  /**
+   * Removes the client of the user from the pool. It is closed as soon as
+   * all its leases are released.
+   * <p>
+   * @param username
+   */
+  public void invalidate(String username) {
+    List<PooledDfsOps> toDestroy = new ArrayList<>(1);
+    synchronized (this) {
+      PooledDfsOps entry = pool.remove(username);
+      if (entry != null) {
+        retire(entry, toDestroy);
+      }
+    }
+    for (PooledDfsOps entry : toDestroy) {
+      destroy(entry);
+    }
+  }
+
+  @Schedule(persistent = false,
+      second = "*/30",
+      minute = "*",
+      hour = "*")
+  public void evictIdle(Timer timer) {
+    long now = System.currentTimeMillis();
+    List<PooledDfsOps> toDestroy = new ArrayList<>();
+    synchronized (this) {
+      Iterator<PooledDfsOps> iter = pool.values().iterator();
+      while (iter.hasNext()) {
+        PooledDfsOps entry = iter.next();
+        if (entry.isExpired(now) || (entry.refCount == 0 && now - entry.lastAccess > idleTimeoutMs)) {
+          iter.remove();
+          retire(entry, toDestroy);
+        }
+      }
+    }
+    for (PooledDfsOps entry : toDestroy) {
+      destroy(entry);
+    }
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  public synchronized int getSize() {
+    return pool.size();
+  }
+
+  private void evictLeastRecentlyUsedIdle(List<PooledDfsOps> toDestroy) {
+    Iterator<PooledDfsOps> iter = pool.values().iterator();
+    while (iter.hasNext()) {
+      PooledDfsOps entry = iter.next();
+      if (entry.refCount == 0) {
+        iter.remove();
+        retire(entry, toDestroy);
+        return;
+      }
+    }
+  }
+
+  // Must hold the pool monitor
+  private void retire(PooledDfsOps entry, List<PooledDfsOps> toDestroy) {
+    entry.retired = true;
+    evictions.incrementAndGet();
+    if (entry.refCount == 0) {
+      toDestroy.add(entry);
+    }
+  }
+
+  private void release(PooledDfsOps entry) {
+    boolean destroy;
+    synchronized (this) {
+      entry.refCount--;
+      entry.lastAccess = System.currentTimeMillis();
+      destroy = entry.retired && entry.refCount == 0;
+    }
+    if (destroy) {
+      destroy(entry);
+    }
+  }
+
+  private void destroy(PooledDfsOps entry) {
+    closeUnpooled(entry.dfso);
+  }
+
+  private void closeUnpooled(DistributedFileSystemOps dfso) {
+    try {
+      if (settings.getHopsRpcTls()
+          && !dfso.getEffectiveUser().equals(settings.getHdfsSuperUser())) {
+        bhcs.removeNonSuperUserCertificate(dfso.getEffectiveUser());
+      }
+    } catch (Exception ex) {
+      LOGGER.log(Level.WARNING, "Could not remove crypto material of " + dfso.getEffectiveUser(), ex);
+    }
+    dfso.close();
+  }
+
+  private static long toMillis(String confTime) {
+    return Settings.getConfTimeTimeUnit(confTime).toMillis(Settings.getConfTimeValue(confTime));
+  }
+
+  private final class PooledDfsOps {
+
+    private final DistributedFileSystemOps dfso;
+    private final long createdAt;
+    // Guarded by the pool monitor
+    private int refCount = 0;
+    private long lastAccess;
+    private boolean retired = false;
+
+    private PooledDfsOps(DistributedFileSystemOps dfso, long now) {
+      this.dfso = dfso;
+      this.createdAt = now;
+      this.lastAccess = now;
+    }
+
+    private boolean isExpired(long now) {
+      return now - createdAt > maxLifetimeMs;
+    }
+
+    private DistributedFileSystemOps lease(long now) {
+      refCount++;
+      lastAccess = now;
+      return new DistributedFileSystemOps(dfso, new Runnable() {
+        @Override
+        public void run() {
+          release(PooledDfsOps.this);
+        }
+      });
+    }
+  }
+}
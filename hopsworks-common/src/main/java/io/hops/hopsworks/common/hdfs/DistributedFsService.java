@@ -31,6 +31,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.PostConstruct;
@@ -72,6 +73,8 @@ public class DistributedFsService {
   private Settings settings;
   @EJB
   private BaseHadoopClientsService bhcs;
+  @EJB
+  private DistributedFsOpsPool dfsOpsPool;
 
   private Configuration conf;
   private String hadoopConfDir;
@@ -186,10 +189,22 @@ public class DistributedFsService {
    * @param username
    * @return
    */
-  public DistributedFileSystemOps getDfsOps(String username) {
+  public DistributedFileSystemOps getDfsOps(final String username) {
     if (username == null || username.isEmpty()) {
       throw new NullPointerException("username not set.");
     }
+    if (dfsOpsPool.isEnabled()) {
+      return dfsOpsPool.acquire(username, new Supplier<DistributedFileSystemOps>() {
+        @Override
+        public DistributedFileSystemOps get() {
+          return createDfsOps(username);
+        }
+      });
+    }
+    return createDfsOps(username);
+  }
+
+  private DistributedFileSystemOps createDfsOps(String username) {
     UserGroupInformation ugi;
     try {
       ugi = UserGroupInformation.createProxyUser(username, UserGroupInformation.
@@ -220,6 +235,11 @@ public class DistributedFsService {
 
   public void closeDfsClient(DistributedFileSystemOps udfso) {
     if (null != udfso) {
+      if (udfso.isPooled()) {
+        // Crypto material is owned by the pooled client
+        udfso.close();
+        return;
+      }
       if (settings.getHopsRpcTls()
           && !udfso.getEffectiveUser().equals(settings.getHdfsSuperUser())) {
         bhcs.removeNonSuperUserCertificate(udfso.getEffectiveUser());
@@ -282,6 +302,7 @@ public class DistributedFsService {
     if (username == null || username.isEmpty()) {
       return;
     }
+    dfsOpsPool.invalidate(username);
     UserGroupInformation ugi = ugiService.remove(username);
     if (ugi == null) {
       return;
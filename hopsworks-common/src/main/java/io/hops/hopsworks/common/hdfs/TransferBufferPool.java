@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.hdfs;
+
+import io.hops.hopsworks.common.util.Settings;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+
+/**
+ * Pool of large buffers used to stream files between HDFS and clients.
+ * Buffers are allocated when the pool is empty and dropped when it is full,
+ * so the pool never blocks a transfer.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@DependsOn("Settings")
+public class TransferBufferPool {
+
+  @EJB
+  private Settings settings;
+
+  private int bufferSize;
+  private BlockingQueue<byte[]> buffers;
+
+  private final AtomicLong allocations = new AtomicLong(0);
+
+  @PostConstruct
+  public void init() {
+    bufferSize = settings.getTransferBufferSize();
+    buffers = new ArrayBlockingQueue<>(Math.max(1, settings.getTransferBufferPoolSize()));
+  }
+
+  public byte[] acquire() {
+    byte[] buffer = buffers.poll();
+    if (buffer == null) {
+      allocations.incrementAndGet();
+      buffer = new byte[bufferSize];
+    }
+    return buffer;
+  }
+
+  public void release(byte[] buffer) {
+    if (buffer != null && buffer.length == bufferSize) {
+      buffers.offer(buffer);
+    }
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * @return number of buffers allocated because the pool was empty
+   */
+  public long getAllocations() {
+    return allocations.get();
+  }
+}
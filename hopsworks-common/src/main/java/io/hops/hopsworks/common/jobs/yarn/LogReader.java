@@ -70,9 +70,14 @@ public class LogReader {
   public LogReader(Configuration conf, DistributedFileSystemOps dfs,
           Path remoteAppLogFile)
           throws IOException {
-    this.fsDataIStream = dfs.open(remoteAppLogFile);
-    reader = new TFile.Reader(this.fsDataIStream, dfs.getFileStatus(
-            remoteAppLogFile).getLen(), conf);
+    this(conf, dfs.open(remoteAppLogFile), dfs.getFileStatus(remoteAppLogFile).
+            getLen());
+  }
+
+  LogReader(Configuration conf, FSDataInputStream fsDataIStream, long length)
+          throws IOException {
+    this.fsDataIStream = fsDataIStream;
+    reader = new TFile.Reader(this.fsDataIStream, length, conf);
     this.scanner = reader.createScanner();
   }
   private boolean atBeginning = true;
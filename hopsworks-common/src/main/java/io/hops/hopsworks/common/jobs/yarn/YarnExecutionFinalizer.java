@@ -36,7 +36,9 @@ import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -68,6 +70,8 @@ public class YarnExecutionFinalizer {
   private DistributedFsService dfs;
   @EJB
   private YarnClientService ycs;
+  @EJB
+  private YarnLogCopyExecutor logCopyExecutor;
 
   /**
    * Update the current state of the Execution entity to the given state.
@@ -115,25 +119,25 @@ public class YarnExecutionFinalizer {
       String stdOutPath =
           settings.getAggregatedLogPath(exec.getHdfsUser(), exec.getAppId());
       try {
+        // Both destinations are filled in a single pass over the aggregated logs
+        Map<String, String[]> dstToLogTypes = new LinkedHashMap<>(2);
         if (stdOutFinalDestination != null &&
             !stdOutFinalDestination.isEmpty()) {
           stdOutFinalDestination =
               stdOutFinalDestination + exec.getAppId() + File.separator +
                   "stdout.log";
-          String[] desiredLogTypes = {"out"};
-          YarnLogUtil
-              .copyAggregatedYarnLogs(udfso, stdOutPath, stdOutFinalDestination,
-                  desiredLogTypes, monitor);
+          dstToLogTypes.put(stdOutFinalDestination, new String[]{"out"});
         }
         if (stdErrFinalDestination != null &&
             !stdErrFinalDestination.isEmpty()) {
           stdErrFinalDestination =
               stdErrFinalDestination + exec.getAppId() + File.separator +
                   "stderr.log";
-          String[] desiredLogTypes = {"err", ".log"};
-          YarnLogUtil
-              .copyAggregatedYarnLogs(udfso, stdOutPath, stdErrFinalDestination,
-                  desiredLogTypes, monitor);
+          dstToLogTypes.put(stdErrFinalDestination, new String[]{"err", ".log"});
+        }
+        if (!dstToLogTypes.isEmpty()) {
+          YarnLogUtil.copyAggregatedYarnLogs(udfso, stdOutPath, dstToLogTypes, monitor,
+              logCopyExecutor.getExecutor(), settings.getYarnLogCopyParallelism());
         }
       } catch (IOException | InterruptedException | YarnException ex) {
         LOG.severe("error while aggregation logs" + ex.toString());
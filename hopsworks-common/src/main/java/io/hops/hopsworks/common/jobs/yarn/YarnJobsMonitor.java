@@ -27,6 +27,7 @@ import io.hops.hopsworks.common.jobs.jobhistory.JobState;
 import io.hops.hopsworks.common.util.Settings;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -35,6 +36,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.PreDestroy;
 import javax.ejb.DependsOn;
 import javax.ejb.EJB;
 import javax.ejb.Schedule;
@@ -44,8 +46,10 @@ import javax.ejb.Timer;
 import io.hops.hopsworks.common.yarn.YarnClientService;
 import io.hops.hopsworks.common.yarn.YarnClientWrapper;
 import org.apache.hadoop.yarn.api.records.ApplicationId;
+import org.apache.hadoop.yarn.api.records.ApplicationReport;
 import org.apache.hadoop.yarn.api.records.FinalApplicationStatus;
 import org.apache.hadoop.yarn.api.records.YarnApplicationState;
+import org.apache.hadoop.yarn.client.api.YarnClient;
 import org.apache.hadoop.yarn.exceptions.YarnException;
 
 @Singleton
@@ -70,6 +74,11 @@ public class YarnJobsMonitor {
   Map<String, Integer> failures = new HashMap<>();
   boolean init = true;
   private List<CopyLogsFutureResult> copyLogsFutures = new ArrayList<>();
+  // Client shared by all applications in batched mode
+  private YarnClientWrapper sharedYarnClient;
+
+  private static final EnumSet<YarnApplicationState> ACTIVE_STATES = EnumSet.complementOf(EnumSet.of(
+      YarnApplicationState.FINISHED, YarnApplicationState.FAILED, YarnApplicationState.KILLED));
   
   /**
    * Add an execution and its monitor to the applications that need to be monitored.
@@ -79,11 +88,22 @@ public class YarnJobsMonitor {
    * @param monitor the monitor for this application
    */
   public void addToMonitor(String appId, Execution exec, YarnMonitor monitor) {
+    if (settings.isYarnJobsMonitorBatched()) {
+      // The batched monitor polls all applications through a shared client
+      monitor.close();
+      executions.put(appId, exec);
+      return;
+    }
     monitor = monitor.start();
     executions.put(appId, exec);
     monitors.put(appId, monitor);
   }
 
+  @PreDestroy
+  public void preDestroy() {
+    closeSharedYarnClient();
+  }
+
   @Schedule(persistent = false,
       second = "*",
       minute = "*",
@@ -101,6 +121,15 @@ public class YarnJobsMonitor {
       maxStatusPollRetry = settings.getMaxStatusPollRetry();
       init = false;
     }
+    if (settings.isYarnJobsMonitorBatched()) {
+      batchedMonitor();
+    } else {
+      perApplicationMonitor();
+    }
+    checkCopyLogsFutures();
+  }
+
+  private void perApplicationMonitor() {
     List<String> toRemove = new ArrayList<>();
     List<Execution> toUpdate = new ArrayList<>();
     for (String appID : executions.keySet()) {
@@ -128,7 +157,9 @@ public class YarnJobsMonitor {
       failures.remove(appID);
       monitors.remove(appID);
     }
-  
+  }
+
+  private void checkCopyLogsFutures() {
     Iterator<CopyLogsFutureResult> futureResultIter = copyLogsFutures.iterator();
     while (futureResultIter.hasNext() ){
       CopyLogsFutureResult futureResult = futureResultIter.next();
@@ -144,6 +175,134 @@ public class YarnJobsMonitor {
     }
   }
   
+  /**
+   * Polls the reports of all monitored applications with one request to the
+   * ResourceManager and writes the executions whose progress, state or final
+   * status changed in a single transaction.
+   */
+  private void batchedMonitor() {
+    // Monitors left over from the per-application mode
+    for (YarnMonitor monitor : monitors.values()) {
+      monitor.close();
+    }
+    monitors.clear();
+    if (executions.isEmpty()) {
+      return;
+    }
+
+    Map<String, ApplicationReport> reports = new HashMap<>(executions.size());
+    try {
+      YarnClient yarnClient = getSharedYarnClient().getYarnClient();
+      for (ApplicationReport report : yarnClient.getApplications(ACTIVE_STATES)) {
+        String appId = report.getApplicationId().toString();
+        if (executions.containsKey(appId)) {
+          reports.put(appId, report);
+        }
+      }
+      // Applications not in an active state have just reached a final state
+      for (String appId : executions.keySet()) {
+        if (!reports.containsKey(appId)) {
+          try {
+            reports.put(appId, yarnClient.getApplicationReport(ApplicationId.fromString(appId)));
+          } catch (IOException | YarnException ex) {
+            LOG.log(Level.WARNING, "Failed to get application report for " + appId, ex);
+          }
+        }
+      }
+    } catch (IOException | YarnException ex) {
+      LOG.log(Level.WARNING, "Failed to get application reports from the ResourceManager", ex);
+      closeSharedYarnClient();
+    }
+
+    List<ExecutionFacade.StatusUpdate> updates = new ArrayList<>();
+    List<ApplicationReport> finished = new ArrayList<>();
+    List<String> toRemove = new ArrayList<>();
+    for (Map.Entry<String, Execution> entry : executions.entrySet()) {
+      String appId = entry.getKey();
+      Execution exec = entry.getValue();
+      ApplicationReport report = reports.get(appId);
+      if (report == null) {
+        if (pollFailed(exec)) {
+          toRemove.add(appId);
+        }
+        continue;
+      }
+      failures.remove(appId);
+      JobState state = JobState.getJobState(report.getYarnApplicationState());
+      JobFinalStatus finalStatus = JobFinalStatus.getJobFinalStatus(report.getFinalApplicationStatus());
+      float progress = report.getProgress();
+      if (exec.getState() != state || exec.getFinalStatus() != finalStatus || exec.getProgress() != progress) {
+        updates.add(new ExecutionFacade.StatusUpdate(exec, progress, state, finalStatus));
+      }
+      if (state.isFinalState()) {
+        finished.add(report);
+      }
+    }
+
+    if (!updates.isEmpty()) {
+      for (Execution exec : executionFacade.updateStatuses(updates)) {
+        executions.put(exec.getAppId(), exec);
+      }
+    }
+
+    for (ApplicationReport report : finished) {
+      String appId = report.getApplicationId().toString();
+      Execution exec = executionFacade.updateState(executions.get(appId), JobState.AGGREGATING_LOGS);
+      // Async call
+      Future<Execution> futureResult = execFinalizer.copyLogs(exec);
+      copyLogsFutures.add(new CopyLogsFutureResult(futureResult,
+          JobState.getJobState(report.getYarnApplicationState())));
+      toRemove.add(appId);
+    }
+
+    for (String appId : toRemove) {
+      executions.remove(appId);
+      failures.remove(appId);
+    }
+  }
+
+  /**
+   * Counts a failed status poll for the execution and kills the application
+   * once it exceeds the maximum number of retries.
+   *
+   * @return true if the execution should not be monitored any more
+   */
+  private boolean pollFailed(Execution exec) {
+    Integer failure = failures.get(exec.getAppId());
+    failure = failure == null ? 1 : failure + 1;
+    failures.put(exec.getAppId(), failure);
+    if (failure <= maxStatusPollRetry) {
+      return false;
+    }
+    try {
+      LOG.log(Level.SEVERE, "Killing application, {0}, because unable to poll for status.", exec);
+      getSharedYarnClient().getYarnClient().killApplication(ApplicationId.fromString(exec.getAppId()));
+      exec = updateState(JobState.KILLED, exec);
+      exec = updateFinalStatus(JobFinalStatus.KILLED, exec);
+      exec = updateProgress(0, exec);
+      execFinalizer.finalize(exec, JobState.KILLED);
+    } catch (YarnException | IOException ex) {
+      LOG.log(Level.SEVERE, "Failed to cancel execution, " + exec + " after failing to poll for status.", ex);
+      exec = updateState(JobState.FRAMEWORK_FAILURE, exec);
+      execFinalizer.finalize(exec, JobState.FRAMEWORK_FAILURE);
+    }
+    return true;
+  }
+
+  private YarnClientWrapper getSharedYarnClient() {
+    if (sharedYarnClient == null) {
+      sharedYarnClient = ycs.getYarnClientSuper(settings.getConfiguration());
+    }
+    return sharedYarnClient;
+  }
+
+  private void closeSharedYarnClient() {
+    if (sharedYarnClient != null) {
+      ycs.closeYarnClient(sharedYarnClient);
+      sharedYarnClient = null;
+    }
+  }
+
   private Execution internalMonitor(Execution exec, YarnMonitor monitor) {
     try {
       YarnApplicationState appState = monitor.getApplicationState();
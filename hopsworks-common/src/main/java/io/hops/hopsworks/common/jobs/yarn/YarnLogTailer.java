@@ -0,0 +1,417 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.jobs.yarn;
+
+import io.hops.hopsworks.common.dao.jobhistory.Execution;
+import io.hops.hopsworks.common.hdfs.DistributedFileSystemOps;
+import io.hops.hopsworks.common.hdfs.DistributedFsService;
+import io.hops.hopsworks.common.util.Settings;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Timer;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Incremental reads of the stdout/stderr of an execution. Clients keep the
+ * offset returned by the previous call and only get the bytes appended since.
+ * <p>
+ * While the application runs the log is read from the files uploaded by
+ * rolling log aggregation; each aggregated file is measured once and a cursor
+ * per execution and log type remembers where it starts in the log. A request
+ * only renders the file containing its offset, and the cursor keeps a bounded
+ * window of it for the requests that follow. Once the execution is
+ * finalized the log is read from its stdout/stderr file, whose source name
+ * differs, so clients following the aggregated log start over.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@DependsOn("Settings")
+public class YarnLogTailer {
+
+  private static final Logger LOGGER = Logger.getLogger(YarnLogTailer.class.getName());
+
+  public static final String SOURCE_AGGREGATED = "aggregated";
+  public static final String SOURCE_FILE = "file";
+
+  private static final String[] STDOUT_TYPES = {"out"};
+  private static final String[] STDERR_TYPES = {"err", ".log"};
+  // Rolling aggregation writes to a temporary file before renaming it
+  private static final String TMP_SUFFIX = ".tmp";
+  private static final long CURSOR_IDLE_TIMEOUT = 10 * 60 * 1000;
+
+  @EJB
+  private Settings settings;
+  @EJB
+  private DistributedFsService dfs;
+
+  private final Map<String, Cursor> cursors = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the bytes of the log of the execution starting at offset.
+   * <p>
+   * @param execution
+   * @param type "log" for stdout, anything else for stderr, as in JobService
+   * @param source source of the offset as returned by a previous call, null
+   * on the first call
+   * @param offset offset returned by a previous call, 0 on the first call
+   * @return the delta, never null
+   * @throws IOException
+   * @throws IllegalArgumentException if offset is negative
+   */
+  public LogDelta tail(Execution execution, String type, String source, long offset) throws IOException {
+    if (offset < 0) {
+      throw new IllegalArgumentException("Negative log offset " + offset);
+    }
+    boolean stdout = "log".equals(type);
+    String path = stdout ? execution.getStdoutPath() : execution.getStderrPath();
+    String key = execution.getId() + ":" + (stdout ? "out" : "err");
+    Cursor cursor = cursors.get(key);
+    if (cursor == null) {
+      cursor = new Cursor();
+      Cursor previous = cursors.putIfAbsent(key, cursor);
+      if (previous != null) {
+        cursor = previous;
+      }
+    }
+
+    DistributedFileSystemOps dfso = null;
+    try {
+      dfso = dfs.getDfsOps();
+      synchronized (cursor) {
+        cursor.lastAccess = System.currentTimeMillis();
+        if (path != null && !path.isEmpty() && dfso.exists("hdfs://" + path)) {
+          if (!SOURCE_FILE.equals(cursor.source)) {
+            cursor.reset(SOURCE_FILE);
+          }
+          return tailFile(dfso, "hdfs://" + path, cursor, source, offset);
+        }
+        if (execution.getAppId() == null) {
+          // Not submitted to YARN (yet), there is nothing to read
+          return new LogDelta(SOURCE_AGGREGATED, 0, 0, "", false, execution.getState().isFinalState());
+        }
+        if (!SOURCE_AGGREGATED.equals(cursor.source)) {
+          cursor.reset(SOURCE_AGGREGATED);
+        }
+        String aggregatedPath = settings.getAggregatedLogPath(execution.getHdfsUser(), execution.getAppId());
+        return tailAggregated(dfso, aggregatedPath, stdout ? STDOUT_TYPES : STDERR_TYPES, cursor, source,
+            offset);
+      }
+    } finally {
+      if (dfso != null) {
+        dfso.close();
+      }
+    }
+  }
+
+  private LogDelta tailFile(DistributedFileSystemOps dfso, String path, Cursor cursor, String source,
+      long offset) throws IOException {
+    boolean reset = !SOURCE_FILE.equals(source);
+    long from = reset ? 0 : offset;
+    cursor.length = dfso.getFileStatus(new Path(path)).getLen();
+    if (from > cursor.length) {
+      reset = true;
+      from = 0;
+    }
+    int toRead = (int) Math.min(settings.getYarnLogTailChunkSize(), cursor.length - from);
+    byte[] data = new byte[toRead];
+    if (toRead > 0) {
+      try (FSDataInputStream in = dfso.open(path)) {
+        in.readFully(from, data);
+      }
+    }
+    toRead = utf8Boundary(data, 0, toRead);
+    long next = from + toRead;
+    // The stdout/stderr file is written once by the finalizer, so it is
+    // complete when its cursor reaches the end
+    return new LogDelta(SOURCE_FILE, from, next, new String(data, 0, toRead, StandardCharsets.UTF_8), reset,
+        next >= cursor.length);
+  }
+
+  private LogDelta tailAggregated(DistributedFileSystemOps dfso, String aggregatedPath, String[] logTypes,
+      Cursor cursor, String source, long offset) throws IOException {
+    boolean reset = !SOURCE_AGGREGATED.equals(source);
+    long from = reset ? 0 : offset;
+
+    // Measure the aggregated files uploaded since the previous call, their
+    // rendered bytes are discarded
+    for (FileStatus status : listAggregated(dfso, aggregatedPath)) {
+      String file = status.getPath().toString();
+      if (cursor.starts.containsKey(file)) {
+        continue;
+      }
+      CountingOutputStream counter = new CountingOutputStream();
+      YarnLogUtil.writeAggregatedLogFile(dfso, file, logTypes, counter);
+      cursor.segments.add(new Segment(file, cursor.length, counter.count));
+      cursor.starts.put(file, cursor.length);
+      cursor.length += counter.count;
+    }
+    if (from > cursor.length) {
+      reset = true;
+      from = 0;
+    }
+
+    Segment segment = null;
+    for (Segment candidate : cursor.segments) {
+      if (candidate.start + candidate.length > from) {
+        segment = candidate;
+        break;
+      }
+    }
+    if (segment == null) {
+      return new LogDelta(SOURCE_AGGREGATED, from, from, "", reset, false);
+    }
+
+    // Only the segment containing the offset is rendered, and the cursor
+    // keeps at most a window of it for the following calls
+    int chunkSize = settings.getYarnLogTailChunkSize();
+    long end = Math.min(from + chunkSize, segment.start + segment.length);
+    if (cursor.retained == null || from < cursor.retainedStart
+        || end > cursor.retainedStart + cursor.retained.length) {
+      int window = (int) Math.min(segment.start + segment.length - from,
+          Math.max(chunkSize, settings.getYarnLogTailRetainedSize()));
+      WindowOutputStream out = new WindowOutputStream(from - segment.start, window);
+      YarnLogUtil.writeAggregatedLogFile(dfso, segment.path, logTypes, out);
+      cursor.retained = out.toByteArray();
+      cursor.retainedStart = from;
+    }
+    int skip = (int) (from - cursor.retainedStart);
+    int len = utf8Boundary(cursor.retained, skip, (int) (end - from));
+    return new LogDelta(SOURCE_AGGREGATED, from, from + len,
+        new String(cursor.retained, skip, len, StandardCharsets.UTF_8), reset, false);
+  }
+
+  private List<FileStatus> listAggregated(DistributedFileSystemOps dfso, String aggregatedPath) throws
+      IOException {
+    List<FileStatus> files = new ArrayList<>();
+    if (!dfso.exists(aggregatedPath)) {
+      return files;
+    }
+    for (FileStatus status : dfso.listStatus(new Path(aggregatedPath))) {
+      if (status.isFile() && !status.getPath().getName().endsWith(TMP_SUFFIX)) {
+        files.add(status);
+      }
+    }
+    files.sort(Comparator.comparingLong(FileStatus::getModificationTime)
+        .thenComparing(status -> status.getPath().getName()));
+    return files;
+  }
+
+  /**
+   * Shortens len so that data does not end in the middle of a UTF-8 sequence.
+   * The cut bytes are returned by the next call.
+   */
+  private static int utf8Boundary(byte[] data, int start, int len) {
+    int end = start + len;
+    int i = end - 1;
+    // Find the first byte of the last sequence
+    while (i >= start && (data[i] & 0xC0) == 0x80) {
+      i--;
+    }
+    if (i < start) {
+      return len;
+    }
+    int lead = data[i] & 0xFF;
+    int needed = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+    return end - i < needed ? i - start : len;
+  }
+
+  @Schedule(persistent = false,
+      minute = "*/5",
+      hour = "*")
+  public void evictIdle(Timer timer) {
+    long now = System.currentTimeMillis();
+    Iterator<Cursor> iter = cursors.values().iterator();
+    while (iter.hasNext()) {
+      if (now - iter.next().lastAccess > CURSOR_IDLE_TIMEOUT) {
+        iter.remove();
+      }
+    }
+    LOGGER.log(Level.FINE, "Live log cursors: {0}", cursors.size());
+  }
+
+  private static class Segment {
+
+    private final String path;
+    private final long start;
+    private final long length;
+
+    Segment(String path, long start, long length) {
+      this.path = path;
+      this.start = start;
+      this.length = length;
+    }
+  }
+
+  private static class Cursor {
+
+    private String source;
+    private final List<Segment> segments = new ArrayList<>();
+    private final Map<String, Long> starts = new HashMap<>();
+    private long length;
+    // Rendered bytes of the log starting at retainedStart, at most
+    // yarn_log_tail_retained_size of them and all within one segment
+    private byte[] retained;
+    private long retainedStart;
+    private volatile long lastAccess = System.currentTimeMillis();
+
+    void reset(String source) {
+      this.source = source;
+      segments.clear();
+      starts.clear();
+      length = 0;
+      retained = null;
+      retainedStart = 0;
+    }
+  }
+
+  /**
+   * Counts the bytes written to it and discards them.
+   */
+  private static class CountingOutputStream extends OutputStream {
+
+    private long count;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      count += len;
+    }
+  }
+
+  /**
+   * Keeps the len bytes written to it after the first skip ones and discards
+   * the others.
+   */
+  private static class WindowOutputStream extends OutputStream {
+
+    private final long skip;
+    private final byte[] window;
+    private long position;
+
+    WindowOutputStream(long skip, int len) {
+      this.skip = skip;
+      this.window = new byte[len];
+    }
+
+    @Override
+    public void write(int b) {
+      if (position >= skip && position - skip < window.length) {
+        window[(int) (position - skip)] = (byte) b;
+      }
+      position++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      long from = Math.max(position, skip);
+      long to = Math.min(position + len, skip + window.length);
+      if (from < to) {
+        System.arraycopy(b, off + (int) (from - position), window, (int) (from - skip), (int) (to - from));
+      }
+      position += len;
+    }
+
+    byte[] toByteArray() {
+      return window;
+    }
+  }
+
+  /**
+   * Bytes of a log between two offsets.
+   */
+  public static class LogDelta {
+
+    private final String source;
+    private final long offset;
+    private final long nextOffset;
+    private final String data;
+    private final boolean reset;
+    private final boolean finished;
+
+    public LogDelta(String source, long offset, long nextOffset, String data, boolean reset, boolean finished) {
+      this.source = source;
+      this.offset = offset;
+      this.nextOffset = nextOffset;
+      this.data = data;
+      this.reset = reset;
+      this.finished = finished;
+    }
+
+    public String getSource() {
+      return source;
+    }
+
+    /**
+     * @return offset of the first returned byte
+     */
+    public long getOffset() {
+      return offset;
+    }
+
+    /**
+     * @return offset to pass to the next call
+     */
+    public long getNextOffset() {
+      return nextOffset;
+    }
+
+    public String getData() {
+      return data;
+    }
+
+    /**
+     * @return true if the offset given by the client did not apply to the
+     * current source and the delta starts from the beginning of the log
+     */
+    public boolean isReset() {
+      return reset;
+    }
+
+    /**
+     * @return true if the whole final log has been returned
+     */
+    public boolean isFinished() {
+      return finished;
+    }
+  }
+}
@@ -21,12 +21,26 @@
 package io.hops.hopsworks.common.jobs.yarn;
 
 import io.hops.hopsworks.common.hdfs.DistributedFileSystemOps;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.hadoop.fs.FileStatus;
@@ -42,6 +56,16 @@ public class YarnLogUtil {
   private static final Logger LOGGER = Logger.getLogger(YarnLogUtil.class.
           getName());
 
+  private static final int BUFFER_SIZE = 65536;
+
+  /**
+   * Opens an aggregated log file for reading.
+   */
+  interface LogFileOpener {
+
+    LogReader open(String src) throws IOException;
+  }
+
   private enum Result {
     FAILED,
     SUCCESS,
@@ -84,50 +108,87 @@ public class YarnLogUtil {
    */
   public static void copyAggregatedYarnLogs(DistributedFileSystemOps dfs, String src, String dst,
       String[] desiredLogTypes, YarnMonitor monitor) throws YarnException, IOException, InterruptedException {
-  
+    copyAggregatedYarnLogs(dfs, src, Collections.singletonMap(dst, desiredLogTypes), monitor, null, 1);
+  }
+
+  /**
+   * Copies the aggregated yarn logs to several destinations reading every
+   * aggregated log file only once. Each log of a container is written to every
+   * destination whose desired log types match it.
+   * <p/>
+   * When an executor is given and there is more than one aggregated log file,
+   * up to <code>parallelism</code> files are read concurrently. The first file
+   * is streamed directly to the destinations, the others are spilled to local
+   * temporary files and appended in file order, so the output does not depend
+   * on scheduling.
+   *
+   * @param dfs
+   * @param src aggregated yarn log path
+   * @param dstToLogTypes destination path to the desired log types to copy there
+   * @param monitor the monitor to check the log aggregation status
+   * @param executor executor reading the aggregated files, null to read them serially
+   * @param parallelism maximum number of aggregated files read at the same time
+   */
+  public static void copyAggregatedYarnLogs(DistributedFileSystemOps dfs, String src,
+      Map<String, String[]> dstToLogTypes, YarnMonitor monitor, ExecutorService executor, int parallelism)
+      throws YarnException, IOException, InterruptedException {
+
     LogAggregationStatus logAggregationStatus = waitForLogAggregation(monitor);
-    
-    
-    PrintStream writer = null;
-    String[] srcs;
-    try {   
-      srcs = getAggregatedLogFilePaths(src, dfs);
+
+    List<String[]> logTypes = new ArrayList<>(dstToLogTypes.values());
+    OutputStream[] writers = new OutputStream[dstToLogTypes.size()];
+    try {
+      int i = 0;
+      for (String dst : dstToLogTypes.keySet()) {
+        writers[i++] = new BufferedOutputStream(dfs.create(dst), BUFFER_SIZE);
+      }
+      String[] srcs = getAggregatedLogFilePaths(src, dfs);
       if (!logFilesReady(srcs, dfs)) {
         LOGGER.log(Level.SEVERE, "Error getting logs");
       }
-      writer = new PrintStream(dfs.create(dst));
       switch (logAggregationStatus) {
         case FAILED:
-          writer.print("The log aggregation failed");
+          writeToAll(writers, "The log aggregation failed");
           break;
         case TIME_OUT:
-          writer.print("*** WARNING: Log aggregation has timed-out for some of the containers\n\n\n");
-          for (String desiredLogType : desiredLogTypes) {
-            writeLogs(dfs, srcs, writer, desiredLogType);
-          }
+          writeToAll(writers, "*** WARNING: Log aggregation has timed-out for some of the containers\n\n\n");
+          writeLogs(opener(dfs), srcs, logTypes, writers, executor, parallelism);
           break;
         case SUCCEEDED:
-          for (String desiredLogType : desiredLogTypes) {
-            writeLogs(dfs, srcs, writer, desiredLogType);
-          }
+          writeLogs(opener(dfs), srcs, logTypes, writers, executor, parallelism);
           break;
         default :
-          writer.print("Something went wrong during log aggregation phase!");
+          writeToAll(writers, "Something went wrong during log aggregation phase!");
       }
     } catch (Exception ex) {
-      if (writer != null) {
-        writer.print(YarnLogUtil.class.getName()
-                + ": Failed to get aggregated logs.\n" + ex.getMessage());
-      }
+      writeToAll(writers, YarnLogUtil.class.getName() + ": Failed to get aggregated logs.\n" + ex.getMessage());
       LOGGER.log(Level.SEVERE, null, ex);
     } finally {
+      for (OutputStream writer : writers) {
+        if (writer != null) {
+          try {
+            writer.close();
+          } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not close log destination", ex);
+          }
+        }
+      }
+    }
+  }
+
+  private static void writeToAll(OutputStream[] writers, String message) {
+    byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+    for (OutputStream writer : writers) {
       if (writer != null) {
-        writer.flush();
-        writer.close();
+        try {
+          writer.write(bytes);
+        } catch (IOException ex) {
+          LOGGER.log(Level.WARNING, "Could not write to log destination", ex);
+        }
       }
     }
   }
-  
+
   public static LogAggregationStatus waitForLogAggregation(YarnMonitor monitor) throws InterruptedException,
       YarnException, IOException {
     LogAggregationStatus logAggregationStatus = monitor.getLogAggregationStatus();
@@ -150,65 +211,228 @@ public class YarnLogUtil {
     }
   }
   
-  private static void writeLogs(DistributedFileSystemOps dfs, String[] srcs,
-          PrintStream writer, String desiredLogType) {
-    ArrayList<AggregatedLogFormat.LogKey> containerNames = new ArrayList<>();
-    LogReader reader = null;
-    DataInputStream valueStream;
-    AggregatedLogFormat.LogKey key = new AggregatedLogFormat.LogKey();
-    AggregatedLogFormat.ContainerLogsReader logReader = null;
-    Path location;
-    try {
+  private static LogFileOpener opener(final DistributedFileSystemOps dfs) {
+    return src -> new LogReader(dfs.getConf(), dfs, new Path(src));
+  }
+
+  static void writeLogs(final LogFileOpener opener, final String[] srcs,
+      final List<String[]> logTypes, OutputStream[] writers, ExecutorService executor, int parallelism)
+      throws IOException, InterruptedException, ExecutionException {
+    if (executor == null || parallelism <= 1 || srcs.length <= 1) {
       for (String src : srcs) {
-        location = new Path(src);
-        LOGGER.log(Level.INFO, "Copying log from {0}", src);
-        try {
-          reader = new LogReader(dfs.getConf(), dfs,
-                  new Path(src));
-          valueStream = reader.next(key);
-          while (valueStream != null) {
-            containerNames.add(key);
-            valueStream = reader.next(key);
-          }
-          reader.close();
-          reader = new LogReader(dfs.getConf(), dfs,
-                  new Path(src));
-        } catch (FileNotFoundException e) {
-          LOGGER.log(Level.SEVERE,
-                  "Logs not available. Aggregation may have failed.");
-          return;
-        } catch (IOException e) {
-          LOGGER.log(Level.SEVERE, "Error getting logs");
-          return;
+        extractLogs(opener, src, logTypes, writers);
+      }
+      return;
+    }
+    final OutputStream[] direct = writers;
+    List<Future<File[]>> spills = new ArrayList<>(srcs.length);
+    try {
+      for (int i = 0; i < srcs.length; i++) {
+        // Sliding window: at most parallelism files are being read or waiting
+        // to be appended at any time
+        if (i >= parallelism) {
+          appendSpill(spills.get(i - parallelism), writers);
         }
-
-        try {
-          for (AggregatedLogFormat.LogKey containerKey : containerNames) {
-            valueStream = reader.next(key);
-            while (valueStream != null && !key.equals(containerKey)) {
-              valueStream = reader.next(key);
-            }
-            if (valueStream != null) {
-              logReader = new ContainerLogsReader(valueStream);
-            }
-            if (logReader != null) {
-              readContainerLogs(logReader, writer, desiredLogType, containerKey,
-                      location.getName());
+        final String src = srcs[i];
+        final boolean first = i == 0;
+        spills.add(executor.submit(new Callable<File[]>() {
+          @Override
+          public File[] call() throws IOException {
+            if (first) {
+              extractLogs(opener, src, logTypes, direct);
+              return null;
             }
+            return spillLogs(opener, src, logTypes);
           }
+        }));
+      }
+      for (int i = Math.max(0, srcs.length - parallelism); i < srcs.length; i++) {
+        appendSpill(spills.get(i), writers);
+      }
+    } finally {
+      // Appended spills are already gone, this only cleans up after a failure
+      for (Future<File[]> spill : spills) {
+        try {
+          deleteSpill(spill.get());
+        } catch (ExecutionException ex) {
+          LOGGER.log(Level.WARNING, "Could not extract the logs of a container", ex.getCause());
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+  }
+
+  private static File[] spillLogs(LogFileOpener opener, String src, List<String[]> logTypes)
+      throws IOException {
+    File[] files = new File[logTypes.size()];
+    OutputStream[] spillWriters = new OutputStream[logTypes.size()];
+    boolean done = false;
+    try {
+      for (int i = 0; i < files.length; i++) {
+        files[i] = File.createTempFile("yarnlog", ".spill");
+        spillWriters[i] = new BufferedOutputStream(new FileOutputStream(files[i]), BUFFER_SIZE);
+      }
+      extractLogs(opener, src, logTypes, spillWriters);
+      done = true;
+    } finally {
+      for (OutputStream spillWriter : spillWriters) {
+        if (spillWriter != null) {
+          spillWriter.close();
+        }
+      }
+      if (!done) {
+        deleteSpill(files);
+      }
+    }
+    return files;
+  }
 
-        } catch (IOException e) {
-          LOGGER.log(Level.SEVERE, "Error getting logs");
+  private static void appendSpill(Future<File[]> spill, OutputStream[] writers)
+      throws IOException, InterruptedException, ExecutionException {
+    File[] files = spill.get();
+    if (files == null) {
+      return;
+    }
+    try {
+      byte[] buf = new byte[BUFFER_SIZE];
+      for (int i = 0; i < files.length; i++) {
+        try (InputStream in = new FileInputStream(files[i])) {
+          int len;
+          while ((len = in.read(buf)) != -1) {
+            writers[i].write(buf, 0, len);
+          }
         }
-        containerNames.clear();
+      }
+    } finally {
+      deleteSpill(files);
+    }
+  }
+
+  private static void deleteSpill(File[] files) {
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (file != null && file.exists() && !file.delete()) {
+        LOGGER.log(Level.WARNING, "Could not delete log spill file {0}", file);
+      }
+    }
+  }
+
+  /**
+   * Writes the logs of the desired types contained in one aggregated log file,
+   * in the same format as the copied stdout/stderr files.
+   *
+   * @param dfs
+   * @param src path of a single aggregated log file
+   * @param desiredLogTypes log types to write, null or empty for all of them
+   * @param out stream to write to, it is not closed
+   */
+  public static void writeAggregatedLogFile(DistributedFileSystemOps dfs, String src, String[] desiredLogTypes,
+      OutputStream out) throws IOException {
+    extractLogs(opener(dfs), src, Collections.singletonList(desiredLogTypes), new OutputStream[]{out});
+  }
+
+  /**
+   * Reads one aggregated log file and writes each container log to every
+   * writer whose log types match it.
+   */
+  private static void extractLogs(LogFileOpener opener, String src, List<String[]> logTypes,
+      OutputStream[] writers) throws IOException {
+    String nodename = new Path(src).getName();
+    LOGGER.log(Level.INFO, "Copying log from {0}", src);
+    LogReader reader;
+    try {
+      reader = opener.open(src);
+    } catch (FileNotFoundException e) {
+      LOGGER.log(Level.SEVERE, "Logs not available. Aggregation may have failed.");
+      return;
+    } catch (IOException e) {
+      LOGGER.log(Level.SEVERE, "Error getting logs");
+      return;
+    }
+    try {
+      byte[] buf = new byte[BUFFER_SIZE];
+      AggregatedLogFormat.LogKey key = new AggregatedLogFormat.LogKey();
+      DataInputStream valueStream = reader.next(key);
+      while (valueStream != null) {
+        readContainerLogs(valueStream, writers, logTypes, key, nodename, buf);
         key = new AggregatedLogFormat.LogKey();
-        logReader = null;
+        valueStream = reader.next(key);
       }
+    } catch (IOException e) {
+      LOGGER.log(Level.SEVERE, "Error getting logs", e);
     } finally {
-      if (reader != null) {
-        reader.close();
+      reader.close();
+    }
+  }
+
+  //Mostly taken from org.apache.hadoop.yarn.webapp.log.AggregatedLogsBlock
+  private static void readContainerLogs(DataInputStream valueStream, OutputStream[] writers,
+      List<String[]> logTypes, AggregatedLogFormat.LogKey containerKey, String nodename, byte[] buf)
+      throws IOException {
+    boolean[] foundLog = new boolean[writers.length];
+    List<OutputStream> targets = new ArrayList<>(writers.length);
+    while (true) {
+      String logType;
+      try {
+        logType = valueStream.readUTF();
+      } catch (EOFException e) {
+        return;
+      }
+      long logLength = Long.parseLong(valueStream.readUTF());
+      targets.clear();
+      for (int i = 0; i < writers.length; i++) {
+        if (!isDesiredLogType(logType, logTypes.get(i))) {
+          continue;
+        }
+        StringBuilder header = new StringBuilder();
+        if (!foundLog[i]) {
+          header.append("Container: ").append(containerKey.toString()).append(" on ").append(nodename)
+              .append("\n")
+              .append("===============================================")
+              .append("=============================================== \n");
+          foundLog[i] = true;
+        }
+        header.append("Log Type: ").append(logType).append("\n");
+        header.append("Log Length: ").append(logLength).append("\n");
+        if (logLength > 0) {
+          header.append("Log Contents: \n");
+        }
+        writers[i].write(header.toString().getBytes(StandardCharsets.UTF_8));
+        targets.add(writers[i]);
+      }
+      long remaining = logLength;
+      while (remaining > 0) {
+        int len = valueStream.read(buf, 0, (int) Math.min(buf.length, remaining));
+        if (len == -1) {
+          throw new EOFException("Unexpected end of log " + logType + " of " + containerKey);
+        }
+        for (OutputStream target : targets) {
+          target.write(buf, 0, len);
+        }
+        remaining -= len;
+      }
+      if (logLength > 0) {
+        for (OutputStream target : targets) {
+          target.write('\n');
+        }
+      }
+    }
+  }
+
+  private static boolean isDesiredLogType(String logType, String[] desiredLogTypes) {
+    if (desiredLogTypes == null || desiredLogTypes.length == 0) {
+      return true;
+    }
+    for (String desiredLogType : desiredLogTypes) {
+      if (desiredLogType == null || desiredLogType.isEmpty() || logType.contains(desiredLogType)) {
+        return true;
       }
     }
+    return false;
   }
 
   private static boolean logsReady(DistributedFileSystemOps dfs, String src) {
@@ -276,52 +500,6 @@ public class YarnLogUtil {
     return foundLog;
   }
 
-  //Mostly taken from org.apache.hadoop.yarn.webapp.log.AggregatedLogsBlock
-  private static boolean readContainerLogs(
-          AggregatedLogFormat.ContainerLogsReader logReader, PrintStream writer,
-          String desiredLogType, AggregatedLogFormat.LogKey containerKey,
-          String nodename) throws
-          IOException {
-    int bufferSize = 65536;
-    char[] cbuf = new char[bufferSize];
-    boolean foundLog = false;
-    String logType = logReader.nextLog();
-    while (logType != null) {
-      if (desiredLogType == null || desiredLogType.isEmpty()
-              || logType.contains(desiredLogType)) {
-        long logLength = logReader.getCurrentLogLength();
-        if (!foundLog) {
-          writer.append("Container: " + containerKey.toString() + " on "
-                  + nodename + "\n"
-                  + "==============================================="
-                  + "=============================================== \n");
-        }
-        if (logLength == 0) {
-          writer.append("Log Type: " + logType + "\n");
-          writer.append("Log Length: " + 0 + "\n");
-          logType = logReader.nextLog();
-          continue;
-        }
-        writer.append("Log Type: " + logType + "\n");
-        writer.append("Log Length: " + Long.toString(logLength) + "\n");
-        writer.append("Log Contents: \n");
-        int len = 0;
-        int currentToRead = logLength > bufferSize ? bufferSize
-                : (int) logLength;
-        while (logLength > 0 && (len = logReader.read(cbuf, 0, currentToRead))
-                > 0) {
-          writer.append(new String(cbuf, 0, len));
-          logLength = logLength - len;
-          currentToRead = logLength > bufferSize ? bufferSize : (int) logLength;
-        }
-        writer.append("\n");
-        foundLog = true;
-      }
-      logType = logReader.nextLog();
-    }
-    return foundLog;
-  }
-
   private static Result waitForAggregatedLogFileCreation(String path,
           DistributedFileSystemOps dfs) throws
           IOException {
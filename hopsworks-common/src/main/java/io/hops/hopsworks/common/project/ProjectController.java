@@ -1261,6 +1261,7 @@ public class ProjectController {
         try {
           opensslOperations.deleteProjectCertificate(projectName);
           userCertsFacade.removeAllCertsOfAProject(projectName);
+          certificateMaterializer.invalidateProjectReleasedMaterial(projectName);
           cleanupLogger.logSuccess("Deleted certificates");
         } catch (IOException ex) {
           cleanupLogger.logError(ex.getMessage());
@@ -1645,9 +1646,10 @@ public class ProjectController {
       String group = dataSet.getInode().getHdfsGroup().getName();
       List<Inode> children = new ArrayList<>();
       inodeFacade.getAllChildren(dataSet.getInode(), children);
+      Map<Integer, String> paths = inodeFacade.getPaths(children);
       for (Inode child : children) {
         if (child.getHdfsUser().getName().startsWith(project.getName() + "__")) {
-          Path childPath = new Path(inodeFacade.getPath(child));
+          Path childPath = new Path(paths.get(child.getId()));
           dfso.setOwner(childPath, owner, group);
         }
       }
@@ -1668,6 +1670,7 @@ public class ProjectController {
         + projectName;
     final Path location = new Path(path);
     dfso.rm(location, true);
+    inodes.invalidateCachedPath(path);
   }
 
   /**
@@ -1859,9 +1862,14 @@ public class ProjectController {
     List<InodeView> kids = new ArrayList<>();
 
     Collection<Dataset> dsInProject = project.getDatasetCollection();
+    List<Inode> dsInodes = new ArrayList<>(dsInProject.size());
+    for (Dataset ds : dsInProject) {
+      dsInodes.add(ds.getInode());
+    }
+    Map<Integer, String> paths = inodes.getPaths(dsInodes);
     for (Dataset ds : dsInProject) {
       parent = inodes.findParent(ds.getInode());
-      kids.add(new InodeView(parent, ds, inodes.getPath(ds.getInode())));
+      kids.add(new InodeView(parent, ds, paths.get(ds.getInode().getId())));
     }
 
     //send the project back to client
@@ -2275,9 +2283,10 @@ public class ProjectController {
             Inode parent = inodes.getInodeAtPath(tensorflowDataDst);
             List<Inode> children = new ArrayList<>();
             inodes.getAllChildren(parent, children);
+            Map<Integer, String> paths = inodes.getPaths(children);
             for (Inode child : children) {
               if (child.getHdfsUser() != null && child.getHdfsUser().getName().equals(settings.getHdfsSuperUser())) {
-                Path path = new Path(inodes.getPath(child));
+                Path path = new Path(paths.get(child.getId()));
                 udfso.setPermission(path, udfso.getParentPermission(path));
                 udfso.setOwner(path, userHdfsName, datasetGroup);
               }
@@ -2292,9 +2301,10 @@ public class ProjectController {
               Inode parentJupyterDs = inodes.getInodeAtPath(tensorflowNotebooksDst);
               List<Inode> childrenJupyterDs = new ArrayList<>();
               inodes.getAllChildren(parentJupyterDs, childrenJupyterDs);
+              Map<Integer, String> jupyterPaths = inodes.getPaths(childrenJupyterDs);
               for (Inode child : childrenJupyterDs) {
                 if (child.getHdfsUser() != null) {
-                  Path path = new Path(inodes.getPath(child));
+                  Path path = new Path(jupyterPaths.get(child.getId()));
                   udfso.setPermission(path, udfso.getParentPermission(path));
                   udfso.setOwner(path, userHdfsName, datasetGroup);
                 }
@@ -35,7 +35,6 @@ import io.hops.hopsworks.common.security.dao.RemoteMaterialReferences;
 import io.hops.hopsworks.common.util.HopsUtils;
 import io.hops.hopsworks.common.util.Settings;
 import org.apache.commons.collections.Bag;
-import org.apache.commons.collections.MapUtils;
 import org.apache.commons.collections.bag.HashBag;
 import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.fs.FSDataOutputStream;
@@ -56,20 +55,31 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.PosixFileAttributeView;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -87,16 +97,18 @@ public class CertificateMaterializer {
   private final static Pattern HDFS_SCHEME = Pattern.compile("^hdfs://.*");
   private final static int MAX_NUMBER_OF_RETRIES = 3;
   private final static long RETRY_WAIT_TIMEOUT = 10;
+  private final static int LOCK_STRIPES = 64;
   
+  // Entries of a MaterialKey are only modified while holding its local lock
   private final Map<MaterialKey, Bag> materializedCerts;
   private final Map<MaterialKey, CryptoMaterial> materialCache;
   private final Map<MaterialKey, Map<String, Runnable>> fileRemovers;
-  private final ReentrantReadWriteLock localLock;
-  private final ReentrantReadWriteLock.ReadLock localReadLock;
-  private final ReentrantReadWriteLock.WriteLock localWriteLock;
-  private final ReentrantReadWriteLock remoteLock;
-  private final ReentrantReadWriteLock.ReadLock remoteReadLock;
-  private final ReentrantReadWriteLock.WriteLock remoteWriteLock;
+  // Material no longer materialized anywhere, kept for a while so that it is
+  // not fetched and decrypted again if it is requested shortly after
+  private final Map<MaterialKey, ReleasedMaterial> releasedMaterial;
+  // Striped by MaterialKey so that different users never contend
+  private final ReentrantLock[] localLocks;
+  private final ReentrantLock[] remoteLocks;
   private final Set<Integer> projectsWithOpenInterpreters;
   
   private String lock_id;
@@ -104,6 +116,10 @@ public class CertificateMaterializer {
   private String transientDir;
   private Long DELAY_VALUE;
   private TimeUnit DELAY_TIMEUNIT;
+  private boolean directBuffers;
+  private int releasedMaterialMaxSize;
+  private long releasedMaterialTtlMs;
+  private ScheduledFuture releasedMaterialEvictor;
   
   @EJB
   private Settings settings;
@@ -125,15 +141,16 @@ public class CertificateMaterializer {
   private ManagedScheduledExecutorService scheduler;
   
   public CertificateMaterializer() {
-    materializedCerts = new HashMap<>();
-    materialCache = new HashMap<>();
-    fileRemovers = new HashMap<>();
-    localLock = new ReentrantReadWriteLock(true);
-    localReadLock = localLock.readLock();
-    localWriteLock = localLock.writeLock();
-    remoteLock = new ReentrantReadWriteLock(true);
-    remoteWriteLock = remoteLock.writeLock();
-    remoteReadLock = remoteLock.readLock();
+    materializedCerts = new ConcurrentHashMap<>();
+    materialCache = new ConcurrentHashMap<>();
+    fileRemovers = new ConcurrentHashMap<>();
+    releasedMaterial = new LinkedHashMap<>();
+    localLocks = new ReentrantLock[LOCK_STRIPES];
+    remoteLocks = new ReentrantLock[LOCK_STRIPES];
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      localLocks[i] = new ReentrantLock(true);
+      remoteLocks[i] = new ReentrantLock(true);
+    }
     projectsWithOpenInterpreters = new ConcurrentSkipListSet<>();
   }
   
@@ -198,10 +215,12 @@ public class CertificateMaterializer {
           .getAbsolutePath() + " during startup, there might be stale " +
           "certificates", ex);
     }
-    transientDir = tmpDir.getAbsolutePath();
     String delayRaw = settings.getCertificateMaterializerDelay();
-    DELAY_VALUE = Settings.getConfTimeValue(delayRaw);
-    DELAY_TIMEUNIT = Settings.getConfTimeTimeUnit(delayRaw);
+    directBuffers = settings.isCertificateMaterializerDirectBuffers();
+    String ttlRaw = settings.getCertificateMaterializerCacheTtl();
+    init(scheduler, tmpDir.getAbsolutePath(), Settings.getConfTimeValue(delayRaw), Settings.getConfTimeTimeUnit(delayRaw),
+        settings.getCertificateMaterializerCacheSize(),
+        Settings.getConfTimeTimeUnit(ttlRaw).toMillis(Settings.getConfTimeValue(ttlRaw)));
     
     try {
       String hostAddress = InetAddress.getLocalHost().getHostAddress();
@@ -213,8 +232,35 @@ public class CertificateMaterializer {
     }
   }
   
+  void init(ManagedScheduledExecutorService scheduler, String transientDir, long delayValue,
+      TimeUnit delayTimeUnit, int releasedMaterialMaxSize, long releasedMaterialTtlMs) {
+    this.scheduler = scheduler;
+    this.transientDir = transientDir;
+    DELAY_VALUE = delayValue;
+    DELAY_TIMEUNIT = delayTimeUnit;
+    this.releasedMaterialMaxSize = releasedMaterialMaxSize;
+    this.releasedMaterialTtlMs = releasedMaterialTtlMs;
+    if (releasedMaterialMaxSize > 0) {
+      releasedMaterialEvictor = scheduler.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          evictReleasedMaterial(System.currentTimeMillis());
+        }
+      }, releasedMaterialTtlMs, releasedMaterialTtlMs, TimeUnit.MILLISECONDS);
+    }
+  }
+  
   @PreDestroy
   public void tearDown() {
+    if (releasedMaterialEvictor != null) {
+      releasedMaterialEvictor.cancel(false);
+    }
+    synchronized (releasedMaterial) {
+      for (ReleasedMaterial released : releasedMaterial.values()) {
+        released.material.wipe();
+      }
+      releasedMaterial.clear();
+    }
     try {
       FileUtils.cleanDirectory(new File(transientDir));
     } catch (IOException ex) {
@@ -247,11 +293,12 @@ public class CertificateMaterializer {
   public void materializeCertificatesLocal(String userName, String projectName)
       throws IOException {
     MaterialKey key = new MaterialKey(userName, projectName);
+    ReentrantLock lock = localLock(key);
     try {
-      localWriteLock.lock();
+      lock.lock();
       materializeLocalInternal(key, transientDir);
     } finally {
-      localWriteLock.unlock();
+      lock.unlock();
     }
   }
   
@@ -281,11 +328,12 @@ public class CertificateMaterializer {
     throws IOException {
     MaterialKey key = new MaterialKey(userName, projectName);
     localDirectory = localDirectory != null ? localDirectory : transientDir;
+    ReentrantLock lock = localLock(key);
     try {
-      localWriteLock.lock();
+      lock.lock();
       materializeLocalInternal(key, localDirectory);
     } finally {
-      localWriteLock.unlock();
+      lock.unlock();
     }
   }
   
@@ -306,11 +354,12 @@ public class CertificateMaterializer {
    */
   public void removeCertificatesLocal(String userName, String projectName) {
     MaterialKey key = new MaterialKey(userName, projectName);
+    ReentrantLock lock = localLock(key);
     try {
-      localWriteLock.lock();
+      lock.lock();
       removeLocal(key, transientDir);
     } finally {
-      localWriteLock.unlock();
+      lock.unlock();
     }
   }
   
@@ -334,11 +383,12 @@ public class CertificateMaterializer {
   public void removeCertificatesLocalCustomDir(String username, String projectName, String localDirectory) {
     MaterialKey key = new MaterialKey(username, projectName);
     localDirectory = localDirectory != null ? localDirectory : transientDir;
+    ReentrantLock lock = localLock(key);
     try {
-      localWriteLock.lock();
+      lock.lock();
       removeLocal(key, localDirectory);
     } finally {
-      localWriteLock.unlock();
+      lock.unlock();
     }
   }
   
@@ -360,11 +410,12 @@ public class CertificateMaterializer {
     }
     remoteDirectory = normalizeURI(remoteDirectory);
     MaterialKey key = new MaterialKey(userName, projectName);
+    ReentrantLock lock = remoteLock(key);
     try {
-      remoteWriteLock.lock();
+      lock.lock();
       materializeRemoteInternal(key, ownerName, groupName, permissions, remoteDirectory);
     } finally {
-      remoteWriteLock.unlock();
+      lock.unlock();
     }
   }
   
@@ -381,11 +432,12 @@ public class CertificateMaterializer {
     }
     remoteDirectory = normalizeURI(remoteDirectory);
     MaterialKey key = new MaterialKey(userName, projectName);
+    ReentrantLock lock = remoteLock(key);
     try {
-      remoteWriteLock.lock();
+      lock.lock();
       removeRemoteInternal(key, remoteDirectory, false);
     } finally {
-      remoteWriteLock.unlock();
+      lock.unlock();
     }
   }
   
@@ -405,16 +457,19 @@ public class CertificateMaterializer {
       throw new IllegalArgumentException("Remote directory cannot be null");
     }
     remoteDirectory = normalizeURI(remoteDirectory);
+    forceRemoveRemoteMaterial(new MaterialKey(username, projectName), remoteDirectory);
+    if (bothProjectAndUser) {
+      forceRemoveRemoteMaterial(new MaterialKey(null, projectName), remoteDirectory);
+    }
+  }
+  
+  private void forceRemoveRemoteMaterial(MaterialKey key, String remoteDirectory) {
+    ReentrantLock lock = remoteLock(key);
     try {
-      remoteWriteLock.lock();
-      MaterialKey key = new MaterialKey(username, projectName);
+      lock.lock();
       removeRemoteInternal(key, remoteDirectory, true);
-      if (bothProjectAndUser) {
-        key = new MaterialKey(null, projectName);
-        removeRemoteInternal(key, remoteDirectory, true);
-      }
     } finally {
-      remoteWriteLock.unlock();
+      lock.unlock();
     }
   }
   
@@ -439,17 +494,12 @@ public class CertificateMaterializer {
    */
   public CryptoMaterial getUserMaterial(String username, String projectName) throws CryptoPasswordNotFoundException {
     MaterialKey key = new MaterialKey(username, projectName);
-    try {
-      localReadLock.lock();
-      CryptoMaterial material = materialCache.get(key);
-      if (material == null) {
-        throw new CryptoPasswordNotFoundException("Cryptographic material for user <" + key.getExtendedUsername() + "" +
-            " does not exist in the cache!");
-      }
-      return material;
-    } finally {
-      localReadLock.unlock();
+    CryptoMaterial material = materialCache.get(key);
+    if (material == null) {
+      throw new CryptoPasswordNotFoundException("Cryptographic material for user <" + key.getExtendedUsername() + "" +
+          " does not exist in the cache!");
     }
+    return material;
   }
   
   /**
@@ -481,8 +531,9 @@ public class CertificateMaterializer {
   public boolean existsInLocalStore(String username, String projectName, String directory) {
     directory = directory != null ? directory : transientDir;
     MaterialKey key = new MaterialKey(username, projectName);
+    ReentrantLock lock = localLock(key);
     try {
-      localReadLock.lock();
+      lock.lock();
       Bag materializedPaths = materializedCerts.get(key);
       if (materializedPaths == null) {
         return false;
@@ -490,7 +541,7 @@ public class CertificateMaterializer {
       
       return materializedPaths.contains(directory);
     } finally {
-      localReadLock.unlock();
+      lock.unlock();
     }
   }
   
@@ -513,6 +564,45 @@ public class CertificateMaterializer {
     return ref != null;
   }
   
+  /**
+   * Wipe the released crypto material of a user, so that the next materialization reads it from the database.
+   * Must be called when the certificates or their password change
+   *
+   * @param username Username of the user, null for the project generic user
+   * @param projectName Name of the Project
+   */
+  public void invalidateReleasedMaterial(String username, String projectName) {
+    ReleasedMaterial released;
+    synchronized (releasedMaterial) {
+      released = releasedMaterial.remove(new MaterialKey(username, projectName));
+    }
+    if (released != null) {
+      released.material.wipe();
+    }
+  }
+  
+  /**
+   * Wipe the released crypto material of every user of a project, including the project generic user
+   *
+   * @param projectName Name of the Project
+   */
+  public void invalidateProjectReleasedMaterial(String projectName) {
+    List<CryptoMaterial> toWipe = new ArrayList<>();
+    synchronized (releasedMaterial) {
+      Iterator<Map.Entry<MaterialKey, ReleasedMaterial>> iter = releasedMaterial.entrySet().iterator();
+      while (iter.hasNext()) {
+        Map.Entry<MaterialKey, ReleasedMaterial> entry = iter.next();
+        if (entry.getKey().projectName.equals(projectName)) {
+          toWipe.add(entry.getValue().material);
+          iter.remove();
+        }
+      }
+    }
+    for (CryptoMaterial wipe : toWipe) {
+      wipe.wipe();
+    }
+  }
+  
   /*
    * End of Certificate materializer API
    */
@@ -587,23 +677,30 @@ public class CertificateMaterializer {
   
   private MaterializerState<Map<MaterialKey, Bag>, List<RemoteMaterialReferences>,
       Map<MaterialKey, Map<String, Runnable>>> getImmutableState() {
-    Map<MaterialKey, Bag> localMaterial = null;
-    Map<MaterialKey, Map<String, Runnable>> scheduledRemovals = null;
-    List<RemoteMaterialReferences> remoteMaterial = null;
-    try {
-      localWriteLock.lock();
-      localMaterial = MapUtils.unmodifiableMap(materializedCerts);
-      scheduledRemovals = MapUtils.unmodifiableMap(fileRemovers);
-    } finally {
-      localWriteLock.unlock();
+    // Copy the entries of every key under its own lock instead of stopping
+    // all the materializations to take a snapshot
+    Map<MaterialKey, Bag> localMaterial = new HashMap<>(materializedCerts.size());
+    Map<MaterialKey, Map<String, Runnable>> scheduledRemovals = new HashMap<>(fileRemovers.size());
+    Set<MaterialKey> keys = new HashSet<>(materializedCerts.keySet());
+    keys.addAll(fileRemovers.keySet());
+    for (MaterialKey key : keys) {
+      ReentrantLock lock = localLock(key);
+      try {
+        lock.lock();
+        Bag bag = materializedCerts.get(key);
+        if (bag != null) {
+          localMaterial.put(key, new HashBag(bag));
+        }
+        Map<String, Runnable> removers = fileRemovers.get(key);
+        if (removers != null) {
+          scheduledRemovals.put(key, new HashMap<>(removers));
+        }
+      } finally {
+        lock.unlock();
+      }
     }
     
-    try {
-      remoteWriteLock.lock();
-      remoteMaterial = remoteMaterialReferencesFacade.findAll();
-    } finally {
-      remoteWriteLock.unlock();
-    }
+    List<RemoteMaterialReferences> remoteMaterial = remoteMaterialReferencesFacade.findAll();
     
     return new MaterializerState(localMaterial, remoteMaterial, scheduledRemovals);
   }
@@ -668,8 +765,11 @@ public class CertificateMaterializer {
       boolean shouldContinue = checkWithScheduledRemovalsLocal(key, localDirectory);
       if (shouldContinue) {
         // First time it was requested to be materialized
-        // 1. Get certs fro DB
-        CryptoMaterial material = getMaterialFromDatabase(key);
+        // 1. Get certs from the released material or the DB
+        CryptoMaterial material = takeReleasedMaterial(key);
+        if (material == null) {
+          material = getMaterialFromDatabase(key.username, key.projectName);
+        }
         // 2. Add them to L1 Cache
         materialCache.put(key, material);
         // 3. Write them to local FS
@@ -689,12 +789,20 @@ public class CertificateMaterializer {
         boolean shouldContinue = checkWithScheduledRemovalsLocal(key, localDirectory);
       
         if (shouldContinue) {
+          // A removal that could not be cancelled has been forced and might
+          // have dropped the bag of the material
+          materializedDirs = materializedCerts.get(key);
+          if (materializedDirs == null) {
+            materializedDirs = new HashBag();
+            materializedCerts.put(key, materializedDirs);
+          }
           // First time for this directory, but not for the material in general
           // 1. Get byte material from L1 Cache. If not there, something went wrong
           // but fetch them from DB anyways
           CryptoMaterial material = materialCache.get(key);
           if (material == null) {
-            material = getMaterialFromDatabase(key);
+            material = getMaterialFromDatabase(key.username, key.projectName);
+            materialCache.put(key, material);
           }
           // 2. Flush buffers to local filesystem
           flushToLocalFileSystem(key, material, localDirectory);
@@ -726,10 +834,13 @@ public class CertificateMaterializer {
     if (managedToCancel) {
       // Put back to L1 cache
       if (!materialCache.containsKey(key)) {
-        if (localFileRemover.cryptoMaterial != null) {
+        if (localFileRemover.cryptoMaterial != null && !localFileRemover.cryptoMaterial.isWiped()) {
           materialCache.put(key, localFileRemover.cryptoMaterial);
         } else {
-          CryptoMaterial material = getMaterialFromDatabase(key);
+          CryptoMaterial material = takeReleasedMaterial(key);
+          if (material == null) {
+            material = getMaterialFromDatabase(key.username, key.projectName);
+          }
           materialCache.put(key, material);
         }
       }
@@ -762,9 +873,30 @@ public class CertificateMaterializer {
     File trustStoreFile = Paths.get(targetDir, key.getExtendedUsername() + TRUSTSTORE_SUFFIX).toFile();
     File passwordFile = Paths.get(targetDir, key.getExtendedUsername() + CERT_PASS_SUFFIX).toFile();
     
-    FileUtils.writeByteArrayToFile(keyStoreFile, cryptoMaterial.getKeyStore().array(), false);
-    FileUtils.writeByteArrayToFile(trustStoreFile, cryptoMaterial.getTrustStore().array(), false);
-    FileUtils.write(passwordFile, new String(cryptoMaterial.getPassword()), false);
+    writeToLocalFile(keyStoreFile, cryptoMaterial.getKeyStore());
+    writeToLocalFile(trustStoreFile, cryptoMaterial.getTrustStore());
+    ByteBuffer password = StandardCharsets.UTF_8.encode(CharBuffer.wrap(cryptoMaterial.getPassword()));
+    try {
+      writeToLocalFile(passwordFile, password);
+    } finally {
+      zero(password);
+    }
+  }
+  
+  // Writes straight from the buffer, heap or direct, without an intermediate array
+  private void writeToLocalFile(File file, ByteBuffer data) throws IOException {
+    java.nio.file.Path path = file.toPath();
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+    ByteBuffer src = data.duplicate();
+    src.rewind();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (src.hasRemaining()) {
+        channel.write(src);
+      }
+    }
   }
   
   
@@ -790,7 +922,7 @@ public class CertificateMaterializer {
     if (materialRemovesForKey != null) {
       materialRemovesForKey.put(materializationDirectory, fileRemover);
     } else {
-      materialRemovesForKey = new HashMap<>();
+      materialRemovesForKey = new ConcurrentHashMap<>();
       materialRemovesForKey.put(materializationDirectory, fileRemover);
       fileRemovers.put(key, materialRemovesForKey);
     }
@@ -811,10 +943,11 @@ public class CertificateMaterializer {
   }
   
   private void forceRemoveLocalMaterial(String username, String projectName, String materializationDirectory) {
+    MaterialKey key = new MaterialKey(username, projectName);
+    ReentrantLock lock = localLock(key);
     try {
-      localWriteLock.lock();
+      lock.lock();
       materializationDirectory = materializationDirectory != null ? materializationDirectory : transientDir;
-      MaterialKey key = new MaterialKey(username, projectName);
       // First remove from File Removers list
       Map<String, Runnable> materialRemovers = fileRemovers.get(key);
       if (materialRemovers != null) {
@@ -835,7 +968,15 @@ public class CertificateMaterializer {
           materializedCerts.remove(key);
           CryptoMaterial material = materialCache.remove(key);
           if (material != null) {
-            material.wipePassword();
+            material.wipe();
+          }
+          // Forced removals do not keep the material around
+          ReleasedMaterial released;
+          synchronized (releasedMaterial) {
+            released = releasedMaterial.remove(key);
+          }
+          if (released != null) {
+            released.material.wipe();
           }
         }
       }
@@ -843,7 +984,80 @@ public class CertificateMaterializer {
       // Then from local FS
       deleteMaterialFromLocalFs(key, materializationDirectory);
     } finally {
-      localWriteLock.unlock();
+      lock.unlock();
+    }
+  }
+  
+  /*
+   * Released material section
+   */
+  private ReentrantLock localLock(MaterialKey key) {
+    return localLocks[(key.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+  }
+  
+  private ReentrantLock remoteLock(MaterialKey key) {
+    return remoteLocks[(key.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+  }
+  
+  // Called with the local lock of the key held, once the material is not
+  // materialized anywhere any more
+  private void releaseMaterial(MaterialKey key, CryptoMaterial material) {
+    if (releasedMaterialMaxSize <= 0) {
+      material.wipe();
+      return;
+    }
+    List<CryptoMaterial> toWipe = new ArrayList<>();
+    synchronized (releasedMaterial) {
+      // Removed first so that the entry moves to the end of the insertion order
+      ReleasedMaterial previous = releasedMaterial.remove(key);
+      releasedMaterial.put(key, new ReleasedMaterial(material, System.currentTimeMillis()));
+      if (previous != null && previous.material != material) {
+        toWipe.add(previous.material);
+      }
+      Iterator<ReleasedMaterial> iter = releasedMaterial.values().iterator();
+      while (releasedMaterial.size() > releasedMaterialMaxSize && iter.hasNext()) {
+        toWipe.add(iter.next().material);
+        iter.remove();
+      }
+    }
+    for (CryptoMaterial wipe : toWipe) {
+      wipe.wipe();
+    }
+  }
+  
+  // Called with the local lock of the key held. The material returned is
+  // owned by the caller again
+  private CryptoMaterial takeReleasedMaterial(MaterialKey key) {
+    ReleasedMaterial released;
+    synchronized (releasedMaterial) {
+      released = releasedMaterial.remove(key);
+    }
+    if (released == null) {
+      return null;
+    }
+    if (System.currentTimeMillis() - released.releasedAt > releasedMaterialTtlMs) {
+      released.material.wipe();
+      return null;
+    }
+    return released.material;
+  }
+  
+  private void evictReleasedMaterial(long now) {
+    List<CryptoMaterial> toWipe = new ArrayList<>();
+    synchronized (releasedMaterial) {
+      // Insertion ordered, the oldest releases come first
+      Iterator<ReleasedMaterial> iter = releasedMaterial.values().iterator();
+      while (iter.hasNext()) {
+        ReleasedMaterial released = iter.next();
+        if (now - released.releasedAt <= releasedMaterialTtlMs) {
+          break;
+        }
+        toWipe.add(released.material);
+        iter.remove();
+      }
+    }
+    for (CryptoMaterial wipe : toWipe) {
+      wipe.wipe();
     }
   }
   
@@ -870,7 +1084,7 @@ public class CertificateMaterializer {
           // 1. Check if in cache otherwise fetch from DB
           CryptoMaterial material = materialCache.get(key);
           if (material == null) {
-            material = getMaterialFromDatabase(key);
+            material = getMaterialFromDatabase(key.username, key.projectName);
           }
           
           // 2. Upload to HDFS
@@ -878,13 +1092,13 @@ public class CertificateMaterializer {
           try {
             Path keyStore = new Path(remoteDirectory + Path.SEPARATOR + key.getExtendedUsername()
                 + KEYSTORE_SUFFIX);
-            writeToHDFS(dfso, keyStore, material.getKeyStore().array());
+            writeToHDFS(dfso, keyStore, material.getKeyStore());
             dfso.setOwner(keyStore, ownerName, groupName);
             dfso.setPermission(keyStore, permissions);
             
             Path trustStore = new Path(remoteDirectory + Path.SEPARATOR + key.getExtendedUsername()
                 + TRUSTSTORE_SUFFIX);
-            writeToHDFS(dfso, trustStore, material.getKeyStore().array());
+            writeToHDFS(dfso, trustStore, material.getTrustStore());
             dfso.setOwner(trustStore, ownerName, groupName);
             dfso.setPermission(trustStore, permissions);
   
@@ -937,13 +1151,18 @@ public class CertificateMaterializer {
   }
   
   
-  private void writeToHDFS(DistributedFileSystemOps dfso, Path path, byte[] data) throws IOException {
+  private void writeToHDFS(DistributedFileSystemOps dfso, Path path, ByteBuffer data) throws IOException {
     if (dfso == null) {
       throw new IOException("DistributedFilesystemOps is null");
     }
     FSDataOutputStream fsStream = dfso.getFilesystem().create(path);
     try {
-      fsStream.write(data);
+      ByteBuffer src = data.duplicate();
+      src.rewind();
+      WritableByteChannel channel = Channels.newChannel(fsStream);
+      while (src.hasRemaining()) {
+        channel.write(src);
+      }
       fsStream.hflush();
     } finally {
       if (fsStream != null) {
@@ -1047,7 +1266,8 @@ public class CertificateMaterializer {
   /*
    * Utility methods
    */
-  private CryptoMaterial getMaterialFromDatabase(MaterialKey key) throws IOException {
+  CryptoMaterial getMaterialFromDatabase(String username, String projectName) throws IOException {
+    MaterialKey key = new MaterialKey(username, projectName);
     if (key.isProjectUser()) {
       ProjectGenericUserCerts projectGenericUserCerts = certsFacade.findProjectGenericUserCerts(key
           .getExtendedUsername());
@@ -1056,21 +1276,41 @@ public class CertificateMaterializer {
         LOG.log(Level.SEVERE, msg);
         throw new IOException(msg);
       }
-      ByteBuffer keyStore = ByteBuffer.wrap(projectGenericUserCerts.getKey());
-      ByteBuffer trustStore = ByteBuffer.wrap(projectGenericUserCerts.getCert());
+      ByteBuffer keyStore = toBuffer(projectGenericUserCerts.getKey());
+      ByteBuffer trustStore = toBuffer(projectGenericUserCerts.getCert());
       char[] password = decryptMaterialPassword(key.projectName, projectGenericUserCerts
           .getCertificatePassword(), ProjectGenericUserCerts.class);
       return new CryptoMaterial(keyStore, trustStore, password);
     }
   
     UserCerts projectSpecificCerts = certsFacade.findUserCert(key.projectName, key.username);
-    ByteBuffer keyStore = ByteBuffer.wrap(projectSpecificCerts.getUserKey());
-    ByteBuffer trustStore = ByteBuffer.wrap(projectSpecificCerts.getUserCert());
+    ByteBuffer keyStore = toBuffer(projectSpecificCerts.getUserKey());
+    ByteBuffer trustStore = toBuffer(projectSpecificCerts.getUserCert());
     char[] password = decryptMaterialPassword(key.getExtendedUsername(), projectSpecificCerts.getUserKeyPwd(),
         UserCerts.class);
     return new CryptoMaterial(keyStore, trustStore, password);
   }
   
+  // The entity arrays belong to the persistence context, so heap buffers
+  // wrap them and are never zeroed while direct buffers hold a private copy
+  private ByteBuffer toBuffer(byte[] data) {
+    if (!directBuffers) {
+      return ByteBuffer.wrap(data);
+    }
+    ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+    buffer.put(data);
+    buffer.flip();
+    return buffer;
+  }
+  
+  private static void zero(ByteBuffer buffer) {
+    buffer.clear();
+    while (buffer.hasRemaining()) {
+      buffer.put((byte) 0);
+    }
+    buffer.clear();
+  }
+  
   private <T> char[] decryptMaterialPassword(String certificateIdentifier, String encryptedPassword, Class<T> cls)
       throws IOException {
     String userPassword;
@@ -1116,6 +1356,7 @@ public class CertificateMaterializer {
     private final ByteBuffer keyStore;
     private final ByteBuffer trustStore;
     private final char[] password;
+    private volatile boolean wiped = false;
     
     public CryptoMaterial(ByteBuffer keyStore, ByteBuffer trustStore, char[] password) {
       this.keyStore = keyStore;
@@ -1131,6 +1372,20 @@ public class CertificateMaterializer {
       return trustStore;
     }
   
+    /**
+     * @return a copy of the keystore, the buffer might not be backed by an array
+     */
+    public byte[] getKeyStoreBytes() {
+      return toBytes(keyStore);
+    }
+  
+    /**
+     * @return a copy of the truststore, the buffer might not be backed by an array
+     */
+    public byte[] getTrustStoreBytes() {
+      return toBytes(trustStore);
+    }
+  
     public char[] getPassword() {
       return password;
     }
@@ -1140,6 +1395,33 @@ public class CertificateMaterializer {
         password[i] = 0;
       }
     }
+    
+    /**
+     * Wipes the password and zeroes the direct buffers. Heap buffers wrap the
+     * arrays of the certificate entities and are left to the GC.
+     */
+    public void wipe() {
+      wiped = true;
+      wipePassword();
+      if (keyStore.isDirect()) {
+        zero(keyStore);
+      }
+      if (trustStore.isDirect()) {
+        zero(trustStore);
+      }
+    }
+    
+    public boolean isWiped() {
+      return wiped;
+    }
+    
+    private byte[] toBytes(ByteBuffer buffer) {
+      ByteBuffer src = buffer.duplicate();
+      src.rewind();
+      byte[] bytes = new byte[src.remaining()];
+      src.get(bytes);
+      return bytes;
+    }
   }
   
   private class MaterialKey {
@@ -1196,6 +1478,16 @@ public class CertificateMaterializer {
     }
   }
   
+  private class ReleasedMaterial {
+    private final CryptoMaterial material;
+    private final long releasedAt;
+    
+    private ReleasedMaterial(CryptoMaterial material, long releasedAt) {
+      this.material = material;
+      this.releasedAt = releasedAt;
+    }
+  }
+  
   private class LocalFileRemover implements Runnable {
     private final MaterialKey key;
     private final CryptoMaterial cryptoMaterial;
@@ -1210,31 +1502,34 @@ public class CertificateMaterializer {
     
     @Override
     public void run() {
-      deleteMaterialFromLocalFs(key, materializationDirectory);
-      Map<String, Runnable> materialRemovers = fileRemovers.get(key);
-      if (materialRemovers != null) {
+      ReentrantLock lock = localLock(key);
+      try {
+        lock.lock();
+        Map<String, Runnable> materialRemovers = fileRemovers.get(key);
+        // The removal might have been cancelled or forced while waiting for
+        // the lock, then the files may belong to a new materialization
+        if (materialRemovers == null || materialRemovers.get(materializationDirectory) != this) {
+          return;
+        }
+        deleteMaterialFromLocalFs(key, materializationDirectory);
         materialRemovers.remove(materializationDirectory);
         if (materialRemovers.isEmpty()) {
           fileRemovers.remove(key);
         }
-  
-        // No more references to that crypto material, wipe out password
-        try {
-          localWriteLock.lock();
-          Bag materialBag = materializedCerts.get(key);
-          if (materialBag.isEmpty()) {
-            materializedCerts.remove(key);
-            CryptoMaterial material = materialCache.remove(key);
-            if (material != null) {
-              material.wipePassword();
-            }
+        
+        // No more references to that crypto material, release it
+        Bag materialBag = materializedCerts.get(key);
+        if (materialBag == null || materialBag.isEmpty()) {
+          materializedCerts.remove(key);
+          CryptoMaterial material = materialCache.remove(key);
+          if (material != null) {
+            releaseMaterial(key, material);
           }
-        } finally {
-          localWriteLock.unlock();
         }
-        
         LOG.log(Level.FINEST, "Deleted crypto material for <" + key.getExtendedUsername() + "> from directory "
             + materializationDirectory);
+      } finally {
+        lock.unlock();
       }
     }
   }
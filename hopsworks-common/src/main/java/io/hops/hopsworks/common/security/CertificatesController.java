@@ -63,6 +63,8 @@ public class CertificatesController {
   private CertificatesMgmService certificatesMgmService;
   @EJB
   private OpensslOperations opensslOperations;
+  @EJB
+  private CertificateMaterializer certificateMaterializer;
   
   /**
    * Creates x509 certificates for a project specific user and project generic
@@ -115,11 +117,14 @@ public class CertificatesController {
         lock.unlock();
       }
       certsFacade.putProjectGenericUserCerts(project.getProjectGenericUser(), encryptedKey);
+      certificateMaterializer.invalidateReleasedMaterial(null, project.getName());
       LOG.log(Level.FINE, "Created project generic certificates for project: "
           + project.getName());
     }
   
     certsFacade.putUserCerts(project.getName(), user.getUsername(), encryptedKey);
+    // Material released for a previous user or project with the same name is stale
+    certificateMaterializer.invalidateReleasedMaterial(user.getUsername(), project.getName());
     return new AsyncResult<>(
         new CertsResult(project.getName(), user.getUsername()));
   }
@@ -150,6 +155,7 @@ public class CertificatesController {
     // Zeppelin. User specific certificates are removed by the foreign key
     // constraint in the DB
     certsFacade.removeProjectGenericCertificates(project.getProjectGenericUser());
+    certificateMaterializer.invalidateProjectReleasedMaterial(projectName);
   }
   
   @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
@@ -168,6 +174,7 @@ public class CertificatesController {
       lock.unlock();
     }
     certsFacade.removeUserProjectCerts(project.getName(), user.getUsername());
+    certificateMaterializer.invalidateReleasedMaterial(user.getUsername(), project.getName());
   }
   
   @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
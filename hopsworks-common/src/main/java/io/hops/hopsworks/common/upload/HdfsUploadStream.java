@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.upload;
+
+import io.hops.hopsworks.common.exception.AppException;
+import io.hops.hopsworks.common.hdfs.DistributedFileSystemOps;
+import io.hops.hopsworks.common.hdfs.DistributedFsService;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.core.Response;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Writes the chunks of a resumable upload straight into a file in HDFS.
+ * Chunks arriving in order are appended to the open HDFS stream. Chunks
+ * arriving ahead of their turn are spilled to local disk, up to a limit, and
+ * appended as soon as the chunks before them have been written.
+ */
+public class HdfsUploadStream implements Closeable {
+
+  private static final Logger LOG = Logger.getLogger(HdfsUploadStream.class.getName());
+
+  // Chunks up to this size are received in memory, larger ones are always spilled
+  private static final int MAX_BUFFERED_CHUNK = 8 * 1024 * 1024;
+
+  private final DistributedFsService dfs;
+  private final DistributedFileSystemOps dfso;
+  private final Path location;
+  private final File spillDir;
+  private final long spillLimit;
+  private final FSDataOutputStream out;
+
+  // Held while writing to the HDFS stream
+  private final ReentrantLock outLock = new ReentrantLock();
+  private volatile int nextChunk = 1;
+  private long written = 0;
+  private volatile boolean failed = false;
+  private boolean closed = false;
+
+  private final Map<Integer, Spill> spilled = new ConcurrentHashMap<>();
+  private final AtomicLong spilledBytes = new AtomicLong(0);
+
+  /**
+   * Creates the file in HDFS, overwriting it if it exists.
+   *
+   * @param dfs used to release <i>dfso</i> when the stream is closed
+   * @param dfso file system client of the uploading user, kept open until the stream is closed
+   * @param location file to create
+   * @param spillDir local directory for out of order chunks
+   * @param spillLimit maximum number of bytes of out of order chunks kept in <i>spillDir</i>
+   * @throws IOException
+   */
+  public HdfsUploadStream(DistributedFsService dfs, DistributedFileSystemOps dfso, Path location, File spillDir,
+      long spillLimit) throws IOException {
+    this.dfs = dfs;
+    this.dfso = dfso;
+    this.location = location;
+    this.spillDir = spillDir;
+    this.spillLimit = spillLimit;
+    this.out = dfso.create(location);
+  }
+
+  public DistributedFileSystemOps getDfsOps() {
+    return dfso;
+  }
+
+  public Path getLocation() {
+    return location;
+  }
+
+  /**
+   * @return true if writing to HDFS failed and the upload cannot continue
+   */
+  public boolean isFailed() {
+    return failed;
+  }
+
+  /**
+   * Writes a chunk. Chunks that have already been written are ignored.
+   *
+   * @param chunkNumber 1 based number of the chunk
+   * @param in chunk content
+   * @param length chunk size
+   * @throws IOException if the chunk could not be read or written. The upload
+   * cannot continue if HDFS failed.
+   * @throws AppException if the chunk is out of order and the spill area is
+   * full. The chunk can be sent again later.
+   */
+  public void write(int chunkNumber, InputStream in, long length) throws IOException, AppException {
+    if (failed) {
+      throw new IOException("Upload to " + location + " has failed");
+    }
+    if (chunkNumber < nextChunk || spilled.containsKey(chunkNumber)) {
+      return;
+    }
+    if (length < 0) {
+      throw new IOException("Invalid chunk size " + length);
+    }
+
+    byte[] data = null;
+    if (length <= MAX_BUFFERED_CHUNK) {
+      data = readFully(in, (int) length);
+      if (chunkNumber == nextChunk && outLock.tryLock()) {
+        try {
+          if (chunkNumber == nextChunk) {
+            append(data);
+            nextChunk++;
+            drainSpilled();
+          }
+        } finally {
+          outLock.unlock();
+        }
+        drain();
+        return;
+      }
+    }
+    if (chunkNumber < nextChunk) {
+      return;
+    }
+
+    // The chunk is not next or another request is writing, keep it aside.
+    // The chunk that is next is always accepted to guarantee progress.
+    long total = spilledBytes.addAndGet(length);
+    if (total > spillLimit && chunkNumber != nextChunk) {
+      spilledBytes.addAndGet(-length);
+      throw new AppException(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(),
+          "Too many chunks received out of order, retry later.");
+    }
+    File file;
+    try {
+      file = spill(data, in, length);
+    } catch (IOException ex) {
+      spilledBytes.addAndGet(-length);
+      throw ex;
+    }
+    if (spilled.putIfAbsent(chunkNumber, new Spill(file, length)) != null) {
+      spilledBytes.addAndGet(-length);
+      Files.deleteIfExists(file.toPath());
+    }
+    drain();
+  }
+
+  /**
+   * Writes the remaining spilled chunks and completes the file in HDFS.
+   *
+   * @return number of bytes written
+   * @throws IOException if a chunk is missing or the file could not be completed
+   */
+  public long finish() throws IOException {
+    outLock.lock();
+    try {
+      if (failed) {
+        throw new IOException("Upload to " + location + " has failed");
+      }
+      drainSpilled();
+      if (!spilled.isEmpty()) {
+        throw new IOException("Chunk " + nextChunk + " of " + location + " is missing");
+      }
+      out.close();
+      return written;
+    } finally {
+      outLock.unlock();
+    }
+  }
+
+  /**
+   * Stops the upload and removes the partially written file.
+   */
+  public void abort() {
+    failed = true;
+    outLock.lock();
+    try {
+      try {
+        out.close();
+      } catch (IOException ex) {
+        LOG.log(Level.FINE, "Could not close " + location, ex);
+      }
+      dfso.rm(location, false);
+    } catch (IOException ex) {
+      LOG.log(Level.WARNING, "Could not remove partially uploaded file " + location, ex);
+    } finally {
+      outLock.unlock();
+    }
+  }
+
+  /**
+   * Deletes the spilled chunks and releases the file system client.
+   */
+  @Override
+  public void close() {
+    outLock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      for (Spill spill : spilled.values()) {
+        spill.file.delete();
+      }
+      spilled.clear();
+      dfs.closeDfsClient(dfso);
+    } finally {
+      outLock.unlock();
+    }
+  }
+
+  /**
+   * Writes the spilled chunks that are next, unless another request already
+   * does. Checking again after releasing the lock makes sure a chunk spilled
+   * while the lock was held is not left behind.
+   */
+  private void drain() throws IOException {
+    while (!failed && spilled.containsKey(nextChunk)) {
+      if (!outLock.tryLock()) {
+        return;
+      }
+      try {
+        drainSpilled();
+      } finally {
+        outLock.unlock();
+      }
+    }
+  }
+
+  // Must hold outLock
+  private void drainSpilled() throws IOException {
+    Spill spill;
+    while (!failed && (spill = spilled.remove(nextChunk)) != null) {
+      try {
+        try {
+          Files.copy(spill.file.toPath(), out);
+        } catch (IOException ex) {
+          failed = true;
+          throw ex;
+        }
+        written += spill.length;
+        nextChunk++;
+      } finally {
+        spilledBytes.addAndGet(-spill.length);
+        spill.file.delete();
+      }
+    }
+  }
+
+  // Must hold outLock
+  private void append(byte[] data) throws IOException {
+    try {
+      out.write(data);
+    } catch (IOException ex) {
+      failed = true;
+      throw ex;
+    }
+    written += data.length;
+  }
+
+  private File spill(byte[] data, InputStream in, long length) throws IOException {
+    File file = File.createTempFile("chunk", ".spill", spillDir);
+    try (OutputStream os = new BufferedOutputStream(new FileOutputStream(file))) {
+      if (data != null) {
+        os.write(data);
+      } else {
+        byte[] buffer = new byte[64 * 1024];
+        long remaining = length;
+        while (remaining > 0) {
+          int r = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+          if (r < 0) {
+            throw new EOFException("Chunk ended after " + (length - remaining) + " of " + length + " bytes");
+          }
+          os.write(buffer, 0, r);
+          remaining -= r;
+        }
+      }
+    } catch (IOException ex) {
+      file.delete();
+      throw ex;
+    }
+    return file;
+  }
+
+  private static byte[] readFully(InputStream in, int length) throws IOException {
+    byte[] data = new byte[length];
+    int read = 0;
+    while (read < length) {
+      int r = in.read(data, read, length - read);
+      if (r < 0) {
+        throw new EOFException("Chunk ended after " + read + " of " + length + " bytes");
+      }
+      read += r;
+    }
+    return data;
+  }
+
+  private static class Spill {
+
+    private final File file;
+    private final long length;
+
+    Spill(File file, long length) {
+      this.file = file;
+      this.length = length;
+    }
+  }
+}
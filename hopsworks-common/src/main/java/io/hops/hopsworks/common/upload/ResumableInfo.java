@@ -21,7 +21,7 @@
 package io.hops.hopsworks.common.upload;
 
 import java.io.File;
-import java.util.HashSet;
+import java.util.BitSet;
 
 public class ResumableInfo {
 
@@ -33,9 +33,13 @@ public class ResumableInfo {
   private int resumableTemplateId;
   private long uploadedContentLength = 0;
   private String resumableFilePath;
+  //Set when the chunks are streamed straight into HDFS
+  private volatile HdfsUploadStream uploadStream;
 
-  //Chunks uploaded. Private to enable atomically add and check if finished
-  private HashSet<ResumableChunkNumber> uploadedChunks = new HashSet<>();
+  //Chunks uploaded, bit n - 1 is set for chunk n. Guarded by this
+  private final BitSet uploadedChunks = new BitSet();
+  private boolean finished = false;
+  private volatile long lastAccess = System.currentTimeMillis();
 
   public static class ResumableChunkNumber {
 
@@ -58,7 +62,7 @@ public class ResumableInfo {
   }
 
   public boolean valid() {
-    if (resumableChunkSize < 0 || resumableTotalSize < 0
+    if (resumableChunkSize <= 0 || resumableTotalSize < 0
             || HttpUtils.isEmpty(resumableIdentifier)
             || HttpUtils.isEmpty(resumableFilename)
             || HttpUtils.isEmpty(resumableRelativePath)) {
@@ -68,6 +72,28 @@ public class ResumableInfo {
     }
   }
 
+  /**
+   * Upper bound of the number of chunks of the upload. flow.js appends the
+   * remainder to the last chunk, so an upload may have one chunk less.
+   * <p/>
+   * @return
+   */
+  public int getResumableTotalChunks() {
+    long chunks = (resumableTotalSize + resumableChunkSize - 1) / resumableChunkSize;
+    return (int) Math.min(Integer.MAX_VALUE, Math.max(1, chunks));
+  }
+
+  /**
+   * Check if the chunk number is within the upload, it must be checked before
+   * the chunk is written anywhere.
+   * <p/>
+   * @param rcn
+   * @return
+   */
+  public boolean isValidChunk(ResumableChunkNumber rcn) {
+    return rcn.number >= 1 && rcn.number <= getResumableTotalChunks();
+  }
+
   private boolean checkIfUploadFinished() {
     if (uploadedContentLength != resumableTotalSize) {
       return false;
@@ -90,11 +116,16 @@ public class ResumableInfo {
    */
   public synchronized boolean addChunkAndCheckIfFinished(
           ResumableChunkNumber rcn, long contentLength) {
-    if (!uploadedChunks.contains(rcn)) {
+    if (finished || !isValidChunk(rcn)) {
+      //Only the request completing the upload gets true
+      return false;
+    }
+    if (!uploadedChunks.get(rcn.number - 1)) {
+      uploadedChunks.set(rcn.number - 1);
       uploadedContentLength += contentLength;
     }
-    uploadedChunks.add(rcn);
-    return checkIfUploadFinished();
+    finished = checkIfUploadFinished();
+    return finished;
   }
 
   /**
@@ -103,8 +134,19 @@ public class ResumableInfo {
    * @param rcn
    * @return
    */
-  public boolean isUploaded(ResumableChunkNumber rcn) {
-    return uploadedChunks.contains(rcn);
+  public synchronized boolean isUploaded(ResumableChunkNumber rcn) {
+    return isValidChunk(rcn) && uploadedChunks.get(rcn.number - 1);
+  }
+
+  /**
+   * Marks the upload as active, uploads that are idle for too long are removed.
+   */
+  public void touch() {
+    lastAccess = System.currentTimeMillis();
+  }
+
+  public long getLastAccess() {
+    return lastAccess;
   }
 
   /*
@@ -134,7 +176,7 @@ public class ResumableInfo {
     return this.resumableTemplateId;
   }
 
-  public long getUploadedContentLength() {
+  public synchronized long getUploadedContentLength() {
     return this.uploadedContentLength;
   }
 
@@ -142,6 +184,10 @@ public class ResumableInfo {
     return this.resumableFilePath;
   }
 
+  public HdfsUploadStream getUploadStream() {
+    return this.uploadStream;
+  }
+
   /*
    * setters
    */
@@ -169,7 +215,7 @@ public class ResumableInfo {
     this.resumableTemplateId = resumableTemplateId;
   }
 
-  public void setUploadedContentLength(long uploadedContentLength) {
+  public synchronized void setUploadedContentLength(long uploadedContentLength) {
     this.uploadedContentLength = uploadedContentLength;
   }
 
@@ -177,4 +223,8 @@ public class ResumableInfo {
     this.resumableFilePath = resumableFilePath;
   }
 
+  public void setUploadStream(HdfsUploadStream uploadStream) {
+    this.uploadStream = uploadStream;
+  }
+
 }
@@ -20,25 +20,29 @@
 
 package io.hops.hopsworks.common.upload;
 
-import java.util.HashMap;
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class ResumableInfoStorage {
 
+  private static final Logger LOG = Logger.getLogger(ResumableInfoStorage.class.getName());
+
   //Single instance
   private ResumableInfoStorage() {
   }
-  private static ResumableInfoStorage sInstance;
+  private static final ResumableInfoStorage sInstance = new ResumableInfoStorage();
 
-  public static synchronized ResumableInfoStorage getInstance() {
-    if (sInstance == null) {
-      sInstance = new ResumableInfoStorage();
-    }
+  public static ResumableInfoStorage getInstance() {
     return sInstance;
   }
 
   //resumableIdentifier --  ResumableInfo
-  private HashMap<String, ResumableInfo> mMap
-          = new HashMap<String, ResumableInfo>();
+  private final ConcurrentMap<String, ResumableInfo> mMap = new ConcurrentHashMap<>();
 
   /**
    * Get ResumableInfo from mMap or Create a new one.
@@ -52,11 +56,15 @@ public class ResumableInfoStorage {
    * @param resumableTemplateId
    * @return
    */
-  public synchronized ResumableInfo get(int resumableChunkSize,
+  public ResumableInfo get(int resumableChunkSize,
           long resumableTotalSize,
           String resumableIdentifier, String resumableFilename,
           String resumableRelativePath, String resumableFilePath,
           int resumableTemplateId) {
+    if (resumableIdentifier == null) {
+      // Not registered, valid() rejects it
+      return new ResumableInfo();
+    }
 
     ResumableInfo info = mMap.get(resumableIdentifier);
 
@@ -71,8 +79,12 @@ public class ResumableInfoStorage {
       info.setResumableFilePath(resumableFilePath);
       info.setResumableTemplateId(resumableTemplateId);
 
-      mMap.put(resumableIdentifier, info);
+      ResumableInfo existing = mMap.putIfAbsent(resumableIdentifier, info);
+      if (existing != null) {
+        info = existing;
+      }
     }
+    info.touch();
     return info;
   }
 
@@ -82,6 +94,53 @@ public class ResumableInfoStorage {
    * @param info
    */
   public void remove(ResumableInfo info) {
-    mMap.remove(info.getResumableIdentifier());
+    if (info.getResumableIdentifier() != null) {
+      mMap.remove(info.getResumableIdentifier(), info);
+    }
+  }
+
+  /**
+   * Removes the uploads that have not received a chunk for <i>idleMs</i>.
+   * Their partially uploaded data is deleted.
+   * <p/>
+   * @param idleMs
+   * @return number of uploads removed
+   */
+  public int evictIdle(long idleMs) {
+    long now = System.currentTimeMillis();
+    int evicted = 0;
+    for (ResumableInfo info : mMap.values()) {
+      if (now - info.getLastAccess() > idleMs && mMap.remove(info.getResumableIdentifier(), info)) {
+        LOG.log(Level.INFO, "Removing abandoned upload of {0}", info.getResumableFilename());
+        discard(info);
+        evicted++;
+      }
+    }
+    return evicted;
+  }
+
+  /**
+   * @return the local files of the uploads in progress
+   */
+  public Set<String> getFilePaths() {
+    Set<String> paths = new HashSet<>();
+    for (ResumableInfo info : mMap.values()) {
+      paths.add(info.getResumableFilePath());
+    }
+    return paths;
+  }
+
+  private void discard(ResumableInfo info) {
+    HdfsUploadStream uploadStream = info.getUploadStream();
+    if (uploadStream != null) {
+      uploadStream.abort();
+      uploadStream.close();
+    }
+    if (info.getResumableFilePath() != null) {
+      File file = new File(info.getResumableFilePath());
+      if (file.exists() && !file.delete()) {
+        LOG.log(Level.WARNING, "Could not delete {0}", file.getAbsolutePath());
+      }
+    }
   }
 }
@@ -22,22 +22,33 @@ package io.hops.hopsworks.common.upload;
 
 import io.hops.hopsworks.common.util.Settings;
 import java.io.File;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.DependsOn;
 import javax.ejb.EJB;
+import javax.ejb.Schedule;
 import javax.ejb.Singleton;
+import javax.ejb.Timer;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.flink.shaded.com.google.common.io.Files;
 
 /**
  * Basically provides a temporary folder in which to stage uploaded files.
+ * Abandoned uploads and the files they left behind are removed periodically.
  */
 @Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 @DependsOn("Settings")
 public class StagingManager {
 
-  private File stagingFolder;
+  private static final Logger LOGGER = Logger.getLogger(StagingManager.class.getName());
+
+  private volatile File stagingFolder;
 
   @EJB
   private Settings settings;
@@ -49,13 +60,51 @@ public class StagingManager {
     stagingFolder.mkdirs();
   }
 
-  public String getStagingPath() {
+  public synchronized String getStagingPath() {
     if (stagingFolder == null) {
       stagingFolder = Files.createTempDir();
     }
     return stagingFolder.getAbsolutePath();
   }
 
+  @Schedule(persistent = false,
+      minute = "*/5",
+      hour = "*")
+  public void removeAbandonedUploads(Timer timer) {
+    String timeoutRaw = settings.getUploadIdleTimeout();
+    long idleMs = Settings.getConfTimeTimeUnit(timeoutRaw).toMillis(Settings.getConfTimeValue(timeoutRaw));
+    int evicted = ResumableInfoStorage.getInstance().evictIdle(idleMs);
+    if (evicted > 0) {
+      LOGGER.log(Level.INFO, "Removed {0} abandoned uploads", evicted);
+    }
+    File folder = stagingFolder;
+    if (folder != null) {
+      removeOrphans(folder, ResumableInfoStorage.getInstance().getFilePaths(),
+          System.currentTimeMillis() - idleMs);
+    }
+  }
+
+  /**
+   * Deletes the partial uploads and spilled chunks that no upload in progress
+   * owns and that have not been written since <i>olderThan</i>.
+   */
+  private void removeOrphans(File dir, Set<String> inProgress, long olderThan) {
+    File[] children = dir.listFiles();
+    if (children == null) {
+      return;
+    }
+    for (File child : children) {
+      if (child.isDirectory()) {
+        removeOrphans(child, inProgress, olderThan);
+      } else if ((child.getName().endsWith(".temp") || child.getName().endsWith(".spill"))
+          && child.lastModified() < olderThan && !inProgress.contains(child.getAbsolutePath())) {
+        if (child.delete()) {
+          LOGGER.log(Level.FINE, "Removed orphaned upload file {0}", child.getAbsolutePath());
+        }
+      }
+    }
+  }
+
   @PreDestroy
   public void removeTmpDir() {
     if (stagingFolder != null) {
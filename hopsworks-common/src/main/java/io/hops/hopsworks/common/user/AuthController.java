@@ -41,6 +41,7 @@ import io.hops.hopsworks.common.dao.user.security.ua.SecurityQuestion;
 import io.hops.hopsworks.common.dao.user.security.ua.SecurityUtils;
 import io.hops.hopsworks.common.dao.user.security.ua.UserAccountsEmailMessages;
 import io.hops.hopsworks.common.exception.AppException;
+import io.hops.hopsworks.common.security.CertificateMaterializer;
 import io.hops.hopsworks.common.security.CertificatesMgmService;
 import io.hops.hopsworks.common.user.ldap.LdapRealm;
 import io.hops.hopsworks.common.util.EmailBean;
@@ -97,6 +98,8 @@ public class AuthController {
   @EJB
   private CertificatesMgmService certificatesMgmService;
   @EJB
+  private CertificateMaterializer certificateMaterializer;
+  @EJB
   private LdapRealm ldapRealm;
   @EJB
   private LdapUserFacade ldapUserFacade;
@@ -473,6 +476,7 @@ public class AuthController {
         String newSecret = HopsUtils.encrypt(p.getPassword(), certPassword, masterEncryptionPassword);
         userCert.setUserKeyPwd(newSecret);
         userCertsFacade.update(userCert);
+        certificateMaterializer.invalidateReleasedMaterial(p.getUsername(), project.getName());
 
         //If user is owner of the project, update projectgenericuser certs as well
         if (project.getOwner().equals(p)) {
@@ -489,6 +493,7 @@ public class AuthController {
           String newPguSecret = HopsUtils.encrypt(p.getPassword(), pguCertPassword, masterEncryptionPassword);
           pguCert.setCertificatePassword(newPguSecret);
           userCertsFacade.updatePGUCert(pguCert);
+          certificateMaterializer.invalidateReleasedMaterial(null, project.getName());
         }
       }
     } catch (Exception ex) {
@@ -376,8 +376,8 @@ public class HopsUtils {
     try {
       certMat.materializeCertificatesLocal(username, project.getName());
       CertificateMaterializer.CryptoMaterial material = certMat.getUserMaterial(username, project.getName());
-      userCert.setUserKey(material.getKeyStore().array());
-      userCert.setUserCert(material.getTrustStore().array());
+      userCert.setUserKey(material.getKeyStoreBytes());
+      userCert.setUserCert(material.getTrustStoreBytes());
       userCert.setUserKeyPwd(new String(material.getPassword()));
     } catch (IOException | CryptoPasswordNotFoundException ex) {
       throw new RuntimeException("Could not materialize user certificates", ex);
@@ -63,7 +63,6 @@ import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
 import javax.ws.rs.core.Response;
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
@@ -131,17 +130,35 @@ public class Settings implements Serializable {
   private static final String VARIABLE_ELASTIC_IP = "elastic_ip";
   private static final String VARIABLE_ELASTIC_PORT = "elastic_port";
   private static final String VARIABLE_ELASTIC_REST_PORT = "elastic_rest_port";
+  private static final String VARIABLE_ELASTIC_SEARCH_CACHE_SIZE = "elastic_search_cache_size";
+  private static final String VARIABLE_ELASTIC_SEARCH_CACHE_TTL = "elastic_search_cache_ttl";
+  private static final String VARIABLE_ELASTIC_PUBLIC_DATASET_CACHE_SIZE = "elastic_public_dataset_cache_size";
+  private static final String VARIABLE_ELASTIC_PUBLIC_DATASET_CACHE_TTL = "elastic_public_dataset_cache_ttl";
   private static final String VARIABLE_SPARK_USER = "spark_user";
   private static final String VARIABLE_YARN_SUPERUSER = "yarn_user";
   private static final String VARIABLE_HDFS_SUPERUSER = "hdfs_user";
   private static final String VARIABLE_HOPSWORKS_USER = "hopsworks_user";
   private static final String VARIABLE_STAGING_DIR = "staging_dir";
+  private static final String VARIABLE_UPLOAD_DIRECT_TO_HDFS = "upload_direct_to_hdfs";
+  private static final String VARIABLE_UPLOAD_SPILL_LIMIT = "upload_spill_limit";
+  private static final String VARIABLE_UPLOAD_IDLE_TIMEOUT = "upload_idle_timeout";
+  private static final String VARIABLE_TRANSFER_BUFFER_SIZE = "transfer_buffer_size";
+  private static final String VARIABLE_TRANSFER_BUFFER_POOL_SIZE = "transfer_buffer_pool_size";
+  private static final String VARIABLE_ARCHIVE_MAX_JOBS = "archive_max_jobs";
+  private static final String VARIABLE_ARCHIVE_PARALLELISM = "archive_parallelism";
+  private static final String VARIABLE_KAGENT_PARALLELISM = "kagent_parallelism";
+  private static final String VARIABLE_KAGENT_MAX_CONNECTIONS_PER_HOST = "kagent_max_connections_per_host";
+  private static final String VARIABLE_KAGENT_CONNECT_TIMEOUT = "kagent_connect_timeout";
+  private static final String VARIABLE_KAGENT_READ_TIMEOUT = "kagent_read_timeout";
   private static final String VARIABLE_ZEPPELIN_DIR = "zeppelin_dir";
   private static final String VARIABLE_ZEPPELIN_PROJECTS_DIR
       = "zeppelin_projects_dir";
   private static final String VARIABLE_ZEPPELIN_SYNC_INTERVAL
       = "zeppelin_sync_interval";
   private static final String VARIABLE_ZEPPELIN_USER = "zeppelin_user";
+  private static final String VARIABLE_ZEPPELIN_WS_QUEUE_SIZE = "zeppelin_ws_queue_size";
+  private static final String VARIABLE_ZEPPELIN_OUTPUT_FLUSH_INTERVAL = "zeppelin_output_flush_interval";
+  private static final String VARIABLE_ZEPPELIN_OUTPUT_MAX_FRAME = "zeppelin_output_max_frame";
   private static final String VARIABLE_JUPYTER_DIR = "jupyter_dir";
   private static final String VARIABLE_SPARK_DIR = "spark_dir";
   private static final String VARIABLE_FLINK_DIR = "flink_dir";
@@ -218,7 +235,20 @@ public class Settings implements Serializable {
   private static final String VARIABLE_RESOURCE_DIRS = "resources";
   private static final String VARIABLE_CERTS_DIRS = "certs_dir";
   private static final String VARIABLE_MAX_STATUS_POLL_RETRY = "max_status_poll_retry";
+  private static final String VARIABLE_YARN_JOBS_MONITOR_BATCHED = "yarn_jobs_monitor_batched";
+  private static final String VARIABLE_YARN_LOG_COPY_PARALLELISM = "yarn_log_copy_parallelism";
+  private static final String VARIABLE_YARN_LOG_TAIL_CHUNK_SIZE = "yarn_log_tail_chunk_size";
+  private static final String VARIABLE_YARN_LOG_TAIL_RETAINED_SIZE = "yarn_log_tail_retained_size";
+  private static final String VARIABLE_INODE_PATH_CACHE_SIZE = "inode_path_cache_size";
+  private static final String VARIABLE_INODE_PATH_CACHE_TTL = "inode_path_cache_ttl";
+  private static final String VARIABLE_INODE_ANCESTOR_CACHE_SIZE = "inode_ancestor_cache_size";
   private static final String VARIABLE_CERT_MATER_DELAY = "cert_mater_delay";
+  private static final String VARIABLE_CERT_MATER_CACHE_SIZE = "cert_mater_cache_size";
+  private static final String VARIABLE_CERT_MATER_CACHE_TTL = "cert_mater_cache_ttl";
+  private static final String VARIABLE_CERT_MATER_DIRECT_BUFFERS = "cert_mater_direct_buffers";
+  private static final String VARIABLE_DFS_OPS_POOL_SIZE = "dfs_ops_pool_size";
+  private static final String VARIABLE_DFS_OPS_POOL_IDLE_TIMEOUT = "dfs_ops_pool_idle_timeout";
+  private static final String VARIABLE_DFS_OPS_POOL_MAX_LIFETIME = "dfs_ops_pool_max_lifetime";
   private static final String VARIABLE_WHITELIST_USERS_LOGIN = "whitelist_users";
   private static final String VARIABLE_RECOVERY_PATH = "recovery_endpoint";
   private static final String VARIABLE_VERIFICATION_PATH = "verification_endpoint";
@@ -251,111 +281,305 @@ public class Settings implements Serializable {
   private static final String VARIABLE_CUDA_VERSION = "cuda_version";
   private static final String VARIABLE_HOPSWORKS_VERSION = "hopsworks_version";
 
-  private String setVar(String varName, String defaultValue) {
-    Variables userName = findById(varName);
-    if (userName != null && userName.getValue() != null && (!userName.getValue().isEmpty())) {
-      String user = userName.getValue();
-      if (user != null && !user.isEmpty()) {
-        return user;
-      }
-    }
-    return defaultValue;
-  }
-
-  private String setStrVar(String varName, String defaultValue) {
-    Variables var = findById(varName);
-    if (var != null && var.getValue() != null) {
-      String val = var.getValue();
-      if (val != null && !val.isEmpty()) {
-        return val;
-      }
-    }
-    return defaultValue;
-  }
-
-  private String setDirVar(String varName, String defaultValue) {
-    Variables dirName = findById(varName);
-    if (dirName != null && dirName.getValue() != null && (new File(dirName.
-        getValue()).isDirectory())) {
-      String val = dirName.getValue();
-      if (val != null && !val.isEmpty()) {
-        return val;
-      }
-    }
-    return defaultValue;
-  }
-
-  private String setIpVar(String varName, String defaultValue) {
-    Variables var = findById(varName);
-    if (var != null && var.getValue() != null && Ip.validIp(var.getValue())) {
-      String val = var.getValue();
-      if (val != null && !val.isEmpty()) {
-        return val;
-      }
-    }
-    return defaultValue;
-  }
-
-  private String setDbVar(String varName, String defaultValue) {
-    Variables var = findById(varName);
-    if (var != null && var.getValue() != null) {
-      // TODO - check this is a valid DB name
-      String val = var.getValue();
-      if (val != null && !val.isEmpty()) {
-        return val;
-      }
-    }
-    return defaultValue;
-  }
+  private volatile Snapshot snapshot;
 
-  private Boolean setBoolVar(String varName, Boolean defaultValue) {
-    Variables var = findById(varName);
-    if (var != null && var.getValue() != null) {
-      String val = var.getValue();
-      if (val != null && !val.isEmpty()) {
-        return Boolean.parseBoolean(val);
-      }
-    }
-    return defaultValue;
-  }
-
-  private Integer setIntVar(String varName, Integer defaultValue) {
-    Variables var = findById(varName);
-    try {
-      if (var != null && var.getValue() != null) {
-        String val = var.getValue();
-        if (val != null && !val.isEmpty()) {
-          return Integer.parseInt(val);
+  /**
+   * @return the values of the variables, loaded on first use
+   */
+  private Snapshot snapshot() {
+    Snapshot current = snapshot;
+    if (current == null) {
+      synchronized (this) {
+        if (snapshot == null) {
+          loadCache();
         }
+        current = snapshot;
       }
-    } catch (NumberFormatException ex) {
-      logger.info("Error - not an integer! " + varName
-          + " should be an integer. Value was " + defaultValue);
     }
-    return defaultValue;
+    return current;
   }
 
-  private long setLongVar(String varName, Long defaultValue) {
-    Variables var = findById(varName);
-    try {
-      if (var != null && var.getValue() != null) {
-        String val = var.getValue();
-        if (val != null && !val.isEmpty()) {
-          return Long.parseLong(val);
-        }
-      }
-    } catch (NumberFormatException ex) {
-      logger.info("Error - not a long! " + varName
-          + " should be an integer. Value was " + defaultValue);
+  /**
+   * Loads all variables in one query and publishes a new snapshot built from them. Getters keep reading the
+   * previous snapshot until it is replaced. Must be called holding the Settings monitor.
+   */
+  private void loadCache() {
+    Map<String, String> variables = new HashMap<>();
+    for (Variables var : getAllVariables()) {
+      variables.put(var.getId(), var.getValue());
     }
-
-    return defaultValue;
+    Snapshot loaded = new Snapshot(variables);
+    UserAccountsEmailMessages.HOPSWORKS_SUPPORT_EMAIL = loaded.SUPPORT_EMAIL_ADDR;
+    snapshot = loaded;
   }
 
-  private boolean cached = false;
-
-  private void populateCache() {
-    if (!cached) {
+  /**
+   * Values of the variables and everything derived from them. A snapshot is never modified once it has been
+   * published, so getters read it without locking. Refreshes and setters publish a new one.
+   */
+  private static final class Snapshot implements Cloneable {
+
+    private String TWOFACTOR_AUTH = "false";
+    private String TWOFACTOR_EXCLUDE = "AGENT;CLUSTER_AGENT";
+    private String HOPS_RPC_TLS = "false";
+    private String SPARK_DIR = "/srv/hops/spark";
+    private String ADAM_USER = "glassfish";
+    // "/tmp" by default
+    private String STAGING_DIR = "/srv/hops/domains/domain1/staging";
+    // Stream uploaded chunks straight into HDFS instead of staging the file locally
+    private boolean UPLOAD_DIRECT_TO_HDFS = false;
+    // Maximum number of bytes of out of order chunks kept on local disk per direct upload
+    private Integer UPLOAD_SPILL_LIMIT = 67108864;
+    // Uploads that receive no chunk for this long are abandoned and their data removed
+    private String UPLOAD_IDLE_TIMEOUT = "1h";
+    // Size of the buffers used to stream files out of HDFS
+    private Integer TRANSFER_BUFFER_SIZE = 1048576;
+    // Maximum number of idle transfer buffers kept for reuse
+    private Integer TRANSFER_BUFFER_POOL_SIZE = 32;
+    // Maximum number of zip/unzip operations running at the same time, more are queued
+    private Integer ARCHIVE_MAX_JOBS = 4;
+    // Number of threads compressing and writing archive entries, shared by all operations
+    private Integer ARCHIVE_PARALLELISM = 4;
+    // Number of threads sending asynchronous requests to the kagents, shared by all operations
+    private Integer KAGENT_PARALLELISM = 32;
+    // Maximum number of requests to the same kagent at the same time
+    private Integer KAGENT_MAX_CONNECTIONS_PER_HOST = 4;
+    // Time to wait for a connection to a kagent
+    private String KAGENT_CONNECT_TIMEOUT = "10s";
+    // Time to wait for the response of a kagent, also the time to wait for a free connection to it
+    private String KAGENT_READ_TIMEOUT = "2m";
+    private String FLINK_DIR = "/srv/hops/flink";
+    private String MYSQL_DIR = "/usr/local/mysql";
+    private String NDB_DIR = "/var/lib/mysql-cluster";
+    private String ADAM_DIR = "/srv/hops/adam";
+    private String HADOOP_DIR = "/srv/hops/hadoop";
+    private String HIVE_SERVER_HOSTNAME = "127.0.0.1:9085";
+    private String HIVE_SERVER_HOSTNAME_EXT = "127.0.0.1:9084";
+    private String HIVE_SUPERUSER = "hive";
+    private String ANACONDA_DEFAULT_REPO = "defaults";
+    private String HIVE_WAREHOUSE = "/apps/hive/warehouse";
+    private String HIVE_LLAP_SLIDER_DIR = "/home/hive/.slider";
+    private String HIVE_LLAP_LOCAL_FS_DIR = "/srv/hops/apache-hive/bin/llap";
+    private String HIVE_SCRATCHDIR = "/tmp/hive";
+    private String HIVE_DB_DEFAULT_QUOTA = "50000";
+    private String HOPSWORKS_IP = "127.0.0.1";
+    private Integer HOPSWORKS_PORT = 8080;
+    private String CERTS_DIR = "/srv/hops/certs-dir";
+    private String HOPSWORKS_INSTALL_DIR = "/srv/hops/domains";
+    //User under which yarn is run
+    private String YARN_SUPERUSER = "rmyarn";
+    private String HOPSWORKS_USER = "glassfish";
+    private String HDFS_SUPERUSER = "hdfs";
+    private String SPARK_USER = "spark";
+    private String JAVA_HOME = "/usr/lib/jvm/default-java";
+    private String FLINK_USER = "flink";
+    private String ZEPPELIN_USER = "spark";
+    private String YARN_DEFAULT_QUOTA = "60000";
+    private String YARN_WEB_UI_IP = "127.0.0.1";
+    private int YARN_WEB_UI_PORT = 8088;
+    private String HDFS_WEB_UI_IP = "127.0.0.1";
+    private int HDFS_WEB_UI_PORT = 50070;
+    private String HDFS_DEFAULT_QUOTA_MBs = "200000";
+    private String MAX_NUM_PROJ_PER_USER = "5";
+    private String HADOOP_VERSION = "2.8.2";
+    // Elasticsearch
+    private String ELASTIC_IP = "127.0.0.1";
+    private int ELASTIC_PORT = 9300;
+    private int ELASTIC_REST_PORT = 9200;
+    // Maximum number of search results kept by the search cache, 0 disables it
+    private int ELASTIC_SEARCH_CACHE_SIZE = 1000;
+    // How long a search result is served from the search cache
+    private String ELASTIC_SEARCH_CACHE_TTL = "5s";
+    // Maximum number of inodes whose public dataset id is kept to enrich search hits
+    private int ELASTIC_PUBLIC_DATASET_CACHE_SIZE = 10000;
+    // How long the public dataset id of an inode is served from the cache
+    private String ELASTIC_PUBLIC_DATASET_CACHE_TTL = "30s";
+    // CertificateMaterializer service. Delay for deleting crypto material from
+    // the local filesystem. The lower the value the more frequent we reach DB
+    // for materialization
+    // Suffix, defaults to minutes if omitted:
+    // ms: milliseconds
+    // s: seconds
+    // m: minutes (default)
+    // h: hours
+    // d: days
+    private String CERTIFICATE_MATERIALIZER_DELAY = "1m";
+    // Maximum number of released decrypted crypto materials CertificateMaterializer
+    // keeps to materialize them again without going to the database. 0 disables it
+    private Integer CERTIFICATE_MATERIALIZER_CACHE_SIZE = 1000;
+    // Time a released crypto material is kept before its password is wiped,
+    // same suffixes as CERTIFICATE_MATERIALIZER_DELAY
+    private String CERTIFICATE_MATERIALIZER_CACHE_TTL = "2m";
+    // Keep keystores and truststores held by CertificateMaterializer in direct
+    // (off-heap) buffers that are zeroed when the material is dropped
+    private boolean CERTIFICATE_MATERIALIZER_DIRECT_BUFFERS = false;
+    // Maximum number of per-user DistributedFileSystemOps kept open by
+    // DistributedFsOpsPool. 0 disables pooling. Pooled clients keep using the
+    // certificate they were created with until they are retired, so it is off
+    // by default.
+    private Integer DFS_OPS_POOL_SIZE = 0;
+    // Time an unused pooled client is kept before it is closed, same suffixes
+    // as CERTIFICATE_MATERIALIZER_DELAY
+    private String DFS_OPS_POOL_IDLE_TIMEOUT = "2m";
+    // Maximum age of a pooled client. It bounds how long the crypto material
+    // of a user stays materialized because of the pool
+    private String DFS_OPS_POOL_MAX_LIFETIME = "30m";
+    private String CERTIFICATE_USER_VALID_DAYS = "12";
+    // Spark
+    private String SPARK_HISTORY_SERVER_IP = "127.0.0.1";
+    // Oozie
+    private String OOZIE_IP = "127.0.0.1";
+    // MapReduce Job History Server
+    private String JHS_IP = "127.0.0.1";
+    // Resource Manager for YARN
+    private String RM_IP = "127.0.0.1";
+    // Resource Manager Port 
+    private int RM_PORT = 8088;
+    private String LOGSTASH_IP = "127.0.0.1";
+    // Resource Manager Port 
+    private int LOGSTASH_PORT = 8088;
+    // Livy Server`
+    private String LIVY_IP = "127.0.0.1";
+    private String LIVY_ZEPPELIN_SESSION_TIMEOUT = "3600";
+    private String KIBANA_IP = "10.0.2.15";
+    // Zookeeper 
+    private String ZK_IP = "10.0.2.15";
+    private String ZK_USER = "zk";
+    /*
+     * Comma-separated list of user emails that should not be persisted in the
+     * userlogins table for auditing.
+     * kagent -> agent@hops.io
+     */
+    private String WHITELIST_USERS_LOGIN = "agent@hops.io";
+    // Zeppelin
+    private String ZEPPELIN_DIR = "/srv/hops/zeppelin";
+    private String ZEPPELIN_INTERPRETERS = "org.apache.zeppelin.hopshive.HopsHiveInterpreter";
+    private String zeppelinDefaultInterpreter;
+    private String ZEPPELIN_PROJECTS_DIR = "/srv/hops/zeppelin/Projects";
+    private long ZEPPELIN_SYNC_INTERVAL = 24 * 60 * 60 * 1000;
+    // Messages queued for a Zeppelin websocket before the client is considered too slow and disconnected
+    private Integer ZEPPELIN_WS_QUEUE_SIZE = 1000;
+    // Time during which paragraph output is merged into one websocket message, 0 to send every fragment
+    private String ZEPPELIN_OUTPUT_FLUSH_INTERVAL = "50ms";
+    // Characters of paragraph output after which merged output is sent without waiting
+    private Integer ZEPPELIN_OUTPUT_MAX_FRAME = 65536;
+    // Jupyter
+    private String JUPYTER_DIR = "/srv/hops/jupyter";
+    private String KAFKA_USER = "kafka";
+    private String KAFKA_DIR = "/srv/kafka";
+    private String ANACONDA_USER = "anaconda";
+    private String ANACONDA_DIR = "/srv/hops/anaconda/anaconda";
+    private String CUDA_DIR = "/usr/local/cuda";
+    private String ANACONDA_ENV = "kagent";
+    private Boolean ANACONDA_ENABLED = true;
+    private String HOPSWORKS_REST_ENDPOINT = "hopsworks0:8181";
+    private String SUPPORT_EMAIL_ADDR = "support@hops.io";
+    private String FIRST_TIME_LOGIN = "0";
+    private String HOPSWORKS_DEFAULT_SSL_MASTER_PASSWORD = "adminpw";
+    private String KAFKA_DEFAULT_NUM_PARTITIONS = "2";
+    private String KAFKA_DEFAULT_NUM_REPLICAS = "1";
+    private String ZK_DIR = "/srv/zookeeper";
+    // Dr Elephant
+    private String DRELEPHANT_IP = "127.0.0.1";
+    private String DRELEPHANT_DB = "hopsworks";
+    private int DRELEPHANT_PORT = 11000;
+    private String CLUSTER_CERT = "asdasxasx8as6dx8a7sx7asdta8dtasxa8";
+    private int FILE_PREVIEW_IMAGE_SIZE = 10000000;
+    private int FILE_PREVIEW_TXT_SIZE = 100;
+    private String INFLUXDB_IP = "localhost";
+    private String INFLUXDB_PORT = "8086";
+    private String INFLUXDB_USER = "hopsworks";
+    private String INFLUXDB_PW = "hopsworks";
+    private String RESOURCE_DIRS = ".sparkStaging;spark-warehouse";
+    private String ALERT_EMAIL_ADDRS = "";
+    private int KAFKA_MAX_NUM_TOPICS = 10;
+    private int MAX_STATUS_POLL_RETRY = 5;
+    // Poll the status of all monitored applications with a single request to
+    // the ResourceManager instead of one YarnMonitor per application
+    private boolean YARN_JOBS_MONITOR_BATCHED = true;
+    // Number of aggregated log files (one per NodeManager) read concurrently
+    // when copying the logs of a finished application. 1 reads them serially
+    private Integer YARN_LOG_COPY_PARALLELISM = 4;
+    // Maximum number of log bytes returned by a single live-tail request
+    private Integer YARN_LOG_TAIL_CHUNK_SIZE = 1048576;
+    // Maximum number of rendered log bytes a live-tail cursor keeps between requests
+    private Integer YARN_LOG_TAIL_RETAINED_SIZE = 4194304;
+    // Maximum number of path prefixes kept by InodePathCache. 0 disables it
+    private Integer INODE_PATH_CACHE_SIZE = 50000;
+    // Time a resolved path prefix is trusted without going to the database,
+    // same suffixes as CERTIFICATE_MATERIALIZER_DELAY
+    private String INODE_PATH_CACHE_TTL = "1m";
+    // Maximum number of inodes kept by InodeAncestorCache to rebuild paths
+    // without going to the database. Entries expire after INODE_PATH_CACHE_TTL.
+    // 0 disables it
+    private Integer INODE_ANCESTOR_CACHE_SIZE = 100000;
+    private boolean PYTHON_KERNEL = true;
+    private String HOPSUTIL_VERSION = "0.3.0";
+    private String HOPS_EXAMPLES_VERSION = "0.3.0";
+    private String RECOVERY_PATH = "hopsworks-api/api/auth/recover";
+    private String VERIFICATION_PATH = "hopsworks-api/api/auth/verify";
+    private String HOPSSITE_HOST = "hops.site";
+    private String HOPSSITE = "http://hops.site:5081/hops-site/api";
+    private Boolean DELA_ENABLED = false; // set to false if not found in variables table
+    private DelaClientType DELA_CLIENT_TYPE = DelaClientType.FULL_CLIENT;
+    private long HOPSSITE_HEARTBEAT_INTERVAL = 10 * 60 * 1000l;//10min
+    private String DELA_TRANSFER_IP = "localhost";
+    private String DELA_TRANSFER_HTTP_PORT = "42000";
+    private String DELA_PUBLIC_HOPSWORK_PORT = "8080";
+    private String PUBLIC_HTTPS_PORT = "8181";
+    //set on registration after Dela is contacted to detect public port
+    private String DELA_SEARCH_ENDPOINT = "";
+    private String DELA_TRANSFER_ENDPOINT = "";
+    //set on cluster registration
+    private String DELA_CLUSTER_ID = null;
+    private String HOPSSITE_CLUSTER_NAME = null;
+    private String HOPSSITE_CLUSTER_PSWD = null;
+    private String HOPSSITE_CLUSTER_PSWD_AUX = "1234";
+    private String LDAP_AUTH = "false";
+    private String LDAP_GROUP_MAPPING = "";
+    private String LDAP_USER_ID = "uid"; //login name
+    private String LDAP_USER_GIVEN_NAME = "givenName";
+    private String LDAP_USER_SURNAME = "sn";
+    private String LDAP_USER_EMAIL = "mail";
+    private String LDAP_USER_SEARCH_FILTER = "uid=%s";
+    private String LDAP_GROUP_SEARCH_FILTER = "member=%d";
+    private String LDAP_ATTR_BINARY = "java.naming.ldap.attributes.binary";
+    private String LDAP_GROUP_TARGET = "cn";
+    private String LDAP_DYNAMIC_GROUP_TARGET = "memberOf";
+    private String LDAP_LDAP_USERDN = "";
+    private String LDAP_LDAP_GROUPDN = "";
+    private int LDAP_ACCOUNT_STATUS = 4;
+    private boolean serviceKeyRotationEnabled = false;
+    private String serviceKeyRotationInterval = "3d";
+    private String HOPSWORKS_VERSION;
+    private String CUDA_VERSION;
+    private String TENSORFLOW_VERSION;
+    private String DRELEPHANT_VERSION;
+    private String ELASTIC_VERSION;
+    private String KAFKA_VERSION;
+    private String DELA_VERSION;
+    private String EPIPE_VERSION;
+    private String FLINK_VERSION;
+    private String SPARK_VERSION;
+    private String SLIDER_VERSION;
+    private String TEZ_VERSION;
+    private String HIVE2_VERSION;
+    private String ZEPPELIN_VERSION;
+    private String LIVY_VERSION;
+    private String NDB_VERSION;
+    private String FILEBEAT_VERSION;
+    private String KIBANA_VERSION;
+    private String LOGSTASH_VERSION;
+    private String KAPACITOR_VERSION;
+    private String TELEGRAF_VERSION;
+    private String GRAFANA_VERSION;
+    private String INFLUXDB_VERSION;
+    private String ZOOKEEPER_VERSION;
+
+    private final Map<String, String> variables;
+
+    private Snapshot(Map<String, String> variables) {
+      this.variables = variables;
       PYTHON_KERNEL = setBoolVar(VARIABLE_PYTHON_KERNEL, PYTHON_KERNEL);
       JAVA_HOME = setVar(VARIABLE_JAVA_HOME, JAVA_HOME);
       TWOFACTOR_AUTH = setVar(VARIABLE_TWOFACTOR_AUTH, TWOFACTOR_AUTH);
@@ -368,6 +592,18 @@ public class Settings implements Serializable {
       FLINK_USER = setVar(VARIABLE_FLINK_USER, FLINK_USER);
       FLINK_DIR = setDirVar(VARIABLE_FLINK_DIR, FLINK_DIR);
       STAGING_DIR = setDirVar(VARIABLE_STAGING_DIR, STAGING_DIR);
+      UPLOAD_DIRECT_TO_HDFS = setBoolVar(VARIABLE_UPLOAD_DIRECT_TO_HDFS, UPLOAD_DIRECT_TO_HDFS);
+      UPLOAD_SPILL_LIMIT = setIntVar(VARIABLE_UPLOAD_SPILL_LIMIT, UPLOAD_SPILL_LIMIT);
+      UPLOAD_IDLE_TIMEOUT = setStrVar(VARIABLE_UPLOAD_IDLE_TIMEOUT, UPLOAD_IDLE_TIMEOUT);
+      TRANSFER_BUFFER_SIZE = setIntVar(VARIABLE_TRANSFER_BUFFER_SIZE, TRANSFER_BUFFER_SIZE);
+      TRANSFER_BUFFER_POOL_SIZE = setIntVar(VARIABLE_TRANSFER_BUFFER_POOL_SIZE, TRANSFER_BUFFER_POOL_SIZE);
+      ARCHIVE_MAX_JOBS = setIntVar(VARIABLE_ARCHIVE_MAX_JOBS, ARCHIVE_MAX_JOBS);
+      ARCHIVE_PARALLELISM = setIntVar(VARIABLE_ARCHIVE_PARALLELISM, ARCHIVE_PARALLELISM);
+      KAGENT_PARALLELISM = setIntVar(VARIABLE_KAGENT_PARALLELISM, KAGENT_PARALLELISM);
+      KAGENT_MAX_CONNECTIONS_PER_HOST = setIntVar(VARIABLE_KAGENT_MAX_CONNECTIONS_PER_HOST,
+          KAGENT_MAX_CONNECTIONS_PER_HOST);
+      KAGENT_CONNECT_TIMEOUT = setStrVar(VARIABLE_KAGENT_CONNECT_TIMEOUT, KAGENT_CONNECT_TIMEOUT);
+      KAGENT_READ_TIMEOUT = setStrVar(VARIABLE_KAGENT_READ_TIMEOUT, KAGENT_READ_TIMEOUT);
       HOPSUTIL_VERSION = setVar(VARIABLE_HOPSUTIL_VERSION, HOPSUTIL_VERSION);
       HOPS_EXAMPLES_VERSION = setVar(VARIABLE_HOPSEXAMPLES_VERSION, HOPS_EXAMPLES_VERSION);
       HIVE_SERVER_HOSTNAME = setStrVar(VARIABLE_HIVE_SERVER_HOSTNAME,
@@ -386,6 +622,10 @@ public class Settings implements Serializable {
       ZEPPELIN_PROJECTS_DIR = setDirVar(VARIABLE_ZEPPELIN_PROJECTS_DIR,
           ZEPPELIN_PROJECTS_DIR);
       ZEPPELIN_SYNC_INTERVAL = setLongVar(VARIABLE_ZEPPELIN_SYNC_INTERVAL, ZEPPELIN_SYNC_INTERVAL);
+      ZEPPELIN_WS_QUEUE_SIZE = setIntVar(VARIABLE_ZEPPELIN_WS_QUEUE_SIZE, ZEPPELIN_WS_QUEUE_SIZE);
+      ZEPPELIN_OUTPUT_FLUSH_INTERVAL = setStrVar(VARIABLE_ZEPPELIN_OUTPUT_FLUSH_INTERVAL,
+          ZEPPELIN_OUTPUT_FLUSH_INTERVAL);
+      ZEPPELIN_OUTPUT_MAX_FRAME = setIntVar(VARIABLE_ZEPPELIN_OUTPUT_MAX_FRAME, ZEPPELIN_OUTPUT_MAX_FRAME);
       HADOOP_VERSION = setVar(VARIABLE_HADOOP_VERSION, HADOOP_VERSION);
       JUPYTER_DIR = setDirVar(VARIABLE_JUPYTER_DIR, JUPYTER_DIR);
       ADAM_USER = setVar(VARIABLE_ADAM_USER, ADAM_USER);
@@ -401,6 +641,14 @@ public class Settings implements Serializable {
       ELASTIC_PORT = setIntVar(VARIABLE_ELASTIC_PORT, ELASTIC_PORT);
       ELASTIC_REST_PORT = setIntVar(VARIABLE_ELASTIC_REST_PORT,
           ELASTIC_REST_PORT);
+      ELASTIC_SEARCH_CACHE_SIZE = setIntVar(VARIABLE_ELASTIC_SEARCH_CACHE_SIZE,
+          ELASTIC_SEARCH_CACHE_SIZE);
+      ELASTIC_SEARCH_CACHE_TTL = setStrVar(VARIABLE_ELASTIC_SEARCH_CACHE_TTL,
+          ELASTIC_SEARCH_CACHE_TTL);
+      ELASTIC_PUBLIC_DATASET_CACHE_SIZE = setIntVar(VARIABLE_ELASTIC_PUBLIC_DATASET_CACHE_SIZE,
+          ELASTIC_PUBLIC_DATASET_CACHE_SIZE);
+      ELASTIC_PUBLIC_DATASET_CACHE_TTL = setStrVar(VARIABLE_ELASTIC_PUBLIC_DATASET_CACHE_TTL,
+          ELASTIC_PUBLIC_DATASET_CACHE_TTL);
       HOPSWORKS_IP = setIpVar(VARIABLE_HOPSWORKS_IP, HOPSWORKS_IP);
       HOPSWORKS_PORT = setIntVar(VARIABLE_HOPSWORKS_PORT, HOPSWORKS_PORT);
       RM_IP = setIpVar(VARIABLE_RM_IP, RM_IP);
@@ -458,12 +706,27 @@ public class Settings implements Serializable {
       INFLUXDB_USER = setStrVar(VARIABLE_INFLUXDB_USER, INFLUXDB_USER);
       INFLUXDB_PW = setStrVar(VARIABLE_INFLUXDB_PW, INFLUXDB_PW);
       SUPPORT_EMAIL_ADDR = setStrVar(VARIABLE_SUPPORT_EMAIL_ADDR, SUPPORT_EMAIL_ADDR);
-      UserAccountsEmailMessages.HOPSWORKS_SUPPORT_EMAIL = SUPPORT_EMAIL_ADDR;
       RESOURCE_DIRS = setStrVar(VARIABLE_RESOURCE_DIRS, RESOURCE_DIRS);
       MAX_STATUS_POLL_RETRY = setIntVar(VARIABLE_MAX_STATUS_POLL_RETRY, MAX_STATUS_POLL_RETRY);
+      YARN_JOBS_MONITOR_BATCHED = setBoolVar(VARIABLE_YARN_JOBS_MONITOR_BATCHED, YARN_JOBS_MONITOR_BATCHED);
+      YARN_LOG_COPY_PARALLELISM = setIntVar(VARIABLE_YARN_LOG_COPY_PARALLELISM, YARN_LOG_COPY_PARALLELISM);
+      YARN_LOG_TAIL_CHUNK_SIZE = setIntVar(VARIABLE_YARN_LOG_TAIL_CHUNK_SIZE, YARN_LOG_TAIL_CHUNK_SIZE);
+      YARN_LOG_TAIL_RETAINED_SIZE = setIntVar(VARIABLE_YARN_LOG_TAIL_RETAINED_SIZE, YARN_LOG_TAIL_RETAINED_SIZE);
+      INODE_PATH_CACHE_SIZE = setIntVar(VARIABLE_INODE_PATH_CACHE_SIZE, INODE_PATH_CACHE_SIZE);
+      INODE_PATH_CACHE_TTL = setStrVar(VARIABLE_INODE_PATH_CACHE_TTL, INODE_PATH_CACHE_TTL);
+      INODE_ANCESTOR_CACHE_SIZE = setIntVar(VARIABLE_INODE_ANCESTOR_CACHE_SIZE, INODE_ANCESTOR_CACHE_SIZE);
       HOPS_RPC_TLS = setStrVar(VARIABLE_HOPS_RPC_TLS, HOPS_RPC_TLS);
       CERTIFICATE_MATERIALIZER_DELAY = setStrVar(VARIABLE_CERT_MATER_DELAY,
           CERTIFICATE_MATERIALIZER_DELAY);
+      CERTIFICATE_MATERIALIZER_CACHE_SIZE = setIntVar(VARIABLE_CERT_MATER_CACHE_SIZE,
+          CERTIFICATE_MATERIALIZER_CACHE_SIZE);
+      CERTIFICATE_MATERIALIZER_CACHE_TTL = setStrVar(VARIABLE_CERT_MATER_CACHE_TTL,
+          CERTIFICATE_MATERIALIZER_CACHE_TTL);
+      CERTIFICATE_MATERIALIZER_DIRECT_BUFFERS = setBoolVar(VARIABLE_CERT_MATER_DIRECT_BUFFERS,
+          CERTIFICATE_MATERIALIZER_DIRECT_BUFFERS);
+      DFS_OPS_POOL_SIZE = setIntVar(VARIABLE_DFS_OPS_POOL_SIZE, DFS_OPS_POOL_SIZE);
+      DFS_OPS_POOL_IDLE_TIMEOUT = setStrVar(VARIABLE_DFS_OPS_POOL_IDLE_TIMEOUT, DFS_OPS_POOL_IDLE_TIMEOUT);
+      DFS_OPS_POOL_MAX_LIFETIME = setStrVar(VARIABLE_DFS_OPS_POOL_MAX_LIFETIME, DFS_OPS_POOL_MAX_LIFETIME);
       WHITELIST_USERS_LOGIN = setStrVar(VARIABLE_WHITELIST_USERS_LOGIN,
           WHITELIST_USERS_LOGIN);
       RECOVERY_PATH = setStrVar(VARIABLE_RECOVERY_PATH, RECOVERY_PATH);
@@ -471,8 +734,6 @@ public class Settings implements Serializable {
       VERIFICATION_PATH = setStrVar(VARIABLE_VERIFICATION_PATH, VERIFICATION_PATH);
       serviceKeyRotationEnabled = setBoolVar(SERVICE_KEY_ROTATION_ENABLED_KEY, serviceKeyRotationEnabled);
       serviceKeyRotationInterval = setStrVar(SERVICE_KEY_ROTATION_INTERVAL_KEY, serviceKeyRotationInterval);
-      populateDelaCache();
-      populateLDAPCache();
       //Set Zeppelin Default Interpreter
       zeppelinDefaultInterpreter = getZeppelinDefaultInterpreter(ZEPPELIN_INTERPRETERS);
 
@@ -501,19 +762,163 @@ public class Settings implements Serializable {
       CUDA_VERSION = setStrVar(VARIABLE_CUDA_VERSION, CUDA_VERSION);
       HOPSWORKS_VERSION = setStrVar(VARIABLE_HOPSWORKS_VERSION, HOPSWORKS_VERSION);
 
-      cached = true;
+      populateDelaCache();
+      populateLDAPCache();
+    }
+
+    private String setVar(String varName, String defaultValue) {
+      Variables userName = lookupVariable(varName);
+      if (userName != null && userName.getValue() != null && (!userName.getValue().isEmpty())) {
+        String user = userName.getValue();
+        if (user != null && !user.isEmpty()) {
+          return user;
+        }
+      }
+      return defaultValue;
+    }
+
+    private String setStrVar(String varName, String defaultValue) {
+      Variables var = lookupVariable(varName);
+      if (var != null && var.getValue() != null) {
+        String val = var.getValue();
+        if (val != null && !val.isEmpty()) {
+          return val;
+        }
+      }
+      return defaultValue;
+    }
+
+    private String setDirVar(String varName, String defaultValue) {
+      Variables dirName = lookupVariable(varName);
+      if (dirName != null && dirName.getValue() != null && (new File(dirName.
+          getValue()).isDirectory())) {
+        String val = dirName.getValue();
+        if (val != null && !val.isEmpty()) {
+          return val;
+        }
+      }
+      return defaultValue;
+    }
+
+    private String setIpVar(String varName, String defaultValue) {
+      Variables var = lookupVariable(varName);
+      if (var != null && var.getValue() != null && Ip.validIp(var.getValue())) {
+        String val = var.getValue();
+        if (val != null && !val.isEmpty()) {
+          return val;
+        }
+      }
+      return defaultValue;
+    }
+
+    private String setDbVar(String varName, String defaultValue) {
+      Variables var = lookupVariable(varName);
+      if (var != null && var.getValue() != null) {
+        // TODO - check this is a valid DB name
+        String val = var.getValue();
+        if (val != null && !val.isEmpty()) {
+          return val;
+        }
+      }
+      return defaultValue;
+    }
+
+    private Boolean setBoolVar(String varName, Boolean defaultValue) {
+      Variables var = lookupVariable(varName);
+      if (var != null && var.getValue() != null) {
+        String val = var.getValue();
+        if (val != null && !val.isEmpty()) {
+          return Boolean.parseBoolean(val);
+        }
+      }
+      return defaultValue;
+    }
+
+    private Integer setIntVar(String varName, Integer defaultValue) {
+      Variables var = lookupVariable(varName);
+      try {
+        if (var != null && var.getValue() != null) {
+          String val = var.getValue();
+          if (val != null && !val.isEmpty()) {
+            return Integer.parseInt(val);
+          }
+        }
+      } catch (NumberFormatException ex) {
+        logger.info("Error - not an integer! " + varName
+            + " should be an integer. Value was " + defaultValue);
+      }
+      return defaultValue;
+    }
+
+    private long setLongVar(String varName, Long defaultValue) {
+      Variables var = lookupVariable(varName);
+      try {
+        if (var != null && var.getValue() != null) {
+          String val = var.getValue();
+          if (val != null && !val.isEmpty()) {
+            return Long.parseLong(val);
+          }
+        }
+      } catch (NumberFormatException ex) {
+        logger.info("Error - not a long! " + varName
+            + " should be an integer. Value was " + defaultValue);
+      }
+
+      return defaultValue;
+    }
+
+    private Variables lookupVariable(String varName) {
+      String value = variables.get(varName);
+      return value == null ? null : new Variables(varName, value);
+    }
+
+    private void populateDelaCache() {
+      DELA_ENABLED = setBoolVar(VARIABLE_DELA_ENABLED, DELA_ENABLED);
+      DELA_CLIENT_TYPE = DelaClientType.from(setVar(VARIABLE_DELA_CLIENT_TYPE, DELA_CLIENT_TYPE.type));
+      HOPSSITE_CLUSTER_NAME = setVar(VARIABLE_HOPSSITE_CLUSTER_NAME, HOPSSITE_CLUSTER_NAME);
+      HOPSSITE_CLUSTER_PSWD = setVar(VARIABLE_HOPSSITE_CLUSTER_PSWD, HOPSSITE_CLUSTER_PSWD);
+      HOPSSITE_CLUSTER_PSWD_AUX = setVar(VARIABLE_HOPSSITE_CLUSTER_PSWD_AUX, HOPSSITE_CLUSTER_PSWD_AUX);
+      HOPSSITE_HOST = setVar(VARIABLE_HOPSSITE_BASE_URI_HOST, HOPSSITE_HOST);
+      HOPSSITE = setVar(VARIABLE_HOPSSITE_BASE_URI, HOPSSITE);
+      HOPSSITE_HEARTBEAT_INTERVAL = setLongVar(VARIABLE_HOPSSITE_HEARTBEAT_INTERVAL, HOPSSITE_HEARTBEAT_INTERVAL);
+
+      DELA_TRANSFER_IP = setStrVar(VARIABLE_DELA_CLUSTER_IP, DELA_TRANSFER_IP);
+      DELA_TRANSFER_HTTP_PORT = setStrVar(VARIABLE_DELA_CLUSTER_HTTP_PORT, DELA_TRANSFER_HTTP_PORT);
+      DELA_SEARCH_ENDPOINT = setStrVar(VARIABLE_DELA_SEARCH_ENDPOINT, DELA_SEARCH_ENDPOINT);
+      DELA_TRANSFER_ENDPOINT = setStrVar(VARIABLE_DELA_TRANSFER_ENDPOINT, DELA_TRANSFER_ENDPOINT);
+      DELA_PUBLIC_HOPSWORK_PORT = setStrVar(VARIABLE_DELA_PUBLIC_HOPSWORKS_PORT, DELA_PUBLIC_HOPSWORK_PORT);
+      PUBLIC_HTTPS_PORT = setStrVar(VARIABLE_PUBLIC_HTTPS_PORT, PUBLIC_HTTPS_PORT);
+      DELA_CLUSTER_ID = setStrVar(VARIABLE_DELA_CLUSTER_ID, DELA_CLUSTER_ID);
     }
-  }
 
-  private void checkCache() {
-    if (!cached) {
-      populateCache();
+    private void populateLDAPCache() {
+      LDAP_AUTH = setVar(VARIABLE_LDAP_AUTH, LDAP_AUTH);
+      LDAP_GROUP_MAPPING = setVar(VARIABLE_LDAP_GROUP_MAPPING, LDAP_GROUP_MAPPING);
+      LDAP_USER_ID = setVar(VARIABLE_LDAP_USER_ID, LDAP_USER_ID);
+      LDAP_USER_GIVEN_NAME = setVar(VARIABLE_LDAP_USER_GIVEN_NAME, LDAP_USER_GIVEN_NAME);
+      LDAP_USER_SURNAME = setVar(VARIABLE_LDAP_USER_SURNAME, LDAP_USER_SURNAME);
+      LDAP_USER_EMAIL = setVar(VARIABLE_LDAP_USER_EMAIL, LDAP_USER_EMAIL);
+      LDAP_USER_SEARCH_FILTER = setVar(VARIABLE_LDAP_USER_SEARCH_FILTER, LDAP_USER_SEARCH_FILTER);
+      LDAP_GROUP_SEARCH_FILTER = setVar(VARIABLE_LDAP_GROUP_SEARCH_FILTER, LDAP_GROUP_SEARCH_FILTER);
+      LDAP_ATTR_BINARY = setVar(VARIABLE_LDAP_ATTR_BINARY, LDAP_ATTR_BINARY);
+      LDAP_GROUP_TARGET = setVar(VARIABLE_LDAP_GROUP_TARGET, LDAP_GROUP_TARGET);
+      LDAP_DYNAMIC_GROUP_TARGET = setVar(VARIABLE_LDAP_DYNAMIC_GROUP_TARGET, LDAP_DYNAMIC_GROUP_TARGET);
+      LDAP_LDAP_USERDN = setVar(VARIABLE_LDAP_USERDN, LDAP_LDAP_USERDN);
+      LDAP_LDAP_GROUPDN = setVar(VARIABLE_LDAP_GROUPDN, LDAP_LDAP_GROUPDN);
+      LDAP_ACCOUNT_STATUS = setIntVar(VARIABLE_LDAP_ACCOUNT_STATUS, LDAP_ACCOUNT_STATUS);
+    }
+
+    private Snapshot copy() {
+      try {
+        return (Snapshot) clone();
+      } catch (CloneNotSupportedException ex) {
+        throw new IllegalStateException(ex);
+      }
     }
   }
 
   public synchronized void refreshCache() {
-    cached = false;
-    populateCache();
+    loadCache();
   }
 
   public synchronized void updateVariable(String variableName, String variableValue) {
@@ -537,8 +942,8 @@ public class Settings implements Serializable {
    * The next call to read a variable after invalidateCache() will trigger a read of all variables
    * from the database.
    */
-  public synchronized void invalidateCache() {
-    cached = false;
+  public void invalidateCache() {
+    snapshot = null;
   }
 
   /**
@@ -546,21 +951,16 @@ public class Settings implements Serializable {
    */
   private static final String GLASSFISH_DIR = "/srv/hops/glassfish";
 
-  public synchronized String getGlassfishDir() {
+  public String getGlassfishDir() {
     return GLASSFISH_DIR;
   }
 
-  private String TWOFACTOR_AUTH = "false";
-  private String TWOFACTOR_EXCLUDE = "AGENT;CLUSTER_AGENT";
-
-  public synchronized String getTwoFactorAuth() {
-    checkCache();
-    return TWOFACTOR_AUTH;
+  public String getTwoFactorAuth() {
+    return snapshot().TWOFACTOR_AUTH;
   }
 
-  public synchronized String getTwoFactorExclude() {
-    checkCache();
-    return TWOFACTOR_EXCLUDE;
+  public String getTwoFactorExclude() {
+    return snapshot().TWOFACTOR_EXCLUDE;
   }
 
   public enum TwoFactorMode {
@@ -584,11 +984,8 @@ public class Settings implements Serializable {
     }
   }
 
-  private String HOPS_RPC_TLS = "false";
-
-  public synchronized boolean getHopsRpcTls() {
-    checkCache();
-    return HOPS_RPC_TLS.toLowerCase().equals("true");
+  public boolean getHopsRpcTls() {
+    return snapshot().HOPS_RPC_TLS.toLowerCase().equals("true");
   }
 
   /**
@@ -598,7 +995,6 @@ public class Settings implements Serializable {
 
   public static final String SERVING_DIRS = "/serving/";
 
-  private String SPARK_DIR = "/srv/hops/spark";
   public static final String SPARK_EXAMPLES_DIR = "/examples/jars";
 
   public static final String SPARK_NUMBER_EXECUTORS_ENV
@@ -630,8 +1026,6 @@ public class Settings implements Serializable {
   public static final String SPARK_DRIVER_EXTRALIBRARYPATH="spark.driver.extraLibraryPath";
   public static final String SPARK_DRIVER_EXTRAJAVAOPTIONS="spark.driver.extraJavaOptions";
   
-  
-  
   //PySpark properties
   public static final String SPARK_APP_NAME_ENV = "spark.app.name";
   public static final String SPARK_EXECUTORENV_PYTHONPATH = "spark.executorEnv.PYTHONPATH";
@@ -668,47 +1062,80 @@ public class Settings implements Serializable {
   public static final String PYSPARK_ZIP = "pyspark.zip";
   public static final String PYSPARK_PY4J = "py4j-0.10.6-src.zip";
 
-  public synchronized String getSparkDir() {
-    checkCache();
-    return SPARK_DIR;
+  public String getSparkDir() {
+    return snapshot().SPARK_DIR;
   }
 
-  public synchronized String getSparkConfDir() {
+  public String getSparkConfDir() {
     return getSparkDir() + "/conf";
   }
 
-  public synchronized String getSparkExampleDir() {
-    checkCache();
+  public String getSparkExampleDir() {
     return SPARK_EXAMPLES_DIR;
   }
 
   private final String SPARK_CONF_FILE = "/spark-defaults.conf";
 
-  public synchronized String getSparkConfFile() {
+  public String getSparkConfFile() {
     return getSparkConfDir() + SPARK_CONF_FILE;
   }
 
-  private String ADAM_USER = "glassfish";
+  public String getAdamUser() {
+    return snapshot().ADAM_USER;
+  }
 
-  public synchronized String getAdamUser() {
-    checkCache();
-    return ADAM_USER;
+  public String getStagingDir() {
+    return snapshot().STAGING_DIR;
   }
 
-  // "/tmp" by default
-  private String STAGING_DIR = "/srv/hops/domains/domain1/staging";
+  public boolean isUploadDirectToHdfs() {
+    return snapshot().UPLOAD_DIRECT_TO_HDFS;
+  }
+
+  public Integer getUploadSpillLimit() {
+    return snapshot().UPLOAD_SPILL_LIMIT;
+  }
+
+  public String getUploadIdleTimeout() {
+    return snapshot().UPLOAD_IDLE_TIMEOUT;
+  }
+
+  public Integer getTransferBufferSize() {
+    return snapshot().TRANSFER_BUFFER_SIZE;
+  }
 
-  public synchronized String getStagingDir() {
-    checkCache();
-    return STAGING_DIR;
+  public Integer getTransferBufferPoolSize() {
+    return snapshot().TRANSFER_BUFFER_POOL_SIZE;
+  }
+
+  public Integer getArchiveMaxJobs() {
+    return snapshot().ARCHIVE_MAX_JOBS;
+  }
+
+  public Integer getArchiveParallelism() {
+    return snapshot().ARCHIVE_PARALLELISM;
+  }
+
+  public Integer getKagentParallelism() {
+    return snapshot().KAGENT_PARALLELISM;
+  }
+
+  public Integer getKagentMaxConnectionsPerHost() {
+    return snapshot().KAGENT_MAX_CONNECTIONS_PER_HOST;
+  }
+
+  public String getKagentConnectTimeout() {
+    return snapshot().KAGENT_CONNECT_TIMEOUT;
+  }
+
+  public String getKagentReadTimeout() {
+    return snapshot().KAGENT_READ_TIMEOUT;
   }
 
   private final String FLINK_CONF_DIR = "conf";
-  private String FLINK_DIR = "/srv/hops/flink";
 
-  public synchronized String getFlinkDir() {
-    checkCache();
-    return FLINK_DIR;
+  public String getFlinkDir() {
+    return snapshot().FLINK_DIR;
   }
 
   public String getFlinkConfDir() {
@@ -721,104 +1148,68 @@ public class Settings implements Serializable {
   public String getFlinkConfFile() {
     return getFlinkConfDir() + File.separator + FLINK_CONF_FILE;
   }
-  private String MYSQL_DIR = "/usr/local/mysql";
 
-  public synchronized String getMySqlDir() {
-    checkCache();
-    return MYSQL_DIR;
+  public String getMySqlDir() {
+    return snapshot().MYSQL_DIR;
   }
-  private String NDB_DIR = "/var/lib/mysql-cluster";
 
-  public synchronized String getNdbDir() {
-    checkCache();
-    return NDB_DIR;
+  public String getNdbDir() {
+    return snapshot().NDB_DIR;
   }
 
-  private String ADAM_DIR = "/srv/hops/adam";
-
-  public synchronized String getAdamDir() {
-    checkCache();
-    return ADAM_DIR;
+  public String getAdamDir() {
+    return snapshot().ADAM_DIR;
   }
 
-  private String HADOOP_DIR = "/srv/hops/hadoop";
-
   // This returns the unversioned base installation directory for hops-hadoop
   // For example, "/srv/hops/hadoop" - it does not return "/srv/hops/hadoop-2.8.2"
-  public synchronized String getHadoopSymbolicLinkDir() {
-    checkCache();
-    return HADOOP_DIR;
+  public String getHadoopSymbolicLinkDir() {
+    return snapshot().HADOOP_DIR;
   }
 
-  public synchronized String getHadoopVersionedDir() {
-    checkCache();
-    return HADOOP_DIR + "-" + getHadoopVersion();
+  public String getHadoopVersionedDir() {
+    return snapshot().HADOOP_DIR + "-" + getHadoopVersion();
   }
 
-  private String HIVE_SERVER_HOSTNAME = "127.0.0.1:9085";
-  private String HIVE_SERVER_HOSTNAME_EXT = "127.0.0.1:9084";
-
-  public synchronized String getHiveServerHostName(boolean ext) {
-    checkCache();
+  public String getHiveServerHostName(boolean ext) {
+    Snapshot s = snapshot();
     if (ext) {
-      return HIVE_SERVER_HOSTNAME_EXT;
+      return s.HIVE_SERVER_HOSTNAME_EXT;
     }
-    return HIVE_SERVER_HOSTNAME;
+    return s.HIVE_SERVER_HOSTNAME;
   }
 
-  private String HIVE_SUPERUSER = "hive";
-
-  public synchronized String getHiveSuperUser() {
-    checkCache();
-    return HIVE_SUPERUSER;
+  public String getHiveSuperUser() {
+    return snapshot().HIVE_SUPERUSER;
   }
 
-  private String ANACONDA_DEFAULT_REPO = "defaults";
-
-  public synchronized String getCondaDefaultRepo() {
-    checkCache();
-    return ANACONDA_DEFAULT_REPO;
+  public String getCondaDefaultRepo() {
+    return snapshot().ANACONDA_DEFAULT_REPO;
   }
 
-  private String HIVE_WAREHOUSE = "/apps/hive/warehouse";
-
-  public synchronized String getHiveWarehouse() {
-    checkCache();
-    return HIVE_WAREHOUSE;
+  public String getHiveWarehouse() {
+    return snapshot().HIVE_WAREHOUSE;
   }
 
-  private String HIVE_LLAP_SLIDER_DIR = "/home/hive/.slider";
-
-  public synchronized String getHiveLlapSliderDir() {
-    checkCache();
-    return HIVE_LLAP_SLIDER_DIR;
+  public String getHiveLlapSliderDir() {
+    return snapshot().HIVE_LLAP_SLIDER_DIR;
   }
 
-  private String HIVE_LLAP_LOCAL_FS_DIR = "/srv/hops/apache-hive/bin/llap";
-
-  public synchronized String getHiveLlapLocalDir() {
-    checkCache();
-    return HIVE_LLAP_LOCAL_FS_DIR;
+  public String getHiveLlapLocalDir() {
+    return snapshot().HIVE_LLAP_LOCAL_FS_DIR;
   }
 
-  private String HIVE_SCRATCHDIR = "/tmp/hive";
-
-  public synchronized String getHiveScratchdir() {
-    checkCache();
-    return HIVE_SCRATCHDIR;
+  public String getHiveScratchdir() {
+    return snapshot().HIVE_SCRATCHDIR;
   }
 
-  private String HIVE_DB_DEFAULT_QUOTA = "50000";
-
-  public synchronized Long getHiveDbDefaultQuota() {
-    checkCache();
-    return Long.parseLong(HIVE_DB_DEFAULT_QUOTA);
+  public Long getHiveDbDefaultQuota() {
+    return Long.parseLong(snapshot().HIVE_DB_DEFAULT_QUOTA);
   }
 
   private String HOPSWORKS_EXTERNAL_IP = "127.0.0.1";
 
   public synchronized String getHopsworksExternalIp() {
-    checkCache();
     return HOPSWORKS_EXTERNAL_IP;
   }
 
@@ -826,153 +1217,101 @@ public class Settings implements Serializable {
     HOPSWORKS_EXTERNAL_IP = ip;
   }
 
-  private String HOPSWORKS_IP = "127.0.0.1";
-
-  public synchronized String getHopsworksIp() {
-    checkCache();
-    return HOPSWORKS_IP;
+  public String getHopsworksIp() {
+    return snapshot().HOPSWORKS_IP;
   }
 
-  private Integer HOPSWORKS_PORT = 8080;
-
-  public synchronized Integer getHopsworksPort() {
-    checkCache();
-    return HOPSWORKS_PORT;
+  public Integer getHopsworksPort() {
+    return snapshot().HOPSWORKS_PORT;
   }
 
-  private String CERTS_DIR = "/srv/hops/certs-dir";
-
-  public synchronized String getCertsDir() {
-    checkCache();
-    return CERTS_DIR;
+  public String getCertsDir() {
+    return snapshot().CERTS_DIR;
   }
 
-  public synchronized String getHopsworksMasterEncPasswordFile() {
-    checkCache();
+  public String getHopsworksMasterEncPasswordFile() {
     return getCertsDir() + File.separator + "encryption_master_password";
   }
 
-  private String HOPSWORKS_INSTALL_DIR = "/srv/hops/domains";
-
-  public synchronized String getHopsworksInstallDir() {
-    checkCache();
-    return HOPSWORKS_INSTALL_DIR;
+  public String getHopsworksInstallDir() {
+    return snapshot().HOPSWORKS_INSTALL_DIR;
   }
 
-  public synchronized String getHopsworksDomainDir() {
-    checkCache();
-    return HOPSWORKS_INSTALL_DIR + "/domain1";
+  public String getHopsworksDomainDir() {
+    return snapshot().HOPSWORKS_INSTALL_DIR + "/domain1";
   }
 
-  public synchronized String getIntermediateCaDir() {
-    checkCache();
+  public String getIntermediateCaDir() {
     return getCertsDir() + Settings.INTERMEDIATE_CA_DIR;
   }
 
-  public synchronized String getCaDir() {
-    checkCache();
+  public String getCaDir() {
     return getCertsDir();
   }
 
-  //User under which yarn is run
-  private String YARN_SUPERUSER = "rmyarn";
-
-  public synchronized String getYarnSuperUser() {
-    checkCache();
-    return YARN_SUPERUSER;
+  public String getYarnSuperUser() {
+    return snapshot().YARN_SUPERUSER;
   }
-  private String HOPSWORKS_USER = "glassfish";
 
-  public synchronized String getHopsworksUser() {
-    checkCache();
-    return HOPSWORKS_USER;
+  public String getHopsworksUser() {
+    return snapshot().HOPSWORKS_USER;
   }
-  private String HDFS_SUPERUSER = "hdfs";
 
-  public synchronized String getHdfsSuperUser() {
-    checkCache();
-    return HDFS_SUPERUSER;
+  public String getHdfsSuperUser() {
+    return snapshot().HDFS_SUPERUSER;
   }
-  private String SPARK_USER = "spark";
 
-  public synchronized String getSparkUser() {
-    checkCache();
-    return SPARK_USER;
+  public String getSparkUser() {
+    return snapshot().SPARK_USER;
   }
 
-  public static String JAVA_HOME = "/usr/lib/jvm/default-java";
-
-  public synchronized String getJavaHome() {
-    checkCache();
-    return JAVA_HOME;
+  public String getJavaHome() {
+    return snapshot().JAVA_HOME;
   }
 
-  private String FLINK_USER = "flink";
-
-  public synchronized String getFlinkUser() {
-    checkCache();
-    return FLINK_USER;
+  public String getFlinkUser() {
+    return snapshot().FLINK_USER;
   }
 
-  private String ZEPPELIN_USER = "spark";
-
-  public synchronized String getZeppelinUser() {
-    checkCache();
-    return ZEPPELIN_USER;
+  public String getZeppelinUser() {
+    return snapshot().ZEPPELIN_USER;
   }
 
-  private String YARN_DEFAULT_QUOTA = "60000";
-
-  public synchronized String getYarnDefaultQuota() {
-    checkCache();
-    return YARN_DEFAULT_QUOTA;
+  public String getYarnDefaultQuota() {
+    return snapshot().YARN_DEFAULT_QUOTA;
   }
 
-  private String YARN_WEB_UI_IP = "127.0.0.1";
-  private int YARN_WEB_UI_PORT = 8088;
-
-  public synchronized String getYarnWebUIAddress() {
-    checkCache();
-    return YARN_WEB_UI_IP + ":" + YARN_WEB_UI_PORT;
+  public String getYarnWebUIAddress() {
+    Snapshot s = snapshot();
+    return s.YARN_WEB_UI_IP + ":" + s.YARN_WEB_UI_PORT;
   }
 
-  private String HDFS_WEB_UI_IP = "127.0.0.1";
-  private int HDFS_WEB_UI_PORT = 50070;
-
-  public synchronized String getHDFSWebUIAddress() {
-    checkCache();
-    return HDFS_WEB_UI_IP + ":" + HDFS_WEB_UI_PORT;
+  public String getHDFSWebUIAddress() {
+    Snapshot s = snapshot();
+    return s.HDFS_WEB_UI_IP + ":" + s.HDFS_WEB_UI_PORT;
   }
 
-  private String HDFS_DEFAULT_QUOTA_MBs = "200000";
-
-  public synchronized long getHdfsDefaultQuotaInMBs() {
-    checkCache();
-    return Long.parseLong(HDFS_DEFAULT_QUOTA_MBs);
+  public long getHdfsDefaultQuotaInMBs() {
+    return Long.parseLong(snapshot().HDFS_DEFAULT_QUOTA_MBs);
   }
 
-  private String MAX_NUM_PROJ_PER_USER = "5";
-
-  public synchronized Integer getMaxNumProjPerUser() {
-    checkCache();
+  public Integer getMaxNumProjPerUser() {
+    Snapshot s = snapshot();
     int num = 5;
     try {
-      num = Integer.parseInt(MAX_NUM_PROJ_PER_USER);
+      num = Integer.parseInt(s.MAX_NUM_PROJ_PER_USER);
     } catch (NumberFormatException ex) {
       // should print to log here
     }
     return num;
   }
 
-  private String HADOOP_VERSION = "2.8.2";
-
-  public synchronized String getHadoopVersion() {
-    checkCache();
-    return HADOOP_VERSION;
+  public String getHadoopVersion() {
+    return snapshot().HADOOP_VERSION;
   }
 
   //Hadoop locations
-  public synchronized String getHadoopConfDir() {
+  public String getHadoopConfDir() {
     return hadoopConfDir(getHadoopSymbolicLinkDir());
   }
 
@@ -984,7 +1323,7 @@ public class Settings implements Serializable {
     return hadoopConfDir(hadoopDir);
   }
 
-  public synchronized String getYarnConfDir() {
+  public String getYarnConfDir() {
     return getHadoopConfDir();
   }
 
@@ -1061,11 +1400,11 @@ public class Settings implements Serializable {
     return "hdfs:///user/" + tfUser + "/" + TENSORFLOW_JAR;
   }
 
-  public synchronized String getLocalFlinkJarPath() {
+  public String getLocalFlinkJarPath() {
     return getFlinkDir() + "/flink.jar";
   }
 
-  public synchronized String getHdfsFlinkJarPath() {
+  public String getHdfsFlinkJarPath() {
     return hdfsFlinkJarPath(getFlinkUser());
   }
 
@@ -1077,7 +1416,7 @@ public class Settings implements Serializable {
     return hdfsFlinkJarPath(flinkUser);
   }
 
-  public synchronized String getFlinkDefaultClasspath() {
+  public String getFlinkDefaultClasspath() {
     return flinkDefaultClasspath(getFlinkDir());
   }
 
@@ -1109,7 +1448,7 @@ public class Settings implements Serializable {
     return "hdfs:///user/" + getSparkUser() + "/metrics.properties";
   }
 
-  public synchronized String getSparkDefaultClasspath() {
+  public String getSparkDefaultClasspath() {
     return sparkDefaultClasspath(getSparkDir());
   }
 
@@ -1159,33 +1498,39 @@ public class Settings implements Serializable {
       + File.separator;
   public static final String PROJECT_STAGING_DIR = "Resources";
 
-  // Elasticsearch
-  private String ELASTIC_IP = "127.0.0.1";
+  public String getElasticIp() {
+    return snapshot().ELASTIC_IP;
+  }
 
-  public synchronized String getElasticIp() {
-    checkCache();
-    return ELASTIC_IP;
+  public int getElasticPort() {
+    return snapshot().ELASTIC_PORT;
   }
 
-  private int ELASTIC_PORT = 9300;
+  public int getElasticRESTPort() {
+    return snapshot().ELASTIC_REST_PORT;
+  }
 
-  public synchronized int getElasticPort() {
-    checkCache();
-    return ELASTIC_PORT;
+  public int getElasticSearchCacheSize() {
+    return snapshot().ELASTIC_SEARCH_CACHE_SIZE;
   }
 
-  private int ELASTIC_REST_PORT = 9200;
+  public String getElasticSearchCacheTTL() {
+    return snapshot().ELASTIC_SEARCH_CACHE_TTL;
+  }
 
-  public synchronized int getElasticRESTPort() {
-    checkCache();
-    return ELASTIC_REST_PORT;
+  public int getElasticPublicDatasetCacheSize() {
+    return snapshot().ELASTIC_PUBLIC_DATASET_CACHE_SIZE;
   }
 
-  public synchronized String getElasticEndpoint() {
+  public String getElasticPublicDatasetCacheTTL() {
+    return snapshot().ELASTIC_PUBLIC_DATASET_CACHE_TTL;
+  }
+
+  public String getElasticEndpoint() {
     return getElasticIp() + ":" + getElasticPort();
   }
 
-  public synchronized String getElasticRESTEndpoint() {
+  public String getElasticRESTEndpoint() {
     return getElasticIp() + ":" + getElasticRESTPort();
   }
 
@@ -1212,160 +1557,112 @@ public class Settings implements Serializable {
     return JOB_LOGS_ID_FIELD;
   }
 
-  // CertificateMaterializer service. Delay for deleting crypto material from
-  // the local filesystem. The lower the value the more frequent we reach DB
-  // for materialization
-  // Suffix, defaults to minutes if omitted:
-  // ms: milliseconds
-  // s: seconds
-  // m: minutes (default)
-  // h: hours
-  // d: days
-  private String CERTIFICATE_MATERIALIZER_DELAY = "1m";
-
-  public synchronized String getCertificateMaterializerDelay() {
-    checkCache();
-    return CERTIFICATE_MATERIALIZER_DELAY;
+  public String getCertificateMaterializerDelay() {
+    return snapshot().CERTIFICATE_MATERIALIZER_DELAY;
   }
 
-  private String CERTIFICATE_USER_VALID_DAYS = "12";
-
-  public synchronized String getCertificateUserValidDays() {
-    checkCache();
-    return CERTIFICATE_USER_VALID_DAYS;
+  public Integer getCertificateMaterializerCacheSize() {
+    return snapshot().CERTIFICATE_MATERIALIZER_CACHE_SIZE;
   }
 
-  // Spark
-  private String SPARK_HISTORY_SERVER_IP = "127.0.0.1";
-
-  public synchronized String getSparkHistoryServerIp() {
-    checkCache();
-    return SPARK_HISTORY_SERVER_IP + ":18080";
+  public String getCertificateMaterializerCacheTtl() {
+    return snapshot().CERTIFICATE_MATERIALIZER_CACHE_TTL;
   }
 
-  // Oozie
-  private String OOZIE_IP = "127.0.0.1";
+  public boolean isCertificateMaterializerDirectBuffers() {
+    return snapshot().CERTIFICATE_MATERIALIZER_DIRECT_BUFFERS;
+  }
 
-  public synchronized String getOozieIp() {
-    checkCache();
-    return OOZIE_IP;
+  public Integer getDfsOpsPoolSize() {
+    return snapshot().DFS_OPS_POOL_SIZE;
   }
 
-  // MapReduce Job History Server
-  private String JHS_IP = "127.0.0.1";
+  public String getDfsOpsPoolIdleTimeout() {
+    return snapshot().DFS_OPS_POOL_IDLE_TIMEOUT;
+  }
 
-  public synchronized String getJhsIp() {
-    checkCache();
-    return JHS_IP;
+  public String getDfsOpsPoolMaxLifetime() {
+    return snapshot().DFS_OPS_POOL_MAX_LIFETIME;
   }
 
-  // Resource Manager for YARN
-  private String RM_IP = "127.0.0.1";
+  public String getCertificateUserValidDays() {
+    return snapshot().CERTIFICATE_USER_VALID_DAYS;
+  }
 
-  public synchronized String getRmIp() {
-    checkCache();
-    return RM_IP;
+  public String getSparkHistoryServerIp() {
+    return snapshot().SPARK_HISTORY_SERVER_IP + ":18080";
   }
 
-  // Resource Manager Port 
-  private int RM_PORT = 8088;
+  public String getOozieIp() {
+    return snapshot().OOZIE_IP;
+  }
 
-  public synchronized Integer getRmPort() {
-    checkCache();
-    return RM_PORT;
+  public String getJhsIp() {
+    return snapshot().JHS_IP;
   }
 
-  private String LOGSTASH_IP = "127.0.0.1";
+  public String getRmIp() {
+    return snapshot().RM_IP;
+  }
 
-  public synchronized String getLogstashIp() {
-    checkCache();
-    return LOGSTASH_IP;
+  public Integer getRmPort() {
+    return snapshot().RM_PORT;
   }
 
-  // Resource Manager Port 
-  private int LOGSTASH_PORT = 8088;
+  public String getLogstashIp() {
+    return snapshot().LOGSTASH_IP;
+  }
 
-  public synchronized Integer getLogstashPort() {
-    checkCache();
-    return LOGSTASH_PORT;
+  public Integer getLogstashPort() {
+    return snapshot().LOGSTASH_PORT;
   }
 
-  // Livy Server`
-  private String LIVY_IP = "127.0.0.1";
   private final String LIVY_YARN_MODE = "yarn";
-  private String LIVY_ZEPPELIN_SESSION_TIMEOUT = "3600";
 
-  public synchronized String getLivyIp() {
-    checkCache();
-    return LIVY_IP;
+  public String getLivyIp() {
+    return snapshot().LIVY_IP;
   }
 
-  public synchronized String getLivyUrl() {
+  public String getLivyUrl() {
     return "http://" + getLivyIp() + ":8998";
   }
 
-  public synchronized String getLivyYarnMode() {
-    checkCache();
+  public String getLivyYarnMode() {
     return LIVY_YARN_MODE;
   }
 
-  public synchronized String getLivyZeppelinSessionTimeout() {
-    checkCache();
-    return LIVY_ZEPPELIN_SESSION_TIMEOUT;
+  public String getLivyZeppelinSessionTimeout() {
+    return snapshot().LIVY_ZEPPELIN_SESSION_TIMEOUT;
   }
 
   private static final int ZK_PORT = 2181;
 
   // Kibana
   public static final String KIBANA_DEFAULT_INDEX = "hopsdefault";
-  private String KIBANA_IP = "10.0.2.15";
   private static final int KIBANA_PORT = 5601;
 
-  public synchronized String getKibanaUri() {
-    checkCache();
-    return "http://" + KIBANA_IP + ":" + KIBANA_PORT;
+  public String getKibanaUri() {
+    return "http://" + snapshot().KIBANA_IP + ":" + KIBANA_PORT;
   }
 
-  // Zookeeper 
-  private String ZK_IP = "10.0.2.15";
-
-  public synchronized String getZkConnectStr() {
-    checkCache();
-    return ZK_IP + ":" + ZK_PORT;
+  public String getZkConnectStr() {
+    return snapshot().ZK_IP + ":" + ZK_PORT;
   }
 
-  private String ZK_USER = "zk";
-
-  public synchronized String getZkUser() {
-    checkCache();
-    return ZK_USER;
+  public String getZkUser() {
+    return snapshot().ZK_USER;
   }
 
-  /*
-   * Comma-separated list of user emails that should not be persisted in the
-   * userlogins table for auditing.
-   * kagent -> agent@hops.io
-   */
-  private String WHITELIST_USERS_LOGIN = "agent@hops.io";
-
-  public synchronized String getWhitelistUsersLogin() {
-    checkCache();
-    return WHITELIST_USERS_LOGIN;
+  public String getWhitelistUsersLogin() {
+    return snapshot().WHITELIST_USERS_LOGIN;
   }
 
-  // Zeppelin
-  private String ZEPPELIN_DIR = "/srv/hops/zeppelin";
-  private String ZEPPELIN_INTERPRETERS = "org.apache.zeppelin.hopshive.HopsHiveInterpreter";
-
-  private String zeppelinDefaultInterpreter;
-
-  public synchronized String getZeppelinInterpreters() {
-    checkCache();
-    return ZEPPELIN_INTERPRETERS;
+  public String getZeppelinInterpreters() {
+    return snapshot().ZEPPELIN_INTERPRETERS;
   }
 
-  public synchronized String getZeppelinDefaultInterpreter() {
-    return zeppelinDefaultInterpreter;
+  public String getZeppelinDefaultInterpreter() {
+    return snapshot().zeppelinDefaultInterpreter;
   }
 
   /**
@@ -1373,73 +1670,59 @@ public class Settings implements Serializable {
    *
    * @return default interpreter name
    */
-  private String getZeppelinDefaultInterpreter(String interpreters) {
+  private static String getZeppelinDefaultInterpreter(String interpreters) {
     //Split interpreters
     return interpreters.split(",")[0].split("\\.")[3];
   }
 
-  public synchronized String getZeppelinDir() {
-    checkCache();
-    return ZEPPELIN_DIR;
+  public String getZeppelinDir() {
+    return snapshot().ZEPPELIN_DIR;
   }
 
-  private String ZEPPELIN_PROJECTS_DIR = "/srv/hops/zeppelin/Projects";
-
-  public synchronized String getZeppelinProjectsDir() {
-    checkCache();
-    return ZEPPELIN_PROJECTS_DIR;
+  public String getZeppelinProjectsDir() {
+    return snapshot().ZEPPELIN_PROJECTS_DIR;
   }
 
-  private long ZEPPELIN_SYNC_INTERVAL = 24 * 60 * 60 * 1000;
-
-  public synchronized long getZeppelinSyncInterval() {
-    checkCache();
-    return ZEPPELIN_SYNC_INTERVAL;
+  public long getZeppelinSyncInterval() {
+    return snapshot().ZEPPELIN_SYNC_INTERVAL;
   }
 
-  public static final int JUPYTER_PORT = 8888;
-
-  // Jupyter
-  private String JUPYTER_DIR = "/srv/hops/jupyter";
-
-  public synchronized String getJupyterDir() {
-    checkCache();
-    return JUPYTER_DIR;
+  public Integer getZeppelinWsQueueSize() {
+    return snapshot().ZEPPELIN_WS_QUEUE_SIZE;
   }
 
-  private String KAFKA_USER = "kafka";
+  public String getZeppelinOutputFlushInterval() {
+    return snapshot().ZEPPELIN_OUTPUT_FLUSH_INTERVAL;
+  }
 
-  public synchronized String getKafkaUser() {
-    checkCache();
-    return KAFKA_USER;
+  public Integer getZeppelinOutputMaxFrame() {
+    return snapshot().ZEPPELIN_OUTPUT_MAX_FRAME;
   }
 
-  private String KAFKA_DIR = "/srv/kafka";
+  public static final int JUPYTER_PORT = 8888;
 
-  public synchronized String getKafkaDir() {
-    checkCache();
-    return KAFKA_DIR;
+  public String getJupyterDir() {
+    return snapshot().JUPYTER_DIR;
   }
 
-  private String ANACONDA_USER = "anaconda";
-
-  public synchronized String getAnacondaUser() {
-    checkCache();
-    return ANACONDA_USER;
+  public String getKafkaUser() {
+    return snapshot().KAFKA_USER;
   }
 
-  private String ANACONDA_DIR = "/srv/hops/anaconda/anaconda";
+  public String getKafkaDir() {
+    return snapshot().KAFKA_DIR;
+  }
 
-  public synchronized String getAnacondaDir() {
-    checkCache();
-    return ANACONDA_DIR;
+  public String getAnacondaUser() {
+    return snapshot().ANACONDA_USER;
   }
 
-  private String CUDA_DIR = "/usr/local/cuda";
+  public String getAnacondaDir() {
+    return snapshot().ANACONDA_DIR;
+  }
 
-  public synchronized String getCudaDir() {
-    checkCache();
-    return CUDA_DIR;
+  public String getCudaDir() {
+    return snapshot().CUDA_DIR;
   }
 
   /**
@@ -1453,47 +1736,31 @@ public class Settings implements Serializable {
         + projectName;
   }
 
-  private String ANACONDA_ENV = "kagent";
-
-  public synchronized String getAnacondaEnv() {
-    checkCache();
-    return ANACONDA_ENV;
+  public String getAnacondaEnv() {
+    return snapshot().ANACONDA_ENV;
   }
 
-  private Boolean ANACONDA_ENABLED = true;
-
-  public synchronized Boolean isAnacondaEnabled() {
-    checkCache();
-    return ANACONDA_ENABLED;
+  public Boolean isAnacondaEnabled() {
+    return snapshot().ANACONDA_ENABLED;
   }
 
 //  private String CONDA_CHANNEL_URL = "https://repo.continuum.io/pkgs/free/linux-64/";
   private String CONDA_CHANNEL_URL = "default";
 
   public synchronized String getCondaChannelUrl() {
-    checkCache();
     return CONDA_CHANNEL_URL;
   }
 
-  private String HOPSWORKS_REST_ENDPOINT = "hopsworks0:8181";
-
-  public synchronized String getRestEndpoint() {
-    checkCache();
-    return "https://" + HOPSWORKS_REST_ENDPOINT;
+  public String getRestEndpoint() {
+    return "https://" + snapshot().HOPSWORKS_REST_ENDPOINT;
   }
 
-  private String SUPPORT_EMAIL_ADDR = "support@hops.io";
-
-  public synchronized String getSupportEmailAddr() {
-    checkCache();
-    return SUPPORT_EMAIL_ADDR;
+  public String getSupportEmailAddr() {
+    return snapshot().SUPPORT_EMAIL_ADDR;
   }
 
-  private String FIRST_TIME_LOGIN = "0";
-
-  public synchronized String getFirstTimeLogin() {
-    checkCache();
-    return FIRST_TIME_LOGIN;
+  public String getFirstTimeLogin() {
+    return snapshot().FIRST_TIME_LOGIN;
   }
 
   private final String DEFAULT_ADMIN_PWD = "12fa520ec8f65d3a6feacfa97a705e622e1fea95b80b521ec016e43874dfed5a";
@@ -1515,53 +1782,33 @@ public class Settings implements Serializable {
     return ADMIN_PWD.compareTo(DEFAULT_ADMIN_PWD) != 0;
   }
 
-  private String HOPSWORKS_DEFAULT_SSL_MASTER_PASSWORD = "adminpw";
-
-  public synchronized String getHopsworksMasterPasswordSsl() {
-    checkCache();
-    return HOPSWORKS_DEFAULT_SSL_MASTER_PASSWORD;
+  public String getHopsworksMasterPasswordSsl() {
+    return snapshot().HOPSWORKS_DEFAULT_SSL_MASTER_PASSWORD;
   }
 
-  private String KAFKA_DEFAULT_NUM_PARTITIONS = "2";
-  private String KAFKA_DEFAULT_NUM_REPLICAS = "1";
-
-  public synchronized String getKafkaDefaultNumPartitions() {
-    checkCache();
-    return KAFKA_DEFAULT_NUM_PARTITIONS;
+  public String getKafkaDefaultNumPartitions() {
+    return snapshot().KAFKA_DEFAULT_NUM_PARTITIONS;
   }
 
-  public synchronized String getKafkaDefaultNumReplicas() {
-    checkCache();
-    return KAFKA_DEFAULT_NUM_REPLICAS;
+  public String getKafkaDefaultNumReplicas() {
+    return snapshot().KAFKA_DEFAULT_NUM_REPLICAS;
   }
 
-  private String ZK_DIR = "/srv/zookeeper";
-
-  public synchronized String getZkDir() {
-    checkCache();
-    return ZK_DIR;
+  public String getZkDir() {
+    return snapshot().ZK_DIR;
   }
 
-  // Dr Elephant
-  private String DRELEPHANT_IP = "127.0.0.1";
-  private String DRELEPHANT_DB = "hopsworks";
-  private int DRELEPHANT_PORT = 11000;
-
-  public synchronized String getDrElephantUrl() {
-    checkCache();
-    return "http://" + DRELEPHANT_IP + ":" + DRELEPHANT_PORT;
+  public String getDrElephantUrl() {
+    Snapshot s = snapshot();
+    return "http://" + s.DRELEPHANT_IP + ":" + s.DRELEPHANT_PORT;
   }
 
-  public synchronized String getDrElephantDb() {
-    checkCache();
-    return DRELEPHANT_DB;
+  public String getDrElephantDb() {
+    return snapshot().DRELEPHANT_DB;
   }
 
-  private String CLUSTER_CERT = "asdasxasx8as6dx8a7sx7asdta8dtasxa8";
-
-  public synchronized String getCLUSTER_CERT() {
-    checkCache();
-    return CLUSTER_CERT;
+  public String getCLUSTER_CERT() {
+    return snapshot().CLUSTER_CERT;
   }
 
   // Hopsworks
@@ -1649,8 +1896,6 @@ public class Settings implements Serializable {
   public static final String HOPSWORKS_REST_ENDPOINT_PROPERTY = "hopsworks.restendpoint";
   public static final String HOPSWORKS_ELASTIC_ENDPOINT_PROPERTY = "hopsworks.elastic.endpoint";
 
-  private int FILE_PREVIEW_IMAGE_SIZE = 10000000;
-  private int FILE_PREVIEW_TXT_SIZE = 100;
   public static final int FILE_PREVIEW_TXT_SIZE_BYTES = 1024 * 384;
   public static final String README_TEMPLATE = "*This is an auto-generated README.md"
       + " file for your Dataset!*\n"
@@ -1697,9 +1942,8 @@ public class Settings implements Serializable {
    *
    * @return file size
    */
-  public synchronized int getFilePreviewImageSize() {
-    checkCache();
-    return FILE_PREVIEW_IMAGE_SIZE;
+  public int getFilePreviewImageSize() {
+    return snapshot().FILE_PREVIEW_IMAGE_SIZE;
   }
 
   /**
@@ -1709,29 +1953,21 @@ public class Settings implements Serializable {
    *
    * @return file size
    */
-  public synchronized int getFilePreviewTxtSize() {
-    checkCache();
-    return FILE_PREVIEW_TXT_SIZE;
+  public int getFilePreviewTxtSize() {
+    return snapshot().FILE_PREVIEW_TXT_SIZE;
   }
 
-  private String INFLUXDB_IP = "localhost";
-  private String INFLUXDB_PORT = "8086";
-  private String INFLUXDB_USER = "hopsworks";
-  private String INFLUXDB_PW = "hopsworks";
-
-  public synchronized String getInfluxDBAddress() {
-    checkCache();
-    return "http://" + INFLUXDB_IP + ":" + INFLUXDB_PORT;
+  public String getInfluxDBAddress() {
+    Snapshot s = snapshot();
+    return "http://" + s.INFLUXDB_IP + ":" + s.INFLUXDB_PORT;
   }
 
-  public synchronized String getInfluxDBUser() {
-    checkCache();
-    return INFLUXDB_USER;
+  public String getInfluxDBUser() {
+    return snapshot().INFLUXDB_USER;
   }
 
-  public synchronized String getInfluxDBPW() {
-    checkCache();
-    return INFLUXDB_PW;
+  public String getInfluxDBPW() {
+    return snapshot().INFLUXDB_PW;
   }
 
   //Project creation: default datasets
@@ -1781,21 +2017,16 @@ public class Settings implements Serializable {
   }
 
   public static final String JUPYTER_PIDS = "/tmp/jupyterNotebookServer.pids";
-  private String RESOURCE_DIRS = ".sparkStaging;spark-warehouse";
 
-  public synchronized String getResourceDirs() {
-    checkCache();
-    return RESOURCE_DIRS;
+  public String getResourceDirs() {
+    return snapshot().RESOURCE_DIRS;
   }
 
   public Settings() {
   }
 
-  private String ALERT_EMAIL_ADDRS = "";
-
-  public synchronized String getAlertEmailAddrs() {
-    checkCache();
-    return ALERT_EMAIL_ADDRS;
+  public String getAlertEmailAddrs() {
+    return snapshot().ALERT_EMAIL_ADDRS;
   }
 
   /**
@@ -1928,18 +2159,40 @@ public class Settings implements Serializable {
     }
   }
 
-  private int KAFKA_MAX_NUM_TOPICS = 10;
+  public int getKafkaMaxNumTopics() {
+    return snapshot().KAFKA_MAX_NUM_TOPICS;
+  }
+
+  public int getMaxStatusPollRetry() {
+    return snapshot().MAX_STATUS_POLL_RETRY;
+  }
+
+  public boolean isYarnJobsMonitorBatched() {
+    return snapshot().YARN_JOBS_MONITOR_BATCHED;
+  }
+
+  public Integer getYarnLogCopyParallelism() {
+    return snapshot().YARN_LOG_COPY_PARALLELISM;
+  }
 
-  public synchronized int getKafkaMaxNumTopics() {
-    checkCache();
-    return KAFKA_MAX_NUM_TOPICS;
+  public Integer getYarnLogTailChunkSize() {
+    return snapshot().YARN_LOG_TAIL_CHUNK_SIZE;
   }
 
-  private int MAX_STATUS_POLL_RETRY = 5;
+  public Integer getYarnLogTailRetainedSize() {
+    return snapshot().YARN_LOG_TAIL_RETAINED_SIZE;
+  }
 
-  public synchronized int getMaxStatusPollRetry() {
-    checkCache();
-    return MAX_STATUS_POLL_RETRY;
+  public Integer getInodePathCacheSize() {
+    return snapshot().INODE_PATH_CACHE_SIZE;
+  }
+
+  public String getInodePathCacheTtl() {
+    return snapshot().INODE_PATH_CACHE_TTL;
+  }
+
+  public Integer getInodeAncestorCacheSize() {
+    return snapshot().INODE_ANCESTOR_CACHE_SIZE;
   }
 
   /**
@@ -1970,108 +2223,30 @@ public class Settings implements Serializable {
     return aggregatedLogPath;
   }
 
-  // For performance reasons, we have an in-memory cache of files being unzipped
-  // Lazily remove them from the cache, when we check the FS and they aren't there.
-  private Set<String> zippingFiles = new HashSet<>();
-
-  public synchronized void addZippingState(String hdfsPath) {
-    zippingFiles.add(hdfsPath);
-  }
-  private Set<String> unzippingFiles = new HashSet<>();
-
-  public synchronized void addUnzippingState(String hdfsPath) {
-    unzippingFiles.add(hdfsPath);
-  }
-
-  public synchronized String getZipState(String hdfsPath) {
-
-    boolean zipOperation = false;
-    boolean unzipOperation = false;
-
-    if (zippingFiles.contains(hdfsPath)) {
-      zipOperation = true;
-    } else if (unzippingFiles.contains(hdfsPath)) {
-      unzipOperation = true;
-    } else {
-      return "NONE";
-    }
-
-    String hashedPath = DigestUtils.sha256Hex(hdfsPath);
-    String fsmPath = getStagingDir() + File.separator + hashedPath + "/fsm.txt";
-    String state = "NOT_FOUND";
-    try {
-      state = new String(java.nio.file.Files.readAllBytes(Paths.get(fsmPath)));
-      state = state.trim();
-    } catch (IOException ex) {
-
-      String stagingDir = getStagingDir() + File.separator + hashedPath;
-      if (!java.nio.file.Files.exists(Paths.get(stagingDir))) {
-        state = "NONE";
-        // lazily remove the file, probably because it has finished zipping/unzipping
-        if (zipOperation) {
-          zippingFiles.remove(hdfsPath);
-        } else if (unzipOperation) {
-          unzippingFiles.remove(hdfsPath);
-        }
-      }
-    }
-    // If a terminal state has been reached, removed the entry and the file.
-    if (state.isEmpty() || state.compareTo("FAILED") == 0 || state.compareTo("SUCCESS") == 0) {
-      try {
-        if (zipOperation) {
-          zippingFiles.remove(hdfsPath);
-        } else if (unzipOperation) {
-          unzippingFiles.remove(hdfsPath);
-        }
-        java.nio.file.Files.deleteIfExists(Paths.get(fsmPath));
-      } catch (IOException ex) {
-        Logger.getLogger(Settings.class.getName()).log(Level.SEVERE, null, ex);
-      }
-    }
-    if (state.isEmpty()) {
-      state = "NOT_FOUND";
-    }
-
-    return state;
-  }
-
-  private boolean PYTHON_KERNEL = true;
-
-  public synchronized boolean isPythonKernelEnabled() {
-    checkCache();
-    return PYTHON_KERNEL;
+  public boolean isPythonKernelEnabled() {
+    return snapshot().PYTHON_KERNEL;
   }
 
-  private String HOPSUTIL_VERSION = "0.3.0";
-
   public String getHopsUtilHdfsPath() {
     return "hdfs:///user/" + getSparkUser() + "/" + getHopsUtilFilename();
   }
 
-  public synchronized String getHopsUtilFilename() {
-    checkCache();
-    return "hops-util-" + HOPSUTIL_VERSION + ".jar";
+  public String getHopsUtilFilename() {
+    return "hops-util-" + snapshot().HOPSUTIL_VERSION + ".jar";
   }
 
-  private String HOPS_EXAMPLES_VERSION = "0.3.0";
-
-  public synchronized String getHopsExamplesFilename() {
-    checkCache();
-    return "hops-examples-spark-" + HOPS_EXAMPLES_VERSION + ".jar";
+  public String getHopsExamplesFilename() {
+    return "hops-examples-spark-" + snapshot().HOPS_EXAMPLES_VERSION + ".jar";
   }
 
-  private String RECOVERY_PATH = "hopsworks-api/api/auth/recover";
-
-  public synchronized String getRecoveryEndpoint() {
-    checkCache();
-    return HOPSWORKS_IP + ":" + HOPSWORKS_PORT + "/" + RECOVERY_PATH;
+  public String getRecoveryEndpoint() {
+    Snapshot s = snapshot();
+    return s.HOPSWORKS_IP + ":" + s.HOPSWORKS_PORT + "/" + s.RECOVERY_PATH;
   }
 
-  private String VERIFICATION_PATH = "hopsworks-api/api/auth/verify";
-
-  public synchronized String getVerificationEndpoint() {
-    checkCache();
-    return HOPSWORKS_IP + ":" + HOPSWORKS_PORT + "/" + VERIFICATION_PATH;
+  public String getVerificationEndpoint() {
+    Snapshot s = snapshot();
+    return s.HOPSWORKS_IP + ":" + s.HOPSWORKS_PORT + "/" + s.VERIFICATION_PATH;
   }
 
   //Dela START
@@ -2091,101 +2266,59 @@ public class Settings implements Serializable {
   private static final String VARIABLE_DELA_TRANSFER_ENDPOINT = "dela_transfer_endpoint";
 
   public static final Level DELA_DEBUG = Level.INFO;
-  private String HOPSSITE_HOST = "hops.site";
-  private String HOPSSITE = "http://hops.site:5081/hops-site/api";
-  private Boolean DELA_ENABLED = false; // set to false if not found in variables table
-  private DelaClientType DELA_CLIENT_TYPE = DelaClientType.FULL_CLIENT;
 
   private long HOPSSITE_HEARTBEAT_RETRY = 10 * 1000l; //10s
-  private long HOPSSITE_HEARTBEAT_INTERVAL = 10 * 60 * 1000l;//10min
-
-  private String DELA_TRANSFER_IP = "localhost";
-  private String DELA_TRANSFER_HTTP_PORT = "42000";
-  private String DELA_PUBLIC_HOPSWORK_PORT = "8080";
-  private String PUBLIC_HTTPS_PORT = "8181";
-
-  //set on registration after Dela is contacted to detect public port
-  private String DELA_SEARCH_ENDPOINT = "";
-  private String DELA_TRANSFER_ENDPOINT = "";
-  //set on cluster registration
-  private String DELA_CLUSTER_ID = null;
+
   //
   private AddressJSON DELA_PUBLIC_ENDPOINT = null;
   //
   public static final String MANIFEST_FILE = "manifest.json";
   public static final String README_FILE = "README.md";
 
-  private void populateDelaCache() {
-    DELA_ENABLED = setBoolVar(VARIABLE_DELA_ENABLED, DELA_ENABLED);
-    DELA_CLIENT_TYPE = DelaClientType.from(setVar(VARIABLE_DELA_CLIENT_TYPE, DELA_CLIENT_TYPE.type));
-    HOPSSITE_CLUSTER_NAME = setVar(VARIABLE_HOPSSITE_CLUSTER_NAME, HOPSSITE_CLUSTER_NAME);
-    HOPSSITE_CLUSTER_PSWD = setVar(VARIABLE_HOPSSITE_CLUSTER_PSWD, HOPSSITE_CLUSTER_PSWD);
-    HOPSSITE_CLUSTER_PSWD_AUX = setVar(VARIABLE_HOPSSITE_CLUSTER_PSWD_AUX, HOPSSITE_CLUSTER_PSWD_AUX);
-    HOPSSITE_HOST = setVar(VARIABLE_HOPSSITE_BASE_URI_HOST, HOPSSITE_HOST);
-    HOPSSITE = setVar(VARIABLE_HOPSSITE_BASE_URI, HOPSSITE);
-    HOPSSITE_HEARTBEAT_INTERVAL = setLongVar(VARIABLE_HOPSSITE_HEARTBEAT_INTERVAL, HOPSSITE_HEARTBEAT_INTERVAL);
-
-    DELA_TRANSFER_IP = setStrVar(VARIABLE_DELA_CLUSTER_IP, DELA_TRANSFER_IP);
-    DELA_TRANSFER_HTTP_PORT = setStrVar(VARIABLE_DELA_CLUSTER_HTTP_PORT, DELA_TRANSFER_HTTP_PORT);
-    DELA_SEARCH_ENDPOINT = setStrVar(VARIABLE_DELA_SEARCH_ENDPOINT, DELA_SEARCH_ENDPOINT);
-    DELA_TRANSFER_ENDPOINT = setStrVar(VARIABLE_DELA_TRANSFER_ENDPOINT, DELA_TRANSFER_ENDPOINT);
-    DELA_PUBLIC_HOPSWORK_PORT = setStrVar(VARIABLE_DELA_PUBLIC_HOPSWORKS_PORT, DELA_PUBLIC_HOPSWORK_PORT);
-    PUBLIC_HTTPS_PORT = setStrVar(VARIABLE_PUBLIC_HTTPS_PORT, PUBLIC_HTTPS_PORT);
-    DELA_CLUSTER_ID = setStrVar(VARIABLE_DELA_CLUSTER_ID, DELA_CLUSTER_ID);
-  }
-
-  public synchronized Boolean isDelaEnabled() {
-    checkCache();
-    return DELA_ENABLED;
+  public Boolean isDelaEnabled() {
+    return snapshot().DELA_ENABLED;
   }
 
-  public synchronized DelaClientType getDelaClientType() {
-    return DELA_CLIENT_TYPE;
+  public DelaClientType getDelaClientType() {
+    Snapshot s = snapshot();
+    return s.DELA_CLIENT_TYPE;
   }
 
-  public synchronized String getHOPSSITE_HOST() {
-    checkCache();
-    return HOPSSITE_HOST;
+  public String getHOPSSITE_HOST() {
+    return snapshot().HOPSSITE_HOST;
   }
 
-  public synchronized String getHOPSSITE() {
-    checkCache();
-    return HOPSSITE;
+  public String getHOPSSITE() {
+    return snapshot().HOPSSITE;
   }
 
   public synchronized long getHOPSSITE_HEARTBEAT_RETRY() {
-    checkCache();
     return HOPSSITE_HEARTBEAT_RETRY;
   }
 
-  public synchronized long getHOPSSITE_HEARTBEAT_INTERVAL() {
-    checkCache();
-    return HOPSSITE_HEARTBEAT_INTERVAL;
+  public long getHOPSSITE_HEARTBEAT_INTERVAL() {
+    return snapshot().HOPSSITE_HEARTBEAT_INTERVAL;
   }
 
-  public synchronized String getDELA_TRANSFER_IP() {
-    checkCache();
-    return DELA_TRANSFER_IP;
+  public String getDELA_TRANSFER_IP() {
+    return snapshot().DELA_TRANSFER_IP;
   }
 
-  public synchronized String getDELA_TRANSFER_HTTP_PORT() {
-    checkCache();
-    return DELA_TRANSFER_HTTP_PORT;
+  public String getDELA_TRANSFER_HTTP_PORT() {
+    return snapshot().DELA_TRANSFER_HTTP_PORT;
   }
 
-  public synchronized String getDELA_TRANSFER_HTTP_ENDPOINT() {
-    checkCache();
-    return "http://" + DELA_TRANSFER_IP + ":" + DELA_TRANSFER_HTTP_PORT + "/";
+  public String getDELA_TRANSFER_HTTP_ENDPOINT() {
+    Snapshot s = snapshot();
+    return "http://" + s.DELA_TRANSFER_IP + ":" + s.DELA_TRANSFER_HTTP_PORT + "/";
   }
 
-  public synchronized String getDELA_HOPSWORKS_PORT() {
-    checkCache();
-    return DELA_PUBLIC_HOPSWORK_PORT;
+  public String getDELA_HOPSWORKS_PORT() {
+    return snapshot().DELA_PUBLIC_HOPSWORK_PORT;
   }
 
-  public synchronized String getPUBLIC_HTTPS_PORT() {
-    checkCache();
-    return PUBLIC_HTTPS_PORT;
+  public String getPUBLIC_HTTPS_PORT() {
+    return snapshot().PUBLIC_HTTPS_PORT;
   }
 
   public synchronized AddressJSON getDELA_PUBLIC_ENDPOINT() {
@@ -2193,11 +2326,11 @@ public class Settings implements Serializable {
   }
 
   public synchronized String getDELA_SEARCH_ENDPOINT() {
-    checkCache();
-    if (DELA_SEARCH_ENDPOINT != null) {
-      return DELA_SEARCH_ENDPOINT;
+    Snapshot s = snapshot();
+    if (s.DELA_SEARCH_ENDPOINT != null) {
+      return s.DELA_SEARCH_ENDPOINT;
     }
-    Variables v = findById(DELA_SEARCH_ENDPOINT);
+    Variables v = findById(s.DELA_SEARCH_ENDPOINT);
     if (v != null) {
       return v.getValue();
     }
@@ -2205,11 +2338,11 @@ public class Settings implements Serializable {
   }
 
   public synchronized String getDELA_TRANSFER_ENDPOINT() {
-    checkCache();
-    if (DELA_TRANSFER_ENDPOINT != null) {
-      return DELA_TRANSFER_ENDPOINT;
+    Snapshot s = snapshot();
+    if (s.DELA_TRANSFER_ENDPOINT != null) {
+      return s.DELA_TRANSFER_ENDPOINT;
     }
-    Variables v = findById(DELA_TRANSFER_ENDPOINT);
+    Variables v = findById(s.DELA_TRANSFER_ENDPOINT);
     if (v != null) {
       return v.getValue();
     }
@@ -2228,14 +2361,16 @@ public class Settings implements Serializable {
     } else {
       em.merge(new Variables(VARIABLE_DELA_SEARCH_ENDPOINT, delaSearchEndpoint));
     }
-    DELA_SEARCH_ENDPOINT = delaSearchEndpoint;
 
     if (getDELA_TRANSFER_ENDPOINT() == null) {
       em.persist(new Variables(VARIABLE_DELA_TRANSFER_ENDPOINT, delaTransferEndpoint));
     } else {
       em.merge(new Variables(VARIABLE_DELA_TRANSFER_ENDPOINT, delaTransferEndpoint));
     }
-    DELA_TRANSFER_ENDPOINT = delaTransferEndpoint;
+    Snapshot updated = snapshot().copy();
+    updated.DELA_SEARCH_ENDPOINT = delaSearchEndpoint;
+    updated.DELA_TRANSFER_ENDPOINT = delaTransferEndpoint;
+    snapshot = updated;
   }
 
   public synchronized void setDELA_CLUSTER_ID(String id) {
@@ -2244,13 +2379,15 @@ public class Settings implements Serializable {
     } else {
       em.merge(new Variables(VARIABLE_DELA_CLUSTER_ID, id));
     }
-    DELA_CLUSTER_ID = id;
+    Snapshot updated = snapshot().copy();
+    updated.DELA_CLUSTER_ID = id;
+    snapshot = updated;
   }
 
   public synchronized String getDELA_CLUSTER_ID() {
-    checkCache();
-    if (DELA_CLUSTER_ID != null) {
-      return DELA_CLUSTER_ID;
+    Snapshot s = snapshot();
+    if (s.DELA_CLUSTER_ID != null) {
+      return s.DELA_CLUSTER_ID;
     } else {
       Variables v = findById(VARIABLE_DELA_CLUSTER_ID);
       if (v != null) {
@@ -2283,13 +2420,8 @@ public class Settings implements Serializable {
   private static final String VARIABLE_HOPSSITE_CLUSTER_PSWD = "hops_site_cluster_pswd";
   private static final String VARIABLE_HOPSSITE_CLUSTER_PSWD_AUX = "hops_site_cluster_pswd_aux";
 
-  private String HOPSSITE_CLUSTER_NAME = null;
-  private String HOPSSITE_CLUSTER_PSWD = null;
-  private String HOPSSITE_CLUSTER_PSWD_AUX = "1234";
-
-  public synchronized Optional<String> getHopsSiteClusterName() {
-    checkCache();
-    return Optional.ofNullable(HOPSSITE_CLUSTER_NAME);
+  public Optional<String> getHopsSiteClusterName() {
+    return Optional.ofNullable(snapshot().HOPSSITE_CLUSTER_NAME);
   }
 
   public synchronized void setHopsSiteClusterName(String clusterName) {
@@ -2298,25 +2430,27 @@ public class Settings implements Serializable {
     } else {
       em.persist(new Variables(VARIABLE_HOPSSITE_CLUSTER_NAME, clusterName));
     }
-    HOPSSITE_CLUSTER_NAME = clusterName;
+    Snapshot updated = snapshot().copy();
+    updated.HOPSSITE_CLUSTER_NAME = clusterName;
+    snapshot = updated;
   }
 
   public synchronized void deleteHopsSiteClusterName() {
     if (getHopsSiteClusterName().isPresent()) {
       Variables v = findById(VARIABLE_HOPSSITE_CLUSTER_NAME);
       em.remove(v);
-      HOPSSITE_CLUSTER_NAME = null;
+      Snapshot updated = snapshot().copy();
+      updated.HOPSSITE_CLUSTER_NAME = null;
+      snapshot = updated;
     }
   }
 
-  public synchronized String getHopsSiteClusterPswdAux() {
-    checkCache();
-    return HOPSSITE_CLUSTER_PSWD_AUX;
+  public String getHopsSiteClusterPswdAux() {
+    return snapshot().HOPSSITE_CLUSTER_PSWD_AUX;
   }
 
-  public synchronized Optional<String> getHopsSiteClusterPswd() {
-    checkCache();
-    return Optional.ofNullable(HOPSSITE_CLUSTER_PSWD);
+  public Optional<String> getHopsSiteClusterPswd() {
+    return Optional.ofNullable(snapshot().HOPSSITE_CLUSTER_PSWD);
   }
 
   public synchronized void setHopsSiteClusterPswd(String pswd) {
@@ -2325,36 +2459,38 @@ public class Settings implements Serializable {
     } else {
       em.persist(new Variables(VARIABLE_HOPSSITE_CLUSTER_PSWD, pswd));
     }
-    HOPSSITE_CLUSTER_PSWD = pswd;
+    Snapshot updated = snapshot().copy();
+    updated.HOPSSITE_CLUSTER_PSWD = pswd;
+    snapshot = updated;
   }
 
-  public synchronized String getHopsSiteCaDir() {
+  public String getHopsSiteCaDir() {
     return getCertsDir() + File.separator + HOPS_SITE_CA_DIR;
   }
 
-  public synchronized String getHopsSiteCaScript() {
+  public String getHopsSiteCaScript() {
     return getHopsworksDomainDir()
         + File.separator + "bin"
         + File.separator + "ca-keystore.sh";
   }
 
-  public synchronized String getHopsSiteCert() {
+  public String getHopsSiteCert() {
     return getHopsSiteCaDir() + HOPS_SITE_CERTFILE;
   }
 
-  public synchronized String getHopsSiteCaCert() {
+  public String getHopsSiteCaCert() {
     return getHopsSiteCaDir() + HOPS_SITE_CA_CERTFILE;
   }
 
-  public synchronized String getHopsSiteIntermediateCert() {
+  public String getHopsSiteIntermediateCert() {
     return getHopsSiteCaDir() + HOPS_SITE_INTERMEDIATE_CERTFILE;
   }
 
-  public synchronized String getHopsSiteKeyStorePath() {
+  public String getHopsSiteKeyStorePath() {
     return getHopsSiteCaDir() + HOPS_SITE_KEY_STORE;
   }
 
-  public synchronized String getHopsSiteTrustStorePath() {
+  public String getHopsSiteTrustStorePath() {
     return getHopsSiteCaDir() + HOPS_SITE_TRUST_STORE;
   }
   //Dela END
@@ -2380,7 +2516,7 @@ public class Settings implements Serializable {
    *
    * @return broker
    */
-  public synchronized String getRandomKafkaBroker() {
+  public String getRandomKafkaBroker() {
     Iterator<String> it = this.kafkaBrokers.iterator();
     if (it.hasNext()) {
       return it.next();
@@ -2470,125 +2606,75 @@ public class Settings implements Serializable {
   private static final String VARIABLE_LDAP_GROUPDN = "ldap_group_dn";
   private static final String VARIABLE_LDAP_ACCOUNT_STATUS = "ldap_account_status";
 
-  private String LDAP_AUTH = "false";
-  private String LDAP_GROUP_MAPPING = "";
-  private String LDAP_USER_ID = "uid"; //login name
-  private String LDAP_USER_GIVEN_NAME = "givenName";
-  private String LDAP_USER_SURNAME = "sn";
-  private String LDAP_USER_EMAIL = "mail";
-  private String LDAP_USER_SEARCH_FILTER = "uid=%s";
-  private String LDAP_GROUP_SEARCH_FILTER = "member=%d";
-  private String LDAP_ATTR_BINARY = "java.naming.ldap.attributes.binary";
-  private String LDAP_GROUP_TARGET = "cn";
-  private String LDAP_DYNAMIC_GROUP_TARGET = "memberOf";
-  private String LDAP_LDAP_USERDN = "";
-  private String LDAP_LDAP_GROUPDN = "";
-  private int LDAP_ACCOUNT_STATUS = 4;
-
-  private void populateLDAPCache() {
-    LDAP_AUTH = setVar(VARIABLE_LDAP_AUTH, LDAP_AUTH);
-    LDAP_GROUP_MAPPING = setVar(VARIABLE_LDAP_GROUP_MAPPING, LDAP_GROUP_MAPPING);
-    LDAP_USER_ID = setVar(VARIABLE_LDAP_USER_ID, LDAP_USER_ID);
-    LDAP_USER_GIVEN_NAME = setVar(VARIABLE_LDAP_USER_GIVEN_NAME, LDAP_USER_GIVEN_NAME);
-    LDAP_USER_SURNAME = setVar(VARIABLE_LDAP_USER_SURNAME, LDAP_USER_SURNAME);
-    LDAP_USER_EMAIL = setVar(VARIABLE_LDAP_USER_EMAIL, LDAP_USER_EMAIL);
-    LDAP_USER_SEARCH_FILTER = setVar(VARIABLE_LDAP_USER_SEARCH_FILTER, LDAP_USER_SEARCH_FILTER);
-    LDAP_GROUP_SEARCH_FILTER = setVar(VARIABLE_LDAP_GROUP_SEARCH_FILTER, LDAP_GROUP_SEARCH_FILTER);
-    LDAP_ATTR_BINARY = setVar(VARIABLE_LDAP_ATTR_BINARY, LDAP_ATTR_BINARY);
-    LDAP_GROUP_TARGET = setVar(VARIABLE_LDAP_GROUP_TARGET, LDAP_GROUP_TARGET);
-    LDAP_DYNAMIC_GROUP_TARGET = setVar(VARIABLE_LDAP_DYNAMIC_GROUP_TARGET, LDAP_DYNAMIC_GROUP_TARGET);
-    LDAP_LDAP_USERDN = setVar(VARIABLE_LDAP_USERDN, LDAP_LDAP_USERDN);
-    LDAP_LDAP_GROUPDN = setVar(VARIABLE_LDAP_GROUPDN, LDAP_LDAP_GROUPDN);
-    LDAP_ACCOUNT_STATUS = setIntVar(VARIABLE_LDAP_ACCOUNT_STATUS, LDAP_ACCOUNT_STATUS);
-  }
-
-  public synchronized String getLDAPAuthStatus() {
-    checkCache();
-    return LDAP_AUTH;
+  public String getLDAPAuthStatus() {
+    return snapshot().LDAP_AUTH;
   }
 
-  public synchronized String getLdapGroupMapping() {
-    checkCache();
-    return LDAP_GROUP_MAPPING;
+  public String getLdapGroupMapping() {
+    return snapshot().LDAP_GROUP_MAPPING;
   }
 
-  public synchronized String getLdapUserId() {
-    checkCache();
-    return LDAP_USER_ID;
+  public String getLdapUserId() {
+    return snapshot().LDAP_USER_ID;
   }
 
-  public synchronized String getLdapUserGivenName() {
-    checkCache();
-    return LDAP_USER_GIVEN_NAME;
+  public String getLdapUserGivenName() {
+    return snapshot().LDAP_USER_GIVEN_NAME;
   }
 
-  public synchronized String getLdapUserSurname() {
-    checkCache();
-    return LDAP_USER_SURNAME;
+  public String getLdapUserSurname() {
+    return snapshot().LDAP_USER_SURNAME;
   }
 
-  public synchronized String getLdapUserMail() {
-    checkCache();
-    return LDAP_USER_EMAIL;
+  public String getLdapUserMail() {
+    return snapshot().LDAP_USER_EMAIL;
   }
 
-  public synchronized String getLdapUserSearchFilter() {
-    checkCache();
-    return LDAP_USER_SEARCH_FILTER;
+  public String getLdapUserSearchFilter() {
+    return snapshot().LDAP_USER_SEARCH_FILTER;
   }
 
-  public synchronized String getLdapGroupSearchFilter() {
-    checkCache();
-    return LDAP_GROUP_SEARCH_FILTER;
+  public String getLdapGroupSearchFilter() {
+    return snapshot().LDAP_GROUP_SEARCH_FILTER;
   }
 
-  public synchronized String getLdapAttrBinary() {
-    checkCache();
-    return LDAP_ATTR_BINARY;
+  public String getLdapAttrBinary() {
+    return snapshot().LDAP_ATTR_BINARY;
   }
 
-  public synchronized String getLdapGroupTarget() {
-    checkCache();
-    return LDAP_GROUP_TARGET;
+  public String getLdapGroupTarget() {
+    return snapshot().LDAP_GROUP_TARGET;
   }
 
-  public synchronized String getLdapDynGroupTarget() {
-    checkCache();
-    return LDAP_DYNAMIC_GROUP_TARGET;
+  public String getLdapDynGroupTarget() {
+    return snapshot().LDAP_DYNAMIC_GROUP_TARGET;
   }
 
-  public synchronized String getLdapUserDN() {
-    checkCache();
-    return LDAP_LDAP_USERDN;
+  public String getLdapUserDN() {
+    return snapshot().LDAP_LDAP_USERDN;
   }
 
-  public synchronized String getLdapGroupDN() {
-    checkCache();
-    return LDAP_LDAP_GROUPDN;
+  public String getLdapGroupDN() {
+    return snapshot().LDAP_LDAP_GROUPDN;
   }
 
-  public synchronized int getLdapAccountStatus() {
-    checkCache();
-    return LDAP_ACCOUNT_STATUS;
+  public int getLdapAccountStatus() {
+    return snapshot().LDAP_ACCOUNT_STATUS;
   }
   //----------------------------END LDAP------------------------------------
 
   // Service key rotation enabled
   private static final String SERVICE_KEY_ROTATION_ENABLED_KEY = "service_key_rotation_enabled";
-  private boolean serviceKeyRotationEnabled = false;
 
-  public synchronized boolean isServiceKeyRotationEnabled() {
-    checkCache();
-    return serviceKeyRotationEnabled;
+  public boolean isServiceKeyRotationEnabled() {
+    return snapshot().serviceKeyRotationEnabled;
   }
 
   // Service key rotation interval
   private static final String SERVICE_KEY_ROTATION_INTERVAL_KEY = "service_key_rotation_interval";
-  private String serviceKeyRotationInterval = "3d";
 
-  public synchronized String getServiceKeyRotationInterval() {
-    checkCache();
-    return serviceKeyRotationInterval;
+  public String getServiceKeyRotationInterval() {
+    return snapshot().serviceKeyRotationInterval;
   }
 
   public static Long getConfTimeValue(String configurationTime) {
@@ -2611,172 +2697,100 @@ public class Settings implements Serializable {
     return timeUnitStr == null ? TimeUnit.MINUTES : TIME_SUFFIXES.get(timeUnitStr.toLowerCase());
   }
 
-  private String HOPSWORKS_VERSION;
-
-  public synchronized String getHopsworksVersion() {
-    checkCache();
-    return HOPSWORKS_VERSION;
+  public String getHopsworksVersion() {
+    return snapshot().HOPSWORKS_VERSION;
   }
 
-  private String CUDA_VERSION;
-
-  public synchronized String getCudaVersion() {
-    checkCache();
-    return CUDA_VERSION;
+  public String getCudaVersion() {
+    return snapshot().CUDA_VERSION;
   }
 
-  private String TENSORFLOW_VERSION;
-
-  public synchronized String getTensorflowVersion() {
-    checkCache();
-    return TENSORFLOW_VERSION;
+  public String getTensorflowVersion() {
+    return snapshot().TENSORFLOW_VERSION;
   }
 
-  private String DRELEPHANT_VERSION;
-
-  public synchronized String getDrelephantVersion() {
-    checkCache();
-    return DRELEPHANT_VERSION;
+  public String getDrelephantVersion() {
+    return snapshot().DRELEPHANT_VERSION;
   }
 
-  private String ELASTIC_VERSION;
-
-  public synchronized String getElasticVersion() {
-    checkCache();
-    return ELASTIC_VERSION;
+  public String getElasticVersion() {
+    return snapshot().ELASTIC_VERSION;
   }
 
-  private String KAFKA_VERSION;
-
-  public synchronized String getKafkaVersion() {
-    checkCache();
-    return KAFKA_VERSION;
+  public String getKafkaVersion() {
+    return snapshot().KAFKA_VERSION;
   }
 
-  private String DELA_VERSION;
-
-  public synchronized String getDelaVersion() {
-    checkCache();
-    return DELA_VERSION;
+  public String getDelaVersion() {
+    return snapshot().DELA_VERSION;
   }
 
-  private String EPIPE_VERSION;
-
-  public synchronized String getEpipeVersion() {
-    checkCache();
-    return EPIPE_VERSION;
+  public String getEpipeVersion() {
+    return snapshot().EPIPE_VERSION;
   }
 
-  private String FLINK_VERSION;
-
-  public synchronized String getFlinkVersion() {
-    checkCache();
-    return FLINK_VERSION;
+  public String getFlinkVersion() {
+    return snapshot().FLINK_VERSION;
   }
 
-  private String SPARK_VERSION;
-
-  public synchronized String getSparkVersion() {
-    checkCache();
-    return SPARK_VERSION;
+  public String getSparkVersion() {
+    return snapshot().SPARK_VERSION;
   }
 
-  private String SLIDER_VERSION;
-
-  public synchronized String getSliderVersion() {
-    checkCache();
-    return SLIDER_VERSION;
+  public String getSliderVersion() {
+    return snapshot().SLIDER_VERSION;
   }
 
-  private String TEZ_VERSION;
-
-  public synchronized String getTezVersion() {
-    checkCache();
-    return TEZ_VERSION;
+  public String getTezVersion() {
+    return snapshot().TEZ_VERSION;
   }
 
-  private String HIVE2_VERSION;
-
-  public synchronized String getHive2Version() {
-    checkCache();
-    return HIVE2_VERSION;
+  public String getHive2Version() {
+    return snapshot().HIVE2_VERSION;
   }
 
-  private String ZEPPELIN_VERSION;
-
-  public synchronized String getZeppelinVersion() {
-    checkCache();
-    return ZEPPELIN_VERSION;
+  public String getZeppelinVersion() {
+    return snapshot().ZEPPELIN_VERSION;
   }
 
-  private String LIVY_VERSION;
-
-  public synchronized String getLivyVersion() {
-    checkCache();
-    return LIVY_VERSION;
+  public String getLivyVersion() {
+    return snapshot().LIVY_VERSION;
   }
 
-  private String NDB_VERSION;
-
-  public synchronized String getNdbVersion() {
-    checkCache();
-    return NDB_VERSION;
+  public String getNdbVersion() {
+    return snapshot().NDB_VERSION;
   }
 
-  private String FILEBEAT_VERSION;
-
-  public synchronized String getFilebeatVersion() {
-    checkCache();
-    return FILEBEAT_VERSION;
+  public String getFilebeatVersion() {
+    return snapshot().FILEBEAT_VERSION;
   }
 
-  private String KIBANA_VERSION;
-
-  public synchronized String getKibanaVersion() {
-    checkCache();
-    return KIBANA_VERSION;
+  public String getKibanaVersion() {
+    return snapshot().KIBANA_VERSION;
   }
 
-  private String LOGSTASH_VERSION;
-
-  public synchronized String getLogstashVersion() {
-    checkCache();
-    return LOGSTASH_VERSION;
+  public String getLogstashVersion() {
+    return snapshot().LOGSTASH_VERSION;
   }
 
-  private String KAPACITOR_VERSION;
-
-  public synchronized String getKapacitorVersion() {
-    checkCache();
-    return KAPACITOR_VERSION;
+  public String getKapacitorVersion() {
+    return snapshot().KAPACITOR_VERSION;
   }
 
-  private String TELEGRAF_VERSION;
-
-  public synchronized String getTelegrafVersion() {
-    checkCache();
-    return TELEGRAF_VERSION;
+  public String getTelegrafVersion() {
+    return snapshot().TELEGRAF_VERSION;
   }
 
-  private String GRAFANA_VERSION;
-
-  public synchronized String getGrafanaVersion() {
-    checkCache();
-    return GRAFANA_VERSION;
+  public String getGrafanaVersion() {
+    return snapshot().GRAFANA_VERSION;
   }
 
-  private String INFLUXDB_VERSION;
-
-  public synchronized String getInfluxdbVersion() {
-    checkCache();
-    return INFLUXDB_VERSION;
+  public String getInfluxdbVersion() {
+    return snapshot().INFLUXDB_VERSION;
   }
 
-  private String ZOOKEEPER_VERSION;
-
-  public synchronized String getZookeeperVersion() {
-    checkCache();
-    return ZOOKEEPER_VERSION;
+  public String getZookeeperVersion() {
+    return snapshot().ZOOKEEPER_VERSION;
   }
 
 }
@@ -29,10 +29,23 @@ import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSession;
@@ -45,23 +58,36 @@ import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Future;
-import javax.ejb.AsyncResult;
-import javax.ejb.Asynchronous;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
 import javax.ejb.EJB;
-import javax.ejb.Stateless;
+import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedThreadFactory;
 import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonObject;
 import javax.ws.rs.client.Client;
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response.Status.Family;
 import org.apache.commons.lang.StringEscapeUtils;
 
-@Stateless
+/**
+ * Sends requests to the kagents. All requests share one JAX-RS client, so
+ * connections to the kagents are kept alive between requests, and the number
+ * of concurrent requests to the same kagent is bounded. Connecting to a
+ * kagent and reading its response time out. Operations on many
+ * hosts can be fanned out with the *Async methods, which run on a bounded
+ * pool of threads. Latencies are recorded per agent operation.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@DependsOn("Settings")
 public class WebCommunication {
 
   private static final Logger logger = Logger.getLogger(WebCommunication.class.
@@ -71,32 +97,52 @@ public class WebCommunication {
   private static String PROTOCOL = "https";
   private static int PORT = 8090;
   private static String NOT_AVAILABLE = "Not available.";
-  private final ConcurrentLinkedQueue<Client> inUseClientPool =
-      new ConcurrentLinkedQueue<>();
-  private final ConcurrentLinkedQueue<Client> availableClientPool =
-      new ConcurrentLinkedQueue<>();
+  // Timeouts of the JAX-RS client, in ms
+  private static final String CONNECT_TIMEOUT_PROPERTY = "jersey.config.client.connectTimeout";
+  private static final String READ_TIMEOUT_PROPERTY = "jersey.config.client.readTimeout";
+  // Upper bounds of the latency histogram buckets, the last bucket has no bound
+  private static final long[] LATENCY_BUCKETS_MILLIS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000,
+    30000};
   @EJB
   private Settings settings;
+  @Resource
+  private ManagedThreadFactory threadFactory;
+
+  private Client client;
+  private ExecutorService executor;
+  private long connectTimeoutMs;
+  private long readTimeoutMs;
+  // host:port of a kagent -- requests that can be sent to it
+  private final ConcurrentMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, OperationStats> operationStats = new ConcurrentHashMap<>();
 
   public WebCommunication() {
   }
 
-  @PreDestroy
-  private void cleanUp() {
-    for (Client client : availableClientPool) {
-      client.close();
-      client = null;
-    }
-    for (Client client : inUseClientPool) {
-      client.close();
-      client = null;
+  @PostConstruct
+  public void init() {
+    connectTimeoutMs = Settings.getConfTimeTimeUnit(settings.getKagentConnectTimeout())
+        .toMillis(Settings.getConfTimeValue(settings.getKagentConnectTimeout()));
+    readTimeoutMs = Settings.getConfTimeTimeUnit(settings.getKagentReadTimeout())
+        .toMillis(Settings.getConfTimeValue(settings.getKagentReadTimeout()));
+    try {
+      client = createClient();
+    } catch (NoSuchAlgorithmException | KeyManagementException e) {
+      throw new IllegalStateException("Could not create the kagent client", e);
     }
+    executor = Executors.newFixedThreadPool(Math.max(1, settings.getKagentParallelism()), threadFactory);
+  }
+
+  @PreDestroy
+  public void cleanUp() {
+    executor.shutdownNow();
+    client.close();
   }
   
   public Response getWebResponse(String url, String agentPassword) {
     Response response;
     try {
-      response = getWebResource(url, agentPassword);
+      response = getWebResource("get", url, agentPassword);
       return response;
     } catch (Exception ex) {
       logger.log(Level.SEVERE, null, ex);
@@ -117,39 +163,46 @@ public class WebCommunication {
   public String serviceOp(String operation, String hostAddress,
       String agentPassword, String cluster, String group, String service) throws AppException {
     String url = createUrl(operation, hostAddress, cluster, group, service);
-    return fetchContent(url, agentPassword);
+    return fetchContent(operation, url, agentPassword);
   }
 
-  @Asynchronous
-  public Future<String> asyncServiceOp(String operation, String hostAddress,
-      String agentPassword, String cluster, String group, String service) throws AppException {
-    String url = createUrl(operation, hostAddress, cluster, group, service);
-    return new AsyncResult<String>(fetchContent(url, agentPassword));
+  /**
+   * Same as {@link #serviceOp}, but runs on the pool of kagent threads. An
+   * operation started this way on many hosts takes about as long as on the
+   * slowest host. Callers should not wait for the result longer than
+   * {@link #getRequestTimeoutMillis()}.
+   *
+   * @return completes with the response of the kagent, or exceptionally with
+   * the AppException of the request
+   */
+  public CompletionStage<String> serviceOpAsync(String operation, String hostAddress,
+      String agentPassword, String cluster, String group, String service) {
+    return submit(() -> serviceOp(operation, hostAddress, agentPassword, cluster, group, service));
   }
   
   public String getConfig(String hostAddress, String agentPassword,
       String cluster, String group, String service) throws AppException {
     String url = createUrl("config", hostAddress, cluster, group, service);
-    return fetchContent(url, agentPassword);
+    return fetchContent("config", url, agentPassword);
   }
 
   public String getServiceLog(String hostAddress, String agentPassword,
       String cluster, String group, String service, int lines) throws AppException {
     String url = createUrl("log", hostAddress, cluster, group, service, String.
             valueOf(lines));
-    return fetchLog(url, agentPassword);
+    return fetchLog("log", url, agentPassword);
   }
 
   public String getGroupLog(String hostAddress, String agentPassword,
       String cluster, String group, int lines) throws AppException {
     String url = createUrl("log", hostAddress, cluster, group, String.valueOf(
             lines));
-    return fetchLog(url, agentPassword);
+    return fetchLog("log", url, agentPassword);
   }
 
   public String getAgentLog(String hostAddress, String agentPassword, int lines) throws AppException {
     String url = createUrl("agentlog", hostAddress, String.valueOf(lines));
-    return fetchLog(url, agentPassword);
+    return fetchLog("agentlog", url, agentPassword);
   }
 
   public List<NodesTableItem> getNdbinfoNodesTable(String hostAddress,
@@ -157,7 +210,7 @@ public class WebCommunication {
     List<NodesTableItem> resultList = new ArrayList<NodesTableItem>();
 
     String url = createUrl("mysql", hostAddress, "ndbinfo", "nodes");
-    String jsonString = fetchContent(url, agentPassword);
+    String jsonString = fetchContent("mysql", url, agentPassword);
     InputStream stream = new ByteArrayInputStream(jsonString.getBytes(          StandardCharsets.UTF_8));
     try {
       JsonArray json = Json.createReader(stream).readArray();
@@ -212,7 +265,7 @@ public class WebCommunication {
     for (String param : params) {
       optionsAndParams += optionsAndParams.isEmpty() ? param : " " + param;
     }
-    Response response = postWebResource(url, agentPassword,
+    Response response = postWebResource(path, url, agentPassword,
             optionsAndParams);
     int code = response.getStatus();
     Family res = Response.Status.Family.familyOf(code);
@@ -233,7 +286,42 @@ public class WebCommunication {
           Exception {
     String url = createUrl("do", hostAddress, agentPassword, cluster, group,
             service, command);
-    return getWebResource(url, agentPassword);
+    return getWebResource("do", url, agentPassword);
+  }
+
+  /**
+   * @return the longest time a request to a kagent can take: waiting for a
+   * free connection, connecting and reading the response
+   */
+  public long getRequestTimeoutMillis() {
+    return connectTimeoutMs + 2 * readTimeoutMs;
+  }
+
+  /**
+   * @return copy of the latency statistics per agent operation
+   */
+  public Map<String, OperationStats> getOperationStats() {
+    Map<String, OperationStats> copy = new HashMap<>();
+    for (Map.Entry<String, OperationStats> entry : operationStats.entrySet()) {
+      copy.put(entry.getKey(), entry.getValue().copy());
+    }
+    return copy;
+  }
+
+  private <T> CompletionStage<T> submit(Callable<T> request) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    try {
+      executor.execute(() -> {
+        try {
+          result.complete(request.call());
+        } catch (Exception ex) {
+          result.completeExceptionally(ex);
+        }
+      });
+    } catch (RejectedExecutionException ex) {
+      result.completeExceptionally(ex);
+    }
+    return result;
   }
 
   private String createUrl(String context, String hostAddress, String... args) {
@@ -245,40 +333,31 @@ public class WebCommunication {
     return url;
   }
 
-  private String fetchContent(String url, String agentPassword) throws AppException {
+  private String fetchContent(String operation, String url, String agentPassword) throws AppException {
     String content = NOT_AVAILABLE;
-    try {
-      Response response = getWebResource(url, agentPassword);
-      int code = response.getStatus();
-      Family res = Response.Status.Family.familyOf(code);
-      if (res == Response.Status.Family.SUCCESSFUL) {
-        content = response.readEntity(String.class);
-      } else {
-        throw new AppException(response.getStatus(), response.getStatusInfo().getReasonPhrase());
-      }
-    } catch (KeyManagementException | NoSuchAlgorithmException e) {
-      logger.log(Level.SEVERE, null, e);
-      throw new AppException(Response.Status.INTERNAL_SERVER_ERROR.getStatusCode(), e.getCause().getMessage());
+    Response response = getWebResource(operation, url, agentPassword);
+    int code = response.getStatus();
+    Family res = Response.Status.Family.familyOf(code);
+    if (res == Response.Status.Family.SUCCESSFUL) {
+      content = response.readEntity(String.class);
+    } else {
+      throw new AppException(response.getStatus(), response.getStatusInfo().getReasonPhrase());
     }
     return content;
   }
 
-  private String fetchLog(String url, String agentPassword) throws AppException {
-    String log = fetchContent(url, agentPassword);
+  private String fetchLog(String operation, String url, String agentPassword) throws AppException {
+    String log = fetchContent(operation, url, agentPassword);
 //        log = log.replaceAll("\n", "<br>");
     log = FormatUtils.stdoutToHtml(log);
     return log;
   }
 
-  private Response getWebResource(String url, String agentPassword) throws NoSuchAlgorithmException,
-      KeyManagementException {
-    return getWebResource(url, agentPassword, null);
+  private Response getWebResource(String operation, String url, String agentPassword) {
+    return getWebResource(operation, url, agentPassword, null);
   }
 
-  private Response getWebResource(String url, String agentPassword, Map<String, String> args) throws
-      NoSuchAlgorithmException, KeyManagementException {
-
-    Client client = getClient();
+  private Response getWebResource(String operation, String url, String agentPassword, Map<String, String> args) {
     WebTarget webResource = client.target(url);
 
     webResource = webResource.queryParam("username", Settings.AGENT_EMAIL);
@@ -292,30 +371,60 @@ public class WebCommunication {
             "WebCommunication: Requesting url: {0} with password {1}",
             new Object[]{url, agentPassword});
     
-    Response response = webResource.request()
+    Response response = send(operation, webResource, webResource.request()
             .header("Accept-Encoding", "gzip,deflate")
-            .get(Response.class);
-    discardClient(client);
+            .buildGet());
     logger.log(Level.INFO, "WebCommunication: Requesting url: {0}", url);
     return response;
   }
-  
-  private Client getClient() throws NoSuchAlgorithmException, KeyManagementException {
-    Client client = availableClientPool.poll();
-    if (null == client) {
-      client = createClient();
+
+  /**
+   * Sends a request once the kagent has a free connection, and reads the
+   * whole response so that the connection can be reused right away. A request
+   * waits for a free connection at most as long as for a response.
+   */
+  private Response send(String operation, WebTarget target, Invocation request) {
+    String host = target.getUri().getAuthority();
+    Semaphore permits = hostPermits.get(host);
+    if (permits == null) {
+      Semaphore created = new Semaphore(Math.max(1, settings.getKagentMaxConnectionsPerHost()));
+      permits = hostPermits.putIfAbsent(host, created);
+      if (permits == null) {
+        permits = created;
+      }
+    }
+    try {
+      if (!permits.tryAcquire(readTimeoutMs, TimeUnit.MILLISECONDS)) {
+        throw new ProcessingException("Timed out waiting for a connection to kagent " + host);
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new ProcessingException("Interrupted waiting for a connection to kagent " + host, ex);
+    }
+    long start = System.nanoTime();
+    try {
+      Response response = request.invoke();
+      response.bufferEntity();
+      return response;
+    } finally {
+      permits.release();
+      record(operation, System.nanoTime() - start);
     }
-    
-    inUseClientPool.offer(client);
-    return client;
   }
-  
-  private void discardClient(Client client) {
-    inUseClientPool.remove(client);
-    availableClientPool.offer(client);
+
+  private void record(String operation, long nanos) {
+    OperationStats stats = operationStats.get(operation);
+    if (stats == null) {
+      OperationStats previous = operationStats.putIfAbsent(operation, stats = new OperationStats());
+      if (previous != null) {
+        stats = previous;
+      }
+    }
+    stats.record(nanos);
+    logger.log(Level.FINE, "Kagent {0} took {1} ms", new Object[]{operation, TimeUnit.NANOSECONDS.toMillis(nanos)});
   }
   
-  // This method should never be invoked but from the getClient() method
+  // This method should only be invoked by init()
   private Client createClient() throws NoSuchAlgorithmException,
       KeyManagementException {
     if (DISABLE_CERTIFICATE_VALIDATION) {
@@ -346,29 +455,32 @@ public class WebCommunication {
       ClientBuilder clientBuilder = ClientBuilder.newBuilder()
           .hostnameVerifier(hv)
           .sslContext(sc);
-      return clientBuilder.build();
+      return withTimeouts(clientBuilder).build();
     } else {
-      return ClientBuilder.newClient();
+      return withTimeouts(ClientBuilder.newBuilder()).build();
     }
   }
+
+  private ClientBuilder withTimeouts(ClientBuilder clientBuilder) {
+    return clientBuilder
+        .property(CONNECT_TIMEOUT_PROPERTY, (int) Math.min(Integer.MAX_VALUE, connectTimeoutMs))
+        .property(READ_TIMEOUT_PROPERTY, (int) Math.min(Integer.MAX_VALUE, readTimeoutMs));
+  }
   
-  private Response postWebResource(String url, String agentPassword,
+  private Response postWebResource(String operation, String url, String agentPassword,
           String body) throws Exception {
-    return postWebResource(url, agentPassword, "", "", body);
+    return postWebResource(operation, url, agentPassword, "", "", body);
   }
 
-  private Response postWebResource(String url, String agentPassword,
+  private Response postWebResource(String operation, String url, String agentPassword,
           String channelUrl, String version, String body) throws Exception {
-    Client client = getClient();
     WebTarget webResource = client.target(url);
     webResource.queryParam("username", Settings.AGENT_EMAIL);
     webResource.queryParam("password", agentPassword);
 
-    Response response = webResource.request()
+    return send(operation, webResource, webResource.request()
             .header("Accept-Encoding", "gzip,deflate")
-            .post(Entity.entity(body, MediaType.TEXT_PLAIN), Response.class);
-    discardClient(client);
-    return response;
+            .buildPost(Entity.entity(body, MediaType.TEXT_PLAIN)));
   }
 
   public Object anaconda(String hostAddress, String agentPassword, String op,
@@ -389,7 +501,7 @@ public class WebCommunication {
       }
       args.put("srcproj", arg);
     }
-    Response response = getWebResource(url, agentPassword, args);
+    Response response = getWebResource("anaconda/" + op.toLowerCase(), url, agentPassword, args);
     int code = response.getStatus();
     Family res = Response.Status.Family.familyOf(code);
     if (res == Response.Status.Family.SUCCESSFUL) {
@@ -419,7 +531,7 @@ public class WebCommunication {
       args.put("version", version);
     }
 
-    Response response = getWebResource(url, agentPassword, args);
+    Response response = getWebResource("conda/" + op.toLowerCase(), url, agentPassword, args);
     int code = response.getStatus();
     Family res = Response.Status.Family.familyOf(code);
     if (res == Response.Status.Family.SUCCESSFUL) {
@@ -429,4 +541,91 @@ public class WebCommunication {
             + " on " + project + ". Result was: " + res);
   }
 
+  public static class OperationStats {
+
+    private final AtomicLong count = new AtomicLong(0);
+    private final AtomicLong totalNanos = new AtomicLong(0);
+    private final AtomicLong maxNanos = new AtomicLong(0);
+    private final AtomicLongArray buckets = new AtomicLongArray(LATENCY_BUCKETS_MILLIS.length + 1);
+
+    private void record(long nanos) {
+      count.incrementAndGet();
+      totalNanos.addAndGet(nanos);
+      long max = maxNanos.get();
+      while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+        max = maxNanos.get();
+      }
+      long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+      int bucket = 0;
+      while (bucket < LATENCY_BUCKETS_MILLIS.length && millis > LATENCY_BUCKETS_MILLIS[bucket]) {
+        bucket++;
+      }
+      buckets.incrementAndGet(bucket);
+    }
+
+    private OperationStats copy() {
+      OperationStats copy = new OperationStats();
+      copy.count.set(count.get());
+      copy.totalNanos.set(totalNanos.get());
+      copy.maxNanos.set(maxNanos.get());
+      for (int i = 0; i < buckets.length(); i++) {
+        copy.buckets.set(i, buckets.get(i));
+      }
+      return copy;
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+
+    public long getAverageMillis() {
+      long n = count.get();
+      return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.get() / n);
+    }
+
+    public long getMaxMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+
+    /**
+     * @return upper bounds in ms of the buckets returned by getBuckets, but
+     * the last one
+     */
+    public long[] getBucketBoundsMillis() {
+      return LATENCY_BUCKETS_MILLIS.clone();
+    }
+
+    /**
+     * @return number of requests per latency bucket
+     */
+    public long[] getBuckets() {
+      long[] copy = new long[buckets.length()];
+      for (int i = 0; i < copy.length; i++) {
+        copy[i] = buckets.get(i);
+      }
+      return copy;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return upper bound of the bucket holding the percentile, or the maximum
+     * latency if it falls in the last bucket
+     */
+    public long getPercentileMillis(double percentile) {
+      long[] counts = getBuckets();
+      long total = 0;
+      for (long c : counts) {
+        total += c;
+      }
+      long rank = (long) Math.ceil(total * percentile / 100);
+      long seen = 0;
+      for (int i = 0; i < LATENCY_BUCKETS_MILLIS.length; i++) {
+        seen += counts[i];
+        if (seen >= rank && seen > 0) {
+          return LATENCY_BUCKETS_MILLIS[i];
+        }
+      }
+      return getMaxMillis();
+    }
+  }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.dao.hdfs.inode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static io.hops.hopsworks.common.dao.hdfs.inode.InodePathCacheTest.inode;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class InodeAncestorCacheTest {
+
+  private static final long TTL_MS = 60 * 1000;
+
+  private InodeAncestorCache cache;
+
+  @Before
+  public void setUp() {
+    cache = new InodeAncestorCache();
+  }
+
+  @Test
+  public void testLeastRecentlyUsedInodeIsEvicted() {
+    cache.init(2, TTL_MS);
+    cache.put(inode(10, 1, "a"));
+    cache.put(inode(11, 1, "b"));
+    // Reading 10 makes 11 the least recently used entry
+    assertNotNull(cache.get(10));
+    cache.put(inode(12, 1, "c"));
+
+    assertEquals(2, cache.getSize());
+    assertNull(cache.get(11));
+    assertEquals("a", cache.get(10).getName());
+    assertEquals("c", cache.get(12).getName());
+    assertEquals(3, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void testExpiredInodeIsDropped() throws InterruptedException {
+    cache.init(10, 1);
+    cache.put(inode(10, 1, "a"));
+    Thread.sleep(20);
+
+    assertNull(cache.get(10));
+    assertEquals(0, cache.getSize());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void testDisabledCacheKeepsNothing() {
+    cache.init(0, TTL_MS);
+    assertEquals(10, cache.put(inode(10, 1, "a")).getId());
+
+    assertNull(cache.get(10));
+    assertEquals(0, cache.getSize());
+  }
+}
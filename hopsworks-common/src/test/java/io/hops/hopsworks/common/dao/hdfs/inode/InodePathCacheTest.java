@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.dao.hdfs.inode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class InodePathCacheTest {
+
+  private static final long TTL_MS = 60 * 1000;
+
+  private InodePathCache cache;
+
+  @Before
+  public void setUp() {
+    cache = new InodePathCache();
+  }
+
+  @Test
+  public void testLeastRecentlyUsedPathIsEvicted() {
+    cache.init(2, TTL_MS);
+    cache.put("/Projects/a", inode(10, 1, "a"));
+    cache.put("/Projects/b", inode(11, 1, "b"));
+    // Reading a makes b the least recently used entry
+    assertNotNull(cache.get("/Projects/a"));
+    cache.put("/Projects/c", inode(12, 1, "c"));
+
+    assertEquals(2, cache.getSize());
+    assertNull(cache.get("/Projects/b"));
+    assertEquals(10, cache.get("/Projects/a").getId());
+    assertEquals(12, cache.get("/Projects/c").getId());
+  }
+
+  @Test
+  public void testExpiredPathIsDropped() throws InterruptedException {
+    cache.init(10, 1);
+    cache.put("/Projects/a", inode(10, 1, "a"));
+    Thread.sleep(20);
+
+    assertNull(cache.get("/Projects/a"));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void testInvalidateDropsPathsBelow() {
+    cache.init(10, TTL_MS);
+    cache.put("/Projects/a", inode(10, 1, "a"));
+    cache.put("/Projects/a/x", inode(11, 10, "x"));
+    cache.put("/Projects/ab", inode(12, 1, "ab"));
+
+    cache.invalidate(10);
+
+    assertNull(cache.get("/Projects/a"));
+    assertNull(cache.get("/Projects/a/x"));
+    assertNotNull(cache.get("/Projects/ab"));
+  }
+
+  @Test
+  public void testMovedInodeDropsItsOldSubtree() {
+    cache.init(10, TTL_MS);
+    cache.put("/Projects/a", inode(10, 1, "a"));
+    cache.put("/Projects/a/x", inode(11, 10, "x"));
+    cache.put("/Projects/b", inode(10, 1, "b"));
+
+    assertNull(cache.get("/Projects/a"));
+    assertNull(cache.get("/Projects/a/x"));
+    assertEquals(10, cache.get("/Projects/b").getId());
+  }
+
+  static Inode inode(int id, int parentId, String name) {
+    Inode inode = new Inode(parentId, name, parentId);
+    inode.setId(id);
+    inode.setDir(true);
+    return inode;
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.dataset;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ZipStreamWriterTest {
+
+  // Streamed entries of this size or more get a ZIP64 local header, the large
+  // entry is over it and the others are under it
+  private static final long ZIP64_THRESHOLD = 64 * 1024;
+  private static final long MODIFICATION_TIME = 1500000000000L;
+
+  private final Map<String, byte[]> files = new LinkedHashMap<>();
+  private File archive;
+
+  @Before
+  public void setUp() throws IOException {
+    Random random = new Random(42);
+    byte[] incompressible = new byte[(int) ZIP64_THRESHOLD * 2];
+    random.nextBytes(incompressible);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      text.append("line ").append(i).append('\n');
+    }
+    files.put("dir/empty.txt", new byte[0]);
+    files.put("dir/compressed.txt", text.toString().getBytes(StandardCharsets.UTF_8));
+    files.put("dir/streamed.txt", text.substring(0, 1000).getBytes(StandardCharsets.UTF_8));
+    files.put("dir/streamed-large.bin", incompressible);
+    files.put("dir/last.txt", "last".getBytes(StandardCharsets.UTF_8));
+    archive = File.createTempFile("zipstreamwriter", ".zip");
+  }
+
+  @After
+  public void tearDown() {
+    archive.delete();
+  }
+
+  private void writeArchive(long zip64Threshold) throws IOException {
+    byte[] buffer = new byte[8192];
+    try (ZipStreamWriter zip = new ZipStreamWriter(new FileOutputStream(archive), Deflater.DEFAULT_COMPRESSION,
+        zip64Threshold)) {
+      zip.putDirectory("dir", MODIFICATION_TIME);
+      zip.putCompressed(ZipStreamWriter.compress("dir/empty.txt", MODIFICATION_TIME,
+          new ByteArrayInputStream(files.get("dir/empty.txt")), Deflater.DEFAULT_COMPRESSION, buffer));
+      zip.putCompressed(ZipStreamWriter.compress("dir/compressed.txt", MODIFICATION_TIME,
+          new ByteArrayInputStream(files.get("dir/compressed.txt")), Deflater.DEFAULT_COMPRESSION, buffer));
+      putStreamed(zip, "dir/streamed.txt", buffer);
+      putStreamed(zip, "dir/streamed-large.bin", buffer);
+      putStreamed(zip, "dir/last.txt", buffer);
+    }
+  }
+
+  private void putStreamed(ZipStreamWriter zip, String name, byte[] buffer) throws IOException {
+    byte[] content = files.get(name);
+    zip.putStreamed(name, MODIFICATION_TIME, content.length, new ByteArrayInputStream(content), buffer);
+  }
+
+  @Test
+  public void testReadWithZipFile() throws IOException {
+    writeArchive(Long.MAX_VALUE);
+    assertReadWithZipFile();
+  }
+
+  /**
+   * ZipInputStream before Java 21 only reads 8 byte data descriptor sizes for
+   * entries past 4GB, so the ZIP64 entries are checked through the central
+   * directory.
+   */
+  @Test
+  public void testReadZip64WithZipFile() throws IOException {
+    writeArchive(ZIP64_THRESHOLD);
+    assertReadWithZipFile();
+  }
+
+  /**
+   * The data descriptor of an entry with a ZIP64 local header has 8 byte
+   * sizes even if the entry is smaller than 4GB.
+   */
+  @Test
+  public void testZip64DataDescriptor() throws IOException {
+    writeArchive(ZIP64_THRESHOLD);
+    byte[] data;
+    try (InputStream in = new FileInputStream(archive)) {
+      data = readAll(in);
+    }
+    // The descriptor of the large entry is right before the next local header
+    byte[] nextName = "dir/last.txt".getBytes(StandardCharsets.UTF_8);
+    int next = indexOf(data, nextName) - 30;
+    assertEquals(0x04034b50, readInt(data, next));
+    int descriptor = next - 24;
+    assertEquals(0x08074b50, readInt(data, descriptor));
+    assertEquals(files.get("dir/streamed-large.bin").length, readLong(data, descriptor + 16));
+
+    // Entries under the threshold keep the 4 byte sizes
+    byte[] largeName = "dir/streamed-large.bin".getBytes(StandardCharsets.UTF_8);
+    int large = indexOf(data, largeName) - 30;
+    descriptor = large - 16;
+    assertEquals(0x08074b50, readInt(data, descriptor));
+    assertEquals(files.get("dir/streamed.txt").length, readInt(data, descriptor + 12));
+  }
+
+  @Test
+  public void testReadWithZipInputStream() throws IOException {
+    writeArchive(Long.MAX_VALUE);
+    try (ZipInputStream zin = new ZipInputStream(new FileInputStream(archive))) {
+      ZipEntry dir = zin.getNextEntry();
+      assertEquals("dir/", dir.getName());
+      assertTrue(dir.isDirectory());
+      assertEquals(0, readAll(zin).length);
+
+      for (Map.Entry<String, byte[]> file : files.entrySet()) {
+        ZipEntry entry = zin.getNextEntry();
+        assertNotNull(file.getKey(), entry);
+        assertEquals(file.getKey(), entry.getName());
+        assertArrayEquals(file.getKey(), file.getValue(), readAll(zin));
+      }
+      assertNull(zin.getNextEntry());
+    }
+  }
+
+  private void assertReadWithZipFile() throws IOException {
+    try (ZipFile zipFile = new ZipFile(archive)) {
+      assertEquals(files.size() + 1, zipFile.size());
+
+      ZipEntry dir = zipFile.getEntry("dir/");
+      assertNotNull(dir);
+      assertTrue(dir.isDirectory());
+      assertEquals(ZipEntry.STORED, dir.getMethod());
+      assertEquals(0, dir.getSize());
+
+      for (Map.Entry<String, byte[]> file : files.entrySet()) {
+        ZipEntry entry = zipFile.getEntry(file.getKey());
+        assertNotNull(file.getKey(), entry);
+        assertFalse(entry.isDirectory());
+        assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+        assertEquals(file.getValue().length, entry.getSize());
+        try (InputStream in = zipFile.getInputStream(entry)) {
+          assertArrayEquals(file.getKey(), file.getValue(), readAll(in));
+        }
+      }
+    }
+  }
+
+  private static int indexOf(byte[] data, byte[] pattern) {
+    for (int i = 0; i <= data.length - pattern.length; i++) {
+      int j = 0;
+      while (j < pattern.length && data[i + j] == pattern[j]) {
+        j++;
+      }
+      if (j == pattern.length) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static long readInt(byte[] data, int offset) {
+    return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF) << 16
+        | (long) (data[offset + 3] & 0xFF) << 24;
+  }
+
+  private static long readLong(byte[] data, int offset) {
+    return readInt(data, offset) | readInt(data, offset + 4) << 32;
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int r;
+    while ((r = in.read(buffer)) >= 0) {
+      out.write(buffer, 0, r);
+    }
+    return out.toByteArray();
+  }
+}
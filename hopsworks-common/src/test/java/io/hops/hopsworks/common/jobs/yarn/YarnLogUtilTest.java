@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.jobs.yarn;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.file.tfile.TFile;
+import org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class YarnLogUtilTest {
+
+  private static final String[] STDOUT = new String[]{"stdout"};
+  private static final String[] STDERR = new String[]{"stderr"};
+  private static final String[] ALL = new String[]{""};
+
+  private final Configuration conf = new Configuration();
+  // Node name -> container -> log type -> contents, in file order
+  private final Map<String, Map<String, Map<String, String>>> nodes = new LinkedHashMap<>();
+  private final List<File> files = new ArrayList<>();
+  private FileSystem fs;
+  private File dir;
+  private ExecutorService executor;
+  private YarnLogUtil.LogFileOpener opener;
+
+  @Before
+  public void setUp() throws IOException {
+    fs = FileSystem.getLocal(conf).getRaw();
+    dir = File.createTempFile("yarnlogutil", "");
+    dir.delete();
+    dir.mkdir();
+    executor = Executors.newFixedThreadPool(2);
+    opener = src -> new LogReader(conf, fs.open(new Path(src)), fs.getFileStatus(new Path(src)).getLen());
+
+    StringBuilder large = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      large.append("line ").append(i).append('\n');
+    }
+    Map<String, Map<String, String>> node1 = new LinkedHashMap<>();
+    node1.put("container_1500000000000_0001_01_000001", logs("stdout", "driver out", "stderr", large.toString()));
+    node1.put("container_1500000000000_0001_01_000002", logs("stderr", "executor err", "stdout", ""));
+    nodes.put("host1_8041", node1);
+    Map<String, Map<String, String>> node2 = new LinkedHashMap<>();
+    node2.put("container_1500000000000_0001_01_000003", logs("stdout", large.toString()));
+    node2.put("container_1500000000000_0001_01_000004", logs("gc.log", "gc"));
+    nodes.put("host2_8041", node2);
+    Map<String, Map<String, String>> node3 = new LinkedHashMap<>();
+    node3.put("container_1500000000000_0001_01_000005", logs("stderr", "", "stdout", "last"));
+    nodes.put("host3_8041", node3);
+
+    for (Map.Entry<String, Map<String, Map<String, String>>> node : nodes.entrySet()) {
+      files.add(writeAggregatedLogFile(node.getKey(), node.getValue()));
+    }
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+    for (File file : files) {
+      file.delete();
+    }
+    dir.delete();
+  }
+
+  @Test
+  public void testSerialCopyMatchesPerTypeOutput() throws Exception {
+    assertMatchesPerTypeOutput(null, 1);
+  }
+
+  @Test
+  public void testParallelCopyMatchesPerTypeOutput() throws Exception {
+    assertMatchesPerTypeOutput(executor, 2);
+    assertMatchesPerTypeOutput(executor, files.size());
+  }
+
+  @Test
+  public void testSingleFileMatchesPerTypeOutput() throws Exception {
+    String src = files.get(0).getPath();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    YarnLogUtil.writeLogs(opener, new String[]{src}, Arrays.asList(STDOUT, STDERR),
+        new OutputStream[]{out, err}, executor, 2);
+    assertEquals(perTypeOutput(Arrays.asList("host1_8041"), "stdout"), out.toString("UTF-8"));
+    assertEquals(perTypeOutput(Arrays.asList("host1_8041"), "stderr"), err.toString("UTF-8"));
+  }
+
+  private void assertMatchesPerTypeOutput(ExecutorService executor, int parallelism) throws Exception {
+    String[] srcs = new String[files.size()];
+    for (int i = 0; i < srcs.length; i++) {
+      srcs[i] = files.get(i).getPath();
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ByteArrayOutputStream err = new ByteArrayOutputStream();
+    ByteArrayOutputStream all = new ByteArrayOutputStream();
+    YarnLogUtil.writeLogs(opener, srcs, Arrays.asList(STDOUT, STDERR, ALL),
+        new OutputStream[]{out, err, all}, executor, parallelism);
+
+    List<String> nodeNames = new ArrayList<>(nodes.keySet());
+    assertEquals(perTypeOutput(nodeNames, "stdout"), out.toString("UTF-8"));
+    assertEquals(perTypeOutput(nodeNames, "stderr"), err.toString("UTF-8"));
+    assertEquals(perTypeOutput(nodeNames, ""), all.toString("UTF-8"));
+  }
+
+  /**
+   * Output of the former copy, which read all the aggregated files once per
+   * desired log type.
+   */
+  private String perTypeOutput(List<String> nodeNames, String desiredLogType) {
+    StringBuilder out = new StringBuilder();
+    for (String nodeName : nodeNames) {
+      for (Map.Entry<String, Map<String, String>> container : nodes.get(nodeName).entrySet()) {
+        boolean foundLog = false;
+        for (Map.Entry<String, String> log : container.getValue().entrySet()) {
+          String logType = log.getKey();
+          if (!desiredLogType.isEmpty() && !logType.contains(desiredLogType)) {
+            continue;
+          }
+          long logLength = log.getValue().getBytes(StandardCharsets.UTF_8).length;
+          if (!foundLog) {
+            out.append("Container: " + container.getKey() + " on " + nodeName + "\n"
+                + "==============================================="
+                + "=============================================== \n");
+          }
+          if (logLength == 0) {
+            out.append("Log Type: " + logType + "\n");
+            out.append("Log Length: " + 0 + "\n");
+            // The former copy repeated the container header after an empty log
+            foundLog = true;
+            continue;
+          }
+          out.append("Log Type: " + logType + "\n");
+          out.append("Log Length: " + Long.toString(logLength) + "\n");
+          out.append("Log Contents: \n");
+          out.append(log.getValue());
+          out.append("\n");
+          foundLog = true;
+        }
+      }
+    }
+    return out.toString();
+  }
+
+  /**
+   * Writes an aggregated log file the way the node managers do, see
+   * org.apache.hadoop.yarn.logaggregation.AggregatedLogFormat.LogWriter
+   */
+  private File writeAggregatedLogFile(String nodeName, Map<String, Map<String, String>> containers)
+      throws IOException {
+    File file = new File(dir, nodeName);
+    try (FSDataOutputStream fsOut = fs.create(new Path(file.getPath()))) {
+      TFile.Writer writer = new TFile.Writer(fsOut, 256 * 1024, TFile.COMPRESSION_NONE, null, conf);
+      try {
+        append(writer, new AggregatedLogFormat.LogKey("VERSION"), new byte[]{0, 0, 0, 1});
+        for (Map.Entry<String, Map<String, String>> container : containers.entrySet()) {
+          ByteArrayOutputStream value = new ByteArrayOutputStream();
+          DataOutputStream valueOut = new DataOutputStream(value);
+          for (Map.Entry<String, String> log : container.getValue().entrySet()) {
+            byte[] contents = log.getValue().getBytes(StandardCharsets.UTF_8);
+            valueOut.writeUTF(log.getKey());
+            valueOut.writeUTF(String.valueOf(contents.length));
+            valueOut.write(contents);
+          }
+          valueOut.flush();
+          append(writer, new AggregatedLogFormat.LogKey(container.getKey()), value.toByteArray());
+        }
+      } finally {
+        writer.close();
+      }
+    }
+    return file;
+  }
+
+  private static void append(TFile.Writer writer, AggregatedLogFormat.LogKey key, byte[] value)
+      throws IOException {
+    try (DataOutputStream keyOut = writer.prepareAppendKey(-1)) {
+      key.write(keyOut);
+    }
+    try (DataOutputStream valueOut = writer.prepareAppendValue(-1)) {
+      valueOut.write(value);
+    }
+  }
+
+  private static Map<String, String> logs(String... typesAndContents) {
+    Map<String, String> logs = new LinkedHashMap<>();
+    for (int i = 0; i < typesAndContents.length; i += 2) {
+      logs.put(typesAndContents[i], typesAndContents[i + 1]);
+    }
+    return logs;
+  }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.security;
+
+import io.hops.hopsworks.common.exception.CryptoPasswordNotFoundException;
+import io.hops.hopsworks.common.hdfs.HdfsUsersController;
+import io.hops.hopsworks.common.util.Settings;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CertificateMaterializerTest {
+
+  private static final String PROJECT = "project";
+  // null is the project generic user
+  private static final String[] USERS = new String[]{null, "alice", "bob", "carol"};
+  private static final byte[] KEYSTORE = "keystore".getBytes();
+  private static final byte[] TRUSTSTORE = "truststore".getBytes();
+  private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+  private final Queue<Future<?>> removals = new ConcurrentLinkedQueue<>();
+  private ScheduledThreadPoolExecutor scheduler;
+  private TestMaterializer materializer;
+  private File dir;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("certificatematerializer").toFile();
+    scheduler = new ScheduledThreadPoolExecutor(2);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    scheduler.shutdownNow();
+    FileUtils.deleteDirectory(dir);
+  }
+
+  @Test
+  public void testConcurrentMaterializationsShareMaterial() throws Exception {
+    init(2, HOUR);
+    ExecutorService threads = Executors.newFixedThreadPool(8);
+    try {
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        final int thread = t;
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = 0; i < 500; i++) {
+              String user = USERS[(thread + i) % USERS.length];
+              materializer.materializeCertificatesLocal(user, PROJECT);
+              try {
+                // Referenced material is never wiped nor removed
+                CertificateMaterializer.CryptoMaterial material = materializer.getUserMaterial(user, PROJECT);
+                assertFalse(material.isWiped());
+                assertArrayEquals(KEYSTORE, material.getKeyStoreBytes());
+                assertArrayEquals(KEYSTORE, Files.readAllBytes(keyStore(user).toPath()));
+              } finally {
+                materializer.removeCertificatesLocal(user, PROJECT);
+              }
+            }
+            return null;
+          }
+        });
+      }
+      for (Future<Void> task : threads.invokeAll(tasks)) {
+        task.get();
+      }
+    } finally {
+      threads.shutdown();
+    }
+    awaitRemovals();
+
+    for (String user : USERS) {
+      assertFalse(materializer.existsInLocalStore(user, PROJECT, null));
+      assertNotCached(user);
+    }
+    assertEquals(0, dir.list().length);
+    // Only the two most recently released materials are kept
+    List<CertificateMaterializer.CryptoMaterial> kept = new ArrayList<>();
+    for (CertificateMaterializer.CryptoMaterial material : materializer.loaded) {
+      if (!material.isWiped()) {
+        kept.add(material);
+      } else {
+        assertWiped(material);
+      }
+    }
+    assertEquals(2, kept.size());
+
+    materializer.tearDown();
+    for (CertificateMaterializer.CryptoMaterial material : kept) {
+      assertWiped(material);
+    }
+  }
+
+  @Test
+  public void testReleasedMaterialIsReused() throws Exception {
+    init(2, HOUR);
+    materializeAndRelease("alice");
+    CertificateMaterializer.CryptoMaterial released = materializer.loaded.peek();
+    assertFalse(released.isWiped());
+
+    materializer.materializeCertificatesLocal("alice", PROJECT);
+    assertSame(released, materializer.getUserMaterial("alice", PROJECT));
+    assertEquals(1, materializer.loads("alice"));
+    assertTrue(keyStore("alice").exists());
+  }
+
+  @Test
+  public void testLeastRecentlyReleasedMaterialIsWiped() throws Exception {
+    init(2, HOUR);
+    materializeAndRelease("alice");
+    materializeAndRelease("bob");
+    materializeAndRelease("carol");
+    List<CertificateMaterializer.CryptoMaterial> loaded = new ArrayList<>(materializer.loaded);
+    assertWiped(loaded.get(0));
+    assertFalse(loaded.get(1).isWiped());
+    assertFalse(loaded.get(2).isWiped());
+
+    materializer.materializeCertificatesLocal("alice", PROJECT);
+    materializer.materializeCertificatesLocal("bob", PROJECT);
+    assertEquals(2, materializer.loads("alice"));
+    assertEquals(1, materializer.loads("bob"));
+  }
+
+  @Test
+  public void testExpiredReleasedMaterialIsWiped() throws Exception {
+    init(2, 50);
+    materializeAndRelease("alice");
+    CertificateMaterializer.CryptoMaterial released = materializer.loaded.peek();
+    Thread.sleep(200);
+
+    materializer.materializeCertificatesLocal("alice", PROJECT);
+    assertWiped(released);
+    assertEquals(2, materializer.loads("alice"));
+    assertFalse(materializer.getUserMaterial("alice", PROJECT).isWiped());
+  }
+
+  @Test
+  public void testInvalidatedReleasedMaterialIsWiped() throws Exception {
+    init(2, HOUR);
+    materializeAndRelease("alice");
+    materializeAndRelease(null);
+    List<CertificateMaterializer.CryptoMaterial> loaded = new ArrayList<>(materializer.loaded);
+
+    materializer.invalidateReleasedMaterial("alice", PROJECT);
+    assertWiped(loaded.get(0));
+    assertFalse(loaded.get(1).isWiped());
+    materializer.invalidateProjectReleasedMaterial(PROJECT);
+    assertWiped(loaded.get(1));
+  }
+
+  @Test
+  public void testDisabledReleasedMaterialIsWiped() throws Exception {
+    init(0, HOUR);
+    materializeAndRelease("alice");
+    assertWiped(materializer.loaded.peek());
+
+    materializer.materializeCertificatesLocal("alice", PROJECT);
+    assertEquals(2, materializer.loads("alice"));
+  }
+
+  private void init(int releasedMaterialMaxSize, long releasedMaterialTtlMs) {
+    materializer = new TestMaterializer();
+    materializer.init(managed(scheduler), dir.getAbsolutePath(), 1, TimeUnit.MILLISECONDS, releasedMaterialMaxSize,
+        releasedMaterialTtlMs);
+  }
+
+  private void materializeAndRelease(String user) throws Exception {
+    materializer.materializeCertificatesLocal(user, PROJECT);
+    materializer.materializeCertificatesLocal(user, PROJECT);
+    materializer.removeCertificatesLocal(user, PROJECT);
+    assertTrue(keyStore(user).exists());
+    materializer.removeCertificatesLocal(user, PROJECT);
+    awaitRemovals();
+    assertFalse(keyStore(user).exists());
+    assertNotCached(user);
+  }
+
+  private void awaitRemovals() throws Exception {
+    for (Future<?> removal : removals) {
+      if (!removal.isCancelled()) {
+        removal.get();
+      }
+    }
+  }
+
+  private void assertNotCached(String user) {
+    try {
+      materializer.getUserMaterial(user, PROJECT);
+      fail("Material of " + user + " should not be cached");
+    } catch (CryptoPasswordNotFoundException ex) {
+      // Released
+    }
+  }
+
+  private static void assertWiped(CertificateMaterializer.CryptoMaterial material) {
+    assertTrue(material.isWiped());
+    assertArrayEquals(new char[material.getPassword().length], material.getPassword());
+    assertArrayEquals(new byte[KEYSTORE.length], material.getKeyStoreBytes());
+    assertArrayEquals(new byte[TRUSTSTORE.length], material.getTrustStoreBytes());
+  }
+
+  private File keyStore(String user) {
+    String username = user == null ? PROJECT + Settings.PROJECT_GENERIC_USER_SUFFIX
+        : PROJECT + HdfsUsersController.USER_NAME_DELIMITER + user;
+    return new File(dir, username + "__kstore.jks");
+  }
+
+  // Keeps the scheduled file removals so that the tests can wait for them
+  private ManagedScheduledExecutorService managed(final ScheduledThreadPoolExecutor executor) {
+    return (ManagedScheduledExecutorService) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[]{ManagedScheduledExecutorService.class}, (proxy, method, args) -> {
+          try {
+            Object result = method.invoke(executor, args);
+            if (method.getName().equals("schedule")) {
+              removals.add((Future<?>) result);
+            }
+            return result;
+          } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+          }
+        });
+  }
+
+  private static ByteBuffer direct(byte[] data) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+    buffer.put(data);
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Loads the material from memory instead of the database, in direct buffers
+   * so that wiping zeroes them.
+   */
+  private static class TestMaterializer extends CertificateMaterializer {
+
+    private final Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+    private final Queue<CryptoMaterial> loaded = new ConcurrentLinkedQueue<>();
+
+    @Override
+    CryptoMaterial getMaterialFromDatabase(String username, String projectName) {
+      loads.computeIfAbsent(String.valueOf(username), k -> new AtomicInteger()).incrementAndGet();
+      CryptoMaterial material = new CryptoMaterial(direct(KEYSTORE), direct(TRUSTSTORE), "secret".toCharArray());
+      loaded.add(material);
+      return material;
+    }
+
+    private int loads(String username) {
+      AtomicInteger count = loads.get(String.valueOf(username));
+      return count == null ? 0 : count.get();
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2013 - 2018, Logical Clocks AB and RISE SICS AB. All rights reserved
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this
+ * software and associated documentation files (the "Software"), to deal in the Software
+ * without restriction, including without limitation the rights to use, copy, modify, merge,
+ * publish, distribute, sublicense, and/or sell copies of the Software, and to permit
+ * persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS  OR IMPLIED, INCLUDING
+ * BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL  THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR  OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *
+ */
+
+package io.hops.hopsworks.common.util;
+
+import io.hops.hopsworks.common.dao.util.Variables;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SettingsTest {
+
+  private static final String FIRST = "10.0.0.1:1111";
+  private static final String SECOND = "10.0.0.2:2222";
+  private static final int READERS = 4;
+  private static final int REFRESHES = 2000;
+
+  private InMemorySettings settings;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    settings = new InMemorySettings();
+    executor = Executors.newFixedThreadPool(READERS + 1);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testVariablesAreLoadedOnce() {
+    assertEquals(FIRST, settings.getYarnWebUIAddress());
+    assertEquals(FIRST, settings.getYarnWebUIAddress());
+    assertEquals(1, settings.loads.get());
+
+    settings.second.set(true);
+    assertEquals(FIRST, settings.getYarnWebUIAddress());
+    settings.invalidateCache();
+    assertEquals(SECOND, settings.getYarnWebUIAddress());
+    assertEquals(2, settings.loads.get());
+  }
+
+  @Test
+  public void testReadersSeeConsistentValuesDuringRefresh() throws Exception {
+    final AtomicBoolean done = new AtomicBoolean();
+    final AtomicInteger torn = new AtomicInteger();
+    List<Future<Integer>> readers = new ArrayList<>();
+    for (int i = 0; i < READERS; i++) {
+      readers.add(executor.submit(() -> {
+        int reads = 0;
+        while (!done.get()) {
+          String address = settings.getYarnWebUIAddress();
+          if (!FIRST.equals(address) && !SECOND.equals(address)) {
+            torn.incrementAndGet();
+          }
+          reads++;
+        }
+        return reads;
+      }));
+    }
+    for (int i = 0; i < REFRESHES; i++) {
+      settings.second.set(i % 2 == 0);
+      settings.refreshCache();
+    }
+    done.set(true);
+    for (Future<Integer> reader : readers) {
+      assertTrue(reader.get(30, TimeUnit.SECONDS) > 0);
+    }
+    assertEquals(0, torn.get());
+  }
+
+  @Test
+  public void testGettersDoNotTakeTheMonitor() throws Exception {
+    settings.getYarnWebUIAddress();
+    final CountDownLatch locked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    executor.submit(() -> {
+      synchronized (settings) {
+        locked.countDown();
+        release.await();
+      }
+      return null;
+    });
+    try {
+      assertTrue(locked.await(10, TimeUnit.SECONDS));
+      Future<String> read = executor.submit(() -> settings.getYarnWebUIAddress() + "/"
+          + settings.getElasticRESTEndpoint());
+      assertEquals(FIRST + "/127.0.0.1:9200", read.get(10, TimeUnit.SECONDS));
+    } finally {
+      release.countDown();
+    }
+  }
+
+  /**
+   * Settings reading its variables from memory instead of the variables table. The values switch between two
+   * consistent sets of the yarn web ui ip and port.
+   */
+  private static class InMemorySettings extends Settings {
+
+    private final AtomicBoolean second = new AtomicBoolean();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Override
+    public List<Variables> getAllVariables() {
+      loads.incrementAndGet();
+      if (second.get()) {
+        return Arrays.asList(new Variables("yarn_ui_ip", "10.0.0.2"), new Variables("yarn_ui_port", "2222"));
+      }
+      return Arrays.asList(new Variables("yarn_ui_ip", "10.0.0.1"), new Variables("yarn_ui_port", "1111"));
+    }
+  }
+}
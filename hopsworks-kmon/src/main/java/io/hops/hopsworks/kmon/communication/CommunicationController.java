@@ -35,7 +35,10 @@ import io.hops.hopsworks.common.dao.kagent.HostServicesFacade;
 import io.hops.hopsworks.common.util.NodesTableItem;
 import io.hops.hopsworks.kmon.group.ServiceInstancesController;
 import io.hops.hopsworks.kmon.struct.InstanceInfo;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import javax.faces.application.FacesMessage;
 import javax.faces.context.FacesContext;
@@ -192,7 +195,7 @@ public class CommunicationController {
 
   private String serviceOperationAll(String operation) {
     instances = serviceInstancesController.getInstances();
-    List<Future<String>> results = new ArrayList<>();
+    List<CompletionStage<String>> results = new ArrayList<>();
     String result = "";
     for (InstanceInfo instance : instances) {
       if (instance.getService().equals(service)) {
@@ -200,15 +203,21 @@ public class CommunicationController {
           Hosts h = findHostByName(instance.getHost());
           String ip = h.getPublicOrPrivateIp();
           String agentPassword = h.getAgentPassword();
-          results.add(web.asyncServiceOp(operation, ip, agentPassword, cluster, group, service));
+          results.add(web.serviceOpAsync(operation, ip, agentPassword, cluster, group, service));
         } catch (Exception ex) {
           result = result + ex.getMessage() + "\n";
         }
       }
     }
-    for (Future<String> r : results) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(web.getRequestTimeoutMillis());
+    for (CompletionStage<String> r : results) {
       try {
-        result = result + r.get() + "\n";
+        result = result + r.toCompletableFuture().get(Math.max(0, deadline - System.nanoTime()),
+            TimeUnit.NANOSECONDS) + "\n";
+      } catch (ExecutionException ex) {
+        result = result + ex.getCause().getMessage() + "\n";
+      } catch (TimeoutException ex) {
+        result = result + "Timed out\n";
       } catch (Exception ex) {
         result = result + ex.getMessage() + "\n";
       }